@@ -0,0 +1,235 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.cloud.Timestamp;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.Value;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Shared fixtures for the benchmarks. All data is deterministic so that runs are comparable. */
+final class BenchmarkData {
+
+  static final String PROJECT_ID = "benchmark-project";
+  static final String COLLECTION_ID = "coll";
+
+  private BenchmarkData() {}
+
+  /** Creates a Firestore client that is backed by the given fake RPC. */
+  static FirestoreImpl newFirestore(FakeFirestoreRpc rpc) {
+    return new FirestoreImpl(FirestoreOptions.newBuilder().setProjectId(PROJECT_ID).build(), rpc);
+  }
+
+  /** Returns a document with one large array of numbers. */
+  static Map<String, Object> arrayData(int elementCount) {
+    Map<String, Object> data = new HashMap<>();
+    List<Object> values = new ArrayList<>(elementCount);
+    for (int i = 0; i < elementCount; ++i) {
+      values.add((long) i);
+    }
+    data.put("values", values);
+    return data;
+  }
+
+  /** Returns a document with scalar fields of mixed types. */
+  static Map<String, Object> flatData(int fieldCount) {
+    Map<String, Object> data = new HashMap<>();
+    for (int i = 0; i < fieldCount; ++i) {
+      switch (i % 5) {
+        case 0:
+          data.put("string" + i, "value-" + i);
+          break;
+        case 1:
+          data.put("long" + i, (long) i);
+          break;
+        case 2:
+          data.put("double" + i, i + 0.5);
+          break;
+        case 3:
+          data.put("boolean" + i, i % 2 == 0);
+          break;
+        default:
+          data.put("timestamp" + i, Timestamp.ofTimeSecondsAndNanos(i, 0));
+          break;
+      }
+    }
+    return data;
+  }
+
+  /** Returns a document with {@code depth} levels of nested maps. */
+  static Map<String, Object> nestedData(int depth, int fanOut) {
+    Map<String, Object> data = flatData(fanOut);
+    if (depth > 0) {
+      for (int i = 0; i < fanOut; ++i) {
+        data.put("child" + i, nestedData(depth - 1, fanOut));
+      }
+    }
+    return data;
+  }
+
+  /** Returns the fully qualified name of the document with the given id in the test collection. */
+  static String documentName(String documentId) {
+    return String.format(
+        "projects/%s/databases/(default)/documents/%s/%s", PROJECT_ID, COLLECTION_ID, documentId);
+  }
+
+  /** Builds a Document proto containing the encoded user data. */
+  static Document document(String documentId, Map<String, Object> data, long updateSeconds) {
+    Value value =
+        UserDataConverter.encodeValue(FieldPath.empty(), data, UserDataConverter.NO_DELETES);
+    return Document.newBuilder()
+        .setName(documentName(documentId))
+        .putAllFields(value.getMapValue().getFieldsMap())
+        .setCreateTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(1))
+        .setUpdateTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(updateSeconds))
+        .build();
+  }
+
+  /** Returns a populated POJO that exercises the common CustomClassMapper conversions. */
+  static Pojo pojo(int seed) {
+    Pojo pojo = new Pojo();
+    pojo.setName("name-" + seed);
+    pojo.setCount(seed);
+    pojo.setScore(seed * 1.5);
+    pojo.setActive(seed % 2 == 0);
+    pojo.setCreated(Timestamp.ofTimeSecondsAndNanos(seed, 0));
+    List<String> tags = new ArrayList<>();
+    Map<String, Long> counters = new HashMap<>();
+    for (int i = 0; i < 10; ++i) {
+      tags.add("tag-" + i);
+      counters.put("counter-" + i, (long) i);
+    }
+    pojo.setTags(tags);
+    pojo.setCounters(counters);
+    Address address = new Address();
+    address.setStreet(seed + " Main Street");
+    address.setCity("Springfield");
+    address.setZip(10_000 + seed);
+    pojo.setAddress(address);
+    return pojo;
+  }
+
+  /** A typical application bean with scalar, collection and nested bean properties. */
+  public static class Pojo {
+    private String name;
+    private long count;
+    private double score;
+    private boolean active;
+    private Timestamp created;
+    private List<String> tags;
+    private Map<String, Long> counters;
+    private Address address;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public void setCount(long count) {
+      this.count = count;
+    }
+
+    public double getScore() {
+      return score;
+    }
+
+    public void setScore(double score) {
+      this.score = score;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    public void setActive(boolean active) {
+      this.active = active;
+    }
+
+    public Timestamp getCreated() {
+      return created;
+    }
+
+    public void setCreated(Timestamp created) {
+      this.created = created;
+    }
+
+    public List<String> getTags() {
+      return tags;
+    }
+
+    public void setTags(List<String> tags) {
+      this.tags = tags;
+    }
+
+    public Map<String, Long> getCounters() {
+      return counters;
+    }
+
+    public void setCounters(Map<String, Long> counters) {
+      this.counters = counters;
+    }
+
+    public Address getAddress() {
+      return address;
+    }
+
+    public void setAddress(Address address) {
+      this.address = address;
+    }
+  }
+
+  /** A nested bean used by {@link Pojo}. */
+  public static class Address {
+    private String street;
+    private String city;
+    private long zip;
+
+    public String getStreet() {
+      return street;
+    }
+
+    public void setStreet(String street) {
+      this.street = street;
+    }
+
+    public String getCity() {
+      return city;
+    }
+
+    public void setCity(String city) {
+      this.city = city;
+    }
+
+    public long getZip() {
+      return zip;
+    }
+
+    public void setZip(long zip) {
+      this.zip = zip;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the client-side cost of batching and committing writes through BulkWriter. Throttling is
+ * disabled so that the results are not bound by the rate limiter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkWriterBenchmark {
+
+  @Param({"1000"})
+  public int writeCount;
+
+  private FakeFirestoreRpc rpc;
+  private FirestoreImpl firestore;
+  private List<DocumentReference> documentReferences;
+  private Map<String, Object> data;
+
+  @Setup
+  public void setUp() {
+    rpc = new FakeFirestoreRpc();
+    firestore = BenchmarkData.newFirestore(rpc);
+    CollectionReference collection = firestore.collection(BenchmarkData.COLLECTION_ID);
+    documentReferences = new ArrayList<>(writeCount);
+    for (int i = 0; i < writeCount; ++i) {
+      documentReferences.add(collection.document("doc" + i));
+    }
+    data = BenchmarkData.flatData(/* fieldCount= */ 10);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    firestore.close();
+  }
+
+  @Benchmark
+  public void setDocuments() throws Exception {
+    BulkWriter bulkWriter =
+        firestore.bulkWriter(BulkWriterOptions.builder().setThrottlingEnabled(false).build());
+    for (DocumentReference documentReference : documentReferences) {
+      bulkWriter.set(documentReference, data);
+    }
+    bulkWriter.close();
+  }
+}
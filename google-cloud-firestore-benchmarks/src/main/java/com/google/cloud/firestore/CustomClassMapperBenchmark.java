@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.BenchmarkData.Pojo;
+import com.google.cloud.firestore.encoding.CustomClassMapper;
+import com.google.firestore.v1.Document;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the conversion between POJOs and their document representation. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomClassMapperBenchmark {
+
+  private FakeFirestoreRpc rpc;
+  private FirestoreImpl firestore;
+  private Pojo pojo;
+  private Map<String, Object> serialized;
+  private DocumentReference documentReference;
+  private DocumentSnapshot snapshot;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    rpc = new FakeFirestoreRpc();
+    firestore = BenchmarkData.newFirestore(rpc);
+    pojo = BenchmarkData.pojo(42);
+    serialized = (Map<String, Object>) CustomClassMapper.serialize(pojo);
+    documentReference = firestore.collection(BenchmarkData.COLLECTION_ID).document("doc");
+    Document document = BenchmarkData.document("doc", serialized, /* updateSeconds= */ 1);
+    snapshot =
+        DocumentSnapshot.fromDocument(firestore, Timestamp.ofTimeSecondsAndNanos(1, 0), document);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    firestore.close();
+  }
+
+  @Benchmark
+  public Object serialize() {
+    return CustomClassMapper.serialize(pojo);
+  }
+
+  @Benchmark
+  public Pojo convertToCustomClass() {
+    return CustomClassMapper.convertToCustomClass(serialized, Pojo.class, documentReference);
+  }
+
+  /** Decodes the document protos and maps them onto the POJO, as done by the public API. */
+  @Benchmark
+  public Pojo documentSnapshotToObject() {
+    return snapshot.toObject(Pojo.class);
+  }
+}
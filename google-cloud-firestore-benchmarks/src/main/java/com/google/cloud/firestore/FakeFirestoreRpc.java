@@ -0,0 +1,311 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.BidiStreamingCallable;
+import com.google.api.gax.rpc.ClientStream;
+import com.google.api.gax.rpc.ClientStreamReadyObserver;
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.ServerStreamingCallable;
+import com.google.api.gax.rpc.StreamController;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.firestore.spi.v1.FirestoreRpc;
+import com.google.cloud.firestore.v1.FirestoreClient;
+import com.google.cloud.firestore.v1.FirestoreClient.ListCollectionIdsPagedResponse;
+import com.google.cloud.firestore.v1.FirestoreClient.ListDocumentsPagedResponse;
+import com.google.firestore.v1.BatchGetDocumentsRequest;
+import com.google.firestore.v1.BatchGetDocumentsResponse;
+import com.google.firestore.v1.BatchWriteRequest;
+import com.google.firestore.v1.BatchWriteResponse;
+import com.google.firestore.v1.BeginTransactionRequest;
+import com.google.firestore.v1.BeginTransactionResponse;
+import com.google.firestore.v1.CommitRequest;
+import com.google.firestore.v1.CommitResponse;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.ExecutePipelineRequest;
+import com.google.firestore.v1.ExecutePipelineResponse;
+import com.google.firestore.v1.ListCollectionIdsRequest;
+import com.google.firestore.v1.ListDocumentsRequest;
+import com.google.firestore.v1.ListenRequest;
+import com.google.firestore.v1.ListenResponse;
+import com.google.firestore.v1.PartitionQueryRequest;
+import com.google.firestore.v1.RollbackRequest;
+import com.google.firestore.v1.RunAggregationQueryRequest;
+import com.google.firestore.v1.RunAggregationQueryResponse;
+import com.google.firestore.v1.RunQueryRequest;
+import com.google.firestore.v1.RunQueryResponse;
+import com.google.firestore.v1.WriteResult;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import com.google.protobuf.Timestamp;
+import com.google.rpc.Code;
+import com.google.rpc.Status;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process {@link FirestoreRpc} that answers every request from memory. Benchmarks use it so
+ * that the measured cost is the client-side work only, without any network or gRPC overhead.
+ *
+ * <p>Reads are served from a document store that can be populated via {@link #putDocument}, queries
+ * return the documents set via {@link #setQueryResults}, and listen streams replay the responses
+ * set via {@link #setListenResponses} as soon as a target is added.
+ */
+final class FakeFirestoreRpc implements FirestoreRpc {
+
+  static final Timestamp READ_TIME = Timestamp.newBuilder().setSeconds(1).build();
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "fake-firestore-rpc");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final Map<String, Document> documents = new ConcurrentHashMap<>();
+  private volatile List<Document> queryResults = Collections.emptyList();
+  private volatile List<ListenResponse> listenResponses = Collections.emptyList();
+
+  /** Adds a document that is returned by BatchGetDocuments. */
+  void putDocument(Document document) {
+    documents.put(document.getName(), document);
+  }
+
+  /** Sets the documents that are returned by every RunQuery call. */
+  void setQueryResults(List<Document> results) {
+    this.queryResults = new ArrayList<>(results);
+  }
+
+  /** Sets the responses that are replayed on a listen stream once a target has been added. */
+  void setListenResponses(List<ListenResponse> responses) {
+    this.listenResponses = new ArrayList<>(responses);
+  }
+
+  @Override
+  public UnaryCallable<CommitRequest, CommitResponse> commitCallable() {
+    return new UnaryCallable<CommitRequest, CommitResponse>() {
+      @Override
+      public ApiFuture<CommitResponse> futureCall(CommitRequest request, ApiCallContext context) {
+        CommitResponse.Builder response = CommitResponse.newBuilder().setCommitTime(READ_TIME);
+        for (int i = 0; i < request.getWritesCount(); ++i) {
+          response.addWriteResults(WriteResult.newBuilder().setUpdateTime(READ_TIME));
+        }
+        return ApiFutures.immediateFuture(response.build());
+      }
+    };
+  }
+
+  @Override
+  public UnaryCallable<BatchWriteRequest, BatchWriteResponse> batchWriteCallable() {
+    return new UnaryCallable<BatchWriteRequest, BatchWriteResponse>() {
+      @Override
+      public ApiFuture<BatchWriteResponse> futureCall(
+          BatchWriteRequest request, ApiCallContext context) {
+        BatchWriteResponse.Builder response = BatchWriteResponse.newBuilder();
+        for (int i = 0; i < request.getWritesCount(); ++i) {
+          response.addWriteResults(WriteResult.newBuilder().setUpdateTime(READ_TIME));
+          response.addStatus(Status.newBuilder().setCode(Code.OK_VALUE));
+        }
+        return ApiFutures.immediateFuture(response.build());
+      }
+    };
+  }
+
+  @Override
+  public ServerStreamingCallable<BatchGetDocumentsRequest, BatchGetDocumentsResponse>
+      batchGetDocumentsCallable() {
+    return new ServerStreamingCallable<BatchGetDocumentsRequest, BatchGetDocumentsResponse>() {
+      @Override
+      public void call(
+          BatchGetDocumentsRequest request,
+          ResponseObserver<BatchGetDocumentsResponse> responseObserver,
+          ApiCallContext context) {
+        responseObserver.onStart(NoOpStreamController.INSTANCE);
+        for (String name : request.getDocumentsList()) {
+          BatchGetDocumentsResponse.Builder response =
+              BatchGetDocumentsResponse.newBuilder().setReadTime(READ_TIME);
+          Document document = documents.get(name);
+          if (document != null) {
+            response.setFound(document);
+          } else {
+            response.setMissing(name);
+          }
+          responseObserver.onResponse(response.build());
+        }
+        responseObserver.onComplete();
+      }
+    };
+  }
+
+  @Override
+  public ScheduledExecutorService getExecutor() {
+    return executor;
+  }
+
+  @Override
+  public ServerStreamingCallable<RunQueryRequest, RunQueryResponse> runQueryCallable() {
+    return new ServerStreamingCallable<RunQueryRequest, RunQueryResponse>() {
+      @Override
+      public void call(
+          RunQueryRequest request,
+          ResponseObserver<RunQueryResponse> responseObserver,
+          ApiCallContext context) {
+        responseObserver.onStart(NoOpStreamController.INSTANCE);
+        for (Document document : queryResults) {
+          responseObserver.onResponse(
+              RunQueryResponse.newBuilder().setDocument(document).setReadTime(READ_TIME).build());
+        }
+        responseObserver.onResponse(
+            RunQueryResponse.newBuilder().setReadTime(READ_TIME).setDone(true).build());
+        responseObserver.onComplete();
+      }
+    };
+  }
+
+  @Override
+  public ServerStreamingCallable<ExecutePipelineRequest, ExecutePipelineResponse>
+      executePipelineCallable() {
+    throw new UnsupportedOperationException("ExecutePipeline is not supported by the fake");
+  }
+
+  @Override
+  public ServerStreamingCallable<RunAggregationQueryRequest, RunAggregationQueryResponse>
+      runAggregationQueryCallable() {
+    throw new UnsupportedOperationException("RunAggregationQuery is not supported by the fake");
+  }
+
+  @Override
+  public UnaryCallable<BeginTransactionRequest, BeginTransactionResponse>
+      beginTransactionCallable() {
+    return new UnaryCallable<BeginTransactionRequest, BeginTransactionResponse>() {
+      @Override
+      public ApiFuture<BeginTransactionResponse> futureCall(
+          BeginTransactionRequest request, ApiCallContext context) {
+        return ApiFutures.immediateFuture(
+            BeginTransactionResponse.newBuilder()
+                .setTransaction(ByteString.copyFromUtf8("transaction"))
+                .build());
+      }
+    };
+  }
+
+  @Override
+  public UnaryCallable<RollbackRequest, Empty> rollbackCallable() {
+    return new UnaryCallable<RollbackRequest, Empty>() {
+      @Override
+      public ApiFuture<Empty> futureCall(RollbackRequest request, ApiCallContext context) {
+        return ApiFutures.immediateFuture(Empty.getDefaultInstance());
+      }
+    };
+  }
+
+  @Override
+  public UnaryCallable<ListCollectionIdsRequest, ListCollectionIdsPagedResponse>
+      listCollectionIdsPagedCallable() {
+    throw new UnsupportedOperationException("ListCollectionIds is not supported by the fake");
+  }
+
+  @Override
+  public UnaryCallable<PartitionQueryRequest, FirestoreClient.PartitionQueryPagedResponse>
+      partitionQueryPagedCallable() {
+    throw new UnsupportedOperationException("PartitionQuery is not supported by the fake");
+  }
+
+  @Override
+  public UnaryCallable<ListDocumentsRequest, ListDocumentsPagedResponse>
+      listDocumentsPagedCallable() {
+    throw new UnsupportedOperationException("ListDocuments is not supported by the fake");
+  }
+
+  @Override
+  public BidiStreamingCallable<ListenRequest, ListenResponse> listenCallable() {
+    return new BidiStreamingCallable<ListenRequest, ListenResponse>() {
+      @Override
+      public ClientStream<ListenRequest> internalCall(
+          ResponseObserver<ListenResponse> responseObserver,
+          ClientStreamReadyObserver<ListenRequest> onReady,
+          ApiCallContext context) {
+        responseObserver.onStart(NoOpStreamController.INSTANCE);
+        return new ClientStream<ListenRequest>() {
+          @Override
+          public void send(ListenRequest request) {
+            if (request.hasAddTarget()) {
+              for (ListenResponse response : listenResponses) {
+                responseObserver.onResponse(response);
+              }
+            }
+          }
+
+          @Override
+          public void closeSendWithError(Throwable t) {}
+
+          @Override
+          public void closeSend() {}
+
+          @Override
+          public boolean isSendReady() {
+            return true;
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  public void shutdownNow() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** A stream controller that ignores all flow control requests. */
+  private static final class NoOpStreamController implements StreamController {
+    static final NoOpStreamController INSTANCE = new NoOpStreamController();
+
+    @Override
+    public void cancel() {}
+
+    @Override
+    public void disableAutoInboundFlowControl() {}
+
+    @Override
+    public void request(int count) {}
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.firestore.v1.ArrayValue;
+import com.google.firestore.v1.MapValue;
+import com.google.firestore.v1.Value;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures sorting Value protos with the Firestore type order. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBenchmark {
+
+  /** The kind of values to sort. */
+  public enum ValueKind {
+    STRING,
+    NUMBER,
+    REFERENCE,
+    ARRAY,
+    MAP
+  }
+
+  @Param({"STRING", "NUMBER", "REFERENCE", "ARRAY", "MAP"})
+  public ValueKind kind;
+
+  @Param({"1000"})
+  public int valueCount;
+
+  private List<Value> values;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(0);
+    values = new ArrayList<>(valueCount);
+    for (int i = 0; i < valueCount; ++i) {
+      values.add(randomValue(random));
+    }
+  }
+
+  private Value randomValue(Random random) {
+    switch (kind) {
+      case STRING:
+        return Value.newBuilder().setStringValue("value-é-" + random.nextInt()).build();
+      case NUMBER:
+        return random.nextBoolean()
+            ? Value.newBuilder().setIntegerValue(random.nextLong()).build()
+            : Value.newBuilder().setDoubleValue(random.nextDouble()).build();
+      case REFERENCE:
+        return Value.newBuilder()
+            .setReferenceValue(
+                BenchmarkData.documentName("doc" + random.nextInt(100))
+                    + "/sub/__id"
+                    + random.nextInt()
+                    + "__")
+            .build();
+      case ARRAY:
+        ArrayValue.Builder array = ArrayValue.newBuilder();
+        for (int i = 0; i < 5; ++i) {
+          array.addValues(Value.newBuilder().setIntegerValue(random.nextInt(3)));
+        }
+        return Value.newBuilder().setArrayValue(array).build();
+      case MAP:
+        MapValue.Builder map = MapValue.newBuilder();
+        for (int i = 0; i < 5; ++i) {
+          map.putFields("field" + i, Value.newBuilder().setIntegerValue(random.nextInt(3)).build());
+        }
+        return Value.newBuilder().setMapValue(map).build();
+      default:
+        throw new IllegalArgumentException("Unknown kind: " + kind);
+    }
+  }
+
+  @Benchmark
+  public List<Value> sort() {
+    List<Value> copy = new ArrayList<>(values);
+    copy.sort(Order.INSTANCE);
+    return copy;
+  }
+}
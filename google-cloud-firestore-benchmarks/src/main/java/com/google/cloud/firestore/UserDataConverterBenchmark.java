@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.firestore.v1.Value;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the conversion between user data and Firestore Value protos. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDataConverterBenchmark {
+
+  /** Document shapes used to parameterize the benchmarks. */
+  public enum Shape {
+    /** A document with a few dozen scalar fields of mixed types. */
+    FLAT,
+    /** A document with several levels of nested maps. */
+    NESTED,
+    /** A document with one large array of numbers. */
+    ARRAY
+  }
+
+  @Param({"FLAT", "NESTED", "ARRAY"})
+  public Shape shape;
+
+  private FakeFirestoreRpc rpc;
+  private FirestoreImpl firestore;
+  private Map<String, Object> data;
+  private Value encoded;
+
+  @Setup
+  public void setUp() {
+    rpc = new FakeFirestoreRpc();
+    firestore = BenchmarkData.newFirestore(rpc);
+    switch (shape) {
+      case FLAT:
+        data = BenchmarkData.flatData(/* fieldCount= */ 40);
+        break;
+      case NESTED:
+        data = BenchmarkData.nestedData(/* depth= */ 5, /* fanOut= */ 4);
+        break;
+      default:
+        data = BenchmarkData.arrayData(/* elementCount= */ 10_000);
+        break;
+    }
+    encoded = UserDataConverter.encodeValue(FieldPath.empty(), data, UserDataConverter.NO_DELETES);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    firestore.close();
+  }
+
+  @Benchmark
+  public Value encodeValue() {
+    return UserDataConverter.encodeValue(FieldPath.empty(), data, UserDataConverter.NO_DELETES);
+  }
+
+  @Benchmark
+  public Object decodeValue() {
+    return UserDataConverter.decodeValue(firestore, encoded);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.api.core.SettableApiFuture;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firestore.v1.DocumentChange;
+import com.google.firestore.v1.ListenResponse;
+import com.google.firestore.v1.TargetChange;
+import com.google.firestore.v1.TargetChange.TargetChangeType;
+import com.google.protobuf.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the snapshot computation of a query listener. Each invocation replays an initial
+ * snapshot of {@code documentCount} documents followed by a burst that modifies all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WatchBenchmark {
+
+  private static final int TARGET_ID = 0x1;
+
+  @Param({"1000", "10000"})
+  public int documentCount;
+
+  private FakeFirestoreRpc rpc;
+  private FirestoreImpl firestore;
+  private Query query;
+
+  @Setup
+  public void setUp() {
+    rpc = new FakeFirestoreRpc();
+    firestore = BenchmarkData.newFirestore(rpc);
+    query = firestore.collection(BenchmarkData.COLLECTION_ID).orderBy("value");
+
+    Random random = new Random(0);
+    List<ListenResponse> responses = new ArrayList<>();
+    responses.add(targetChange(TargetChangeType.ADD, null));
+    for (int i = 0; i < documentCount; ++i) {
+      responses.add(documentChange("doc" + i, random.nextInt(), /* updateSeconds= */ 1));
+    }
+    responses.add(targetChange(TargetChangeType.CURRENT, null));
+    responses.add(targetChange(TargetChangeType.NO_CHANGE, 1L));
+    for (int i = 0; i < documentCount; ++i) {
+      responses.add(documentChange("doc" + i, random.nextInt(), /* updateSeconds= */ 2));
+    }
+    responses.add(targetChange(TargetChangeType.NO_CHANGE, 2L));
+    rpc.setListenResponses(responses);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    firestore.close();
+  }
+
+  private static ListenResponse targetChange(TargetChangeType type, Long readSeconds) {
+    TargetChange.Builder change = TargetChange.newBuilder().setTargetChangeType(type);
+    if (readSeconds != null) {
+      change.setReadTime(Timestamp.newBuilder().setSeconds(readSeconds));
+    } else {
+      change.addTargetIds(TARGET_ID);
+    }
+    return ListenResponse.newBuilder().setTargetChange(change).build();
+  }
+
+  private static ListenResponse documentChange(String documentId, int value, long updateSeconds) {
+    return ListenResponse.newBuilder()
+        .setDocumentChange(
+            DocumentChange.newBuilder()
+                .setDocument(
+                    BenchmarkData.document(
+                        documentId,
+                        ImmutableMap.of("value", (long) value, "name", documentId),
+                        updateSeconds))
+                .addTargetIds(TARGET_ID))
+        .build();
+  }
+
+  @Benchmark
+  public QuerySnapshot initialSnapshotAndModifyBurst() throws Exception {
+    SettableApiFuture<QuerySnapshot> result = SettableApiFuture.create();
+    AtomicInteger snapshots = new AtomicInteger();
+    ListenerRegistration registration =
+        query.addSnapshotListener(
+            MoreExecutors.directExecutor(),
+            (snapshot, error) -> {
+              if (error != null) {
+                result.setException(error);
+              } else if (snapshots.incrementAndGet() == 2) {
+                result.set(snapshot);
+              }
+            });
+    try {
+      return result.get();
+    } finally {
+      registration.remove();
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import io.grpc.Status;
+
+/**
+ * Tunes BulkWriter's rate limit, batch size and number of in-flight batches based on the outcome of
+ * recent BatchWrite RPCs.
+ *
+ * <p>The throttler follows an additive-increase/multiplicative-decrease (AIMD) scheme. Results are
+ * aggregated over evaluation windows of {@link #EVALUATION_INTERVAL_MILLIS}. If the writes in a
+ * window were rarely rejected with RESOURCE_EXHAUSTED or ABORTED and batches completed within
+ * {@link #MAX_HEALTHY_LATENCY_MILLIS}, all limits are increased by a fixed step. If too many writes
+ * were rejected, all limits are halved. If batches were slow but not rejected, the limits are
+ * reduced more gently. Since at most one adjustment is made per window, a burst of failures from
+ * batches that were already in flight only reduces the limits once.
+ */
+final class AdaptiveThrottler {
+  /** The maximum number of writes that the backend accepts in a single BatchWrite request. */
+  static final int MAX_BATCH_SIZE = 500;
+
+  /** The maximum number of batches that can be in flight at the same time. */
+  static final int MAX_IN_FLIGHT_BATCHES = 100;
+
+  /** How often the limits are adjusted. */
+  static final long EVALUATION_INTERVAL_MILLIS = 1000;
+
+  /** The fraction of throttled writes in a window above which all limits are halved. */
+  static final double MAX_THROTTLED_RATIO = 0.05;
+
+  /** The average batch latency above which the limits are reduced. */
+  static final long MAX_HEALTHY_LATENCY_MILLIS = 5000;
+
+  /** The number of operations per second that are added after a healthy window. */
+  static final int OPS_PER_SECOND_INCREASE = 100;
+
+  /** The number of writes per batch that are added after a healthy window. */
+  static final int BATCH_SIZE_INCREASE = 20;
+
+  private static final double THROTTLED_DECREASE_FACTOR = 0.5;
+  private static final double LATENCY_DECREASE_FACTOR = 0.75;
+
+  private final int maxOpsPerSecond;
+
+  private double opsPerSecond;
+  private int batchSize;
+  private int inFlightBatches;
+
+  private long windowStartMillis;
+  private int windowWriteCount;
+  private int windowThrottledCount;
+  private int windowBatchCount;
+  private long windowLatencyMillis;
+
+  /**
+   * @param initialOpsPerSecond The initial number of operations per second.
+   * @param maxOpsPerSecond The number of operations per second that is never exceeded.
+   * @param initialBatchSize The initial number of writes per batch.
+   * @param initialMaxPendingOpCount The initial number of writes that can be in flight.
+   * @param startTimeMillis The start of the first evaluation window.
+   */
+  AdaptiveThrottler(
+      int initialOpsPerSecond,
+      int maxOpsPerSecond,
+      int initialBatchSize,
+      int initialMaxPendingOpCount,
+      long startTimeMillis) {
+    this.maxOpsPerSecond = maxOpsPerSecond;
+    this.opsPerSecond = Math.min(initialOpsPerSecond, maxOpsPerSecond);
+    this.batchSize = Math.max(1, Math.min(initialBatchSize, (int) opsPerSecond));
+    this.inFlightBatches =
+        Math.max(1, Math.min(initialMaxPendingOpCount / batchSize, MAX_IN_FLIGHT_BATCHES));
+    this.windowStartMillis = startTimeMillis;
+  }
+
+  /** Returns whether a write that failed with the given status indicates backend overload. */
+  static boolean isThrottled(Status.Code code) {
+    return code == Status.Code.RESOURCE_EXHAUSTED || code == Status.Code.ABORTED;
+  }
+
+  /**
+   * Records the outcome of a BatchWrite request and adjusts the limits once the current evaluation
+   * window has elapsed.
+   *
+   * @param writeCount The number of writes in the batch.
+   * @param throttledCount The number of writes that failed with RESOURCE_EXHAUSTED or ABORTED.
+   * @param latencyMillis The time between sending the request and receiving the response.
+   * @param nowMillis The current time.
+   */
+  synchronized void recordBatch(
+      int writeCount, int throttledCount, long latencyMillis, long nowMillis) {
+    windowWriteCount += writeCount;
+    windowThrottledCount += throttledCount;
+    windowLatencyMillis += latencyMillis;
+    ++windowBatchCount;
+
+    if (nowMillis - windowStartMillis < EVALUATION_INTERVAL_MILLIS) {
+      return;
+    }
+
+    double throttledRatio = (double) windowThrottledCount / windowWriteCount;
+    long averageLatencyMillis = windowLatencyMillis / windowBatchCount;
+    if (throttledRatio > MAX_THROTTLED_RATIO) {
+      decrease(THROTTLED_DECREASE_FACTOR);
+    } else if (averageLatencyMillis > MAX_HEALTHY_LATENCY_MILLIS) {
+      decrease(LATENCY_DECREASE_FACTOR);
+    } else {
+      increase();
+    }
+
+    windowStartMillis = nowMillis;
+    windowWriteCount = 0;
+    windowThrottledCount = 0;
+    windowBatchCount = 0;
+    windowLatencyMillis = 0;
+  }
+
+  private void increase() {
+    opsPerSecond = Math.min(opsPerSecond + OPS_PER_SECOND_INCREASE, maxOpsPerSecond);
+    batchSize =
+        Math.min(Math.min(batchSize + BATCH_SIZE_INCREASE, MAX_BATCH_SIZE), (int) opsPerSecond);
+    inFlightBatches = Math.min(inFlightBatches + 1, MAX_IN_FLIGHT_BATCHES);
+  }
+
+  private void decrease(double factor) {
+    opsPerSecond = Math.max(1, opsPerSecond * factor);
+    batchSize = Math.max(1, Math.min((int) (batchSize * factor), (int) opsPerSecond));
+    inFlightBatches = Math.max(1, (int) (inFlightBatches * factor));
+  }
+
+  /** Returns the number of operations per second that the rate limiter should allow. */
+  synchronized int getOpsPerSecond() {
+    return (int) opsPerSecond;
+  }
+
+  /** Returns the maximum number of writes per batch. */
+  synchronized int getBatchSize() {
+    return batchSize;
+  }
+
+  /** Returns the maximum number of writes that can be in flight at the same time. */
+  synchronized int getMaxPendingOpCount() {
+    return batchSize * inFlightBatches;
+  }
+}
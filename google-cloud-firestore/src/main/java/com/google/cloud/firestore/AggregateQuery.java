@@ -51,6 +51,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -140,23 +141,47 @@ public class AggregateQuery {
   @Nonnull
   ApiFuture<AggregateQuerySnapshot> get(
       @Nullable final ByteString transactionId, @Nullable com.google.protobuf.Timestamp readTime) {
+    return get(transactionId, /* newTransaction= */ null, /* onTransactionBegun= */ null, readTime);
+  }
+
+  /**
+   * Runs the aggregation in a new transaction that the aggregation begins with the given options.
+   *
+   * @param onTransactionBegun Receives the ID of the new transaction from the first response.
+   */
+  @Nonnull
+  ApiFuture<AggregateQuerySnapshot> getInNewTransaction(
+      @Nonnull com.google.firestore.v1.TransactionOptions newTransaction,
+      @Nonnull Consumer<ByteString> onTransactionBegun) {
+    return get(/* transactionId= */ null, newTransaction, onTransactionBegun, /* readTime= */ null);
+  }
+
+  @Nonnull
+  private ApiFuture<AggregateQuerySnapshot> get(
+      @Nullable final ByteString transactionId,
+      @Nullable com.google.firestore.v1.TransactionOptions newTransaction,
+      @Nullable Consumer<ByteString> onTransactionBegun,
+      @Nullable com.google.protobuf.Timestamp readTime) {
+    boolean transactional = transactionId != null || newTransaction != null;
     TraceUtil.Span span =
         getTraceUtil()
             .startSpan(
-                transactionId == null
-                    ? TelemetryConstants.METHOD_NAME_AGGREGATION_QUERY_GET
-                    : TelemetryConstants.METHOD_NAME_TRANSACTION_GET_AGGREGATION_QUERY);
+                transactional
+                    ? TelemetryConstants.METHOD_NAME_TRANSACTION_GET_AGGREGATION_QUERY
+                    : TelemetryConstants.METHOD_NAME_AGGREGATION_QUERY_GET);
 
     MetricsContext metricsContext =
         createMetricsContext(
-            transactionId == null
-                ? TelemetryConstants.METHOD_NAME_RUN_AGGREGATION_QUERY_GET
-                : TelemetryConstants.METHOD_NAME_RUN_AGGREGATION_QUERY_TRANSACTIONAL);
+            transactional
+                ? TelemetryConstants.METHOD_NAME_RUN_AGGREGATION_QUERY_TRANSACTIONAL
+                : TelemetryConstants.METHOD_NAME_RUN_AGGREGATION_QUERY_GET);
 
     try (Scope ignored = span.makeCurrent()) {
       AggregateQueryResponseDeliverer responseDeliverer =
           new AggregateQueryResponseDeliverer(
               transactionId,
+              newTransaction,
+              onTransactionBegun,
               readTime,
               /* startTimeNanos= */ query.rpcContext.getClock().nanoTime(),
               metricsContext);
@@ -174,6 +199,7 @@ public class AggregateQuery {
     RunAggregationQueryRequest request =
         toProto(
             responseDeliverer.getTransactionId(),
+            responseDeliverer.getNewTransaction(),
             responseDeliverer.getReadTime(),
             responseDeliverer.getExplainOptions());
     AggregateQueryResponseObserver<T> responseObserver =
@@ -228,6 +254,13 @@ public class AggregateQuery {
       return null;
     }
 
+    @Nullable
+    com.google.firestore.v1.TransactionOptions getNewTransaction() {
+      return null;
+    }
+
+    void deliverTransactionId(ByteString transactionId) {}
+
     ApiFuture<T> getFuture() {
       return future;
     }
@@ -261,12 +294,32 @@ public class AggregateQuery {
   }
 
   private class AggregateQueryResponseDeliverer extends ResponseDeliverer<AggregateQuerySnapshot> {
+    private final @Nullable com.google.firestore.v1.TransactionOptions newTransaction;
+    private final @Nullable Consumer<ByteString> onTransactionBegun;
+
     AggregateQueryResponseDeliverer(
         @Nullable ByteString transactionId,
+        @Nullable com.google.firestore.v1.TransactionOptions newTransaction,
+        @Nullable Consumer<ByteString> onTransactionBegun,
         @Nullable com.google.protobuf.Timestamp readTime,
         long startTimeNanos,
         MetricsContext metricsContext) {
       super(transactionId, readTime, startTimeNanos, metricsContext);
+      this.newTransaction = newTransaction;
+      this.onTransactionBegun = onTransactionBegun;
+    }
+
+    @Override
+    @Nullable
+    com.google.firestore.v1.TransactionOptions getNewTransaction() {
+      return newTransaction;
+    }
+
+    @Override
+    void deliverTransactionId(ByteString transactionId) {
+      if (onTransactionBegun != null) {
+        onTransactionBegun.accept(transactionId);
+      }
     }
 
     @Override
@@ -364,6 +417,10 @@ public class AggregateQuery {
           .currentSpan()
           .addEvent(
               METHOD_NAME_RUN_AGGREGATION_QUERY + " Response Received.", getAttemptAttributes());
+      if (!response.getTransaction().isEmpty()) {
+        responseDeliverer.deliverTransactionId(response.getTransaction());
+      }
+
       if (response.hasReadTime()) {
         readTime = Timestamp.fromProto(response.getReadTime());
       }
@@ -414,6 +471,12 @@ public class AggregateQuery {
         return false;
       }
 
+      // Like transactional aggregations, aggregations that begin a transaction are retried via the
+      // transaction runner.
+      if (responseDeliverer.getNewTransaction() != null) {
+        return false;
+      }
+
       Set<StatusCode.Code> retryableCodes =
           FirestoreSettings.newBuilder().runAggregationQuerySettings().getRetryableCodes();
       return query.shouldRetryQuery(
@@ -437,12 +500,17 @@ public class AggregateQuery {
    */
   @Nonnull
   public RunAggregationQueryRequest toProto() {
-    return toProto(/* transactionId= */ null, /* readTime= */ null, /* explainOptions= */ null);
+    return toProto(
+        /* transactionId= */ null,
+        /* newTransaction= */ null,
+        /* readTime= */ null,
+        /* explainOptions= */ null);
   }
 
   @Nonnull
   RunAggregationQueryRequest toProto(
       @Nullable final ByteString transactionId,
+      @Nullable final com.google.firestore.v1.TransactionOptions newTransaction,
       @Nullable final com.google.protobuf.Timestamp readTime,
       @Nullable ExplainOptions explainOptions) {
     RunQueryRequest runQueryRequest = query.toProto();
@@ -452,6 +520,9 @@ public class AggregateQuery {
     if (transactionId != null) {
       request.setTransaction(transactionId);
     }
+    if (newTransaction != null) {
+      request.setNewTransaction(newTransaction);
+    }
     if (readTime != null) {
       request.setReadTime(readTime);
     }
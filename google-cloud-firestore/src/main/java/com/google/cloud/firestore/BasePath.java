@@ -139,6 +139,11 @@ public abstract class BasePath<B extends BasePath<B>> implements Comparable<B> {
   }
 
   private int compareSegments(String lhs, String rhs) {
+    // Most segments that are compared are equal, e.g. the collection IDs of sibling documents.
+    if (lhs.equals(rhs)) {
+      return 0;
+    }
+
     boolean isLhsNumeric = isNumericId(lhs);
     boolean isRhsNumeric = isNumericId(rhs);
 
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.api.gax.rpc.StreamController;
+import com.google.common.base.Throwables;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A blocking iterator over the results of a stream that uses manual flow control to bound the
+ * number of buffered results.
+ *
+ * <p>Subclasses feed the iterator from their stream observer and decide how many stream messages to
+ * request in {@link #getRequestCountLocked}. Waiting for results uses a {@link ReentrantLock}
+ * rather than monitors so that consumers on virtual threads do not pin their carrier thread.
+ *
+ * @param <T> The type of the results.
+ */
+abstract class BufferedStreamIterator<T> implements Iterator<T>, AutoCloseable {
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+
+  @GuardedBy("lock")
+  private final ArrayDeque<T> buffer = new ArrayDeque<>();
+
+  private StreamController controller;
+
+  @GuardedBy("lock")
+  private boolean done;
+
+  @GuardedBy("lock")
+  private boolean closed;
+
+  @GuardedBy("lock")
+  @Nullable
+  private Throwable error;
+
+  /** The number of stream messages that were requested and have not arrived yet. */
+  @GuardedBy("lock")
+  private int outstandingMessages;
+
+  /**
+   * Returns the number of stream messages to request. Called when the stream starts, after a result
+   * was consumed and after a message arrived, as long as the stream has not ended.
+   *
+   * @param bufferedCount The number of results in the buffer.
+   * @param outstandingMessages The number of messages that were requested and have not arrived yet.
+   */
+  abstract int getRequestCountLocked(int bufferedCount, int outstandingMessages);
+
+  /** Switches the stream to manual flow control and requests the first messages. */
+  void start(StreamController streamController) {
+    controller = streamController;
+    streamController.disableAutoInboundFlowControl();
+    requestMore();
+  }
+
+  /** Adds a result to the buffer. */
+  void add(T result) {
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      buffer.add(result);
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Records that a stream message and all of its results arrived. */
+  void endMessage() {
+    lock.lock();
+    try {
+      --outstandingMessages;
+    } finally {
+      lock.unlock();
+    }
+    requestMore();
+  }
+
+  /**
+   * Marks the end of the stream, which failed if {@code throwable} is not null. Only the first call
+   * has an effect.
+   */
+  void finish(@Nullable Throwable throwable) {
+    lock.lock();
+    try {
+      if (!done) {
+        error = throwable;
+        done = true;
+      }
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void requestMore() {
+    int requestCount;
+    lock.lock();
+    try {
+      if (done || closed) {
+        return;
+      }
+      requestCount = getRequestCountLocked(buffer.size(), outstandingMessages);
+      outstandingMessages += requestCount;
+    } finally {
+      lock.unlock();
+    }
+
+    if (requestCount > 0) {
+      controller.request(requestCount);
+    }
+  }
+
+  /**
+   * Blocks until a result is available or the stream has ended.
+   *
+   * @throws RuntimeException If the stream failed, or if the thread was interrupted while waiting.
+   */
+  @Override
+  public boolean hasNext() {
+    lock.lock();
+    try {
+      while (buffer.isEmpty() && !done && !closed) {
+        changed.await();
+      }
+      if (!buffer.isEmpty()) {
+        return true;
+      }
+      if (error != null && !closed) {
+        Throwables.throwIfUnchecked(error);
+        throw new RuntimeException(error);
+      }
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new RuntimeException(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    T result;
+    lock.lock();
+    try {
+      result = buffer.poll();
+    } finally {
+      lock.unlock();
+    }
+
+    requestMore();
+    return result;
+  }
+
+  /** Cancels the stream if it is still running and discards all buffered results. */
+  @Override
+  public void close() {
+    boolean cancel;
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      cancel = !done;
+      buffer.clear();
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+
+    if (cancel && controller != null) {
+      controller.cancel();
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.google.cloud.firestore;
 
+import com.google.api.core.ApiFunction;
 import com.google.api.core.ApiFuture;
 import com.google.api.core.ApiFutures;
 import com.google.api.gax.rpc.ApiException;
@@ -24,18 +25,29 @@ import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.firestore.v1.BatchWriteRequest;
 import com.google.firestore.v1.BatchWriteResponse;
+import com.google.firestore.v1.Write;
 import io.grpc.Status;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
 
 /** Used to represent a batch that contains scheduled BulkWriterOperations. */
 class BulkCommitBatch extends UpdateBuilder<ApiFuture<WriteResult>> {
 
   final List<BulkWriterOperation> pendingOperations = new ArrayList<>();
-  private final Set<DocumentReference> documents = new CopyOnWriteArraySet<>();
+
+  /**
+   * The index of the write that each pending operation is part of. Operations that were coalesced
+   * share a single write.
+   */
+  private final List<Integer> writeIndexes = new ArrayList<>();
+
+  /** Maps each document in the batch to the index of its write. */
+  private final Map<DocumentReference, Integer> documents = new ConcurrentHashMap<>();
+
   private final Executor executor;
   private int maxBatchSize;
 
@@ -57,22 +69,33 @@ class BulkCommitBatch extends UpdateBuilder<ApiFuture<WriteResult>> {
   }
 
   ApiFuture<WriteResult> wrapResult(int writeIndex) {
-    return pendingOperations.get(writeIndex).getFuture();
+    // Search from the end, since the write was added by one of the last enqueued operations.
+    for (int i = writeIndexes.size() - 1; i >= 0; --i) {
+      if (writeIndexes.get(i) == writeIndex) {
+        return pendingOperations.get(i).getFuture();
+      }
+    }
+    throw new IllegalStateException("No operation was enqueued for write " + writeIndex);
   }
 
   /**
    * Commits all pending operations to the database and verifies all preconditions.
    *
    * <p>The writes in the batch are not applied atomically and can be applied out of order.
+   *
+   * @param throttler If set, the throttler that is informed about the latency of the request and
+   *     the number of writes that were rejected due to contention or overload.
    */
-  ApiFuture<Void> bulkCommit() {
+  ApiFuture<Void> bulkCommit(@Nullable AdaptiveThrottler throttler) {
     // Follows same thread safety logic as `UpdateBuilder::commit`.
     committed = true;
     BatchWriteRequest request = buildBatchWriteRequest();
+    long startTimeMillis = System.currentTimeMillis();
 
     ApiFuture<BatchWriteResponse> response =
         processExceptions(
             firestore.sendRequest(request, firestore.getClient().batchWriteCallable()));
+    response.addListener(this::invalidateCachedDocuments, MoreExecutors.directExecutor());
 
     return ApiFutures.transformAsync(
         response,
@@ -82,10 +105,18 @@ class BulkCommitBatch extends UpdateBuilder<ApiFuture<WriteResult>> {
           List<com.google.firestore.v1.WriteResult> writeResults =
               batchWriteResponse.getWriteResultsList();
           List<com.google.rpc.Status> statuses = batchWriteResponse.getStatusList();
+          int throttledCount = 0;
 
-          for (int i = 0; i < writeResults.size(); ++i) {
-            com.google.firestore.v1.WriteResult writeResult = writeResults.get(i);
-            com.google.rpc.Status status = statuses.get(i);
+          for (com.google.rpc.Status status : statuses) {
+            if (AdaptiveThrottler.isThrottled(Status.fromCodeValue(status.getCode()).getCode())) {
+              ++throttledCount;
+            }
+          }
+
+          for (int i = 0; i < pendingOperations.size(); ++i) {
+            int writeIndex = writeIndexes.get(i);
+            com.google.firestore.v1.WriteResult writeResult = writeResults.get(writeIndex);
+            com.google.rpc.Status status = statuses.get(writeIndex);
             BulkWriterOperation operation = pendingOperations.get(i);
             Status code = Status.fromCodeValue(status.getCode());
             if (code == Status.OK) {
@@ -98,6 +129,12 @@ class BulkCommitBatch extends UpdateBuilder<ApiFuture<WriteResult>> {
                       FirestoreException.forServerRejection(code, status.getMessage())));
             }
           }
+
+          if (throttler != null) {
+            long nowMillis = System.currentTimeMillis();
+            throttler.recordBatch(
+                writeResults.size(), throttledCount, nowMillis - startTimeMillis, nowMillis);
+          }
           return BulkWriter.silenceFuture(ApiFutures.allAsList(pendingUserCallbacks));
         },
         executor);
@@ -121,7 +158,7 @@ class BulkCommitBatch extends UpdateBuilder<ApiFuture<WriteResult>> {
                   .setCode(exception.getStatusCode().getCode().ordinal())
                   .setMessage(exception.getMessage());
           BatchWriteResponse.Builder responseBuilder = BatchWriteResponse.newBuilder();
-          for (int i = 0; i < pendingOperations.size(); ++i) {
+          for (int i = 0; i < getMutationsSize(); ++i) {
             responseBuilder.addWriteResults(
                 com.google.firestore.v1.WriteResult.getDefaultInstance());
             responseBuilder.addStatus(status);
@@ -132,12 +169,85 @@ class BulkCommitBatch extends UpdateBuilder<ApiFuture<WriteResult>> {
   }
 
   void enqueueOperation(BulkWriterOperation operation) {
-    boolean added = documents.add(operation.getDocumentReference());
-    Preconditions.checkState(added, "Batch should not contain writes to the same document");
+    int writeIndex = getMutationsSize();
+    Integer previous = documents.putIfAbsent(operation.getDocumentReference(), writeIndex);
+    Preconditions.checkState(
+        previous == null, "Batch should not contain writes to the same document");
+    pendingOperations.add(operation);
+    writeIndexes.add(writeIndex);
+  }
+
+  /**
+   * Merges the write of an operation into the pending write for the same document, so that both
+   * operations are resolved by a single write. The write is created by running {@code
+   * enqueueOperationCallback} on this batch.
+   *
+   * @return Whether the operation was added to this batch. If false, the writes could not be merged
+   *     and the batch is unchanged.
+   */
+  boolean coalesceOperation(
+      BulkWriterOperation operation,
+      ApiFunction<BulkCommitBatch, ApiFuture<WriteResult>> enqueueOperationCallback) {
+    int writeIndex = documents.get(operation.getDocumentReference());
+    Write pending = getWrite(writeIndex);
+    int mutationsSize = getMutationsSize();
+
+    // The callback appends a separate write, which is then merged into the pending write.
     pendingOperations.add(operation);
+    writeIndexes.add(mutationsSize);
+
+    boolean coalesced = false;
+    try {
+      enqueueOperationCallback.apply(this);
+      Write merged = WriteCoalescer.merge(pending, removeLastWrite());
+      if (merged != null) {
+        replaceWrite(writeIndex, merged);
+        writeIndexes.set(writeIndexes.size() - 1, writeIndex);
+        coalesced = true;
+      }
+    } finally {
+      if (!coalesced) {
+        // Restore the batch, including if the callback failed after it added its write.
+        while (getMutationsSize() > mutationsSize) {
+          removeLastWrite();
+        }
+        replaceWrite(writeIndex, pending);
+        pendingOperations.remove(pendingOperations.size() - 1);
+        writeIndexes.remove(writeIndexes.size() - 1);
+      }
+    }
+    return coalesced;
+  }
+
+  /**
+   * Splits the writes of this batch into new batches of at most {@code maxBatchSize} writes each,
+   * preserving their order. Every operation moves to the batch that contains its write.
+   */
+  List<BulkCommitBatch> split(int maxBatchSize) {
+    List<BulkCommitBatch> batches = new ArrayList<>();
+    for (int i = 0; i < pendingOperations.size(); ++i) {
+      BulkWriterOperation operation = pendingOperations.get(i);
+      int writeIndex = writeIndexes.get(i);
+      // Writes are created by operations in the order of their index.
+      int batchIndex = writeIndex / maxBatchSize;
+      if (batchIndex == batches.size()) {
+        batches.add(new BulkCommitBatch(firestore, executor, maxBatchSize));
+      }
+      BulkCommitBatch batch = batches.get(batchIndex);
+      Integer existingIndex = batch.documents.get(operation.getDocumentReference());
+      if (existingIndex == null) {
+        batch.enqueueOperation(operation);
+        batch.appendWrite(operation.getDocumentReference(), getWrite(writeIndex));
+      } else {
+        // The operation was coalesced with an earlier operation.
+        batch.pendingOperations.add(operation);
+        batch.writeIndexes.add(existingIndex);
+      }
+    }
+    return batches;
   }
 
   boolean has(DocumentReference documentReference) {
-    return documents.contains(documentReference);
+    return documents.containsKey(documentReference);
   }
 }
@@ -179,6 +179,23 @@ public final class BulkWriter implements AutoCloseable {
   @GuardedBy("lock")
   private final RateLimiter rateLimiter;
 
+  /**
+   * Tunes the rate limit, batch size and maximum number of pending operations if adaptive
+   * throttling is enabled. Null otherwise.
+   */
+  @Nullable private final AdaptiveThrottler adaptiveThrottler;
+
+  /**
+   * Distributes writes over separate batches and rate limits per key range if key range scheduling
+   * is enabled. Null otherwise, in which case all writes are added to {@link #bulkCommitBatch}.
+   */
+  @GuardedBy("lock")
+  @Nullable
+  private final KeyRangeScheduler keyRangeScheduler;
+
+  /** Whether writes to documents that are already part of the current batch are merged. */
+  private final boolean writeCoalescingEnabled;
+
   /**
    * The number of pending operations enqueued on this BulkWriter instance. An operation is
    * considered pending if BulkWriter has sent it via RPC and is awaiting the result.
@@ -200,8 +217,8 @@ public final class BulkWriter implements AutoCloseable {
   private int maxPendingOpCount = DEFAULT_MAXIMUM_PENDING_OPERATIONS_COUNT;
 
   /**
-   * The batch that is currently used to schedule operations. Once this batch reaches maximum
-   * capacity, a new batch is created.
+   * The batch that is currently used to schedule operations if key range scheduling is disabled.
+   * Once this batch reaches maximum capacity, a new batch is created.
    *
    * <p>Access to the BulkCommitBatch should only occur under lock as it can be accessed by both the
    * user thread as well as by the backoff logic in BulkWriter.
@@ -295,6 +312,37 @@ public final class BulkWriter implements AutoCloseable {
               RATE_LIMITER_MULTIPLIER_MILLIS,
               (int) maxRate);
     }
+
+    if (options.getAdaptiveThrottlingEnabled()) {
+      this.adaptiveThrottler =
+          new AdaptiveThrottler(
+              rateLimiter.getInitialCapacity(),
+              rateLimiter.getMaximumRate(),
+              maxBatchSize,
+              maxPendingOpCount,
+              System.currentTimeMillis());
+    } else {
+      this.adaptiveThrottler = null;
+    }
+
+    if (options.getKeyRangeSchedulingEnabled()) {
+      this.keyRangeScheduler =
+          new KeyRangeScheduler(
+              KeyRangeScheduler.DEFAULT_KEY_RANGE_COUNT,
+              rateLimiter.getInitialCapacity(),
+              options.getThrottlingEnabled() ? RATE_LIMITER_MULTIPLIER : Integer.MAX_VALUE,
+              options.getThrottlingEnabled() ? RATE_LIMITER_MULTIPLIER_MILLIS : Integer.MAX_VALUE,
+              rateLimiter.getMaximumRate(),
+              maxBatchSize);
+      for (int keyRange = 0; keyRange < keyRangeScheduler.getKeyRangeCount(); ++keyRange) {
+        keyRangeScheduler.setOpenBatch(
+            keyRange, new BulkCommitBatch(firestore, bulkWriterExecutor, maxBatchSize));
+      }
+    } else {
+      this.keyRangeScheduler = null;
+    }
+
+    this.writeCoalescingEnabled = options.getWriteCoalescingEnabled();
   }
 
   /**
@@ -687,7 +735,10 @@ public final class BulkWriter implements AutoCloseable {
    * under the maximum limit.
    */
   private void processBufferedOperations() {
-    if (pendingOpsCount < maxPendingOpCount && bufferedOperations.size() > 0) {
+    applyAdaptiveLimitsLocked();
+    // The limit may have been raised by adaptive throttling, so more than one operation can
+    // become eligible at once.
+    while (pendingOpsCount < maxPendingOpCount && bufferedOperations.size() > 0) {
       Runnable nextOp = bufferedOperations.remove(0);
       nextOp.run();
     }
@@ -899,12 +950,22 @@ public final class BulkWriter implements AutoCloseable {
     }
   }
 
-  /** Sends the current batch and resets {@link #bulkCommitBatch}. */
+  /** Sends the current batches of all key ranges. */
   private void scheduleCurrentBatchLocked() {
-    if (bulkCommitBatch.getMutationsSize() == 0) return;
+    int keyRangeCount = keyRangeScheduler != null ? keyRangeScheduler.getKeyRangeCount() : 1;
+    for (int keyRange = 0; keyRange < keyRangeCount; ++keyRange) {
+      scheduleCurrentBatchLocked(keyRange);
+    }
+  }
+
+  /** Sends the current batch of the given key range and replaces it with an empty batch. */
+  private void scheduleCurrentBatchLocked(final int keyRange) {
+    final BulkCommitBatch pendingBatch = getCurrentBatchLocked(keyRange);
+    if (pendingBatch.getMutationsSize() == 0) return;
 
-    final BulkCommitBatch pendingBatch = bulkCommitBatch;
-    bulkCommitBatch = new BulkCommitBatch(firestore, bulkWriterExecutor, maxBatchSize);
+    applyAdaptiveLimitsLocked();
+    setCurrentBatchLocked(
+        keyRange, new BulkCommitBatch(firestore, bulkWriterExecutor, maxBatchSize));
 
     // Use the write with the longest backoff duration when determining backoff.
     int highestBackoffDuration = 0;
@@ -918,7 +979,12 @@ public final class BulkWriter implements AutoCloseable {
     bulkWriterExecutor.schedule(
         () -> {
           synchronized (lock) {
-            sendBatchLocked(pendingBatch);
+            if (keyRangeScheduler != null) {
+              keyRangeScheduler.addReadyBatch(keyRange, pendingBatch);
+              dispatchKeyRangeBatchesLocked();
+            } else {
+              sendBatchLocked(pendingBatch);
+            }
           }
         },
         backoffMsWithJitter,
@@ -927,45 +993,27 @@ public final class BulkWriter implements AutoCloseable {
 
   /** Sends the provided batch once the rate limiter does not require any delay. */
   private void sendBatchLocked(final BulkCommitBatch batch) {
+    int requestedOps = batch.getMutationsSize();
+    if (adaptiveThrottler != null) {
+      applyAdaptiveLimitsLocked();
+      int capacity = adaptiveThrottler.getOpsPerSecond();
+      if (requestedOps > capacity) {
+        // Batches that were created before the limits were lowered may exceed the current
+        // capacity, which the rate limiter never grants. Send their writes in smaller batches.
+        for (BulkCommitBatch smallerBatch : batch.split(Math.min(capacity, maxBatchSize))) {
+          sendBatchLocked(smallerBatch);
+        }
+        return;
+      }
+    }
+
     // Send the batch if it does not require any delay, or schedule another attempt after the
     // appropriate timeout.
-    boolean underRateLimit = rateLimiter.tryMakeRequest(batch.getMutationsSize());
+    boolean underRateLimit = rateLimiter.tryMakeRequest(requestedOps);
     if (underRateLimit) {
-      TraceUtil.Span span =
-          firestore
-              .getOptions()
-              .getTraceUtil()
-              .startSpan(TelemetryConstants.METHOD_NAME_BULK_WRITER_COMMIT, traceContext)
-              .setAttribute(ATTRIBUTE_KEY_DOC_COUNT, batch.getMutationsSize());
-
-      MetricsContext metricsContext =
-          firestore
-              .getOptions()
-              .getMetricsUtil()
-              .createMetricsContext(TelemetryConstants.METHOD_NAME_BULK_WRITER_COMMIT);
-
-      try (Scope ignored = span.makeCurrent()) {
-        ApiFuture<Void> result = batch.bulkCommit();
-        if (!lastFlushOperation.isDone()) {
-          result.addListener(
-              () -> {
-                if (!lastFlushOperation.isDone()) {
-                  synchronized (lock) {
-                    scheduleCurrentBatchLocked();
-                  }
-                }
-              },
-              MoreExecutors.directExecutor());
-        }
-        span.endAtFuture(result);
-        metricsContext.recordLatencyAtFuture(MetricType.END_TO_END_LATENCY, result);
-      } catch (Exception error) {
-        span.end(error);
-        metricsContext.recordLatency(MetricType.END_TO_END_LATENCY, error);
-        throw error;
-      }
+      commitBatchLocked(batch);
     } else {
-      long delayMs = rateLimiter.getNextRequestDelayMs(batch.getMutationsSize());
+      long delayMs = rateLimiter.getNextRequestDelayMs(requestedOps);
       logger.log(Level.FINE, () -> String.format("Backing off for %d seconds", delayMs / 1000));
       bulkWriterExecutor.schedule(
           () -> {
@@ -978,12 +1026,117 @@ public final class BulkWriter implements AutoCloseable {
     }
   }
 
+  /**
+   * Sends the batches that are ready in each key range, alternating between ranges. Schedules
+   * another attempt if some ranges are over their rate limit.
+   */
+  private void dispatchKeyRangeBatchesLocked() {
+    int maxRequestOps = Integer.MAX_VALUE;
+    if (adaptiveThrottler != null) {
+      applyAdaptiveLimitsLocked();
+      maxRequestOps = adaptiveThrottler.getOpsPerSecond();
+    }
+
+    long delayMs = keyRangeScheduler.dispatch(rateLimiter, maxRequestOps, this::commitBatchLocked);
+    if (delayMs > 0 && !keyRangeScheduler.isDispatchScheduled()) {
+      keyRangeScheduler.setDispatchScheduled(true);
+      logger.log(Level.FINE, () -> String.format("Backing off for %d seconds", delayMs / 1000));
+      bulkWriterExecutor.schedule(
+          () -> {
+            synchronized (lock) {
+              keyRangeScheduler.setDispatchScheduled(false);
+              dispatchKeyRangeBatchesLocked();
+            }
+          },
+          delayMs,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Sends the provided batch without checking the rate limit. */
+  private void commitBatchLocked(BulkCommitBatch batch) {
+    TraceUtil.Span span =
+        firestore
+            .getOptions()
+            .getTraceUtil()
+            .startSpan(TelemetryConstants.METHOD_NAME_BULK_WRITER_COMMIT, traceContext)
+            .setAttribute(ATTRIBUTE_KEY_DOC_COUNT, batch.getMutationsSize());
+
+    MetricsContext metricsContext =
+        firestore
+            .getOptions()
+            .getMetricsUtil()
+            .createMetricsContext(TelemetryConstants.METHOD_NAME_BULK_WRITER_COMMIT);
+
+    try (Scope ignored = span.makeCurrent()) {
+      ApiFuture<Void> result = batch.bulkCommit(adaptiveThrottler);
+      if (!lastFlushOperation.isDone()) {
+        result.addListener(
+            () -> {
+              if (!lastFlushOperation.isDone()) {
+                synchronized (lock) {
+                  scheduleCurrentBatchLocked();
+                }
+              }
+            },
+            MoreExecutors.directExecutor());
+      }
+      span.endAtFuture(result);
+      metricsContext.recordLatencyAtFuture(MetricType.END_TO_END_LATENCY, result);
+    } catch (Exception error) {
+      span.end(error);
+      metricsContext.recordLatency(MetricType.END_TO_END_LATENCY, error);
+      throw error;
+    }
+  }
+
+  /** Returns the batch that new writes to the given key range are added to. */
+  private BulkCommitBatch getCurrentBatchLocked(int keyRange) {
+    return keyRangeScheduler != null ? keyRangeScheduler.getOpenBatch(keyRange) : bulkCommitBatch;
+  }
+
+  private void setCurrentBatchLocked(int keyRange, BulkCommitBatch batch) {
+    if (keyRangeScheduler != null) {
+      keyRangeScheduler.setOpenBatch(keyRange, batch);
+    } else {
+      bulkCommitBatch = batch;
+    }
+  }
+
+  /**
+   * Applies the limits computed by the adaptive throttler to the rate limiter, the size of new
+   * batches and the maximum number of pending operations.
+   */
+  private void applyAdaptiveLimitsLocked() {
+    if (adaptiveThrottler == null) return;
+    rateLimiter.setCapacity(adaptiveThrottler.getOpsPerSecond());
+    maxBatchSize = adaptiveThrottler.getBatchSize();
+    maxPendingOpCount = adaptiveThrottler.getMaxPendingOpCount();
+    if (keyRangeScheduler != null) {
+      keyRangeScheduler.setCapacity(adaptiveThrottler.getOpsPerSecond(), maxBatchSize);
+    }
+  }
+
+  @VisibleForTesting
+  AdaptiveThrottler getAdaptiveThrottler() {
+    return adaptiveThrottler;
+  }
+
+  @VisibleForTesting
+  KeyRangeScheduler getKeyRangeScheduler() {
+    return keyRangeScheduler;
+  }
+
   @VisibleForTesting
   void setMaxBatchSize(int size) {
-    Preconditions.checkState(
-        bulkCommitBatch.getMutationsSize() == 0, "BulkCommitBatch should be empty");
+    int keyRangeCount = keyRangeScheduler != null ? keyRangeScheduler.getKeyRangeCount() : 1;
+    for (int keyRange = 0; keyRange < keyRangeCount; ++keyRange) {
+      Preconditions.checkState(
+          getCurrentBatchLocked(keyRange).getMutationsSize() == 0,
+          "BulkCommitBatch should be empty");
+      setCurrentBatchLocked(keyRange, new BulkCommitBatch(firestore, bulkWriterExecutor, size));
+    }
     maxBatchSize = size;
-    bulkCommitBatch = new BulkCommitBatch(firestore, bulkWriterExecutor, size);
   }
 
   @VisibleForTesting
@@ -1008,30 +1161,40 @@ public final class BulkWriter implements AutoCloseable {
   private void sendOperationLocked(
       ApiFunction<BulkCommitBatch, ApiFuture<WriteResult>> enqueueOperationOnBatchCallback,
       final BulkWriterOperation op) {
+    int keyRange =
+        keyRangeScheduler != null ? keyRangeScheduler.getKeyRange(op.getDocumentReference()) : 0;
+
     // A backoff duration greater than 0 implies that this batch is a retry.
     // Retried writes are sent with a batch size of 10 in order to guarantee
     // that the batch is under the 10MiB limit.
     if (op.getBackoffDuration() > 0) {
-      if (bulkCommitBatch.getMutationsSize() >= RETRY_MAX_BATCH_SIZE) {
-        scheduleCurrentBatchLocked();
+      if (getCurrentBatchLocked(keyRange).getMutationsSize() >= RETRY_MAX_BATCH_SIZE) {
+        scheduleCurrentBatchLocked(keyRange);
       }
-      bulkCommitBatch.setMaxBatchSize(RETRY_MAX_BATCH_SIZE);
+      getCurrentBatchLocked(keyRange).setMaxBatchSize(RETRY_MAX_BATCH_SIZE);
     }
 
-    if (bulkCommitBatch.has(op.getDocumentReference())) {
+    if (getCurrentBatchLocked(keyRange).has(op.getDocumentReference())) {
+      if (writeCoalescingEnabled
+          && getCurrentBatchLocked(keyRange)
+              .coalesceOperation(op, enqueueOperationOnBatchCallback)) {
+        // The batch size is unchanged, since the write was merged into an existing write.
+        return;
+      }
       // Create a new batch since the backend doesn't support batches with two writes to the same
       // document.
-      scheduleCurrentBatchLocked();
+      scheduleCurrentBatchLocked(keyRange);
     }
 
     // Run the operation on the current batch and advance the `lastOperation` pointer. This
     // ensures that `lastOperation` only resolves when both the previous and the current write
     // resolves.
-    bulkCommitBatch.enqueueOperation(op);
-    enqueueOperationOnBatchCallback.apply(bulkCommitBatch);
+    BulkCommitBatch batch = getCurrentBatchLocked(keyRange);
+    batch.enqueueOperation(op);
+    enqueueOperationOnBatchCallback.apply(batch);
 
-    if (bulkCommitBatch.getMutationsSize() >= bulkCommitBatch.getMaxBatchSize()) {
-      scheduleCurrentBatchLocked();
+    if (batch.getMutationsSize() >= batch.getMaxBatchSize()) {
+      scheduleCurrentBatchLocked(keyRange);
     }
   }
 
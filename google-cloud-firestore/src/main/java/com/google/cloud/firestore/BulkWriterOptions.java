@@ -50,6 +50,43 @@ public abstract class BulkWriterOptions {
   @Nullable
   public abstract Double getMaxOpsPerSecond();
 
+  /**
+   * Returns whether adaptive throttling is enabled.
+   *
+   * <p>With adaptive throttling, BulkWriter does not follow the fixed 500/50/5 ramp-up. Instead, it
+   * steadily increases its rate limit, batch size and number of concurrent batches while the
+   * backend keeps up, and backs off when writes are rejected with RESOURCE_EXHAUSTED or ABORTED or
+   * when batches take longer to complete. The rate never exceeds {@link #getMaxOpsPerSecond()}.
+   *
+   * @return Whether adaptive throttling is enabled.
+   */
+  public abstract boolean getAdaptiveThrottlingEnabled();
+
+  /**
+   * Returns whether key range scheduling is enabled.
+   *
+   * <p>With key range scheduling, BulkWriter assigns each write to one of several key ranges based
+   * on the hash of its document path. Writes to different key ranges are sent in separate batches,
+   * which are sent in turn and rate limited per range. This spreads writes to sequential document
+   * IDs, such as time-ordered IDs, across ranges instead of sending them in submission order.
+   *
+   * @return Whether key range scheduling is enabled.
+   */
+  public abstract boolean getKeyRangeSchedulingEnabled();
+
+  /**
+   * Returns whether write coalescing is enabled.
+   *
+   * <p>With write coalescing, a set or update of a document that already has a pending set or
+   * update in the current batch is merged into the pending write instead of starting a new batch.
+   * Field masks are combined and increments of the same field are summed. Both operations resolve
+   * with the result of the merged write. Writes that cannot be merged, such as deletes, are sent in
+   * a new batch.
+   *
+   * @return Whether write coalescing is enabled.
+   */
+  public abstract boolean getWriteCoalescingEnabled();
+
   /**
    * @return The {@link ScheduledExecutorService} that BulkWriter uses to schedule all operations.
    *     If null, the default executor will be used.
@@ -62,6 +99,9 @@ public abstract class BulkWriterOptions {
         .setMaxOpsPerSecond(null)
         .setInitialOpsPerSecond(null)
         .setThrottlingEnabled(true)
+        .setAdaptiveThrottlingEnabled(false)
+        .setKeyRangeSchedulingEnabled(false)
+        .setWriteCoalescingEnabled(false)
         .setExecutor(null);
   }
 
@@ -76,6 +116,33 @@ public abstract class BulkWriterOptions {
      */
     public abstract Builder setThrottlingEnabled(boolean enabled);
 
+    /**
+     * Sets whether BulkWriter should adapt its rate limit, batch size and number of concurrent
+     * batches to the observed latency and error rate of its requests. By default, adaptive
+     * throttling is disabled. Requires throttling to be enabled.
+     *
+     * @param enabled Whether adaptive throttling should be enabled.
+     */
+    public abstract Builder setAdaptiveThrottlingEnabled(boolean enabled);
+
+    /**
+     * Sets whether BulkWriter should group writes into batches by key range and rate limit each
+     * range separately. By default, key range scheduling is disabled and writes are batched in the
+     * order in which they are enqueued.
+     *
+     * @param enabled Whether key range scheduling should be enabled.
+     */
+    public abstract Builder setKeyRangeSchedulingEnabled(boolean enabled);
+
+    /**
+     * Sets whether BulkWriter should merge sets and updates of a document into a pending write to
+     * the same document in the current batch. By default, write coalescing is disabled and every
+     * write to a document that is already part of the current batch starts a new batch.
+     *
+     * @param enabled Whether write coalescing should be enabled.
+     */
+    public abstract Builder setWriteCoalescingEnabled(boolean enabled);
+
     /**
      * Set the initial maximum number of operations per second allowed by the throttler.
      *
@@ -151,6 +218,11 @@ public abstract class BulkWriterOptions {
             "Cannot set 'initialOpsPerSecond' or 'maxOpsPerSecond' when 'throttlingEnabled' is set"
                 + " to false.");
       }
+
+      if (!options.getThrottlingEnabled() && options.getAdaptiveThrottlingEnabled()) {
+        throw FirestoreException.forInvalidArgument(
+            "Cannot enable 'adaptiveThrottlingEnabled' when 'throttlingEnabled' is set to false.");
+      }
       return options;
     }
   }
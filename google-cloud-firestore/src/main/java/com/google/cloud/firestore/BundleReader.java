@@ -0,0 +1,384 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.cloud.Timestamp;
+import com.google.common.base.Preconditions;
+import com.google.firestore.bundle.BundleElement;
+import com.google.firestore.bundle.BundleMetadata;
+import com.google.firestore.bundle.BundledDocumentMetadata;
+import com.google.firestore.bundle.NamedQuery;
+import com.google.firestore.v1.Document;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Reads a Firestore data bundle, such as one created by {@link FirestoreBundle.Builder}, into
+ * document snapshots and named queries.
+ *
+ * <p>The bundle is parsed incrementally: {@link #readDocument()} only consumes as much of the input
+ * as is needed to return the next document. When reading from a {@link ByteBuffer}, elements are
+ * decoded directly from the buffer without copying it.
+ *
+ * <p>Bundles in the {@link FirestoreBundle.Format#PROTOBUF} format must be read with a reader that
+ * is created for that format.
+ *
+ * <p>Instances of this class are not thread safe.
+ */
+public final class BundleReader {
+  private static final JsonFormat.Parser PARSER = JsonFormat.parser().ignoringUnknownFields();
+  private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+  // The maximum number of bytes of a varint that encodes a 32-bit length.
+  private static final int MAX_VARINT_SIZE = 5;
+
+  private final FirestoreRpcContext<?> rpcContext;
+  private final FirestoreBundle.Format format;
+  @Nullable private final ReadableByteChannel channel;
+  private final Map<String, Query> namedQueries = new LinkedHashMap<>();
+
+  /** Holds the bytes that have been read but not parsed yet, ready for reading. */
+  private ByteBuffer buffer;
+
+  @Nullable private BundleMetadata metadata;
+  private boolean endOfInput;
+
+  private BundleReader(
+      FirestoreRpcContext<?> rpcContext,
+      FirestoreBundle.Format format,
+      ByteBuffer buffer,
+      @Nullable ReadableByteChannel channel) {
+    this.rpcContext = rpcContext;
+    this.format = format;
+    this.buffer = buffer;
+    this.channel = channel;
+  }
+
+  /**
+   * Creates a reader for a bundle that is held in memory. The buffer's content is not copied and
+   * must not be modified while it is being read.
+   *
+   * @param firestore The Firestore instance that the documents and queries are associated with.
+   * @param bundle The bundle content, from the buffer's position to its limit.
+   */
+  @Nonnull
+  public static BundleReader create(@Nonnull Firestore firestore, @Nonnull ByteBuffer bundle) {
+    return create(firestore, bundle, FirestoreBundle.Format.JSON);
+  }
+
+  /**
+   * Creates a reader for a bundle in the given format that is held in memory. The buffer's content
+   * is not copied and must not be modified while it is being read.
+   *
+   * @param firestore The Firestore instance that the documents and queries are associated with.
+   * @param bundle The bundle content, from the buffer's position to its limit.
+   * @param format The format that the bundle was written in.
+   */
+  @Nonnull
+  public static BundleReader create(
+      @Nonnull Firestore firestore,
+      @Nonnull ByteBuffer bundle,
+      @Nonnull FirestoreBundle.Format format) {
+    return new BundleReader(toRpcContext(firestore), format, bundle.slice(), null);
+  }
+
+  /**
+   * Creates a reader that reads a bundle from the given channel. The channel is not closed by the
+   * reader.
+   *
+   * @param firestore The Firestore instance that the documents and queries are associated with.
+   * @param channel The channel to read the bundle from.
+   */
+  @Nonnull
+  public static BundleReader create(
+      @Nonnull Firestore firestore, @Nonnull ReadableByteChannel channel) {
+    return create(firestore, channel, FirestoreBundle.Format.JSON);
+  }
+
+  /**
+   * Creates a reader that reads a bundle in the given format from the given channel. The channel is
+   * not closed by the reader.
+   *
+   * @param firestore The Firestore instance that the documents and queries are associated with.
+   * @param channel The channel to read the bundle from.
+   * @param format The format that the bundle was written in.
+   */
+  @Nonnull
+  public static BundleReader create(
+      @Nonnull Firestore firestore,
+      @Nonnull ReadableByteChannel channel,
+      @Nonnull FirestoreBundle.Format format) {
+    ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_CHUNK_SIZE);
+    buffer.flip();
+    return new BundleReader(toRpcContext(firestore), format, buffer, channel);
+  }
+
+  private static FirestoreRpcContext<?> toRpcContext(Firestore firestore) {
+    Preconditions.checkState(
+        FirestoreRpcContext.class.isAssignableFrom(firestore.getClass()),
+        "The firestore instance passed to this method must also implement FirestoreRpcContext.");
+    return (FirestoreRpcContext<?>) firestore;
+  }
+
+  /**
+   * Returns the metadata of the bundle, which is its first element.
+   *
+   * @throws IOException If the bundle cannot be read or does not start with its metadata.
+   */
+  @Nonnull
+  public BundleMetadata getMetadata() throws IOException {
+    if (metadata == null) {
+      BundleElement element = readElement();
+      if (element == null || !element.hasMetadata()) {
+        throw new IOException("Invalid bundle: The bundle does not start with its metadata.");
+      }
+      metadata = element.getMetadata();
+    }
+    return metadata;
+  }
+
+  /**
+   * Reads the next document of the bundle. Named queries that precede the document are added to
+   * {@link #getNamedQueries()}.
+   *
+   * @return The next document, or null if the end of the bundle has been reached. Documents that do
+   *     not exist are returned as snapshots for which {@link DocumentSnapshot#exists()} is false.
+   * @throws IOException If the bundle cannot be read or is malformed.
+   */
+  @Nullable
+  public DocumentSnapshot readDocument() throws IOException {
+    getMetadata();
+
+    BundleElement element;
+    while ((element = readElement()) != null) {
+      if (element.hasNamedQuery()) {
+        NamedQuery namedQuery = element.getNamedQuery();
+        namedQueries.put(
+            namedQuery.getName(), Query.fromBundledQuery(rpcContext, namedQuery.getBundledQuery()));
+      } else if (element.hasDocumentMetadata()) {
+        return readDocument(element.getDocumentMetadata());
+      } else {
+        throw new IOException("Invalid bundle: Unexpected element " + element.getElementTypeCase());
+      }
+    }
+    return null;
+  }
+
+  private DocumentSnapshot readDocument(BundledDocumentMetadata documentMetadata)
+      throws IOException {
+    ResourcePath path = ResourcePath.create(documentMetadata.getName());
+    if (!rpcContext.getDatabaseName().equals(path.getDatabaseName().toString())) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Cannot read document from different Firestore project (\"%s\" vs \"%s\")",
+              rpcContext.getDatabaseName(), path.getDatabaseName()));
+    }
+
+    Timestamp readTime = Timestamp.fromProto(documentMetadata.getReadTime());
+    if (!documentMetadata.getExists()) {
+      return DocumentSnapshot.fromMissing(
+          rpcContext, new DocumentReference(rpcContext, path), readTime);
+    }
+
+    BundleElement element = readElement();
+    if (element == null
+        || !element.hasDocument()
+        || !element.getDocument().getName().equals(documentMetadata.getName())) {
+      throw new IOException(
+          "Invalid bundle: Missing document content for " + documentMetadata.getName());
+    }
+    Document document = element.getDocument();
+    return DocumentSnapshot.fromDocument(rpcContext, readTime, document);
+  }
+
+  /**
+   * Reads all remaining documents of the bundle.
+   *
+   * @throws IOException If the bundle cannot be read or is malformed.
+   */
+  @Nonnull
+  public List<DocumentSnapshot> readAllDocuments() throws IOException {
+    List<DocumentSnapshot> documents = new ArrayList<>();
+    DocumentSnapshot document;
+    while ((document = readDocument()) != null) {
+      documents.add(document);
+    }
+    return documents;
+  }
+
+  /**
+   * Returns the named queries that have been read so far, keyed by name. Once the bundle has been
+   * read completely, this contains all queries of the bundle.
+   */
+  @Nonnull
+  public Map<String, Query> getNamedQueries() {
+    return Collections.unmodifiableMap(namedQueries);
+  }
+
+  /**
+   * Reads all remaining documents of the bundle into the client-side document cache of the
+   * Firestore instance, so that later reads of these documents are served without a request. Cached
+   * documents expire based on the time at which they were loaded, not based on their read time in
+   * the bundle. Documents that are already cached with a newer read time, or that are kept up to
+   * date by {@link Query#keepCached()}, are not replaced.
+   *
+   * @return The number of documents that were read.
+   * @throws IOException If the bundle cannot be read or is malformed.
+   * @throws IllegalStateException If the Firestore instance does not have a document cache.
+   * @see FirestoreOptions.Builder#setDocumentCacheOptions
+   */
+  public int loadIntoCache() throws IOException {
+    DocumentCache documentCache = ((FirestoreImpl) rpcContext.getFirestore()).getDocumentCache();
+    Preconditions.checkState(
+        documentCache != null,
+        "loadIntoCache() requires a document cache. Use"
+            + " FirestoreOptions.Builder.setDocumentCacheOptions() to enable it.");
+
+    int count = 0;
+    DocumentSnapshot document;
+    while ((document = readDocument()) != null) {
+      documentCache.putIfNewer(document, documentCache.getGeneration());
+      ++count;
+    }
+    return count;
+  }
+
+  /** Reads the next element, or returns null at the end of the bundle. */
+  @Nullable
+  private BundleElement readElement() throws IOException {
+    int length = format == FirestoreBundle.Format.PROTOBUF ? readVarintLength() : readLength();
+    if (length < 0) {
+      return null;
+    }
+    if (!ensureAvailable(length)) {
+      throw new IOException("Invalid bundle: Unexpected end of input.");
+    }
+
+    ByteBuffer elementBytes = buffer.slice();
+    elementBytes.limit(length);
+    buffer.position(buffer.position() + length);
+
+    if (format == FirestoreBundle.Format.PROTOBUF) {
+      try {
+        return BundleElement.parseFrom(elementBytes);
+      } catch (InvalidProtocolBufferException e) {
+        throw new IOException("Invalid bundle: " + e.getMessage(), e);
+      }
+    }
+
+    CharBuffer json = StandardCharsets.UTF_8.decode(elementBytes);
+    BundleElement.Builder element = BundleElement.newBuilder();
+    PARSER.merge(json.toString(), element);
+    return element.build();
+  }
+
+  /**
+   * Reads the decimal length prefix of the next element. Returns -1 if the end of the bundle has
+   * been reached.
+   */
+  private int readLength() throws IOException {
+    long length = 0;
+    int digits = 0;
+    while (true) {
+      if (!ensureAvailable(digits + 1)) {
+        if (digits == 0) {
+          return -1;
+        }
+        throw new IOException("Invalid bundle: Unexpected end of input.");
+      }
+      byte b = buffer.get(buffer.position() + digits);
+      if (b < '0' || b > '9') {
+        break;
+      }
+      length = length * 10 + (b - '0');
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Invalid bundle: Element length exceeds the maximum size.");
+      }
+      ++digits;
+    }
+
+    if (digits == 0) {
+      throw new IOException("Invalid bundle: Expected an element length.");
+    }
+    buffer.position(buffer.position() + digits);
+    return (int) length;
+  }
+
+  /**
+   * Reads the varint length prefix of the next element. Returns -1 if the end of the bundle has
+   * been reached.
+   */
+  private int readVarintLength() throws IOException {
+    long length = 0;
+    for (int i = 0; i < MAX_VARINT_SIZE; ++i) {
+      if (!ensureAvailable(i + 1)) {
+        if (i == 0) {
+          return -1;
+        }
+        throw new IOException("Invalid bundle: Unexpected end of input.");
+      }
+      byte b = buffer.get(buffer.position() + i);
+      length |= (long) (b & 0x7F) << (7 * i);
+      if ((b & 0x80) == 0) {
+        if (length > Integer.MAX_VALUE) {
+          break;
+        }
+        buffer.position(buffer.position() + i + 1);
+        return (int) length;
+      }
+    }
+    throw new IOException("Invalid bundle: Element length exceeds the maximum size.");
+  }
+
+  /**
+   * Ensures that at least {@code count} bytes are available in {@link #buffer}, reading more data
+   * from the channel if needed. Returns false if the input ends before.
+   */
+  private boolean ensureAvailable(int count) throws IOException {
+    while (buffer.remaining() < count) {
+      if (channel == null || endOfInput) {
+        return false;
+      }
+
+      if (buffer.capacity() < count) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(count, buffer.capacity() * 2));
+        larger.put(buffer);
+        buffer = larger;
+      } else {
+        buffer.compact();
+      }
+
+      // The buffer is now in write mode.
+      if (channel.read(buffer) < 0) {
+        endOfInput = true;
+      }
+      buffer.flip();
+    }
+    return true;
+  }
+}
@@ -35,7 +35,12 @@ import com.google.firestore.v1.PartitionQueryRequest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
@@ -152,6 +157,57 @@ public class CollectionGroup extends Query {
     }
   }
 
+  /**
+   * Reads the given partitions in parallel with the default {@link ParallelScanOptions} and returns
+   * their documents as a single Stream. See {@link #parallelScan(List, ParallelScanOptions)}.
+   *
+   * @param partitions The partitions to read, as returned by {@link #getPartitions(long)}.
+   * @return A Stream of the documents of all partitions.
+   */
+  @Nonnull
+  public Stream<QueryDocumentSnapshot> parallelScan(@Nonnull List<QueryPartition> partitions) {
+    return parallelScan(partitions, ParallelScanOptions.builder().build());
+  }
+
+  /**
+   * Reads the given partitions in parallel and returns their documents as a single Stream.
+   *
+   * <p>Each partition is read with bounded prefetch and is resumed after its last document if a
+   * retryable error occurs. An error that cannot be retried fails the Stream and cancels all other
+   * partitions. By default, documents are returned in the order in which they arrive from the
+   * partitions. If {@link ParallelScanOptions#getOrdered()} is set, they are returned in query
+   * order, one partition after another.
+   *
+   * <p>The partitions start to be read when this method is called. Closing the returned Stream
+   * cancels all partitions that are still running, so Streams that may not be consumed completely
+   * should be used in a try-with-resources statement.
+   *
+   * @param partitions The partitions to read, as returned by {@link #getPartitions(long)}.
+   * @param options Options that configure the parallelism and ordering of the scan.
+   * @return A Stream of the documents of all partitions.
+   * @throws IllegalArgumentException If a partition belongs to a different collection group.
+   */
+  @Nonnull
+  public Stream<QueryDocumentSnapshot> parallelScan(
+      @Nonnull List<QueryPartition> partitions, @Nonnull ParallelScanOptions options) {
+    List<Query> partitionQueries = new ArrayList<>(partitions.size());
+    for (QueryPartition partition : partitions) {
+      Preconditions.checkArgument(
+          partitionQuery.equals(partition.getQuery()),
+          "Partitions must be created by getPartitions() of this collection group.");
+      partitionQueries.add(partition.createQuery());
+    }
+
+    PartitionScan scan = PartitionScan.create(partitionQueries, options);
+    int characteristics = Spliterator.NONNULL;
+    if (options.getOrdered()) {
+      characteristics |= Spliterator.ORDERED;
+    }
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(scan, characteristics), /* parallel= */ false)
+        .onClose(scan::close);
+  }
+
   private PartitionQueryRequest buildRequest(long desiredPartitionCount) {
     Preconditions.checkArgument(
         desiredPartitionCount > 0, "Desired partition count must be one or greater");
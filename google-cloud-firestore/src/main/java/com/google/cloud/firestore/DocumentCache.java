@@ -0,0 +1,352 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.cloud.Timestamp;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firestore.v1.Value;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A size-bounded, in-memory cache of document snapshots that backs non-transactional document
+ * reads. See {@link DocumentCacheOptions} for the consistency guarantees.
+ *
+ * <p>To avoid caching data that was read before a concurrent write, every read captures the current
+ * generation via {@link #getGeneration()} before it is sent and passes it to {@link #put}. Every
+ * change to a document, whether an invalidation or an update from a listener, is assigned a new
+ * generation that is remembered for the document's path. The result of a read is not cached if its
+ * document changed after the read captured its generation. Changes to other documents do not affect
+ * the read.
+ *
+ * <p>Documents that match a query registered via {@link #subscribe} are kept up to date by a
+ * listener and do not expire while the listen stream is healthy. If the stream is interrupted or
+ * the subscription is removed, these documents fall back to the regular time to live, measured from
+ * the last time the stream was in sync.
+ */
+final class DocumentCache {
+  /** Rough per-entry overhead of the snapshot, its reference and the cache entry. */
+  private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+  /** The maximum number of paths whose last change is remembered in {@link #recentChanges}. */
+  private static final int MAX_RECENT_CHANGES = 10_000;
+
+  private final DocumentCacheOptions options;
+  private final Ticker ticker;
+  private final Cache<ResourcePath, CachedDocument> cache;
+  private final AtomicLong generation = new AtomicLong();
+
+  /** The generation of the last change of recently changed documents, oldest change first. */
+  @GuardedBy("this")
+  private final LinkedHashMap<ResourcePath, Long> recentChanges = new LinkedHashMap<>();
+
+  /**
+   * Reads that captured a generation older than this are not cached, since a change that they
+   * overlap with may no longer be in {@link #recentChanges}. Raised by {@link #invalidateAll()} and
+   * when old changes are forgotten.
+   */
+  @GuardedBy("this")
+  private long minReadGeneration;
+
+  DocumentCache(@Nonnull DocumentCacheOptions options) {
+    this(options, Ticker.systemTicker());
+  }
+
+  DocumentCache(@Nonnull DocumentCacheOptions options, @Nonnull Ticker ticker) {
+    this.options = options;
+    this.ticker = ticker;
+    // Entries are not evicted based on their age since subscribed documents do not expire. Stale
+    // entries are removed when they are read or once the cache reaches its maximum size.
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(options.getMaxSizeBytes())
+            .weigher((ResourcePath path, CachedDocument document) -> document.sizeBytes)
+            .build();
+  }
+
+  /** Returns the generation that a read needs to pass to {@link #put} once it completes. */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /** Returns the cached snapshot for the given document, or null if there is no valid entry. */
+  @Nullable
+  DocumentSnapshot get(@Nonnull ResourcePath path) {
+    CachedDocument document = cache.getIfPresent(path);
+    if (document == null) {
+      return null;
+    }
+    if (!document.isValid(ticker.read())) {
+      cache.asMap().remove(path, document);
+      return null;
+    }
+    return document.snapshot;
+  }
+
+  /**
+   * Caches a snapshot that was returned by a read. The snapshot is dropped if the cache was
+   * invalidated after the read captured {@code readGeneration}.
+   */
+  void put(@Nonnull DocumentSnapshot snapshot, long readGeneration) {
+    ResourcePath path = snapshot.getReference().getResourcePath();
+    Duration timeToLive = options.getTimeToLive(path.getParent().getId());
+    if (timeToLive.isZero() || changedSince(path, readGeneration)) {
+      return;
+    }
+
+    CachedDocument document =
+        new CachedDocument(
+            snapshot, ticker.read(), timeToLive.toNanos(), estimateSize(snapshot), null);
+    cache.put(path, document);
+
+    if (changedSince(path, readGeneration)) {
+      // A change of this document raced with this update. The change may have been applied before
+      // the document we just added replaced it, so we remove it again.
+      cache.asMap().remove(path, document);
+    }
+  }
+
+  /**
+   * Caches a snapshot that was loaded from a bundle. Unlike the result of a read, the snapshot may
+   * be older than the cached entry. It therefore does not replace entries with a newer read time or
+   * entries that are kept up to date by a subscription.
+   */
+  void putIfNewer(@Nonnull DocumentSnapshot snapshot, long readGeneration) {
+    ResourcePath path = snapshot.getReference().getResourcePath();
+    Duration timeToLive = options.getTimeToLive(path.getParent().getId());
+    if (timeToLive.isZero() || changedSince(path, readGeneration)) {
+      return;
+    }
+
+    long nowNanos = ticker.read();
+    CachedDocument document =
+        new CachedDocument(snapshot, nowNanos, timeToLive.toNanos(), estimateSize(snapshot), null);
+    CachedDocument result =
+        cache
+            .asMap()
+            .compute(
+                path,
+                (key, existing) ->
+                    existing != null && existing.supersedes(snapshot, nowNanos)
+                        ? existing
+                        : document);
+
+    if (result == document && changedSince(path, readGeneration)) {
+      cache.asMap().remove(path, document);
+    }
+  }
+
+  /** Returns whether the document may have changed after a read captured {@code readGeneration}. */
+  private synchronized boolean changedSince(ResourcePath path, long readGeneration) {
+    if (readGeneration < minReadGeneration) {
+      return true;
+    }
+    Long lastChange = recentChanges.get(path);
+    return lastChange != null && lastChange > readGeneration;
+  }
+
+  /** Records a change of the document, so that reads that overlap with it are not cached. */
+  private synchronized void recordChange(ResourcePath path) {
+    long changeGeneration = generation.incrementAndGet();
+    // Re-insert the path to keep the map ordered by the time of the last change.
+    recentChanges.remove(path);
+    recentChanges.put(path, changeGeneration);
+    if (recentChanges.size() > MAX_RECENT_CHANGES) {
+      Iterator<Map.Entry<ResourcePath, Long>> oldest = recentChanges.entrySet().iterator();
+      minReadGeneration = oldest.next().getValue();
+      oldest.remove();
+    }
+  }
+
+  /**
+   * Caches a snapshot that was delivered by the listener of a subscription. Since the listener
+   * provides the latest version of the document, reads of the document that are in flight are not
+   * cached.
+   */
+  private void put(@Nonnull DocumentSnapshot snapshot, @Nonnull Subscription subscription) {
+    ResourcePath path = snapshot.getReference().getResourcePath();
+    Duration timeToLive = options.getTimeToLive(path.getParent().getId());
+    recordChange(path);
+    cache.put(
+        path,
+        new CachedDocument(
+            snapshot, ticker.read(), timeToLive.toNanos(), estimateSize(snapshot), subscription));
+  }
+
+  /**
+   * Listens to the given query and keeps its results in the cache up to date.
+   *
+   * @return A registration that stops the listener. Documents that were cached by the listener fall
+   *     back to the regular time to live once the listener is removed.
+   */
+  ListenerRegistration subscribe(@Nonnull Query query) {
+    Subscription subscription = new Subscription();
+    // The subscription only updates in-memory state, so it runs directly on the stream's thread.
+    // This also ensures that it observes snapshots and stream interruptions in order.
+    ListenerRegistration registration =
+        Watch.forQuery(query)
+            .runWatch(MoreExecutors.directExecutor(), subscription, subscription::onStreamReset);
+    return () -> {
+      registration.remove();
+      subscription.remove();
+    };
+  }
+
+  /** Evicts a document, for example because it was written by this client. */
+  void invalidate(@Nonnull ResourcePath path) {
+    recordChange(path);
+    cache.invalidate(path);
+  }
+
+  /** Evicts all documents. */
+  void invalidateAll() {
+    synchronized (this) {
+      minReadGeneration = generation.incrementAndGet();
+      recentChanges.clear();
+    }
+    cache.invalidateAll();
+  }
+
+  /** Returns the number of cached documents, including entries that have expired. */
+  long size() {
+    return cache.size();
+  }
+
+  private static int estimateSize(DocumentSnapshot snapshot) {
+    long size = ENTRY_OVERHEAD_BYTES + 2L * snapshot.getReference().getName().length();
+    Map<String, Value> fields = snapshot.getProtoFields();
+    if (fields != null) {
+      for (Map.Entry<String, Value> entry : fields.entrySet()) {
+        size += 2L * entry.getKey().length() + entry.getValue().getSerializedSize();
+      }
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Applies the changes of a query listener to the cache. Added and modified documents are cached
+   * and removed documents are evicted.
+   */
+  final class Subscription implements EventListener<QuerySnapshot> {
+    private volatile boolean inSync;
+    private volatile long lastInSyncNanos;
+    private boolean removed;
+
+    @Override
+    public synchronized void onEvent(
+        @Nullable QuerySnapshot value, @Nullable FirestoreException error) {
+      if (removed) {
+        return;
+      }
+      if (value == null) {
+        // The listener failed permanently.
+        markOutOfSync();
+        return;
+      }
+      for (DocumentChange change : value.getDocumentChanges()) {
+        if (change.getType() == DocumentChange.Type.REMOVED) {
+          invalidate(change.getDocument().getReference().getResourcePath());
+        } else {
+          put(change.getDocument(), this);
+        }
+      }
+      inSync = true;
+    }
+
+    /**
+     * Called when the listen stream is re-established. Changes may be missing until the next
+     * snapshot is raised.
+     */
+    synchronized void onStreamReset() {
+      markOutOfSync();
+    }
+
+    synchronized void remove() {
+      markOutOfSync();
+      removed = true;
+    }
+
+    /**
+     * Returns whether a document that was cached by this subscription is still valid. While the
+     * listener is in sync, documents do not expire.
+     */
+    boolean isValid(long nowNanos, long timeToLiveNanos) {
+      return inSync || nowNanos - lastInSyncNanos < timeToLiveNanos;
+    }
+
+    private void markOutOfSync() {
+      if (inSync) {
+        // Update the timestamp first since readers check `inSync` before `lastInSyncNanos`.
+        lastInSyncNanos = ticker.read();
+        inSync = false;
+      }
+    }
+  }
+
+  private static final class CachedDocument {
+    final DocumentSnapshot snapshot;
+    final long cachedAtNanos;
+    final long timeToLiveNanos;
+    final int sizeBytes;
+    @Nullable final Subscription subscription;
+
+    CachedDocument(
+        DocumentSnapshot snapshot,
+        long cachedAtNanos,
+        long timeToLiveNanos,
+        int sizeBytes,
+        @Nullable Subscription subscription) {
+      this.snapshot = snapshot;
+      this.cachedAtNanos = cachedAtNanos;
+      this.timeToLiveNanos = timeToLiveNanos;
+      this.sizeBytes = sizeBytes;
+      this.subscription = subscription;
+    }
+
+    boolean isValid(long nowNanos) {
+      if (subscription != null) {
+        return subscription.isValid(nowNanos, timeToLiveNanos);
+      }
+      return nowNanos - cachedAtNanos < timeToLiveNanos;
+    }
+
+    /**
+     * Returns whether this entry is more up to date than the given snapshot, because it is kept up
+     * to date by a subscription that is in sync or was read after the snapshot.
+     */
+    boolean supersedes(DocumentSnapshot other, long nowNanos) {
+      if (!isValid(nowNanos)) {
+        return false;
+      }
+      if (subscription != null && subscription.inSync) {
+        return true;
+      }
+      Timestamp readTime = snapshot.getReadTime();
+      Timestamp otherReadTime = other.getReadTime();
+      return readTime != null && otherReadTime != null && readTime.compareTo(otherReadTime) > 0;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+
+/**
+ * Options that configure the client-side document cache.
+ *
+ * <p>When a cache is configured via {@link FirestoreOptions.Builder#setDocumentCacheOptions},
+ * documents that are read with {@link DocumentReference#get()} or {@link
+ * Firestore#getAll(DocumentReference...)} are kept in memory and later reads of the same document
+ * are served from the cache until its time to live elapses. Reads that use a field mask, a read
+ * time or a transaction always bypass the cache. Writes that are committed through this Firestore
+ * instance evict the written documents, but changes made by other clients only become visible once
+ * the cached entry expires. To keep documents coherent with the backend, register a listener via
+ * {@link Query#keepCached()}.
+ */
+public final class DocumentCacheOptions implements Serializable {
+  private static final long serialVersionUID = 7266125398617312806L;
+
+  private static final long DEFAULT_MAX_SIZE_BYTES = 32L * 1024 * 1024;
+  private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(1);
+
+  private final long maxSizeBytes;
+  private final Duration timeToLive;
+  private final ImmutableMap<String, Duration> collectionTimeToLive;
+
+  private DocumentCacheOptions(Builder builder) {
+    this.maxSizeBytes = builder.maxSizeBytes;
+    this.timeToLive = builder.timeToLive;
+    this.collectionTimeToLive = ImmutableMap.copyOf(builder.collectionTimeToLive);
+  }
+
+  /** Returns the approximate maximum number of bytes that cached documents may occupy. */
+  public long getMaxSizeBytes() {
+    return maxSizeBytes;
+  }
+
+  /** Returns how long a document is served from the cache after it was read. */
+  @Nonnull
+  public Duration getTimeToLive() {
+    return timeToLive;
+  }
+
+  /**
+   * Returns the time to live for documents in the given collection, which falls back to {@link
+   * #getTimeToLive()} if no collection-specific value was set.
+   *
+   * @param collectionId The ID of the collection that contains the document.
+   */
+  @Nonnull
+  public Duration getTimeToLive(@Nonnull String collectionId) {
+    Duration duration = collectionTimeToLive.get(collectionId);
+    return duration != null ? duration : timeToLive;
+  }
+
+  /** Returns the collection-specific time to live values, keyed by collection ID. */
+  @Nonnull
+  public Map<String, Duration> getCollectionTimeToLive() {
+    return collectionTimeToLive;
+  }
+
+  @Nonnull
+  public Builder toBuilder() {
+    return new Builder(this);
+  }
+
+  @Nonnull
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    DocumentCacheOptions that = (DocumentCacheOptions) o;
+    return maxSizeBytes == that.maxSizeBytes
+        && timeToLive.equals(that.timeToLive)
+        && collectionTimeToLive.equals(that.collectionTimeToLive);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(maxSizeBytes, timeToLive, collectionTimeToLive);
+  }
+
+  @Override
+  public String toString() {
+    return "DocumentCacheOptions{maxSizeBytes="
+        + maxSizeBytes
+        + ", timeToLive="
+        + timeToLive
+        + ", collectionTimeToLive="
+        + collectionTimeToLive
+        + "}";
+  }
+
+  public static class Builder {
+    private long maxSizeBytes;
+    private Duration timeToLive;
+    private final Map<String, Duration> collectionTimeToLive;
+
+    private Builder() {
+      maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+      timeToLive = DEFAULT_TIME_TO_LIVE;
+      collectionTimeToLive = new HashMap<>();
+    }
+
+    private Builder(DocumentCacheOptions options) {
+      this.maxSizeBytes = options.maxSizeBytes;
+      this.timeToLive = options.timeToLive;
+      this.collectionTimeToLive = new HashMap<>(options.collectionTimeToLive);
+    }
+
+    /**
+     * Sets the approximate maximum number of bytes that cached documents may occupy. Once the limit
+     * is reached, the least recently used documents are evicted. The default is 32 MiB.
+     *
+     * @param maxSizeBytes The maximum size of the cache in bytes.
+     */
+    @Nonnull
+    public Builder setMaxSizeBytes(long maxSizeBytes) {
+      Preconditions.checkArgument(maxSizeBytes > 0, "maxSizeBytes must be positive");
+      this.maxSizeBytes = maxSizeBytes;
+      return this;
+    }
+
+    /**
+     * Sets how long a document is served from the cache after it was read. The default is one
+     * minute.
+     *
+     * @param timeToLive The time to live of cached documents.
+     */
+    @Nonnull
+    public Builder setTimeToLive(@Nonnull Duration timeToLive) {
+      Preconditions.checkArgument(!timeToLive.isNegative(), "timeToLive must not be negative");
+      this.timeToLive = timeToLive;
+      return this;
+    }
+
+    /**
+     * Sets the time to live for documents in the collections with the given ID, overriding the
+     * value set via {@link #setTimeToLive}. A time to live of zero disables caching for these
+     * collections.
+     *
+     * @param collectionId The ID of the collections the time to live applies to.
+     * @param timeToLive The time to live of cached documents in these collections.
+     */
+    @Nonnull
+    public Builder setTimeToLive(@Nonnull String collectionId, @Nonnull Duration timeToLive) {
+      Preconditions.checkArgument(!timeToLive.isNegative(), "timeToLive must not be negative");
+      this.collectionTimeToLive.put(collectionId, timeToLive);
+      return this;
+    }
+
+    @Nonnull
+    public DocumentCacheOptions build() {
+      return new DocumentCacheOptions(this);
+    }
+  }
+}
@@ -21,8 +21,10 @@ import com.google.cloud.firestore.collection.ImmutableSortedSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
@@ -118,6 +120,41 @@ class DocumentSet implements Iterable<QueryDocumentSnapshot> {
     return new DocumentSet(newKeyIndex, newSortedSet);
   }
 
+  /**
+   * Returns a new DocumentSet with the given documents removed and added, which is built from the
+   * full list of resulting documents. This avoids the per-document cost of {@link #add} and {@link
+   * #remove} when a large number of documents change at once.
+   *
+   * @param sortedDocuments All documents of the new set, sorted by the comparator of this set.
+   * @param removedDocuments The documents of this set that are not part of the new set.
+   * @param addedDocuments The documents of the new set that are not part of this set.
+   */
+  DocumentSet rebuild(
+      List<QueryDocumentSnapshot> sortedDocuments,
+      List<QueryDocumentSnapshot> removedDocuments,
+      List<QueryDocumentSnapshot> addedDocuments) {
+    ImmutableSortedMap<ResourcePath, QueryDocumentSnapshot> newKeyIndex;
+    if (removedDocuments.size() + addedDocuments.size() < keyIndex.size()) {
+      newKeyIndex = keyIndex;
+      for (QueryDocumentSnapshot document : removedDocuments) {
+        newKeyIndex = newKeyIndex.remove(document.getReference().getResourcePath());
+      }
+      for (QueryDocumentSnapshot document : addedDocuments) {
+        newKeyIndex = newKeyIndex.insert(document.getReference().getResourcePath(), document);
+      }
+    } else {
+      Map<ResourcePath, QueryDocumentSnapshot> documents = new HashMap<>();
+      for (QueryDocumentSnapshot document : sortedDocuments) {
+        documents.put(document.getReference().getResourcePath(), document);
+      }
+      newKeyIndex = ImmutableSortedMap.Builder.fromMap(documents, ResourcePath.comparator());
+    }
+
+    ImmutableSortedSet<QueryDocumentSnapshot> newSortedSet =
+        ImmutableSortedSet.fromSortedList(sortedDocuments, sortedSet.getComparator());
+    return new DocumentSet(newKeyIndex, newSortedSet);
+  }
+
   /** Returns a copy of the documents in this set as array. This is O(n) in the size of the set. */
   List<QueryDocumentSnapshot> toList() {
     List<QueryDocumentSnapshot> documents = new ArrayList<>(size());
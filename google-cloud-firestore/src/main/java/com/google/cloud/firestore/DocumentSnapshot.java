@@ -53,6 +53,7 @@ public class DocumentSnapshot {
   @Nullable private final Timestamp readTime;
   @Nullable private final Timestamp updateTime;
   @Nullable private final Timestamp createTime;
+  @Nullable private volatile Map<String, Object> lazyData;
 
   DocumentSnapshot(
       FirestoreRpcContext<?> rpcContext,
@@ -84,13 +85,28 @@ public class DocumentSnapshot {
       DocumentReference docRef,
       Map<String, Object> values,
       EncodingOptions options) {
+    return fromObject(rpcContext, docRef, values, options, /* isPlainJavaTypes= */ false);
+  }
+
+  /**
+   * Encodes the given values into a DocumentSnapshot. If {@code isPlainJavaTypes} is set, the
+   * values must already have been converted with {@link
+   * CustomClassMapper#convertToPlainJavaTypes(Object)} and are encoded without being copied again.
+   */
+  static DocumentSnapshot fromObject(
+      FirestoreRpcContext<?> rpcContext,
+      DocumentReference docRef,
+      Map<String, Object> values,
+      EncodingOptions options,
+      boolean isPlainJavaTypes) {
     Map<String, Value> fields = new HashMap<>();
     for (Map.Entry<String, Object> entry : values.entrySet()) {
+      Object value =
+          isPlainJavaTypes
+              ? entry.getValue()
+              : CustomClassMapper.convertToPlainJavaTypes(entry.getValue());
       Value encodedValue =
-          UserDataConverter.encodeValue(
-              FieldPath.of(entry.getKey()),
-              CustomClassMapper.convertToPlainJavaTypes(entry.getValue()),
-              options);
+          UserDataConverter.encodeValue(FieldPath.of(entry.getKey()), value, options);
       if (encodedValue != null) {
         fields.put(entry.getKey(), encodedValue);
       }
@@ -177,6 +193,31 @@ public class DocumentSnapshot {
     return decodedFields;
   }
 
+  /**
+   * Returns the fields of the document as an unmodifiable Map or null if the document doesn't
+   * exist. Unlike {@link #getData()}, field values are only converted to their native Java
+   * representation when they are first read, and the converted values are cached. Nested maps and
+   * lists are returned as unmodifiable views that are converted in the same way.
+   *
+   * <p>Use this method instead of {@link #getData()} if only a small subset of the fields of a
+   * large document is read.
+   *
+   * @return The fields of the document as a Map or null if the document doesn't exist.
+   */
+  @Nullable
+  public Map<String, Object> getLazyData() {
+    if (fields == null) {
+      return null;
+    }
+
+    Map<String, Object> data = lazyData;
+    if (data == null) {
+      data = new LazyDataMap(rpcContext, fields);
+      lazyData = data;
+    }
+    return data;
+  }
+
   /**
    * Returns the contents of the document converted to a POJO or null if the document doesn't exist.
    *
@@ -186,8 +227,10 @@ public class DocumentSnapshot {
    */
   @Nullable
   public <T> T toObject(@Nonnull Class<T> valueType) {
-    Map<String, Object> data = getData();
-    return data == null ? null : CustomClassMapper.convertToCustomClass(data, valueType, docRef);
+    return fields == null
+        ? null
+        : CustomClassMapper.convertToCustomClass(
+            fields, valueType, docRef, value -> UserDataConverter.decodeValue(rpcContext, value));
   }
 
   /**
@@ -263,8 +306,11 @@ public class DocumentSnapshot {
    */
   @Nullable
   public <T> T get(@Nonnull FieldPath fieldPath, Class<T> valueType) {
-    Object data = get(fieldPath);
-    return data == null ? null : CustomClassMapper.convertToCustomClass(data, valueType, docRef);
+    Value value = extractField(fieldPath);
+    return value == null
+        ? null
+        : CustomClassMapper.convertToCustomClass(
+            value, valueType, docRef, v -> UserDataConverter.decodeValue(rpcContext, v));
   }
 
   /** Returns the Value Proto at 'fieldPath'. Returns null if the field was not found. */
@@ -0,0 +1,1271 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.UserDataConverter.MapRepresentation;
+import com.google.cloud.firestore.pipeline.expressions.Field;
+import com.google.firestore.v1.ArrayValue;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.Function;
+import com.google.firestore.v1.MapValue;
+import com.google.firestore.v1.Value;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.NullValue;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.annotation.Nullable;
+
+/**
+ * Evaluates pipeline expressions in their proto representation against a single document.
+ *
+ * <p>The result of an evaluation is either a value, or null if the expression evaluates to an
+ * absent value, such as a field that does not exist. Expressions that cannot be evaluated for the
+ * given input, such as arithmetic on strings, throw an {@link EvaluationException}.
+ */
+final class ExpressionEvaluator {
+
+  static final Value NULL_VALUE = Value.newBuilder().setNullValue(NullValue.NULL_VALUE).build();
+  static final Value TRUE_VALUE = Value.newBuilder().setBooleanValue(true).build();
+  static final Value FALSE_VALUE = Value.newBuilder().setBooleanValue(false).build();
+
+  private static final long MICROS_PER_SECOND = 1_000_000L;
+
+  /** Thrown if an expression evaluates to an error for the given input. */
+  static final class EvaluationException extends IllegalArgumentException {
+    EvaluationException(String message) {
+      super(message);
+    }
+  }
+
+  private ExpressionEvaluator() {}
+
+  /**
+   * Evaluates the expression against the given document.
+   *
+   * @return The result of the expression, or null if the result is absent.
+   */
+  @Nullable
+  static Value evaluate(Value expression, Document document) {
+    switch (expression.getValueTypeCase()) {
+      case FIELD_REFERENCE_VALUE:
+        return getField(document, expression.getFieldReferenceValue());
+      case FUNCTION_VALUE:
+        return evaluateFunction(expression.getFunctionValue(), document);
+      case ARRAY_VALUE:
+        {
+          ArrayValue.Builder array = ArrayValue.newBuilder();
+          for (Value element : expression.getArrayValue().getValuesList()) {
+            array.addValues(orNull(evaluate(element, document)));
+          }
+          return Value.newBuilder().setArrayValue(array).build();
+        }
+      case MAP_VALUE:
+        {
+          if (!containsExpressions(expression)) {
+            return expression;
+          }
+          MapValue.Builder map = MapValue.newBuilder();
+          for (Map.Entry<String, Value> entry :
+              expression.getMapValue().getFieldsMap().entrySet()) {
+            Value value = evaluate(entry.getValue(), document);
+            if (value != null) {
+              map.putFields(entry.getKey(), value);
+            }
+          }
+          return Value.newBuilder().setMapValue(map).build();
+        }
+      case PIPELINE_VALUE:
+      case VARIABLE_REFERENCE_VALUE:
+        throw new UnsupportedOperationException(
+            "Expressions of type "
+                + expression.getValueTypeCase()
+                + " cannot be evaluated locally");
+      default:
+        return expression;
+    }
+  }
+
+  /** Evaluates a condition. Conditions that are absent or fail to evaluate do not match. */
+  static boolean matches(Value condition, Document document) {
+    try {
+      Value result = evaluate(condition, document);
+      return result != null && result.hasBooleanValue() && result.getBooleanValue();
+    } catch (EvaluationException e) {
+      return false;
+    }
+  }
+
+  private static boolean containsExpressions(Value value) {
+    switch (value.getValueTypeCase()) {
+      case FIELD_REFERENCE_VALUE:
+      case FUNCTION_VALUE:
+      case PIPELINE_VALUE:
+      case VARIABLE_REFERENCE_VALUE:
+        return true;
+      case ARRAY_VALUE:
+        for (Value element : value.getArrayValue().getValuesList()) {
+          if (containsExpressions(element)) {
+            return true;
+          }
+        }
+        return false;
+      case MAP_VALUE:
+        for (Value element : value.getMapValue().getFieldsMap().values()) {
+          if (containsExpressions(element)) {
+            return true;
+          }
+        }
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  @Nullable
+  static Value getField(Document document, String serverPath) {
+    if (Field.DOCUMENT_ID.equals(serverPath)) {
+      return document.getName().isEmpty()
+          ? null
+          : Value.newBuilder().setReferenceValue(document.getName()).build();
+    }
+    List<String> segments = FieldPath.fromServerFormat(serverPath).getSegments();
+    Value value = document.getFieldsMap().get(segments.get(0));
+    for (int i = 1; value != null && i < segments.size(); ++i) {
+      value = value.hasMapValue() ? value.getMapValue().getFieldsMap().get(segments.get(i)) : null;
+    }
+    return value;
+  }
+
+  @Nullable
+  private static Value evaluateFunction(Function function, Document document) {
+    String name = function.getName();
+    List<Value> args = function.getArgsList();
+
+    // Functions that handle absent values and errors of their arguments themselves.
+    switch (name) {
+      case "and":
+        return evaluateAnd(args, document);
+      case "or":
+        return evaluateOr(args, document);
+      case "conditional":
+        checkArgumentCount(name, args, 3);
+        return TRUE_VALUE.equals(evaluate(args.get(0), document))
+            ? evaluate(args.get(1), document)
+            : evaluate(args.get(2), document);
+      case "switch_on":
+        for (int i = 0; i + 1 < args.size(); i += 2) {
+          if (matches(args.get(i), document)) {
+            return evaluate(args.get(i + 1), document);
+          }
+        }
+        return args.size() % 2 == 1 ? evaluate(args.get(args.size() - 1), document) : null;
+      case "exists":
+        checkArgumentCount(name, args, 1);
+        return booleanValue(evaluate(args.get(0), document) != null);
+      case "is_absent":
+        checkArgumentCount(name, args, 1);
+        return booleanValue(evaluate(args.get(0), document) == null);
+      case "if_absent":
+        {
+          checkArgumentCount(name, args, 2);
+          Value value = evaluate(args.get(0), document);
+          return value != null ? value : evaluate(args.get(1), document);
+        }
+      case "if_null":
+        {
+          checkArgumentCount(name, args, 2);
+          Value value = evaluate(args.get(0), document);
+          return value != null && !value.hasNullValue() ? value : evaluate(args.get(1), document);
+        }
+      case "coalesce":
+        for (Value arg : args) {
+          Value value = evaluate(arg, document);
+          if (value != null && !value.hasNullValue()) {
+            return value;
+          }
+        }
+        return NULL_VALUE;
+      case "is_error":
+        checkArgumentCount(name, args, 1);
+        try {
+          evaluate(args.get(0), document);
+          return FALSE_VALUE;
+        } catch (EvaluationException e) {
+          return TRUE_VALUE;
+        }
+      case "if_error":
+        checkArgumentCount(name, args, 2);
+        try {
+          return evaluate(args.get(0), document);
+        } catch (EvaluationException e) {
+          return evaluate(args.get(1), document);
+        }
+      case "current_document":
+        return Value.newBuilder()
+            .setMapValue(MapValue.newBuilder().putAllFields(document.getFieldsMap()))
+            .build();
+      case "current_timestamp":
+        return Value.newBuilder().setTimestampValue(Timestamp.now().toProto()).build();
+      case "rand":
+        return Value.newBuilder().setDoubleValue(ThreadLocalRandom.current().nextDouble()).build();
+      default:
+        break;
+    }
+
+    List<Value> values = new ArrayList<>(args.size());
+    for (Value arg : args) {
+      values.add(evaluate(arg, document));
+    }
+
+    switch (name) {
+      case "equal":
+      case "not_equal":
+      case "less_than":
+      case "less_than_or_equal":
+      case "greater_than":
+      case "greater_than_or_equal":
+        checkArgumentCount(name, args, 2);
+        return compare(name, values.get(0), values.get(1));
+      case "between":
+        {
+          checkArgumentCount(name, args, 3);
+          Value lower = compare("greater_than_or_equal", values.get(0), values.get(1));
+          Value upper = compare("less_than_or_equal", values.get(0), values.get(2));
+          return lower == null || upper == null
+              ? null
+              : booleanValue(lower.getBooleanValue() && upper.getBooleanValue());
+        }
+      case "not":
+        checkArgumentCount(name, args, 1);
+        return values.get(0) == null ? null : booleanValue(!toBoolean(name, values.get(0)));
+      case "xor":
+        {
+          boolean result = false;
+          for (Value value : values) {
+            if (value == null) {
+              return null;
+            }
+            result ^= toBoolean(name, value);
+          }
+          return booleanValue(result);
+        }
+      case "nor":
+        for (Value value : values) {
+          if (value == null) {
+            return null;
+          }
+          if (toBoolean(name, value)) {
+            return FALSE_VALUE;
+          }
+        }
+        return TRUE_VALUE;
+      case "is_null":
+        checkArgumentCount(name, args, 1);
+        return values.get(0) == null ? null : booleanValue(values.get(0).hasNullValue());
+      case "is_not_null":
+        checkArgumentCount(name, args, 1);
+        return values.get(0) == null ? null : booleanValue(!values.get(0).hasNullValue());
+      case "is_nan":
+        checkArgumentCount(name, args, 1);
+        return values.get(0) == null ? null : booleanValue(isNaN(name, values.get(0)));
+      case "is_not_nan":
+        checkArgumentCount(name, args, 1);
+        return values.get(0) == null ? null : booleanValue(!isNaN(name, values.get(0)));
+      case "type":
+        checkArgumentCount(name, args, 1);
+        return values.get(0) == null ? null : stringValue(typeName(values.get(0)));
+      case "is_type":
+        {
+          checkArgumentCount(name, args, 2);
+          if (values.get(0) == null) {
+            return FALSE_VALUE;
+          }
+          String type = typeName(values.get(0));
+          String expected = toStringValue(name, values.get(1));
+          return booleanValue(
+              type.equals(expected)
+                  || ("number".equals(expected)
+                      && (type.equals("int64") || type.equals("float64"))));
+        }
+      default:
+        break;
+    }
+
+    // All remaining functions evaluate to an absent value if any argument is absent.
+    for (Value value : values) {
+      if (value == null) {
+        return null;
+      }
+    }
+
+    switch (name) {
+      case "equal_any":
+        checkArgumentCount(name, args, 2);
+        return booleanValue(containsValue(toArray(name, values.get(1)), values.get(0)));
+      case "not_equal_any":
+        checkArgumentCount(name, args, 2);
+        return booleanValue(!containsValue(toArray(name, values.get(1)), values.get(0)));
+      case "array_contains":
+        checkArgumentCount(name, args, 2);
+        return booleanValue(containsValue(toArray(name, values.get(0)), values.get(1)));
+      case "array_contains_all":
+        {
+          checkArgumentCount(name, args, 2);
+          List<Value> array = toArray(name, values.get(0));
+          for (Value element : toArray(name, values.get(1))) {
+            if (!containsValue(array, element)) {
+              return FALSE_VALUE;
+            }
+          }
+          return TRUE_VALUE;
+        }
+      case "array_contains_any":
+        {
+          checkArgumentCount(name, args, 2);
+          List<Value> array = toArray(name, values.get(0));
+          for (Value element : toArray(name, values.get(1))) {
+            if (containsValue(array, element)) {
+              return TRUE_VALUE;
+            }
+          }
+          return FALSE_VALUE;
+        }
+
+      // Arithmetic
+      case "add":
+      case "subtract":
+      case "multiply":
+      case "divide":
+      case "mod":
+        {
+          Value result = values.get(0);
+          for (int i = 1; i < values.size(); ++i) {
+            result = arithmetic(name, result, values.get(i));
+          }
+          return result;
+        }
+      case "abs":
+        checkArgumentCount(name, args, 1);
+        if (values.get(0).hasIntegerValue()) {
+          if (values.get(0).getIntegerValue() == Long.MIN_VALUE) {
+            throw new EvaluationException("Function 'abs' overflowed");
+          }
+          return integerValue(Math.abs(values.get(0).getIntegerValue()));
+        }
+        return doubleValue(Math.abs(toDouble(name, values.get(0))));
+      case "ceil":
+        checkArgumentCount(name, args, 1);
+        return values.get(0).hasIntegerValue()
+            ? values.get(0)
+            : doubleValue(Math.ceil(toDouble(name, values.get(0))));
+      case "floor":
+        checkArgumentCount(name, args, 1);
+        return values.get(0).hasIntegerValue()
+            ? values.get(0)
+            : doubleValue(Math.floor(toDouble(name, values.get(0))));
+      case "round":
+        // Ties are rounded away from zero.
+        return roundNumber(name, values, RoundingMode.HALF_UP);
+      case "trunc":
+        return roundNumber(name, values, RoundingMode.DOWN);
+      case "sqrt":
+        checkArgumentCount(name, args, 1);
+        return doubleValue(Math.sqrt(toDouble(name, values.get(0))));
+      case "pow":
+        checkArgumentCount(name, args, 2);
+        return doubleValue(Math.pow(toDouble(name, values.get(0)), toDouble(name, values.get(1))));
+      case "exp":
+        checkArgumentCount(name, args, 1);
+        return doubleValue(Math.exp(toDouble(name, values.get(0))));
+      case "ln":
+        checkArgumentCount(name, args, 1);
+        return doubleValue(Math.log(toDouble(name, values.get(0))));
+      case "log10":
+        checkArgumentCount(name, args, 1);
+        return doubleValue(Math.log10(toDouble(name, values.get(0))));
+      case "log":
+        checkArgumentCount(name, args, 2);
+        return doubleValue(
+            Math.log(toDouble(name, values.get(0))) / Math.log(toDouble(name, values.get(1))));
+      case "maximum":
+      case "minimum":
+        {
+          Value result = NULL_VALUE;
+          for (Value value : values) {
+            if (value.hasNullValue()) {
+              continue;
+            }
+            int comparison = result.hasNullValue() ? 0 : Order.INSTANCE.compare(value, result);
+            if (result.hasNullValue()
+                || (name.equals("maximum") ? comparison > 0 : comparison < 0)) {
+              result = value;
+            }
+          }
+          return result;
+        }
+
+      // Strings
+      case "string_concat":
+        {
+          StringBuilder result = new StringBuilder();
+          for (Value value : values) {
+            result.append(toStringValue(name, value));
+          }
+          return stringValue(result.toString());
+        }
+      case "concat":
+        return concat(name, values);
+      case "to_lower":
+        checkArgumentCount(name, args, 1);
+        return stringValue(toStringValue(name, values.get(0)).toLowerCase(Locale.ROOT));
+      case "to_upper":
+        checkArgumentCount(name, args, 1);
+        return stringValue(toStringValue(name, values.get(0)).toUpperCase(Locale.ROOT));
+      case "trim":
+        return stringValue(trim(name, values, true, true));
+      case "ltrim":
+        return stringValue(trim(name, values, true, false));
+      case "rtrim":
+        return stringValue(trim(name, values, false, true));
+      case "starts_with":
+        checkArgumentCount(name, args, 2);
+        return booleanValue(
+            toStringValue(name, values.get(0)).startsWith(toStringValue(name, values.get(1))));
+      case "ends_with":
+        checkArgumentCount(name, args, 2);
+        return booleanValue(
+            toStringValue(name, values.get(0)).endsWith(toStringValue(name, values.get(1))));
+      case "string_contains":
+        checkArgumentCount(name, args, 2);
+        return booleanValue(
+            toStringValue(name, values.get(0)).contains(toStringValue(name, values.get(1))));
+      case "char_length":
+        {
+          checkArgumentCount(name, args, 1);
+          String string = toStringValue(name, values.get(0));
+          return integerValue(string.codePointCount(0, string.length()));
+        }
+      case "byte_length":
+        checkArgumentCount(name, args, 1);
+        return integerValue(
+            values.get(0).hasBytesValue()
+                ? values.get(0).getBytesValue().size()
+                : toStringValue(name, values.get(0)).getBytes(StandardCharsets.UTF_8).length);
+      case "length":
+        checkArgumentCount(name, args, 1);
+        return integerValue(length(name, values.get(0)));
+      case "reverse":
+        checkArgumentCount(name, args, 1);
+        if (values.get(0).hasArrayValue()) {
+          return arrayValue(reversed(values.get(0).getArrayValue().getValuesList()));
+        }
+        return stringValue(
+            new StringBuilder(toStringValue(name, values.get(0))).reverse().toString());
+      case "substring":
+        return substring(name, values);
+      case "string_repeat":
+        {
+          checkArgumentCount(name, args, 2);
+          long count = toInteger(name, values.get(1));
+          if (count < 0) {
+            throw new EvaluationException("Function 'string_repeat' requires a positive count");
+          }
+          StringBuilder result = new StringBuilder();
+          String string = toStringValue(name, values.get(0));
+          for (long i = 0; i < count; ++i) {
+            result.append(string);
+          }
+          return stringValue(result.toString());
+        }
+      case "string_replace_all":
+        checkArgumentCount(name, args, 3);
+        return stringValue(
+            toStringValue(name, values.get(0))
+                .replace(toStringValue(name, values.get(1)), toStringValue(name, values.get(2))));
+      case "string_replace_one":
+        {
+          checkArgumentCount(name, args, 3);
+          String string = toStringValue(name, values.get(0));
+          String find = toStringValue(name, values.get(1));
+          int index = string.indexOf(find);
+          return index < 0
+              ? values.get(0)
+              : stringValue(
+                  string.substring(0, index)
+                      + toStringValue(name, values.get(2))
+                      + string.substring(index + find.length()));
+        }
+      case "string_index_of":
+        {
+          checkArgumentCount(name, args, 2);
+          String string = toStringValue(name, values.get(0));
+          int index = string.indexOf(toStringValue(name, values.get(1)));
+          return integerValue(index < 0 ? -1 : string.codePointCount(0, index));
+        }
+      case "split":
+        {
+          checkArgumentCount(name, args, 2);
+          String string = toStringValue(name, values.get(0));
+          String delimiter = toStringValue(name, values.get(1));
+          List<Value> parts = new ArrayList<>();
+          if (delimiter.isEmpty()) {
+            string
+                .codePoints()
+                .forEach(c -> parts.add(stringValue(new String(Character.toChars(c)))));
+          } else {
+            for (String part : string.split(Pattern.quote(delimiter), -1)) {
+              parts.add(stringValue(part));
+            }
+          }
+          return arrayValue(parts);
+        }
+      case "join":
+        {
+          checkArgumentCount(name, args, 2);
+          List<String> parts = new ArrayList<>();
+          for (Value element : toArray(name, values.get(0))) {
+            if (!element.hasNullValue()) {
+              parts.add(toStringValue(name, element));
+            }
+          }
+          return stringValue(String.join(toStringValue(name, values.get(1)), parts));
+        }
+      case "like":
+        checkArgumentCount(name, args, 2);
+        return booleanValue(
+            likePattern(toStringValue(name, values.get(1)))
+                .matcher(toStringValue(name, values.get(0)))
+                .matches());
+      case "regex_contains":
+        checkArgumentCount(name, args, 2);
+        return booleanValue(regexMatcher(name, values).find());
+      case "regex_match":
+        checkArgumentCount(name, args, 2);
+        return booleanValue(regexMatcher(name, values).matches());
+      case "regex_find":
+        {
+          checkArgumentCount(name, args, 2);
+          Matcher matcher = regexMatcher(name, values);
+          return matcher.find() ? stringValue(matcher.group()) : NULL_VALUE;
+        }
+      case "regex_find_all":
+        {
+          checkArgumentCount(name, args, 2);
+          Matcher matcher = regexMatcher(name, values);
+          List<Value> matches = new ArrayList<>();
+          while (matcher.find()) {
+            matches.add(stringValue(matcher.group()));
+          }
+          return arrayValue(matches);
+        }
+
+      // Arrays
+      case "array":
+        return arrayValue(values);
+      case "array_concat":
+        {
+          List<Value> result = new ArrayList<>();
+          for (Value value : values) {
+            result.addAll(toArray(name, value));
+          }
+          return arrayValue(result);
+        }
+      case "array_length":
+        checkArgumentCount(name, args, 1);
+        return integerValue(toArray(name, values.get(0)).size());
+      case "array_reverse":
+        checkArgumentCount(name, args, 1);
+        return arrayValue(reversed(toArray(name, values.get(0))));
+      case "array_get":
+        {
+          checkArgumentCount(name, args, 2);
+          List<Value> array = toArray(name, values.get(0));
+          long index = toInteger(name, values.get(1));
+          if (index < 0) {
+            index += array.size();
+          }
+          return index >= 0 && index < array.size() ? array.get((int) index) : null;
+        }
+      case "array_first":
+        {
+          checkArgumentCount(name, args, 1);
+          List<Value> array = toArray(name, values.get(0));
+          return array.isEmpty() ? null : array.get(0);
+        }
+      case "array_last":
+        {
+          checkArgumentCount(name, args, 1);
+          List<Value> array = toArray(name, values.get(0));
+          return array.isEmpty() ? null : array.get(array.size() - 1);
+        }
+      case "array_first_n":
+        {
+          checkArgumentCount(name, args, 2);
+          List<Value> array = toArray(name, values.get(0));
+          int count = (int) Math.min(array.size(), toNonNegative(name, values.get(1)));
+          return arrayValue(array.subList(0, count));
+        }
+      case "array_last_n":
+        {
+          checkArgumentCount(name, args, 2);
+          List<Value> array = toArray(name, values.get(0));
+          int count = (int) Math.min(array.size(), toNonNegative(name, values.get(1)));
+          return arrayValue(array.subList(array.size() - count, array.size()));
+        }
+      case "array_slice":
+        {
+          List<Value> array = toArray(name, values.get(0));
+          long offset = toInteger(name, values.get(1));
+          if (offset < 0) {
+            offset = Math.max(0, offset + array.size());
+          }
+          int start = (int) Math.min(array.size(), offset);
+          int end =
+              values.size() > 2
+                  ? (int) Math.min(array.size(), start + toNonNegative(name, values.get(2)))
+                  : array.size();
+          return arrayValue(array.subList(start, end));
+        }
+
+      // Maps
+      case "map":
+        {
+          if (values.size() % 2 != 0) {
+            throw new EvaluationException("Function 'map' requires key/value pairs");
+          }
+          MapValue.Builder map = MapValue.newBuilder();
+          for (int i = 0; i < values.size(); i += 2) {
+            map.putFields(toStringValue(name, values.get(i)), values.get(i + 1));
+          }
+          return Value.newBuilder().setMapValue(map).build();
+        }
+      case "map_get":
+      case "get_field":
+        checkArgumentCount(name, args, 2);
+        return toMap(name, values.get(0)).get(toStringValue(name, values.get(1)));
+      case "map_keys":
+        {
+          checkArgumentCount(name, args, 1);
+          List<Value> keys = new ArrayList<>();
+          for (String key : toMap(name, values.get(0)).keySet()) {
+            keys.add(stringValue(key));
+          }
+          return arrayValue(keys);
+        }
+      case "map_values":
+        checkArgumentCount(name, args, 1);
+        return arrayValue(new ArrayList<>(toMap(name, values.get(0)).values()));
+      case "map_merge":
+        {
+          Map<String, Value> result = new LinkedHashMap<>();
+          for (Value value : values) {
+            result.putAll(toMap(name, value));
+          }
+          return mapValue(result);
+        }
+      case "map_remove":
+        {
+          Map<String, Value> result = new LinkedHashMap<>(toMap(name, values.get(0)));
+          for (int i = 1; i < values.size(); ++i) {
+            result.remove(toStringValue(name, values.get(i)));
+          }
+          return mapValue(result);
+        }
+      case "map_set":
+        {
+          if (values.size() % 2 != 1) {
+            throw new EvaluationException("Function 'map_set' requires key/value pairs");
+          }
+          Map<String, Value> result = new LinkedHashMap<>(toMap(name, values.get(0)));
+          for (int i = 1; i < values.size(); i += 2) {
+            result.put(toStringValue(name, values.get(i)), values.get(i + 1));
+          }
+          return mapValue(result);
+        }
+
+      // Documents
+      case "document_id":
+        checkArgumentCount(name, args, 1);
+        return stringValue(toReference(name, values.get(0)).getId());
+      case "collection_id":
+        checkArgumentCount(name, args, 1);
+        return stringValue(toReference(name, values.get(0)).getParent().getId());
+
+      // Timestamps
+      case "timestamp_to_unix_seconds":
+        checkArgumentCount(name, args, 1);
+        return integerValue(Math.floorDiv(toMicros(name, values.get(0)), MICROS_PER_SECOND));
+      case "timestamp_to_unix_millis":
+        checkArgumentCount(name, args, 1);
+        return integerValue(Math.floorDiv(toMicros(name, values.get(0)), 1000L));
+      case "timestamp_to_unix_micros":
+        checkArgumentCount(name, args, 1);
+        return integerValue(toMicros(name, values.get(0)));
+      case "unix_seconds_to_timestamp":
+        checkArgumentCount(name, args, 1);
+        return timestampValue(
+            name, multiplyExact(name, toInteger(name, values.get(0)), MICROS_PER_SECOND));
+      case "unix_millis_to_timestamp":
+        checkArgumentCount(name, args, 1);
+        return timestampValue(name, multiplyExact(name, toInteger(name, values.get(0)), 1000L));
+      case "unix_micros_to_timestamp":
+        checkArgumentCount(name, args, 1);
+        return timestampValue(name, toInteger(name, values.get(0)));
+      case "timestamp_add":
+      case "timestamp_subtract":
+        {
+          checkArgumentCount(name, args, 3);
+          long amount =
+              multiplyExact(
+                  name,
+                  toInteger(name, values.get(2)),
+                  unitMicros(name, toStringValue(name, values.get(1))));
+          long micros = toMicros(name, values.get(0));
+          try {
+            return timestampValue(
+                name,
+                name.equals("timestamp_add")
+                    ? Math.addExact(micros, amount)
+                    : Math.subtractExact(micros, amount));
+          } catch (ArithmeticException e) {
+            throw new EvaluationException("Function '" + name + "' overflowed");
+          }
+        }
+
+      // Vectors
+      case "vector_length":
+        checkArgumentCount(name, args, 1);
+        return integerValue(toVector(name, values.get(0)).length);
+      case "dot_product":
+      case "cosine_distance":
+      case "euclidean_distance":
+        checkArgumentCount(name, args, 2);
+        return doubleValue(
+            vectorDistance(name, toVector(name, values.get(0)), toVector(name, values.get(1))));
+      default:
+        throw new UnsupportedOperationException(
+            "Function '" + name + "' cannot be evaluated locally");
+    }
+  }
+
+  @Nullable
+  private static Value evaluateAnd(List<Value> args, Document document) {
+    boolean absent = false;
+    for (Value arg : args) {
+      Value value = evaluate(arg, document);
+      if (value == null) {
+        absent = true;
+      } else if (!toBoolean("and", value)) {
+        return FALSE_VALUE;
+      }
+    }
+    return absent ? null : TRUE_VALUE;
+  }
+
+  @Nullable
+  private static Value evaluateOr(List<Value> args, Document document) {
+    boolean absent = false;
+    for (Value arg : args) {
+      Value value = evaluate(arg, document);
+      if (value == null) {
+        absent = true;
+      } else if (toBoolean("or", value)) {
+        return TRUE_VALUE;
+      }
+    }
+    return absent ? null : FALSE_VALUE;
+  }
+
+  /** Compares two values. Comparisons with absent values are absent. */
+  @Nullable
+  private static Value compare(String name, @Nullable Value left, @Nullable Value right) {
+    if (left == null || right == null) {
+      return null;
+    }
+    boolean comparable = sameTypeOrder(left, right) && !isNaNValue(left) && !isNaNValue(right);
+    if (!comparable) {
+      return booleanValue(name.equals("not_equal"));
+    }
+    int comparison = Order.INSTANCE.compare(left, right);
+    switch (name) {
+      case "equal":
+        return booleanValue(comparison == 0);
+      case "not_equal":
+        return booleanValue(comparison != 0);
+      case "less_than":
+        return booleanValue(comparison < 0);
+      case "less_than_or_equal":
+        return booleanValue(comparison <= 0);
+      case "greater_than":
+        return booleanValue(comparison > 0);
+      default:
+        return booleanValue(comparison >= 0);
+    }
+  }
+
+  private static boolean sameTypeOrder(Value left, Value right) {
+    return Order.TypeOrder.fromValue(left) == Order.TypeOrder.fromValue(right);
+  }
+
+  /** Returns whether the array contains a value that is equal to the given value. */
+  private static boolean containsValue(List<Value> array, Value value) {
+    for (Value element : array) {
+      Value equal = compare("equal", element, value);
+      if (equal != null && equal.getBooleanValue()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Value arithmetic(String name, Value left, Value right) {
+    if (left.hasIntegerValue() && right.hasIntegerValue()) {
+      long lhs = left.getIntegerValue();
+      long rhs = right.getIntegerValue();
+      try {
+        switch (name) {
+          case "add":
+            return integerValue(Math.addExact(lhs, rhs));
+          case "subtract":
+            return integerValue(Math.subtractExact(lhs, rhs));
+          case "multiply":
+            return integerValue(Math.multiplyExact(lhs, rhs));
+          case "divide":
+            if (rhs == 0) {
+              throw new EvaluationException("Division by zero");
+            }
+            return integerValue(lhs / rhs);
+          default:
+            if (rhs == 0) {
+              throw new EvaluationException("Division by zero");
+            }
+            return integerValue(lhs % rhs);
+        }
+      } catch (ArithmeticException e) {
+        throw new EvaluationException("Function '" + name + "' overflowed");
+      }
+    }
+
+    double lhs = toDouble(name, left);
+    double rhs = toDouble(name, right);
+    switch (name) {
+      case "add":
+        return doubleValue(lhs + rhs);
+      case "subtract":
+        return doubleValue(lhs - rhs);
+      case "multiply":
+        return doubleValue(lhs * rhs);
+      case "divide":
+        return doubleValue(lhs / rhs);
+      default:
+        return doubleValue(lhs % rhs);
+    }
+  }
+
+  private static Value roundNumber(String name, List<Value> values, RoundingMode mode) {
+    if (values.isEmpty() || values.size() > 2) {
+      throw new EvaluationException("Function '" + name + "' requires 1 or 2 arguments");
+    }
+    Value number = values.get(0);
+    int places = values.size() > 1 ? (int) toInteger(name, values.get(1)) : 0;
+    if (number.hasIntegerValue()) {
+      if (places >= 0) {
+        return number;
+      }
+      return integerValue(
+          BigDecimal.valueOf(number.getIntegerValue()).setScale(places, mode).longValueExact());
+    }
+    double value = toDouble(name, number);
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return number;
+    }
+    return doubleValue(BigDecimal.valueOf(value).setScale(places, mode).doubleValue());
+  }
+
+  private static Value concat(String name, List<Value> values) {
+    if (values.isEmpty()) {
+      throw new EvaluationException("Function 'concat' requires at least one argument");
+    }
+    if (values.get(0).hasArrayValue()) {
+      List<Value> result = new ArrayList<>();
+      for (Value value : values) {
+        result.addAll(toArray(name, value));
+      }
+      return arrayValue(result);
+    }
+    if (values.get(0).hasBytesValue()) {
+      ByteString result = ByteString.EMPTY;
+      for (Value value : values) {
+        if (!value.hasBytesValue()) {
+          throw typeError(name, "bytes", value);
+        }
+        result = result.concat(value.getBytesValue());
+      }
+      return Value.newBuilder().setBytesValue(result).build();
+    }
+    StringBuilder result = new StringBuilder();
+    for (Value value : values) {
+      result.append(toStringValue(name, value));
+    }
+    return stringValue(result.toString());
+  }
+
+  private static String trim(String name, List<Value> values, boolean leading, boolean trailing) {
+    if (values.isEmpty() || values.size() > 2) {
+      throw new EvaluationException("Function '" + name + "' requires 1 or 2 arguments");
+    }
+    String string = toStringValue(name, values.get(0));
+    String characters = values.size() > 1 ? toStringValue(name, values.get(1)) : null;
+    int start = 0;
+    int end = string.length();
+    while (leading && start < end && isTrimmed(string.charAt(start), characters)) {
+      ++start;
+    }
+    while (trailing && end > start && isTrimmed(string.charAt(end - 1), characters)) {
+      --end;
+    }
+    return string.substring(start, end);
+  }
+
+  private static boolean isTrimmed(char c, @Nullable String characters) {
+    return characters == null ? Character.isWhitespace(c) : characters.indexOf(c) >= 0;
+  }
+
+  private static Value substring(String name, List<Value> values) {
+    if (values.size() < 2 || values.size() > 3) {
+      throw new EvaluationException("Function 'substring' requires 2 or 3 arguments");
+    }
+    String string = toStringValue(name, values.get(0));
+    int[] codePoints = string.codePoints().toArray();
+    long position = toInteger(name, values.get(1));
+    if (position < 0) {
+      position = Math.max(0, position + codePoints.length);
+    }
+    int start = (int) Math.min(codePoints.length, position);
+    int end =
+        values.size() > 2
+            ? (int) Math.min(codePoints.length, start + toNonNegative(name, values.get(2)))
+            : codePoints.length;
+    return stringValue(new String(codePoints, start, end - start));
+  }
+
+  private static long length(String name, Value value) {
+    switch (value.getValueTypeCase()) {
+      case STRING_VALUE:
+        return value.getStringValue().codePointCount(0, value.getStringValue().length());
+      case BYTES_VALUE:
+        return value.getBytesValue().size();
+      case ARRAY_VALUE:
+        return value.getArrayValue().getValuesCount();
+      case MAP_VALUE:
+        return isVector(value)
+            ? toVector(name, value).length
+            : value.getMapValue().getFieldsCount();
+      default:
+        throw typeError(name, "string, bytes, array or map", value);
+    }
+  }
+
+  private static Pattern likePattern(String pattern) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (char c : pattern.toCharArray()) {
+      if (c == '%' || c == '_') {
+        if (literal.length() > 0) {
+          regex.append(Pattern.quote(literal.toString()));
+          literal.setLength(0);
+        }
+        regex.append(c == '%' ? ".*" : ".");
+      } else {
+        literal.append(c);
+      }
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString(), Pattern.DOTALL);
+  }
+
+  private static Matcher regexMatcher(String name, List<Value> values) {
+    try {
+      return Pattern.compile(toStringValue(name, values.get(1)))
+          .matcher(toStringValue(name, values.get(0)));
+    } catch (PatternSyntaxException e) {
+      throw new EvaluationException("Invalid regular expression: " + e.getMessage());
+    }
+  }
+
+  private static long unitMicros(String name, String unit) {
+    switch (unit) {
+      case "microsecond":
+        return 1L;
+      case "millisecond":
+        return 1000L;
+      case "second":
+        return MICROS_PER_SECOND;
+      case "minute":
+        return 60 * MICROS_PER_SECOND;
+      case "hour":
+        return 3600 * MICROS_PER_SECOND;
+      case "day":
+        return 86400 * MICROS_PER_SECOND;
+      default:
+        throw new EvaluationException("Function '" + name + "' does not support unit: " + unit);
+    }
+  }
+
+  private static double vectorDistance(String name, double[] left, double[] right) {
+    if (left.length != right.length) {
+      throw new EvaluationException("Function '" + name + "' requires vectors of equal length");
+    }
+    double dotProduct = 0;
+    double leftNorm = 0;
+    double rightNorm = 0;
+    double squaredDistance = 0;
+    for (int i = 0; i < left.length; ++i) {
+      dotProduct += left[i] * right[i];
+      leftNorm += left[i] * left[i];
+      rightNorm += right[i] * right[i];
+      squaredDistance += (left[i] - right[i]) * (left[i] - right[i]);
+    }
+    switch (name) {
+      case "dot_product":
+        return dotProduct;
+      case "euclidean_distance":
+        return Math.sqrt(squaredDistance);
+      default:
+        if (leftNorm == 0 || rightNorm == 0) {
+          throw new EvaluationException("Function 'cosine_distance' requires non-zero vectors");
+        }
+        return 1 - dotProduct / (Math.sqrt(leftNorm) * Math.sqrt(rightNorm));
+    }
+  }
+
+  static String typeName(Value value) {
+    switch (value.getValueTypeCase()) {
+      case NULL_VALUE:
+        return "null";
+      case BOOLEAN_VALUE:
+        return "boolean";
+      case INTEGER_VALUE:
+        return "int64";
+      case DOUBLE_VALUE:
+        return "float64";
+      case TIMESTAMP_VALUE:
+        return "timestamp";
+      case STRING_VALUE:
+        return "string";
+      case BYTES_VALUE:
+        return "bytes";
+      case REFERENCE_VALUE:
+        return "reference";
+      case GEO_POINT_VALUE:
+        return "geo_point";
+      case ARRAY_VALUE:
+        return "array";
+      case MAP_VALUE:
+        return isVector(value) ? "vector" : "map";
+      default:
+        return value.getValueTypeCase().name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  private static boolean isVector(Value value) {
+    return UserDataConverter.detectMapRepresentation(value.getMapValue())
+        == MapRepresentation.VECTOR_VALUE;
+  }
+
+  private static boolean isNaNValue(Value value) {
+    return value.hasDoubleValue() && Double.isNaN(value.getDoubleValue());
+  }
+
+  private static boolean isNaN(String name, Value value) {
+    return Double.isNaN(toDouble(name, value));
+  }
+
+  private static void checkArgumentCount(String name, List<Value> args, int count) {
+    if (args.size() != count) {
+      throw new EvaluationException(
+          "Function '" + name + "' requires " + count + " arguments, but got " + args.size());
+    }
+  }
+
+  private static EvaluationException typeError(String name, String expected, Value actual) {
+    return new EvaluationException(
+        "Function '" + name + "' expected " + expected + " but got " + typeName(actual));
+  }
+
+  private static boolean toBoolean(String name, Value value) {
+    if (!value.hasBooleanValue()) {
+      throw typeError(name, "boolean", value);
+    }
+    return value.getBooleanValue();
+  }
+
+  private static double toDouble(String name, Value value) {
+    if (value.hasIntegerValue()) {
+      return value.getIntegerValue();
+    } else if (value.hasDoubleValue()) {
+      return value.getDoubleValue();
+    }
+    throw typeError(name, "number", value);
+  }
+
+  private static long toInteger(String name, Value value) {
+    if (!value.hasIntegerValue()) {
+      throw typeError(name, "int64", value);
+    }
+    return value.getIntegerValue();
+  }
+
+  private static long toNonNegative(String name, Value value) {
+    long result = toInteger(name, value);
+    if (result < 0) {
+      throw new EvaluationException("Function '" + name + "' requires a non-negative length");
+    }
+    return result;
+  }
+
+  private static String toStringValue(String name, Value value) {
+    if (!value.hasStringValue()) {
+      throw typeError(name, "string", value);
+    }
+    return value.getStringValue();
+  }
+
+  private static List<Value> toArray(String name, Value value) {
+    if (!value.hasArrayValue()) {
+      throw typeError(name, "array", value);
+    }
+    return value.getArrayValue().getValuesList();
+  }
+
+  private static Map<String, Value> toMap(String name, Value value) {
+    if (!value.hasMapValue()) {
+      throw typeError(name, "map", value);
+    }
+    return value.getMapValue().getFieldsMap();
+  }
+
+  private static ResourcePath toReference(String name, Value value) {
+    if (!value.hasReferenceValue()) {
+      throw typeError(name, "reference", value);
+    }
+    ResourcePath path = ResourcePath.create(value.getReferenceValue());
+    if (path.getSegments().isEmpty()) {
+      throw new EvaluationException("Function '" + name + "' requires a document reference");
+    }
+    return path;
+  }
+
+  private static long toMicros(String name, Value value) {
+    if (!value.hasTimestampValue()) {
+      throw typeError(name, "timestamp", value);
+    }
+    com.google.protobuf.Timestamp timestamp = value.getTimestampValue();
+    return timestamp.getSeconds() * MICROS_PER_SECOND + timestamp.getNanos() / 1000;
+  }
+
+  private static double[] toVector(String name, Value value) {
+    List<Value> elements;
+    if (value.hasArrayValue()) {
+      elements = value.getArrayValue().getValuesList();
+    } else if (value.hasMapValue() && isVector(value)) {
+      elements =
+          value
+              .getMapValue()
+              .getFieldsMap()
+              .get(MapType.VECTOR_MAP_VECTORS_KEY)
+              .getArrayValue()
+              .getValuesList();
+    } else {
+      throw typeError(name, "vector", value);
+    }
+    double[] vector = new double[elements.size()];
+    for (int i = 0; i < vector.length; ++i) {
+      vector[i] = toDouble(name, elements.get(i));
+    }
+    return vector;
+  }
+
+  private static List<Value> reversed(List<Value> values) {
+    List<Value> result = new ArrayList<>(values.size());
+    for (int i = values.size() - 1; i >= 0; --i) {
+      result.add(values.get(i));
+    }
+    return result;
+  }
+
+  private static long multiplyExact(String name, long left, long right) {
+    try {
+      return Math.multiplyExact(left, right);
+    } catch (ArithmeticException e) {
+      throw new EvaluationException("Function '" + name + "' overflowed");
+    }
+  }
+
+  static Value orNull(@Nullable Value value) {
+    return value != null ? value : NULL_VALUE;
+  }
+
+  static Value booleanValue(boolean value) {
+    return value ? TRUE_VALUE : FALSE_VALUE;
+  }
+
+  private static Value stringValue(String value) {
+    return Value.newBuilder().setStringValue(value).build();
+  }
+
+  private static Value integerValue(long value) {
+    return Value.newBuilder().setIntegerValue(value).build();
+  }
+
+  private static Value doubleValue(double value) {
+    return Value.newBuilder().setDoubleValue(value).build();
+  }
+
+  static Value arrayValue(List<Value> values) {
+    return Value.newBuilder().setArrayValue(ArrayValue.newBuilder().addAllValues(values)).build();
+  }
+
+  private static Value mapValue(Map<String, Value> fields) {
+    return Value.newBuilder().setMapValue(MapValue.newBuilder().putAllFields(fields)).build();
+  }
+
+  private static Value timestampValue(String name, long micros) {
+    long seconds = Math.floorDiv(micros, MICROS_PER_SECOND);
+    int nanos = (int) Math.floorMod(micros, MICROS_PER_SECOND) * 1000;
+    try {
+      return Value.newBuilder()
+          .setTimestampValue(Timestamp.ofTimeSecondsAndNanos(seconds, nanos).toProto())
+          .build();
+    } catch (IllegalArgumentException e) {
+      throw new EvaluationException("Function '" + name + "' produced an invalid timestamp");
+    }
+  }
+}
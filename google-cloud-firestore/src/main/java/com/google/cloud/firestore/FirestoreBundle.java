@@ -18,17 +18,27 @@ package com.google.cloud.firestore;
 
 import com.google.cloud.Timestamp;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import com.google.firestore.bundle.BundleElement;
 import com.google.firestore.bundle.BundleMetadata;
 import com.google.firestore.bundle.BundledDocumentMetadata;
 import com.google.firestore.bundle.BundledQuery;
 import com.google.firestore.bundle.NamedQuery;
 import com.google.firestore.v1.Document;
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.util.JsonFormat;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +65,8 @@ public final class FirestoreBundle {
     private final Map<String, NamedQuery> namedQueries = new HashMap<>();
     // The latest read time among all bundled documents and queries.
     private Timestamp latestReadTime = Timestamp.MIN_VALUE;
+    // The encoding of the bundle.
+    private Format format = Format.JSON;
 
     Builder(String id) {
       this.id = id;
@@ -153,26 +165,42 @@ public final class FirestoreBundle {
       return this;
     }
 
-    public FirestoreBundle build() {
-      StringBuilder buffer = new StringBuilder();
+    /**
+     * Sets the encoding of the bundle. Defaults to {@link Format#JSON}.
+     *
+     * @param format The encoding to use when building or writing the bundle.
+     */
+    public Builder setFormat(Format format) {
+      this.format = format;
+      return this;
+    }
 
-      for (NamedQuery namedQuery : namedQueries.values()) {
-        buffer.append(
-            elementToLengthPrefixedStringBuilder(
-                BundleElement.newBuilder().setNamedQuery(namedQuery).build()));
+    public FirestoreBundle build() {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try {
+        writeTo(out);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
+      return new FirestoreBundle(out.toByteArray());
+    }
 
-      for (BundledDocument bundledDocument : documents.values()) {
-        buffer.append(
-            elementToLengthPrefixedStringBuilder(
-                BundleElement.newBuilder()
-                    .setDocumentMetadata(bundledDocument.getMetadata())
-                    .build()));
-        if (bundledDocument.getDocument() != null) {
-          buffer.append(
-              elementToLengthPrefixedStringBuilder(
-                  BundleElement.newBuilder().setDocument(bundledDocument.getDocument()).build()));
-        }
+    /**
+     * Writes the bundle to the given stream. Unlike {@link #build()}, this method does not hold the
+     * encoded bundle in memory, which allows building bundles that are larger than the available
+     * heap. In the {@link Format#JSON} format, every element is encoded twice: once to compute the
+     * size of the bundle, which is recorded in the bundle metadata, and once to write it.
+     *
+     * <p>The stream is flushed but not closed.
+     *
+     * @param out The stream to write the bundle to.
+     * @throws IOException If writing to the stream fails.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+      List<BundleElement> elements = getElements();
+      long totalBytes = 0;
+      for (BundleElement element : elements) {
+        totalBytes += getEncodedSize(element);
       }
 
       BundleMetadata metadata =
@@ -181,25 +209,90 @@ public final class FirestoreBundle {
               .setCreateTime(latestReadTime.toProto())
               .setVersion(BUNDLE_SCHEMA_VERSION)
               .setTotalDocuments(documents.size())
-              .setTotalBytes(buffer.toString().getBytes(DEFAULT_CHARSET).length)
+              .setTotalBytes(totalBytes)
               .build();
-      BundleElement element = BundleElement.newBuilder().setMetadata(metadata).build();
-      buffer.insert(0, elementToLengthPrefixedStringBuilder(element));
 
-      return new FirestoreBundle(buffer.toString().getBytes(DEFAULT_CHARSET));
+      OutputStream bufferedOut = new BufferedOutputStream(out);
+      writeElement(bufferedOut, BundleElement.newBuilder().setMetadata(metadata).build());
+      for (BundleElement element : elements) {
+        writeElement(bufferedOut, element);
+      }
+      bufferedOut.flush();
     }
 
-    private StringBuilder elementToLengthPrefixedStringBuilder(BundleElement element) {
-      String elementJson = null;
-      try {
-        elementJson = PRINTER.print(element);
-      } catch (InvalidProtocolBufferException e) {
-        throw new RuntimeException(e);
+    /**
+     * Writes the bundle to the given channel. See {@link #writeTo(OutputStream)}.
+     *
+     * <p>The channel is not closed.
+     *
+     * @param channel The channel to write the bundle to.
+     * @throws IOException If writing to the channel fails.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+      writeTo(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Returns all elements except for the bundle metadata. The elements share the bundled protos,
+     * so this only allocates the element wrappers.
+     */
+    private List<BundleElement> getElements() {
+      List<BundleElement> elements = new ArrayList<>(namedQueries.size() + 2 * documents.size());
+      for (NamedQuery namedQuery : namedQueries.values()) {
+        elements.add(BundleElement.newBuilder().setNamedQuery(namedQuery).build());
+      }
+
+      for (BundledDocument bundledDocument : documents.values()) {
+        elements.add(
+            BundleElement.newBuilder().setDocumentMetadata(bundledDocument.getMetadata()).build());
+        if (bundledDocument.getDocument() != null) {
+          elements.add(
+              BundleElement.newBuilder().setDocument(bundledDocument.getDocument()).build());
+        }
       }
-      return new StringBuilder()
-          .append(elementJson.getBytes(DEFAULT_CHARSET).length)
-          .append(elementJson);
+      return elements;
     }
+
+    /** Returns the number of bytes that {@link #writeElement} writes for the given element. */
+    private long getEncodedSize(BundleElement element) throws IOException {
+      if (format == Format.PROTOBUF) {
+        // The serialized size is memoized by the element, so it is not computed again when the
+        // element is written.
+        int size = element.getSerializedSize();
+        return CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+      }
+      CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+      writeElement(counter, element);
+      return counter.getCount();
+    }
+
+    private void writeElement(OutputStream out, BundleElement element) throws IOException {
+      if (format == Format.PROTOBUF) {
+        element.writeDelimitedTo(out);
+        return;
+      }
+      byte[] elementJson = PRINTER.print(element).getBytes(DEFAULT_CHARSET);
+      out.write(Integer.toString(elementJson.length).getBytes(DEFAULT_CHARSET));
+      out.write(elementJson);
+    }
+  }
+
+  /** The encoding of a bundle. */
+  public enum Format {
+    /**
+     * Every element is encoded as JSON and prefixed with its length in bytes as a decimal number.
+     * This is the format that the Firestore web and mobile SDKs load.
+     */
+    JSON,
+
+    /**
+     * Every element is encoded as a binary {@link BundleElement} proto and prefixed with its length
+     * in bytes as a varint, as written by {@link com.google.protobuf.MessageLite#writeDelimitedTo}.
+     * Bundles in this format are considerably smaller and faster to build and read than JSON
+     * bundles, but can only be read by {@link BundleReader}. Use it to distribute bundles between
+     * servers.
+     */
+    PROTOBUF
   }
 
   private FirestoreBundle(byte[] data) {
@@ -52,6 +52,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -76,6 +77,12 @@ class FirestoreImpl implements Firestore, FirestoreRpcContext<FirestoreImpl> {
    */
   @Nullable private BulkWriter bulkWriterInstance;
 
+  /** The client-side document cache, or null if caching is disabled. */
+  @Nullable private final DocumentCache documentCache;
+
+  /** The Listen streams that are shared by all snapshot listeners of this instance. */
+  private final WatchStreamPool watchStreamPool;
+
   private boolean closed;
 
   FirestoreImpl(FirestoreOptions options) {
@@ -91,6 +98,21 @@ class FirestoreImpl implements Firestore, FirestoreRpcContext<FirestoreImpl> {
             + "Please explicitly set your Project ID in FirestoreOptions.");
     this.databasePath =
         ResourcePath.create(DatabaseRootName.of(options.getProjectId(), options.getDatabaseId()));
+    this.documentCache =
+        options.getDocumentCacheOptions() != null
+            ? new DocumentCache(options.getDocumentCacheOptions())
+            : null;
+    this.watchStreamPool = new WatchStreamPool();
+  }
+
+  /** Returns the client-side document cache, or null if caching is disabled. */
+  @Nullable
+  DocumentCache getDocumentCache() {
+    return documentCache;
+  }
+
+  WatchStreamPool getWatchStreamPool() {
+    return watchStreamPool;
   }
 
   /** Gets the TraceUtil object associated with this Firestore instance. */
@@ -222,15 +244,11 @@ class FirestoreImpl implements Firestore, FirestoreRpcContext<FirestoreImpl> {
   }
 
   void getAll(
-      final @Nonnull DocumentReference[] documentReferences,
+      @Nonnull DocumentReference[] documentReferences,
       @Nullable FieldMask fieldMask,
       @Nullable ByteString transactionId,
       @Nullable com.google.protobuf.Timestamp readTime,
       final ApiStreamObserver<DocumentSnapshot> apiStreamObserver) {
-    // To reduce the size of traces, we only register one event for every 100 responses
-    // that we receive from the server.
-    final int NUM_RESPONSES_PER_TRACE_EVENT = 100;
-
     MetricsContext metricsContext =
         getOptions()
             .getMetricsUtil()
@@ -239,9 +257,99 @@ class FirestoreImpl implements Firestore, FirestoreRpcContext<FirestoreImpl> {
                     ? TelemetryConstants.METHOD_NAME_BATCH_GET_DOCUMENTS_GET_ALL
                     : TelemetryConstants.METHOD_NAME_BATCH_GET_DOCUMENTS_TRANSACTIONAL);
 
+    if (documentCache != null && fieldMask == null && transactionId == null && readTime == null) {
+      getAllWithCache(documentReferences, metricsContext, apiStreamObserver);
+    } else {
+      getAll(
+          documentReferences,
+          fieldMask,
+          transactionId,
+          /* newTransaction= */ null,
+          readTime,
+          metricsContext,
+          apiStreamObserver);
+    }
+  }
+
+  /**
+   * Serves the documents that are in the client-side document cache and fetches the remaining
+   * documents from the backend. Fetched documents are added to the cache.
+   */
+  private void getAllWithCache(
+      @Nonnull DocumentReference[] documentReferences,
+      MetricsContext metricsContext,
+      final ApiStreamObserver<DocumentSnapshot> apiStreamObserver) {
+    long cacheGeneration = documentCache.getGeneration();
+    List<DocumentSnapshot> cachedSnapshots = new ArrayList<>();
+    List<DocumentReference> missingReferences = new ArrayList<>();
+    for (DocumentReference documentReference : documentReferences) {
+      DocumentSnapshot snapshot = documentCache.get(documentReference.getResourcePath());
+      if (snapshot != null) {
+        cachedSnapshots.add(snapshot);
+      } else {
+        missingReferences.add(documentReference);
+      }
+    }
+    metricsContext.recordCounter(MetricType.DOCUMENT_CACHE_HIT_COUNT, cachedSnapshots.size());
+    metricsContext.recordCounter(MetricType.DOCUMENT_CACHE_MISS_COUNT, missingReferences.size());
+
+    for (DocumentSnapshot snapshot : cachedSnapshots) {
+      apiStreamObserver.onNext(snapshot);
+    }
+    if (missingReferences.isEmpty()) {
+      apiStreamObserver.onCompleted();
+      return;
+    }
+
+    getAll(
+        missingReferences.toArray(new DocumentReference[0]),
+        /* fieldMask= */ null,
+        /* transactionId= */ null,
+        /* newTransaction= */ null,
+        /* readTime= */ null,
+        metricsContext,
+        new ApiStreamObserver<DocumentSnapshot>() {
+          @Override
+          public void onNext(DocumentSnapshot snapshot) {
+            documentCache.put(snapshot, cacheGeneration);
+            apiStreamObserver.onNext(snapshot);
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            apiStreamObserver.onError(throwable);
+          }
+
+          @Override
+          public void onCompleted() {
+            apiStreamObserver.onCompleted();
+          }
+        });
+  }
+
+  /**
+   * Streams the documents from the backend.
+   *
+   * @param newTransaction If set, the transaction that is begun with this read. Its ID is passed to
+   *     {@code apiStreamObserver} before the first document.
+   */
+  private void getAll(
+      final @Nonnull DocumentReference[] documentReferences,
+      @Nullable FieldMask fieldMask,
+      @Nullable ByteString transactionId,
+      @Nullable com.google.firestore.v1.TransactionOptions newTransaction,
+      @Nullable com.google.protobuf.Timestamp readTime,
+      MetricsContext metricsContext,
+      final ApiStreamObserver<DocumentSnapshot> apiStreamObserver) {
+    // To reduce the size of traces, we only register one event for every 100 responses
+    // that we receive from the server.
+    final int NUM_RESPONSES_PER_TRACE_EVENT = 100;
+    final boolean isTransactional = transactionId != null || newTransaction != null;
+
     ResponseObserver<BatchGetDocumentsResponse> responseObserver =
         new ResponseObserver<BatchGetDocumentsResponse>() {
           int numResponses = 0;
+          int numDocuments = 0;
           boolean hasCompleted = false;
 
           @Override
@@ -252,7 +360,7 @@ class FirestoreImpl implements Firestore, FirestoreRpcContext<FirestoreImpl> {
                     TelemetryConstants.METHOD_NAME_BATCH_GET_DOCUMENTS + ": Start",
                     new ImmutableMap.Builder<String, Object>()
                         .put(ATTRIBUTE_KEY_DOC_COUNT, documentReferences.length)
-                        .put(ATTRIBUTE_KEY_IS_TRANSACTIONAL, transactionId != null)
+                        .put(ATTRIBUTE_KEY_IS_TRANSACTIONAL, isTransactional)
                         .build());
           }
 
@@ -279,6 +387,12 @@ class FirestoreImpl implements Firestore, FirestoreRpcContext<FirestoreImpl> {
                           + " responses");
             }
 
+            if (!response.getTransaction().isEmpty()
+                && apiStreamObserver instanceof NewTransactionObserver) {
+              ((NewTransactionObserver) apiStreamObserver)
+                  .onTransactionBegun(response.getTransaction());
+            }
+
             switch (response.getResultCase()) {
               case FOUND:
                 documentSnapshot =
@@ -301,11 +415,12 @@ class FirestoreImpl implements Firestore, FirestoreRpcContext<FirestoreImpl> {
                 return;
             }
             apiStreamObserver.onNext(documentSnapshot);
+            numDocuments++;
 
             // Logical termination: if we have already received as many documents as we had
             // requested, we can
             // raise the results without waiting for the termination from the server.
-            if (numResponses == documentReferences.length) {
+            if (numDocuments == documentReferences.length) {
               onComplete();
             }
           }
@@ -343,6 +458,8 @@ class FirestoreImpl implements Firestore, FirestoreRpcContext<FirestoreImpl> {
 
     if (transactionId != null) {
       request.setTransaction(transactionId);
+    } else if (newTransaction != null) {
+      request.setNewTransaction(newTransaction);
     }
 
     if (readTime != null) {
@@ -377,35 +494,83 @@ class FirestoreImpl implements Firestore, FirestoreRpcContext<FirestoreImpl> {
       @Nullable ByteString transactionId,
       @Nullable com.google.protobuf.Timestamp readTime) {
     final SettableApiFuture<List<DocumentSnapshot>> futureList = SettableApiFuture.create();
-    final Map<DocumentReference, DocumentSnapshot> documentSnapshotMap = new HashMap<>();
     getAll(
         documentReferences,
         fieldMask,
         transactionId,
         readTime,
-        new ApiStreamObserver<DocumentSnapshot>() {
-          @Override
-          public void onNext(DocumentSnapshot documentSnapshot) {
-            documentSnapshotMap.put(documentSnapshot.getReference(), documentSnapshot);
-          }
-
-          @Override
-          public void onError(Throwable throwable) {
-            futureList.setException(throwable);
-          }
+        documentListObserver(documentReferences, futureList, /* onTransactionBegun= */ null));
+    return futureList;
+  }
 
-          @Override
-          public void onCompleted() {
-            List<DocumentSnapshot> documentSnapshotsList = new ArrayList<>();
-            for (DocumentReference documentReference : documentReferences) {
-              documentSnapshotsList.add(documentSnapshotMap.get(documentReference));
-            }
-            futureList.set(documentSnapshotsList);
-          }
-        });
+  /**
+   * Reads documents in a new transaction that is begun by the read, which saves the round trip of a
+   * separate BeginTransaction request.
+   *
+   * @param onTransactionBegun Receives the ID of the new transaction before the documents are
+   *     returned.
+   */
+  ApiFuture<List<DocumentSnapshot>> getAllInNewTransaction(
+      final @Nonnull DocumentReference[] documentReferences,
+      @Nullable FieldMask fieldMask,
+      com.google.firestore.v1.TransactionOptions newTransaction,
+      Consumer<ByteString> onTransactionBegun) {
+    final SettableApiFuture<List<DocumentSnapshot>> futureList = SettableApiFuture.create();
+    MetricsContext metricsContext =
+        getOptions()
+            .getMetricsUtil()
+            .createMetricsContext(TelemetryConstants.METHOD_NAME_BATCH_GET_DOCUMENTS_TRANSACTIONAL);
+    getAll(
+        documentReferences,
+        fieldMask,
+        /* transactionId= */ null,
+        newTransaction,
+        /* readTime= */ null,
+        metricsContext,
+        documentListObserver(documentReferences, futureList, onTransactionBegun));
     return futureList;
   }
 
+  /** An observer that is notified of the transaction that a read has begun. */
+  private interface NewTransactionObserver extends ApiStreamObserver<DocumentSnapshot> {
+    void onTransactionBegun(ByteString transactionId);
+  }
+
+  /** Collects the streamed documents into a list in the order of the requested references. */
+  private static ApiStreamObserver<DocumentSnapshot> documentListObserver(
+      final DocumentReference[] documentReferences,
+      final SettableApiFuture<List<DocumentSnapshot>> futureList,
+      @Nullable final Consumer<ByteString> onTransactionBegun) {
+    final Map<DocumentReference, DocumentSnapshot> documentSnapshotMap = new HashMap<>();
+    return new NewTransactionObserver() {
+      @Override
+      public void onTransactionBegun(ByteString transactionId) {
+        if (onTransactionBegun != null) {
+          onTransactionBegun.accept(transactionId);
+        }
+      }
+
+      @Override
+      public void onNext(DocumentSnapshot documentSnapshot) {
+        documentSnapshotMap.put(documentSnapshot.getReference(), documentSnapshot);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        futureList.setException(throwable);
+      }
+
+      @Override
+      public void onCompleted() {
+        List<DocumentSnapshot> documentSnapshotsList = new ArrayList<>();
+        for (DocumentReference documentReference : documentReferences) {
+          documentSnapshotsList.add(documentSnapshotMap.get(documentReference));
+        }
+        futureList.set(documentSnapshotsList);
+      }
+    };
+  }
+
   @Nonnull
   @Override
   public CollectionGroup collectionGroup(@Nonnull final String collectionId) {
@@ -66,6 +66,7 @@ public final class FirestoreOptions extends ServiceOptions<Firestore, FirestoreO
   private final CredentialsProvider credentialsProvider;
   private final String emulatorHost;
   private final boolean alwaysUseImplicitOrderBy;
+  @Nullable private final DocumentCacheOptions documentCacheOptions;
   private final transient @Nonnull FirestoreOpenTelemetryOptions openTelemetryOptions;
   private final transient @Nonnull com.google.cloud.firestore.telemetry.TraceUtil traceUtil;
   private final transient @Nonnull com.google.cloud.firestore.telemetry.MetricsUtil metricsUtil;
@@ -148,6 +149,12 @@ public final class FirestoreOptions extends ServiceOptions<Firestore, FirestoreO
     return alwaysUseImplicitOrderBy;
   }
 
+  /** Returns the options of the client-side document cache, or null if documents are not cached. */
+  @Nullable
+  public DocumentCacheOptions getDocumentCacheOptions() {
+    return documentCacheOptions;
+  }
+
   @Nonnull
   com.google.cloud.firestore.telemetry.TraceUtil getTraceUtil() {
     return traceUtil;
@@ -170,6 +177,7 @@ public final class FirestoreOptions extends ServiceOptions<Firestore, FirestoreO
     @Nullable private CredentialsProvider credentialsProvider = null;
     @Nullable private String emulatorHost = null;
     private boolean alwaysUseImplicitOrderBy = false;
+    @Nullable private DocumentCacheOptions documentCacheOptions = null;
     @Nullable private FirestoreOpenTelemetryOptions openTelemetryOptions = null;
 
     private Builder() {}
@@ -181,6 +189,7 @@ public final class FirestoreOptions extends ServiceOptions<Firestore, FirestoreO
       this.credentialsProvider = options.credentialsProvider;
       this.emulatorHost = options.emulatorHost;
       this.alwaysUseImplicitOrderBy = options.alwaysUseImplicitOrderBy;
+      this.documentCacheOptions = options.documentCacheOptions;
       this.openTelemetryOptions = options.openTelemetryOptions;
     }
 
@@ -260,6 +269,19 @@ public final class FirestoreOptions extends ServiceOptions<Firestore, FirestoreO
       return this;
     }
 
+    /**
+     * Enables the client-side document cache, which serves repeated non-transactional document
+     * reads from memory. See {@link DocumentCacheOptions} for details. By default, no documents are
+     * cached.
+     *
+     * @param documentCacheOptions The configuration of the cache, or null to disable caching.
+     */
+    @Nonnull
+    public Builder setDocumentCacheOptions(@Nullable DocumentCacheOptions documentCacheOptions) {
+      this.documentCacheOptions = documentCacheOptions;
+      return this;
+    }
+
     /**
      * Sets the database ID to use with this Firestore client.
      *
@@ -405,6 +427,7 @@ public final class FirestoreOptions extends ServiceOptions<Firestore, FirestoreO
 
     this.emulatorHost = builder.emulatorHost;
     this.alwaysUseImplicitOrderBy = builder.alwaysUseImplicitOrderBy;
+    this.documentCacheOptions = builder.documentCacheOptions;
   }
 
   private static class FirestoreDefaults implements ServiceDefaults<Firestore, FirestoreOptions> {
@@ -479,12 +502,13 @@ public final class FirestoreOptions extends ServiceOptions<Firestore, FirestoreO
     FirestoreOptions that = (FirestoreOptions) o;
     return Objects.equals(databaseId, that.databaseId)
         && Objects.equals(channelProvider, that.channelProvider)
+        && Objects.equals(documentCacheOptions, that.documentCacheOptions)
         && baseEquals(that);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(databaseId, channelProvider, baseHashCode());
+    return Objects.hash(databaseId, channelProvider, documentCacheOptions, baseHashCode());
   }
 
   @Nonnull
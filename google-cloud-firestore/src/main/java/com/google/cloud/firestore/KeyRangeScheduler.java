@@ -0,0 +1,207 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.common.hash.Hashing;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Groups BulkWriter operations by key range and sends the resulting batches in round-robin order
+ * across ranges.
+ *
+ * <p>Documents are assigned to one of a fixed number of key ranges by the hash of their path, so
+ * that writes to sequential document IDs are spread over all ranges. Every range collects its own
+ * batches and has its own {@link RateLimiter}, which allows a range to use up to {@link
+ * #KEY_RANGE_SHARE_FACTOR} times its fair share of the overall rate. A range that exceeds its limit
+ * is skipped while batches for other ranges continue to be sent. The overall rate is still enforced
+ * by BulkWriter's own rate limiter.
+ *
+ * <p>This class is not thread safe. BulkWriter only accesses it while holding its lock.
+ */
+final class KeyRangeScheduler {
+  /** The number of key ranges that documents are distributed over. */
+  static final int DEFAULT_KEY_RANGE_COUNT = 16;
+
+  /** The multiple of its fair share of the overall rate that a single key range may use. */
+  static final int KEY_RANGE_SHARE_FACTOR = 2;
+
+  private final KeyRange[] keyRanges;
+
+  /** The key range that is considered first during the next dispatch. */
+  private int nextKeyRange;
+
+  /** Whether a dispatch has been scheduled to send batches that were rate limited. */
+  private boolean dispatchScheduled;
+
+  /**
+   * @param keyRangeCount The number of key ranges.
+   * @param initialOpsPerSecond The initial number of operations per second across all ranges.
+   * @param multiplier Rate by which to increase the capacity of each range.
+   * @param multiplierMillis How often the capacity of each range should increase in milliseconds.
+   * @param maxOpsPerSecond The maximum number of operations per second across all ranges.
+   * @param minOpsPerSecond The minimum number of operations per second of a single range. Must be
+   *     at least the size of a batch.
+   */
+  KeyRangeScheduler(
+      int keyRangeCount,
+      int initialOpsPerSecond,
+      double multiplier,
+      int multiplierMillis,
+      int maxOpsPerSecond,
+      int minOpsPerSecond) {
+    this.keyRanges = new KeyRange[keyRangeCount];
+    int initialRangeCapacity = getRangeCapacity(initialOpsPerSecond, minOpsPerSecond);
+    int maxRangeCapacity = getRangeCapacity(maxOpsPerSecond, minOpsPerSecond);
+    for (int i = 0; i < keyRangeCount; ++i) {
+      keyRanges[i] =
+          new KeyRange(
+              new RateLimiter(
+                  initialRangeCapacity, multiplier, multiplierMillis, maxRangeCapacity));
+    }
+  }
+
+  int getKeyRangeCount() {
+    return keyRanges.length;
+  }
+
+  /** Returns the key range that writes to the given document are assigned to. */
+  int getKeyRange(DocumentReference documentReference) {
+    return Hashing.consistentHash(documentReference.getResourcePath().hashCode(), keyRanges.length);
+  }
+
+  /** Returns the batch that new writes to the given key range are added to. */
+  BulkCommitBatch getOpenBatch(int keyRange) {
+    return keyRanges[keyRange].openBatch;
+  }
+
+  void setOpenBatch(int keyRange, BulkCommitBatch batch) {
+    keyRanges[keyRange].openBatch = batch;
+  }
+
+  /** Adds a batch that is ready to be sent once its key range is under its rate limit. */
+  void addReadyBatch(int keyRange, BulkCommitBatch batch) {
+    keyRanges[keyRange].readyBatches.add(batch);
+  }
+
+  /**
+   * Updates the capacity of each range after the overall rate changed.
+   *
+   * @param opsPerSecond The number of operations per second across all ranges.
+   * @param minOpsPerSecond The minimum number of operations per second of a single range.
+   */
+  void setCapacity(int opsPerSecond, int minOpsPerSecond) {
+    int rangeCapacity = getRangeCapacity(opsPerSecond, minOpsPerSecond);
+    for (KeyRange keyRange : keyRanges) {
+      keyRange.rateLimiter.setCapacity(rangeCapacity);
+    }
+  }
+
+  boolean isDispatchScheduled() {
+    return dispatchScheduled;
+  }
+
+  void setDispatchScheduled(boolean dispatchScheduled) {
+    this.dispatchScheduled = dispatchScheduled;
+  }
+
+  /**
+   * Sends ready batches, taking one batch from each key range in turn, until all batches are sent
+   * or the remaining ranges are over their rate limit.
+   *
+   * @param globalLimiter The rate limiter that enforces the overall rate.
+   * @param maxRequestOps The overall number of operations per second. Larger batches are split.
+   * @param sender Sends a batch.
+   * @return The number of milliseconds after which the remaining batches should be dispatched, or 0
+   *     if all batches were sent.
+   */
+  long dispatch(RateLimiter globalLimiter, int maxRequestOps, Consumer<BulkCommitBatch> sender) {
+    long retryDelayMs = 0;
+    boolean sentBatch = true;
+    while (sentBatch) {
+      sentBatch = false;
+      retryDelayMs = 0;
+      for (int i = 0; i < keyRanges.length; ++i) {
+        int index = (nextKeyRange + i) % keyRanges.length;
+        KeyRange keyRange = keyRanges[index];
+        BulkCommitBatch batch = keyRange.readyBatches.peek();
+        if (batch == null) {
+          continue;
+        }
+
+        long nowMillis = System.currentTimeMillis();
+        int capacity = Math.min(maxRequestOps, keyRange.rateLimiter.calculateCapacity(nowMillis));
+        if (batch.getMutationsSize() > capacity) {
+          // Batches that were created before the limits were lowered may exceed the current
+          // capacity, which the rate limiters never grant. Send their writes in smaller batches.
+          keyRange.readyBatches.poll();
+          List<BulkCommitBatch> smallerBatches = batch.split(capacity);
+          for (int j = smallerBatches.size() - 1; j >= 0; --j) {
+            keyRange.readyBatches.addFirst(smallerBatches.get(j));
+          }
+          batch = keyRange.readyBatches.peek();
+        }
+
+        int requestedOps = batch.getMutationsSize();
+        if (!keyRange.rateLimiter.canMakeRequest(requestedOps, nowMillis)) {
+          retryDelayMs =
+              minDelay(
+                  retryDelayMs,
+                  keyRange.rateLimiter.getNextRequestDelayMs(requestedOps, nowMillis));
+          continue;
+        }
+        if (!globalLimiter.tryMakeRequest(requestedOps)) {
+          // No range can send a batch until the overall rate limiter has refilled.
+          return minDelay(0, globalLimiter.getNextRequestDelayMs(requestedOps));
+        }
+        // Only take tokens from the range once the overall rate limiter granted the request.
+        keyRange.rateLimiter.tryMakeRequest(requestedOps, nowMillis);
+
+        keyRange.readyBatches.poll();
+        nextKeyRange = (index + 1) % keyRanges.length;
+        sender.accept(batch);
+        sentBatch = true;
+        break;
+      }
+    }
+    return retryDelayMs;
+  }
+
+  private int getRangeCapacity(int opsPerSecond, int minOpsPerSecond) {
+    long rangeCapacity = (long) opsPerSecond * KEY_RANGE_SHARE_FACTOR / keyRanges.length;
+    return (int) Math.min(Math.max(rangeCapacity, minOpsPerSecond), Integer.MAX_VALUE);
+  }
+
+  /** Returns the smaller of two delays, where a delay of 0 means that no delay was set yet. */
+  private static long minDelay(long currentDelayMs, long delayMs) {
+    // The rate limiter may report a delay of 0 if tokens become available within the current
+    // millisecond. Wait at least one millisecond to avoid retrying in a busy loop.
+    delayMs = Math.max(1, delayMs);
+    return currentDelayMs == 0 ? delayMs : Math.min(currentDelayMs, delayMs);
+  }
+
+  private static final class KeyRange {
+    final RateLimiter rateLimiter;
+    final ArrayDeque<BulkCommitBatch> readyBatches = new ArrayDeque<>();
+    BulkCommitBatch openBatch;
+
+    KeyRange(RateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+    }
+  }
+}
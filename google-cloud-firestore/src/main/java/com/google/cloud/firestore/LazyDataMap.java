@@ -0,0 +1,168 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.firestore.v1.Value;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An unmodifiable view of encoded document fields that decodes each value when it is first read.
+ *
+ * <p>Decoded values are cached, so repeated reads return the same instance. Nested maps and arrays
+ * are returned as lazy views themselves, which means that reading a single nested field only
+ * decodes the values along its path. The view is safe for use by multiple threads.
+ */
+final class LazyDataMap extends AbstractMap<String, Object> {
+  /** Placeholder for cached values that decoded to {@code null}. */
+  private static final Object NULL_VALUE = new Object();
+
+  private final FirestoreRpcContext<?> rpcContext;
+  private final Map<String, Value> fields;
+  private final ConcurrentHashMap<String, Object> decodedFields = new ConcurrentHashMap<>();
+  private Set<Entry<String, Object>> entrySet;
+
+  LazyDataMap(FirestoreRpcContext<?> rpcContext, Map<String, Value> fields) {
+    this.rpcContext = rpcContext;
+    this.fields = fields;
+  }
+
+  /**
+   * Decodes a single value. Maps and arrays are wrapped in lazy views, all other values are decoded
+   * by {@link UserDataConverter#decodeValue}.
+   */
+  static Object decodeValue(FirestoreRpcContext<?> rpcContext, Value value) {
+    switch (value.getValueTypeCase()) {
+      case MAP_VALUE:
+        if (value.getMapValue().containsFields(MapType.RESERVED_MAP_KEY)) {
+          // Maps that represent special types (such as vectors) are decoded eagerly.
+          return UserDataConverter.decodeValue(rpcContext, value);
+        }
+        return new LazyDataMap(rpcContext, value.getMapValue().getFieldsMap());
+      case ARRAY_VALUE:
+        return new LazyDataList(rpcContext, value.getArrayValue().getValuesList());
+      default:
+        return UserDataConverter.decodeValue(rpcContext, value);
+    }
+  }
+
+  @Override
+  public int size() {
+    return fields.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return fields.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return fields.containsKey(key);
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    Object decodedValue = decodedFields.get(key);
+    if (decodedValue == null) {
+      Value value = fields.get(key);
+      if (value == null) {
+        return null;
+      }
+      decodedValue = decodeValue(rpcContext, value);
+      Object previous =
+          decodedFields.putIfAbsent((String) key, decodedValue == null ? NULL_VALUE : decodedValue);
+      if (previous != null) {
+        decodedValue = previous;
+      }
+    }
+    return decodedValue == NULL_VALUE ? null : decodedValue;
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet =
+          new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+              Iterator<String> keys = fields.keySet().iterator();
+              return new Iterator<Entry<String, Object>>() {
+                @Override
+                public boolean hasNext() {
+                  return keys.hasNext();
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                  String key = keys.next();
+                  return new SimpleImmutableEntry<>(key, get(key));
+                }
+              };
+            }
+
+            @Override
+            public int size() {
+              return fields.size();
+            }
+          };
+    }
+    return entrySet;
+  }
+
+  /** An unmodifiable view of an encoded array that decodes each element when it is first read. */
+  private static final class LazyDataList extends AbstractList<Object> implements RandomAccess {
+    private final FirestoreRpcContext<?> rpcContext;
+    private final List<Value> values;
+    private final AtomicReferenceArray<Object> decodedValues;
+
+    LazyDataList(FirestoreRpcContext<?> rpcContext, List<Value> values) {
+      this.rpcContext = rpcContext;
+      this.values = values;
+      this.decodedValues = new AtomicReferenceArray<>(values.size());
+    }
+
+    @Override
+    public Object get(int index) {
+      Object decodedValue = decodedValues.get(index);
+      if (decodedValue == null) {
+        decodedValue = decodeValue(rpcContext, values.get(index));
+        if (!decodedValues.compareAndSet(
+            index, null, decodedValue == null ? NULL_VALUE : decodedValue)) {
+          decodedValue = decodedValues.get(index);
+        }
+      }
+      return decodedValue == NULL_VALUE ? null : decodedValue;
+    }
+
+    @Override
+    public int size() {
+      return values.size();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.auto.value.AutoValue;
+import java.util.concurrent.Executor;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/** Options used to configure a parallel scan of query partitions. */
+@AutoValue
+public abstract class ParallelScanOptions {
+  static final int DEFAULT_MAX_CONCURRENCY = 8;
+  static final int DEFAULT_PREFETCH = 100;
+
+  /**
+   * Returns the maximum number of partitions that are read at the same time.
+   *
+   * @return The maximum number of partitions that are read at the same time.
+   */
+  public abstract int getMaxConcurrency();
+
+  /**
+   * Returns the maximum number of documents that are buffered for every partition that is being
+   * read.
+   *
+   * @return The maximum number of buffered documents per partition.
+   */
+  public abstract int getPrefetch();
+
+  /**
+   * Returns whether the results of all partitions are returned in query order.
+   *
+   * <p>Ordered scans return the documents of one partition after another. Since partitions are
+   * consecutive ranges of document IDs, this is the order of the partitioned query. The partitions
+   * that follow the partition being returned are read ahead, up to {@link #getMaxConcurrency()}
+   * partitions in total. Unordered scans return documents as soon as they arrive from any
+   * partition.
+   *
+   * @return Whether the results are returned in query order.
+   */
+  public abstract boolean getOrdered();
+
+  /**
+   * @return The {@link Executor} that runs the partitions of a scan. If null, an executor with
+   *     {@link #getMaxConcurrency()} daemon threads is created for the scan.
+   */
+  @Nullable
+  public abstract Executor getExecutor();
+
+  public static Builder builder() {
+    return new AutoValue_ParallelScanOptions.Builder()
+        .setMaxConcurrency(DEFAULT_MAX_CONCURRENCY)
+        .setPrefetch(DEFAULT_PREFETCH)
+        .setOrdered(false)
+        .setExecutor(null);
+  }
+
+  public abstract Builder toBuilder();
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    /**
+     * Sets the maximum number of partitions that a scan reads at the same time. Defaults to 8.
+     *
+     * @param maxConcurrency The maximum number of partitions that are read at the same time.
+     */
+    public abstract Builder setMaxConcurrency(int maxConcurrency);
+
+    /**
+     * Sets the maximum number of documents that are buffered for every partition that is being
+     * read. Defaults to 100.
+     *
+     * @param prefetch The maximum number of buffered documents per partition.
+     */
+    public abstract Builder setPrefetch(int prefetch);
+
+    /**
+     * Sets whether the results of all partitions should be returned in query order. By default,
+     * documents are returned in the order in which they arrive.
+     *
+     * @param ordered Whether the results should be returned in query order.
+     */
+    public abstract Builder setOrdered(boolean ordered);
+
+    /**
+     * Sets the executor that runs the partitions of a scan. Every partition that is being read
+     * occupies one task of the executor until it is complete. The executor is not shut down by the
+     * scan.
+     *
+     * @param executor The executor to run the partitions on.
+     */
+    public abstract Builder setExecutor(@Nullable Executor executor);
+
+    abstract ParallelScanOptions autoBuild();
+
+    @Nonnull
+    public ParallelScanOptions build() {
+      ParallelScanOptions options = autoBuild();
+
+      if (options.getMaxConcurrency() < 1) {
+        throw FirestoreException.forInvalidArgument(
+            "Value for argument 'maxConcurrency' must be greater than 0, but was: "
+                + options.getMaxConcurrency());
+      }
+
+      if (options.getPrefetch() < 1) {
+        throw FirestoreException.forInvalidArgument(
+            "Value for argument 'prefetch' must be greater than 0, but was: "
+                + options.getPrefetch());
+      }
+      return options;
+    }
+  }
+}
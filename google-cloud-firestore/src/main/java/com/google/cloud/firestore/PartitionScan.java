@@ -0,0 +1,353 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the results of several query partitions in parallel and returns them as a single sequence
+ * of documents.
+ *
+ * <p>Every partition is read with a {@link QueryDocumentIterator}, which resumes the partition's
+ * query after its last document when a retryable error occurs. Errors that cannot be retried fail
+ * the entire scan and cancel all partitions that are still running.
+ */
+abstract class PartitionScan implements Iterator<QueryDocumentSnapshot>, AutoCloseable {
+
+  /**
+   * Creates a scan over the given partition queries, which are consecutive ranges of document IDs
+   * in ascending order, as returned by {@link CollectionGroup#getPartitions(long)}.
+   */
+  static PartitionScan create(List<Query> partitionQueries, ParallelScanOptions options) {
+    if (options.getOrdered()) {
+      return new Ordered(partitionQueries, options);
+    }
+    return new Unordered(
+        partitionQueries,
+        options.getPrefetch(),
+        options.getMaxConcurrency(),
+        options.getExecutor());
+  }
+
+  /** Cancels all partitions that are still running. */
+  @Override
+  public abstract void close();
+
+  /** Creates an executor for a scan whose threads do not prevent the JVM from exiting. */
+  private static ExecutorService newExecutor(int threadCount) {
+    return Executors.newFixedThreadPool(
+        threadCount,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("firestore-scan-%d").build());
+  }
+
+  /**
+   * Returns the documents of all partitions in partition order. Since the partitions are
+   * consecutive ranges of document IDs, this is also the order of the partitioned query.
+   *
+   * <p>Partitions are read on the executor while the caller consumes an earlier partition, with at
+   * most {@code maxConcurrency} partitions, including the one being consumed, read at the same
+   * time.
+   */
+  static final class Ordered extends PartitionScan {
+    private final ArrayDeque<Query> pendingQueries;
+    private final ArrayDeque<Unordered> runningPartitions = new ArrayDeque<>();
+    private final int prefetch;
+    private final int maxConcurrency;
+    @Nullable private final Executor executor;
+    @Nullable private final ExecutorService ownedExecutor;
+
+    Ordered(List<Query> partitionQueries, ParallelScanOptions options) {
+      this.pendingQueries = new ArrayDeque<>(partitionQueries);
+      this.prefetch = options.getPrefetch();
+      this.maxConcurrency = options.getMaxConcurrency();
+
+      int threadCount = Math.min(maxConcurrency, partitionQueries.size());
+      Executor executor = options.getExecutor();
+      if (executor == null && threadCount > 0) {
+        ownedExecutor = newExecutor(threadCount);
+        executor = ownedExecutor;
+      } else {
+        ownedExecutor = null;
+      }
+      this.executor = executor;
+      startPartitions();
+    }
+
+    /** Starts reading pending partitions until {@code maxConcurrency} partitions are running. */
+    private void startPartitions() {
+      while (runningPartitions.size() < maxConcurrency && !pendingQueries.isEmpty()) {
+        runningPartitions.add(
+            new Unordered(
+                Collections.singletonList(pendingQueries.poll()),
+                prefetch,
+                /* maxConcurrency= */ 1,
+                executor));
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        while (!runningPartitions.isEmpty()) {
+          if (runningPartitions.peek().hasNext()) {
+            return true;
+          }
+          runningPartitions.poll().close();
+          startPartitions();
+        }
+      } catch (RuntimeException e) {
+        close();
+        throw e;
+      }
+      if (ownedExecutor != null) {
+        ownedExecutor.shutdown();
+      }
+      return false;
+    }
+
+    @Override
+    public QueryDocumentSnapshot next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return runningPartitions.peek().next();
+    }
+
+    @Override
+    public void close() {
+      pendingQueries.clear();
+      for (Unordered partition : runningPartitions) {
+        partition.close();
+      }
+      runningPartitions.clear();
+      if (ownedExecutor != null) {
+        ownedExecutor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Returns documents from all partitions in the order in which they arrive. Every partition is
+   * read by a task on the executor that moves its documents into a shared buffer.
+   */
+  static final class Unordered extends PartitionScan {
+    private final ConcurrentLinkedQueue<Query> pendingQueries;
+    private final int prefetch;
+    @Nullable private final ExecutorService ownedExecutor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<QueryDocumentSnapshot> buffer;
+    private final List<QueryDocumentIterator> runningPartitions = new ArrayList<>();
+
+    private int activeWorkers;
+    private boolean closed;
+    @Nullable private Throwable error;
+
+    Unordered(
+        List<Query> partitionQueries,
+        int prefetch,
+        int maxConcurrency,
+        @Nullable Executor executor) {
+      this.pendingQueries = new ConcurrentLinkedQueue<>(partitionQueries);
+      this.prefetch = prefetch;
+      this.buffer = new ArrayDeque<>(prefetch);
+
+      int workerCount = Math.min(maxConcurrency, partitionQueries.size());
+      if (executor == null && workerCount > 0) {
+        ownedExecutor = newExecutor(workerCount);
+        executor = ownedExecutor;
+      } else {
+        ownedExecutor = null;
+      }
+
+      activeWorkers = workerCount;
+      for (int i = 0; i < workerCount; ++i) {
+        executor.execute(this::readPartitions);
+      }
+    }
+
+    /** Reads pending partitions until all partitions are read or the scan is closed. */
+    private void readPartitions() {
+      try {
+        Query query;
+        while ((query = pendingQueries.poll()) != null) {
+          QueryDocumentIterator iterator = query.startDocumentIterator(prefetch);
+          if (!register(iterator)) {
+            return;
+          }
+          try {
+            while (iterator.hasNext()) {
+              if (!put(iterator.next())) {
+                return;
+              }
+            }
+          } finally {
+            unregister(iterator);
+          }
+        }
+      } catch (RuntimeException | InterruptedException e) {
+        fail(e);
+      } finally {
+        boolean lastWorker;
+        lock.lock();
+        try {
+          lastWorker = --activeWorkers == 0;
+          notEmpty.signalAll();
+        } finally {
+          lock.unlock();
+        }
+        if (lastWorker && ownedExecutor != null) {
+          ownedExecutor.shutdown();
+        }
+      }
+    }
+
+    /** Tracks a running partition so that it can be cancelled. Returns false if already closed. */
+    private boolean register(QueryDocumentIterator iterator) {
+      lock.lock();
+      try {
+        if (closed) {
+          iterator.close();
+          return false;
+        }
+        runningPartitions.add(iterator);
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void unregister(QueryDocumentIterator iterator) {
+      lock.lock();
+      try {
+        runningPartitions.remove(iterator);
+      } finally {
+        lock.unlock();
+      }
+      iterator.close();
+    }
+
+    /** Adds a document to the buffer once there is space. Returns false if the scan was closed. */
+    private boolean put(QueryDocumentSnapshot document) throws InterruptedException {
+      lock.lock();
+      try {
+        while (buffer.size() >= prefetch && !closed) {
+          notFull.await();
+        }
+        if (closed) {
+          return false;
+        }
+        buffer.add(document);
+        notEmpty.signal();
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void fail(Throwable throwable) {
+      lock.lock();
+      try {
+        if (error == null) {
+          error = throwable;
+        }
+        notEmpty.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      Throwable failure;
+      lock.lock();
+      try {
+        while (buffer.isEmpty() && activeWorkers > 0 && error == null && !closed) {
+          notEmpty.await();
+        }
+        if (error == null || closed) {
+          return !buffer.isEmpty();
+        }
+        failure = error;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failure = e;
+      } finally {
+        lock.unlock();
+      }
+
+      // Cancel the remaining partitions as soon as one of them fails.
+      close();
+      Throwables.throwIfUnchecked(failure);
+      throw new RuntimeException(failure);
+    }
+
+    @Override
+    public QueryDocumentSnapshot next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lock.lock();
+      try {
+        QueryDocumentSnapshot document = buffer.poll();
+        notFull.signal();
+        return document;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void close() {
+      List<QueryDocumentIterator> partitions;
+      lock.lock();
+      try {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        pendingQueries.clear();
+        buffer.clear();
+        partitions = new ArrayList<>(runningPartitions);
+        notEmpty.signalAll();
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+
+      for (QueryDocumentIterator iterator : partitions) {
+        iterator.close();
+      }
+    }
+  }
+}
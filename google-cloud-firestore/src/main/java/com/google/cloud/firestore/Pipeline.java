@@ -69,6 +69,7 @@ import com.google.cloud.firestore.telemetry.TelemetryConstants;
 import com.google.cloud.firestore.telemetry.TelemetryConstants.MetricType;
 import com.google.cloud.firestore.telemetry.TraceUtil;
 import com.google.cloud.firestore.telemetry.TraceUtil.Scope;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -81,8 +82,14 @@ import com.google.protobuf.ByteString;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -1371,6 +1378,229 @@ public final class Pipeline {
     return execute(options, null, null);
   }
 
+  /**
+   * Prepares this pipeline for repeated execution with different parameter values.
+   *
+   * <p>The pipeline is serialized once. Every variable that the pipeline references with {@link
+   * Expression#variable(String)} but does not bind with {@link #define} becomes a parameter, whose
+   * value is supplied on each execution. This avoids re-serializing the pipeline when only literal
+   * values change between executions.
+   *
+   * <p>Example:
+   *
+   * <pre>{@code
+   * PreparedPipeline prepared = firestore.pipeline().collection("books")
+   *     .where(field("rating").greaterThan(variable("minRating")))
+   *     .limit(10)
+   *     .prepare();
+   * ApiFuture<Snapshot> results = prepared.execute(ImmutableMap.of("minRating", 4.5));
+   * }</pre>
+   *
+   * @return A {@link PreparedPipeline} for this pipeline.
+   */
+  @BetaApi
+  @Nonnull
+  public PreparedPipeline prepare() {
+    if (this.rpcContext == null) {
+      throw new IllegalStateException(
+          "This pipeline was created without a database (e.g., as a subcollection pipeline) and"
+              + " cannot be executed directly. It can only be used as part of another pipeline.");
+    }
+    return new PreparedPipeline(this);
+  }
+
+  /**
+   * Returns an Iterable over the results of this pipeline that holds a bounded number of results in
+   * memory. Unlike {@link #execute()}, this allows iterating over pipelines with any number of
+   * results.
+   *
+   * <p>The backend returns results in batches. The next batch is only requested while fewer than
+   * {@code prefetch} results are buffered, so at most {@code prefetch} results plus one batch are
+   * held in memory.
+   *
+   * <p>Every call to {@link Iterable#iterator()} executes the pipeline. The iterator's methods
+   * block until the next result has arrived, and throw if the pipeline fails. If iteration is
+   * abandoned before all results are consumed, the pipeline is only cancelled when its deadline
+   * expires. Use {@link #streamAsStream(int)} to cancel the pipeline explicitly.
+   *
+   * <p>Example:
+   *
+   * <pre>{@code
+   * for (PipelineResult result :
+   *     firestore.pipeline().collection("events").streamAsIterable(1000)) {
+   *   process(result.getData());
+   * }
+   * }</pre>
+   *
+   * @param prefetch The number of buffered results below which the next batch of results is
+   *     requested.
+   * @return An Iterable over the pipeline results.
+   */
+  @BetaApi
+  @Nonnull
+  public Iterable<PipelineResult> streamAsIterable(int prefetch) {
+    checkStreamable(prefetch);
+    return () -> startResultIterator(prefetch);
+  }
+
+  /**
+   * Executes the pipeline and returns a sequential {@link Stream} of its results that holds a
+   * bounded number of results in memory. See {@link #streamAsIterable(int)}.
+   *
+   * <p>The pipeline starts executing when this method is called. Closing the returned stream
+   * cancels the pipeline if it is still running, so streams that may not be consumed completely
+   * should be used in a try-with-resources statement.
+   *
+   * @param prefetch The number of buffered results below which the next batch of results is
+   *     requested.
+   * @return A Stream of the pipeline results.
+   */
+  @BetaApi
+  @Nonnull
+  public Stream<PipelineResult> streamAsStream(int prefetch) {
+    checkStreamable(prefetch);
+    PipelineResultIterator iterator = startResultIterator(prefetch);
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+            /* parallel= */ false)
+        .onClose(iterator::close);
+  }
+
+  private void checkStreamable(int prefetch) {
+    if (this.rpcContext == null) {
+      throw new IllegalStateException(
+          "This pipeline was created without a database (e.g., as a subcollection pipeline) and"
+              + " cannot be executed directly. It can only be used as part of another pipeline.");
+    }
+    Preconditions.checkArgument(prefetch > 0, "prefetch must be positive.");
+  }
+
+  private PipelineResultIterator startResultIterator(int prefetch) {
+    PipelineResultIterator iterator = new PipelineResultIterator(prefetch);
+    executeInternal(
+        toProto(),
+        new PipelineExecuteOptions(),
+        null,
+        null,
+        null,
+        iterator.getObserver(),
+        createMetricsContext(TelemetryConstants.METHOD_NAME_EXECUTE_PIPELINE_EXECUTE));
+    return iterator;
+  }
+
+  /**
+   * Evaluates this pipeline over the given documents on the client, without sending a request to
+   * the backend.
+   *
+   * <p>The source stage of the pipeline selects from the given documents the ones that it would
+   * read from the database. For example, a pipeline that starts with {@code collection("books")}
+   * only evaluates the documents in the "books" collection. A pipeline that starts with {@code
+   * literals()} evaluates its literal documents and ignores the given documents.
+   *
+   * <p>Local evaluation supports the {@code where}, {@code select}, {@code addFields}, {@code
+   * removeFields}, {@code replaceWith}, {@code sort}, {@code offset}, {@code limit}, {@code
+   * aggregate}, {@code distinct} and {@code unnest} stages, and most functions. Results can differ
+   * from the backend for edge cases such as errors in expressions.
+   *
+   * <p>Example:
+   *
+   * <pre>{@code
+   * List<QueryDocumentSnapshot> cached = ...;
+   * Snapshot snapshot = firestore.pipeline().collection("books")
+   *     .where(field("rating").greaterThan(4.5))
+   *     .sort(field("rating").descending())
+   *     .evaluate(cached);
+   * }</pre>
+   *
+   * @param documents The documents to evaluate the pipeline over. Documents that do not exist are
+   *     ignored.
+   * @return A snapshot with the results of the pipeline.
+   * @throws UnsupportedOperationException If the pipeline contains a stage or function that cannot
+   *     be evaluated on the client.
+   */
+  @BetaApi
+  @Nonnull
+  public Snapshot evaluate(@Nonnull Iterable<? extends DocumentSnapshot> documents) {
+    List<Document> input = new ArrayList<>();
+    for (DocumentSnapshot document : documents) {
+      if (document.exists()) {
+        input.add(
+            toDocument(
+                document.getReference(),
+                document.getProtoFields(),
+                document.getCreateTime(),
+                document.getUpdateTime()));
+      }
+    }
+    return toSnapshot(PipelineEvaluator.evaluate(toProto(), input), Timestamp.now());
+  }
+
+  /**
+   * Evaluates this pipeline on the client over the results of another pipeline execution, without
+   * sending a request to the backend. The results take the place of the output of this pipeline's
+   * source stage, which is not evaluated.
+   *
+   * <p>This can be used to post-process results from the backend, for example to sort or group them
+   * in different ways without executing a pipeline for every variation. See {@link
+   * #evaluate(Iterable)} for the stages that can be evaluated on the client.
+   *
+   * @param results The results to evaluate the stages of this pipeline over.
+   * @return A snapshot with the results of the pipeline. Its execution time is the execution time
+   *     of the given results.
+   * @throws UnsupportedOperationException If the pipeline contains a stage or function that cannot
+   *     be evaluated on the client.
+   */
+  @BetaApi
+  @Nonnull
+  public Snapshot evaluate(@Nonnull Snapshot results) {
+    List<Document> input = new ArrayList<>(results.getResults().size());
+    for (PipelineResult result : results.getResults()) {
+      input.add(
+          toDocument(
+              result.getReference(),
+              result.getProtoFields(),
+              result.getCreateTime(),
+              result.getUpdateTime()));
+    }
+    return toSnapshot(
+        PipelineEvaluator.evaluateAfterSource(toProto(), input), results.getExecutionTime());
+  }
+
+  private static Document toDocument(
+      @Nullable DocumentReference reference,
+      @Nullable Map<String, Value> fields,
+      @Nullable Timestamp createTime,
+      @Nullable Timestamp updateTime) {
+    Document.Builder document = Document.newBuilder();
+    if (reference != null) {
+      document.setName(reference.getName());
+    }
+    if (fields != null) {
+      document.putAllFields(fields);
+    }
+    if (createTime != null) {
+      document.setCreateTime(createTime.toProto());
+    }
+    if (updateTime != null) {
+      document.setUpdateTime(updateTime.toProto());
+    }
+    return document.build();
+  }
+
+  private Snapshot toSnapshot(List<Document> documents, Timestamp executionTime) {
+    if (this.rpcContext == null) {
+      throw new IllegalStateException(
+          "This pipeline was created without a database (e.g., as a subcollection pipeline) and"
+              + " cannot be evaluated directly. It can only be used as part of another pipeline.");
+    }
+    List<PipelineResult> results = new ArrayList<>(documents.size());
+    for (Document document : documents) {
+      results.add(PipelineResult.fromDocument(rpcContext, executionTime, document));
+    }
+    return new Snapshot(this, results, executionTime, /* explainStats= */ null);
+  }
+
   MetricsContext createMetricsContext(String methodName) {
     return rpcContext.getFirestore().getOptions().getMetricsUtil().createMetricsContext(methodName);
   }
@@ -1430,9 +1660,11 @@ public final class Pipeline {
         createMetricsContext(TelemetryConstants.METHOD_NAME_EXECUTE_PIPELINE_EXECUTE);
 
     executeInternal(
+        toProto(),
         new PipelineExecuteOptions(),
         null,
         null,
+        null,
         new PipelineResultObserver() {
           @Override
           public void onNext(PipelineResult result) {
@@ -1456,6 +1688,49 @@ public final class Pipeline {
       @Nonnull PipelineExecuteOptions options,
       @Nullable final ByteString transactionId,
       @Nullable com.google.protobuf.Timestamp readTime) {
+    return execute(toProto(), options, transactionId, readTime);
+  }
+
+  /**
+   * Executes this pipeline in a new transaction that the pipeline begins with the given options.
+   *
+   * @param onTransactionBegun Receives the ID of the new transaction from the first response.
+   */
+  ApiFuture<Snapshot> executeInNewTransaction(
+      @Nonnull PipelineExecuteOptions options,
+      @Nonnull com.google.firestore.v1.TransactionOptions newTransaction,
+      @Nonnull Consumer<ByteString> onTransactionBegun) {
+    return execute(
+        toProto(),
+        options,
+        /* transactionId= */ null,
+        newTransaction,
+        onTransactionBegun,
+        /* readTime= */ null);
+  }
+
+  /** Executes the given serialized form of this pipeline. */
+  ApiFuture<Snapshot> execute(
+      @Nonnull com.google.firestore.v1.Pipeline pipeline,
+      @Nonnull PipelineExecuteOptions options,
+      @Nullable final ByteString transactionId,
+      @Nullable com.google.protobuf.Timestamp readTime) {
+    return execute(
+        pipeline,
+        options,
+        transactionId,
+        /* newTransaction= */ null,
+        /* onTransactionBegun= */ null,
+        readTime);
+  }
+
+  private ApiFuture<Snapshot> execute(
+      @Nonnull com.google.firestore.v1.Pipeline pipeline,
+      @Nonnull PipelineExecuteOptions options,
+      @Nullable final ByteString transactionId,
+      @Nullable com.google.firestore.v1.TransactionOptions newTransaction,
+      @Nullable Consumer<ByteString> onTransactionBegun,
+      @Nullable com.google.protobuf.Timestamp readTime) {
     if (this.rpcContext == null) {
       throw new IllegalStateException(
           "This pipeline was created without a database (e.g., as a subcollection pipeline) and"
@@ -1476,12 +1751,21 @@ public final class Pipeline {
       SettableApiFuture<Snapshot> futureResult = SettableApiFuture.create();
 
       executeInternal(
+          pipeline,
           options,
           transactionId,
+          newTransaction,
           readTime,
           new PipelineResultObserver() {
             final List<PipelineResult> results = new ArrayList<>();
 
+            @Override
+            void onTransactionBegun(ByteString transactionId) {
+              if (onTransactionBegun != null) {
+                onTransactionBegun.accept(transactionId);
+              }
+            }
+
             @Override
             public void onCompleted() {
               futureResult.set(
@@ -1510,8 +1794,10 @@ public final class Pipeline {
   }
 
   void executeInternal(
+      @Nonnull com.google.firestore.v1.Pipeline pipeline,
       @Nonnull PipelineExecuteOptions options,
       @Nullable final ByteString transactionId,
+      @Nullable com.google.firestore.v1.TransactionOptions newTransaction,
       @Nullable com.google.protobuf.Timestamp readTime,
       PipelineResultObserver observer,
       MetricsContext metricsContext) {
@@ -1520,7 +1806,7 @@ public final class Pipeline {
             .setDatabase(rpcContext.getDatabaseName())
             .setStructuredPipeline(
                 StructuredPipeline.newBuilder()
-                    .setPipeline(toProto())
+                    .setPipeline(pipeline)
                     .putAllOptions(StageUtils.toMap(options))
                     .build());
 
@@ -1528,6 +1814,10 @@ public final class Pipeline {
       request.setTransaction(transactionId);
     }
 
+    if (newTransaction != null) {
+      request.setNewTransaction(newTransaction);
+    }
+
     if (readTime != null) {
       request.setReadTime(readTime);
     }
@@ -1535,6 +1825,21 @@ public final class Pipeline {
     pipelineInternalStream(
         request.build(),
         new PipelineResultObserver() {
+          @Override
+          void onStart(StreamController controller) {
+            observer.onStart(controller);
+          }
+
+          @Override
+          void onTransactionBegun(ByteString transactionId) {
+            observer.onTransactionBegun(transactionId);
+          }
+
+          @Override
+          void onResponseEnd() {
+            observer.onResponseEnd();
+          }
+
           @Override
           public void onCompleted() {
             observer.setExplainStats(getExplainStats());
@@ -1581,7 +1886,9 @@ public final class Pipeline {
     currentSpan.addEvent(
         TelemetryConstants.METHOD_NAME_EXECUTE_PIPELINE,
         new ImmutableMap.Builder<String, Object>()
-            .put(ATTRIBUTE_KEY_IS_TRANSACTIONAL, request.hasTransaction())
+            .put(
+                ATTRIBUTE_KEY_IS_TRANSACTIONAL,
+                request.hasTransaction() || request.hasNewTransaction())
             .build());
 
     ResponseObserver<ExecutePipelineResponse> observer =
@@ -1593,7 +1900,7 @@ public final class Pipeline {
 
           @Override
           public void onStart(StreamController controller) {
-            // No action needed in onStart
+            resultObserver.onStart(controller);
           }
 
           @Override
@@ -1605,6 +1912,10 @@ public final class Pipeline {
               metricsContext.recordLatency(MetricType.FIRST_RESPONSE_LATENCY);
             }
 
+            if (!response.getTransaction().isEmpty()) {
+              resultObserver.onTransactionBegun(response.getTransaction());
+            }
+
             if (response.hasExplainStats()) {
               resultObserver.setExplainStats(
                   new ExplainStats(response.getExplainStats().getData()));
@@ -1628,6 +1939,7 @@ public final class Pipeline {
                 resultObserver.onNext(PipelineResult.fromDocument(rpcContext, executionTime, doc));
               }
             }
+            resultObserver.onResponseEnd();
           }
 
           @Override
@@ -1696,5 +2008,20 @@ public final class Pipeline {
     public void setExecutionTime(Timestamp executionTime) {
       this.executionTime = executionTime;
     }
+
+    /**
+     * Called when the stream starts, before any results are delivered. Observers can disable
+     * automatic flow control here and request responses from the controller themselves.
+     */
+    void onStart(StreamController controller) {}
+
+    /** Called with the ID of the transaction that the pipeline has begun, if it began one. */
+    void onTransactionBegun(ByteString transactionId) {}
+
+    /**
+     * Called after all results of a response have been delivered. Also called for responses that do
+     * not contain any results.
+     */
+    void onResponseEnd() {}
   }
 }
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static com.google.cloud.firestore.ExpressionEvaluator.NULL_VALUE;
+
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.Function;
+import com.google.firestore.v1.MapValue;
+import com.google.firestore.v1.Pipeline;
+import com.google.firestore.v1.Value;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * Evaluates a pipeline in its proto representation over documents that are held in memory, without
+ * sending a request to the backend.
+ *
+ * <p>Evaluation supports the source stages, as well as the {@code where}, {@code select}, {@code
+ * add_fields}, {@code remove_fields}, {@code replace_with}, {@code sort}, {@code offset}, {@code
+ * limit}, {@code aggregate}, {@code distinct} and {@code unnest} stages. Pipelines with other
+ * stages, or with functions that {@link ExpressionEvaluator} does not support, throw an {@link
+ * UnsupportedOperationException}.
+ */
+final class PipelineEvaluator {
+
+  private PipelineEvaluator() {}
+
+  /**
+   * Runs all stages of the pipeline over the given documents. The source stage selects the
+   * documents that it would read from the database, or produces its literal documents.
+   */
+  static List<Document> evaluate(Pipeline pipeline, List<Document> documents) {
+    List<Pipeline.Stage> stages = pipeline.getStagesList();
+    if (stages.isEmpty()) {
+      return documents;
+    }
+    return evaluateStages(stages.subList(1, stages.size()), source(stages.get(0), documents));
+  }
+
+  /**
+   * Runs all stages of the pipeline but its source stage over the given documents, which take the
+   * place of the results of the source stage.
+   */
+  static List<Document> evaluateAfterSource(Pipeline pipeline, List<Document> documents) {
+    List<Pipeline.Stage> stages = pipeline.getStagesList();
+    return evaluateStages(stages.subList(Math.min(1, stages.size()), stages.size()), documents);
+  }
+
+  private static List<Document> evaluateStages(List<Pipeline.Stage> stages, List<Document> input) {
+    List<Document> documents = input;
+    for (Pipeline.Stage stage : stages) {
+      documents = evaluateStage(stage, documents);
+    }
+    return documents;
+  }
+
+  private static List<Document> source(Pipeline.Stage stage, List<Document> documents) {
+    List<Value> args = stage.getArgsList();
+    switch (stage.getName()) {
+      case "database":
+        return filterByPath(documents, path -> true);
+      case "collection":
+        {
+          String collectionPath = trimLeadingSlash(args.get(0).getReferenceValue());
+          return filterByPath(documents, path -> path.getParent().getPath().equals(collectionPath));
+        }
+      case "collection_group":
+        {
+          String collectionId = args.get(1).getStringValue();
+          return filterByPath(documents, path -> collectionId.equals(path.getParent().getId()));
+        }
+      case "documents":
+        {
+          Map<String, Document> documentsByPath = new HashMap<>();
+          for (Document document : filterByPath(documents, path -> true)) {
+            documentsByPath.put(ResourcePath.create(document.getName()).getPath(), document);
+          }
+          // Documents are returned in the order in which they were requested.
+          List<Document> result = new ArrayList<>(args.size());
+          for (Value arg : args) {
+            Document document = documentsByPath.remove(trimLeadingSlash(arg.getReferenceValue()));
+            if (document != null) {
+              result.add(document);
+            }
+          }
+          return result;
+        }
+      case "literals":
+        {
+          List<Document> result = new ArrayList<>(args.size());
+          for (Value arg : args) {
+            Value literal = ExpressionEvaluator.evaluate(arg, Document.getDefaultInstance());
+            result.add(
+                Document.newBuilder().putAllFields(literal.getMapValue().getFieldsMap()).build());
+          }
+          return result;
+        }
+      default:
+        throw unsupportedStage(stage);
+    }
+  }
+
+  private interface PathFilter {
+    boolean matches(ResourcePath path);
+  }
+
+  private static List<Document> filterByPath(List<Document> documents, PathFilter filter) {
+    List<Document> result = new ArrayList<>();
+    for (Document document : documents) {
+      if (!document.getName().isEmpty()
+          && filter.matches(ResourcePath.create(document.getName()))) {
+        result.add(document);
+      }
+    }
+    return result;
+  }
+
+  private static String trimLeadingSlash(String path) {
+    return path.startsWith("/") ? path.substring(1) : path;
+  }
+
+  private static List<Document> evaluateStage(Pipeline.Stage stage, List<Document> documents) {
+    List<Value> args = stage.getArgsList();
+    switch (stage.getName()) {
+      case "where":
+        {
+          List<Document> result = new ArrayList<>();
+          for (Document document : documents) {
+            if (ExpressionEvaluator.matches(args.get(0), document)) {
+              result.add(document);
+            }
+          }
+          return result;
+        }
+      case "select":
+        {
+          Map<String, Value> projections = args.get(0).getMapValue().getFieldsMap();
+          List<Document> result = new ArrayList<>(documents.size());
+          for (Document document : documents) {
+            result.add(
+                document.toBuilder()
+                    .clearFields()
+                    .putAllFields(evaluateFields(projections, document))
+                    .build());
+          }
+          return result;
+        }
+      case "add_fields":
+        {
+          Map<String, Value> fields = args.get(0).getMapValue().getFieldsMap();
+          List<Document> result = new ArrayList<>(documents.size());
+          for (Document document : documents) {
+            Document.Builder builder = document.toBuilder();
+            for (Map.Entry<String, Value> field : fields.entrySet()) {
+              Value value = ExpressionEvaluator.evaluate(field.getValue(), document);
+              if (value != null) {
+                builder.putFields(field.getKey(), value);
+              } else {
+                builder.removeFields(field.getKey());
+              }
+            }
+            result.add(builder.build());
+          }
+          return result;
+        }
+      case "remove_fields":
+        {
+          List<Document> result = new ArrayList<>(documents.size());
+          for (Document document : documents) {
+            Map<String, Value> fields = new LinkedHashMap<>(document.getFieldsMap());
+            for (Value arg : args) {
+              removeField(
+                  fields, FieldPath.fromServerFormat(arg.getFieldReferenceValue()).getSegments());
+            }
+            result.add(document.toBuilder().clearFields().putAllFields(fields).build());
+          }
+          return result;
+        }
+      case "replace_with":
+        return replaceWith(args, documents);
+      case "sort":
+        return sort(args, documents);
+      case "offset":
+        {
+          int offset = (int) Math.min(documents.size(), args.get(0).getIntegerValue());
+          return new ArrayList<>(documents.subList(offset, documents.size()));
+        }
+      case "limit":
+        {
+          int limit = (int) Math.min(documents.size(), args.get(0).getIntegerValue());
+          return new ArrayList<>(documents.subList(0, limit));
+        }
+      case "distinct":
+        {
+          List<Document> result = new ArrayList<>();
+          for (Map<String, Value> key :
+              group(args.get(0).getMapValue().getFieldsMap(), documents).keySet()) {
+            result.add(groupDocument(key));
+          }
+          return result;
+        }
+      case "aggregate":
+        return aggregate(args, documents);
+      case "unnest":
+        return unnest(stage, documents);
+      default:
+        throw unsupportedStage(stage);
+    }
+  }
+
+  private static Map<String, Value> evaluateFields(
+      Map<String, Value> expressions, Document document) {
+    Map<String, Value> fields = new LinkedHashMap<>();
+    for (Map.Entry<String, Value> expression : expressions.entrySet()) {
+      Value value = ExpressionEvaluator.evaluate(expression.getValue(), document);
+      if (value != null) {
+        fields.put(expression.getKey(), value);
+      }
+    }
+    return fields;
+  }
+
+  private static void removeField(Map<String, Value> fields, List<String> segments) {
+    if (segments.size() == 1) {
+      fields.remove(segments.get(0));
+      return;
+    }
+    Value parent = fields.get(segments.get(0));
+    if (parent == null || !parent.hasMapValue()) {
+      return;
+    }
+    Map<String, Value> nested = new LinkedHashMap<>(parent.getMapValue().getFieldsMap());
+    removeField(nested, segments.subList(1, segments.size()));
+    fields.put(
+        segments.get(0),
+        Value.newBuilder().setMapValue(MapValue.newBuilder().putAllFields(nested)).build());
+  }
+
+  private static List<Document> replaceWith(List<Value> args, List<Document> documents) {
+    String mode = args.size() > 1 ? args.get(1).getStringValue() : "full_replace";
+    List<Document> result = new ArrayList<>(documents.size());
+    for (Document document : documents) {
+      Value value = ExpressionEvaluator.evaluate(args.get(0), document);
+      if (value == null || !value.hasMapValue()) {
+        throw new ExpressionEvaluator.EvaluationException(
+            "The 'replace_with' stage requires a map, but got "
+                + (value == null ? "an absent value" : ExpressionEvaluator.typeName(value)));
+      }
+      Map<String, Value> fields = new LinkedHashMap<>();
+      switch (mode) {
+        case "full_replace":
+          fields.putAll(value.getMapValue().getFieldsMap());
+          break;
+        case "merge_prefer_parent":
+          fields.putAll(value.getMapValue().getFieldsMap());
+          fields.putAll(document.getFieldsMap());
+          break;
+        default:
+          fields.putAll(document.getFieldsMap());
+          fields.putAll(value.getMapValue().getFieldsMap());
+          break;
+      }
+      result.add(document.toBuilder().clearFields().putAllFields(fields).build());
+    }
+    return result;
+  }
+
+  private static List<Document> sort(List<Value> orderings, List<Document> documents) {
+    Value[] expressions = new Value[orderings.size()];
+    boolean[] descending = new boolean[orderings.size()];
+    for (int i = 0; i < expressions.length; ++i) {
+      Map<String, Value> ordering = orderings.get(i).getMapValue().getFieldsMap();
+      expressions[i] = ordering.get("expression");
+      descending[i] = "descending".equals(ordering.get("direction").getStringValue());
+    }
+
+    // Sort keys are evaluated once per document rather than for every comparison.
+    List<Map.Entry<Value[], Document>> keyed = new ArrayList<>(documents.size());
+    for (Document document : documents) {
+      Value[] keys = new Value[expressions.length];
+      for (int i = 0; i < keys.length; ++i) {
+        keys[i] = ExpressionEvaluator.evaluate(expressions[i], document);
+      }
+      keyed.add(new AbstractMap.SimpleImmutableEntry<>(keys, document));
+    }
+
+    // The sort is stable, which keeps the input order for documents with equal sort keys.
+    keyed.sort(
+        (left, right) -> {
+          for (int i = 0; i < expressions.length; ++i) {
+            int comparison = compareNullable(left.getKey()[i], right.getKey()[i]);
+            if (comparison != 0) {
+              return descending[i] ? -comparison : comparison;
+            }
+          }
+          return 0;
+        });
+
+    List<Document> result = new ArrayList<>(keyed.size());
+    for (Map.Entry<Value[], Document> entry : keyed) {
+      result.add(entry.getValue());
+    }
+    return result;
+  }
+
+  /** Compares two values in Firestore order. Absent values sort before all other values. */
+  private static int compareNullable(@Nullable Value left, @Nullable Value right) {
+    if (left == null || right == null) {
+      return left == null ? (right == null ? 0 : -1) : 1;
+    }
+    return Order.INSTANCE.compare(left, right);
+  }
+
+  /**
+   * Groups the documents by the values of the group expressions. Groups are keyed and ordered by
+   * their values, and absent values are grouped with null values.
+   */
+  private static TreeMap<Map<String, Value>, List<Document>> group(
+      Map<String, Value> groups, List<Document> documents) {
+    TreeMap<Map<String, Value>, List<Document>> result =
+        new TreeMap<>(
+            (left, right) ->
+                Order.INSTANCE.compareArrays(
+                    new ArrayList<>(left.values()), new ArrayList<>(right.values())));
+    for (Document document : documents) {
+      Map<String, Value> key = new LinkedHashMap<>();
+      for (Map.Entry<String, Value> group : groups.entrySet()) {
+        key.put(
+            group.getKey(),
+            ExpressionEvaluator.orNull(ExpressionEvaluator.evaluate(group.getValue(), document)));
+      }
+      result.computeIfAbsent(key, k -> new ArrayList<>()).add(document);
+    }
+    return result;
+  }
+
+  private static Document groupDocument(Map<String, Value> key) {
+    return Document.newBuilder().putAllFields(key).build();
+  }
+
+  private static List<Document> aggregate(List<Value> args, List<Document> documents) {
+    Map<String, Value> accumulators = args.get(0).getMapValue().getFieldsMap();
+    Map<String, Value> groups =
+        args.size() > 1 ? args.get(1).getMapValue().getFieldsMap() : new LinkedHashMap<>();
+
+    TreeMap<Map<String, Value>, List<Document>> grouped = group(groups, documents);
+    if (groups.isEmpty() && grouped.isEmpty()) {
+      // Aggregations without groups always return a single result.
+      grouped.put(new LinkedHashMap<>(), new ArrayList<>());
+    }
+
+    List<Document> result = new ArrayList<>(grouped.size());
+    for (Map.Entry<Map<String, Value>, List<Document>> group : grouped.entrySet()) {
+      Document.Builder document = groupDocument(group.getKey()).toBuilder();
+      for (Map.Entry<String, Value> accumulator : accumulators.entrySet()) {
+        document.putFields(
+            accumulator.getKey(),
+            accumulate(accumulator.getValue().getFunctionValue(), group.getValue()));
+      }
+      result.add(document.build());
+    }
+    return result;
+  }
+
+  private static Value accumulate(Function accumulator, List<Document> documents) {
+    String name = accumulator.getName();
+    if (name.equals("count") && accumulator.getArgsCount() == 0) {
+      return Value.newBuilder().setIntegerValue(documents.size()).build();
+    }
+    if (accumulator.getArgsCount() != 1) {
+      throw new ExpressionEvaluator.EvaluationException(
+          "Aggregate function '" + name + "' requires 1 argument");
+    }
+
+    // Absent and null values are ignored by all aggregate functions but first and last.
+    Value expression = accumulator.getArgs(0);
+    List<Value> values = new ArrayList<>(documents.size());
+    for (Document document : documents) {
+      Value value = ExpressionEvaluator.evaluate(expression, document);
+      if (name.equals("first") || name.equals("last")) {
+        values.add(ExpressionEvaluator.orNull(value));
+      } else if (value != null && !value.hasNullValue()) {
+        values.add(value);
+      }
+    }
+
+    switch (name) {
+      case "count":
+        return Value.newBuilder().setIntegerValue(values.size()).build();
+      case "count_if":
+        return Value.newBuilder()
+            .setIntegerValue(values.stream().filter(ExpressionEvaluator.TRUE_VALUE::equals).count())
+            .build();
+      case "count_distinct":
+        return Value.newBuilder().setIntegerValue(distinct(values).size()).build();
+      case "sum":
+        return sum(values);
+      case "average":
+        {
+          if (values.isEmpty()) {
+            return NULL_VALUE;
+          }
+          double total = 0;
+          for (Value value : values) {
+            total += toDouble(name, value);
+          }
+          return Value.newBuilder().setDoubleValue(total / values.size()).build();
+        }
+      case "minimum":
+        return values.stream().min(Order.INSTANCE).orElse(NULL_VALUE);
+      case "maximum":
+        return values.stream().max(Order.INSTANCE).orElse(NULL_VALUE);
+      case "first":
+        return values.isEmpty() ? NULL_VALUE : values.get(0);
+      case "last":
+        return values.isEmpty() ? NULL_VALUE : values.get(values.size() - 1);
+      case "array_agg":
+        return ExpressionEvaluator.arrayValue(values);
+      case "array_agg_distinct":
+        return ExpressionEvaluator.arrayValue(new ArrayList<>(distinct(values)));
+      default:
+        throw new UnsupportedOperationException(
+            "Aggregate function '" + name + "' cannot be evaluated locally");
+    }
+  }
+
+  private static TreeSet<Value> distinct(List<Value> values) {
+    TreeSet<Value> result = new TreeSet<>(Order.INSTANCE);
+    result.addAll(values);
+    return result;
+  }
+
+  /** Sums the values. The sum is an integer unless it contains a double or overflows. */
+  private static Value sum(List<Value> values) {
+    long integerSum = 0;
+    double doubleSum = 0;
+    boolean isDouble = false;
+    for (Value value : values) {
+      if (!isDouble && value.hasIntegerValue()) {
+        try {
+          integerSum = Math.addExact(integerSum, value.getIntegerValue());
+          continue;
+        } catch (ArithmeticException e) {
+          isDouble = true;
+          doubleSum = integerSum;
+        }
+      } else if (!isDouble) {
+        isDouble = true;
+        doubleSum = integerSum;
+      }
+      doubleSum += toDouble("sum", value);
+    }
+    return isDouble
+        ? Value.newBuilder().setDoubleValue(doubleSum).build()
+        : Value.newBuilder().setIntegerValue(integerSum).build();
+  }
+
+  private static double toDouble(String name, Value value) {
+    if (value.hasIntegerValue()) {
+      return value.getIntegerValue();
+    } else if (value.hasDoubleValue()) {
+      return value.getDoubleValue();
+    }
+    throw new ExpressionEvaluator.EvaluationException(
+        "Aggregate function '"
+            + name
+            + "' expected number but got "
+            + ExpressionEvaluator.typeName(value));
+  }
+
+  /**
+   * Returns one document for every element of the unnested array. Documents for which the
+   * expression is not an array, or is an empty array, are dropped.
+   */
+  private static List<Document> unnest(Pipeline.Stage stage, List<Document> documents) {
+    Value expression = stage.getArgs(0);
+    String alias = fieldName(stage.getArgs(1));
+    Value indexField = stage.getOptionsMap().get("index_field");
+
+    List<Document> result = new ArrayList<>();
+    for (Document document : documents) {
+      Value array = ExpressionEvaluator.evaluate(expression, document);
+      if (array == null || !array.hasArrayValue()) {
+        continue;
+      }
+      List<Value> elements = array.getArrayValue().getValuesList();
+      for (int i = 0; i < elements.size(); ++i) {
+        Document.Builder element = document.toBuilder().putFields(alias, elements.get(i));
+        if (indexField != null) {
+          element.putFields(fieldName(indexField), Value.newBuilder().setIntegerValue(i).build());
+        }
+        result.add(element.build());
+      }
+    }
+    return result;
+  }
+
+  /** Returns the name of the top-level field that the field reference points to. */
+  private static String fieldName(Value fieldReference) {
+    return FieldPath.fromServerFormat(fieldReference.getFieldReferenceValue()).getSegments().get(0);
+  }
+
+  private static UnsupportedOperationException unsupportedStage(Pipeline.Stage stage) {
+    return new UnsupportedOperationException(
+        "The '" + stage.getName() + "' stage cannot be evaluated locally");
+  }
+}
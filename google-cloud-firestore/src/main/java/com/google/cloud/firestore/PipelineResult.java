@@ -50,6 +50,7 @@ public final class PipelineResult {
   @Nonnull private final Timestamp executionTime;
   @Nullable private final Timestamp updateTime;
   @Nullable private final Timestamp createTime;
+  @Nullable private volatile Map<String, Object> lazyData;
 
   PipelineResult(
       FirestoreRpcContext<?> rpcContext,
@@ -149,6 +150,31 @@ public final class PipelineResult {
     return decodedFields;
   }
 
+  /**
+   * Returns the fields of the result as an unmodifiable Map or null if the result doesn't exist.
+   * Unlike {@link #getData()}, field values are only converted to their native Java representation
+   * when they are first read, and the converted values are cached. Nested maps and lists are
+   * returned as unmodifiable views that are converted in the same way.
+   *
+   * <p>Use this method instead of {@link #getData()} if only a small subset of the fields of a
+   * large result is read.
+   *
+   * @return The fields of the result as a Map or null if the result doesn't exist.
+   */
+  @Nullable
+  public Map<String, Object> getLazyData() {
+    if (fields == null) {
+      return null;
+    }
+
+    Map<String, Object> data = lazyData;
+    if (data == null) {
+      data = new LazyDataMap(rpcContext, fields);
+      lazyData = data;
+    }
+    return data;
+  }
+
   /**
    * Returns the contents of the document converted to a POJO or null if the result doesn't exist.
    *
@@ -158,8 +184,10 @@ public final class PipelineResult {
    */
   @Nullable
   <T> T toObject(@Nonnull Class<T> valueType) {
-    Map<String, Object> data = getData();
-    return data == null ? null : CustomClassMapper.convertToCustomClass(data, valueType, docRef);
+    return fields == null
+        ? null
+        : CustomClassMapper.convertToCustomClass(
+            fields, valueType, docRef, value -> UserDataConverter.decodeValue(rpcContext, value));
   }
 
   /**
@@ -235,8 +263,11 @@ public final class PipelineResult {
    */
   @Nullable
   public <T> T get(@Nonnull FieldPath fieldPath, Class<T> valueType) {
-    Object data = get(fieldPath);
-    return data == null ? null : CustomClassMapper.convertToCustomClass(data, valueType, docRef);
+    Value value = extractField(fieldPath);
+    return value == null
+        ? null
+        : CustomClassMapper.convertToCustomClass(
+            value, valueType, docRef, v -> UserDataConverter.decodeValue(rpcContext, v));
   }
 
   /** Returns the Value Proto at 'fieldPath'. Returns null if the field was not found. */
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.api.gax.rpc.StreamController;
+
+/**
+ * A blocking iterator over the results of a pipeline stream that buffers a bounded number of
+ * results.
+ *
+ * <p>Each {@code ExecutePipelineResponse} contains a batch of results whose size is chosen by the
+ * backend, so flow control is applied per response rather than per result. The iterator requests
+ * one response at a time, and only while fewer than {@code prefetch} results are buffered. The
+ * buffer therefore never holds more than {@code prefetch} results plus the results of one response.
+ */
+final class PipelineResultIterator extends BufferedStreamIterator<PipelineResult> {
+  private final int prefetch;
+
+  PipelineResultIterator(int prefetch) {
+    this.prefetch = prefetch;
+  }
+
+  @Override
+  int getRequestCountLocked(int bufferedCount, int outstandingMessages) {
+    return outstandingMessages == 0 && bufferedCount < prefetch ? 1 : 0;
+  }
+
+  /**
+   * Returns the observer that feeds the iterator. Must be passed to exactly one pipeline stream.
+   */
+  Pipeline.PipelineResultObserver getObserver() {
+    return new Pipeline.PipelineResultObserver() {
+      @Override
+      void onStart(StreamController streamController) {
+        start(streamController);
+      }
+
+      @Override
+      public void onNext(PipelineResult result) {
+        add(result);
+      }
+
+      @Override
+      void onResponseEnd() {
+        endMessage();
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        finish(throwable);
+      }
+
+      @Override
+      public void onCompleted() {
+        finish(null);
+      }
+    };
+  }
+}
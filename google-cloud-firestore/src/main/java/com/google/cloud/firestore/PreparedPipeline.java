@@ -0,0 +1,336 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.BetaApi;
+import com.google.cloud.firestore.pipeline.stages.PipelineExecuteOptions;
+import com.google.common.collect.ImmutableSet;
+import com.google.firestore.v1.ArrayValue;
+import com.google.firestore.v1.Function;
+import com.google.firestore.v1.MapValue;
+import com.google.firestore.v1.Pipeline.Stage;
+import com.google.firestore.v1.Value;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Pipeline} that has been serialized once for repeated execution with different parameter
+ * values. Created by {@link Pipeline#prepare()}.
+ *
+ * <p>The parameters of a prepared pipeline are the variables that it references with {@link
+ * com.google.cloud.firestore.pipeline.expressions.Expression#variable(String)} but does not bind
+ * with {@link Pipeline#define}. Each execution replaces the references with the supplied values and
+ * reuses the rest of the serialized pipeline.
+ *
+ * <p>Instances are immutable and can be executed concurrently.
+ */
+@BetaApi
+public final class PreparedPipeline {
+
+  /** The name of the stage that binds variables, which {@link Pipeline#define} creates. */
+  private static final String DEFINE_STAGE = "let";
+
+  private final Pipeline pipeline;
+  private final com.google.firestore.v1.Pipeline proto;
+  @Nullable private final Node parameterPositions;
+  private final Set<String> parameterNames;
+
+  PreparedPipeline(Pipeline pipeline) {
+    this.pipeline = pipeline;
+    this.proto = pipeline.toProto();
+
+    Set<String> referenced = new LinkedHashSet<>();
+    Set<String> defined = new HashSet<>();
+    findDefinitions(proto, defined);
+    this.parameterPositions = scan(proto, defined, referenced);
+    this.parameterNames = ImmutableSet.copyOf(referenced);
+  }
+
+  /** Returns the pipeline that was prepared. */
+  @Nonnull
+  public Pipeline getPipeline() {
+    return pipeline;
+  }
+
+  /** Returns the names of the parameters that must be supplied on each execution. */
+  @Nonnull
+  public Set<String> getParameterNames() {
+    return parameterNames;
+  }
+
+  /**
+   * Executes the pipeline with the given parameter values.
+   *
+   * @param parameters The value of each parameter, keyed by parameter name. Values are encoded like
+   *     {@link com.google.cloud.firestore.pipeline.expressions.Expression#constant(Object)}.
+   * @return An {@link ApiFuture} representing the asynchronous pipeline execution.
+   * @throws IllegalArgumentException If a parameter is missing or a value is given for a name that
+   *     is not a parameter.
+   */
+  @Nonnull
+  public ApiFuture<Pipeline.Snapshot> execute(@Nonnull Map<String, ?> parameters) {
+    return execute(parameters, new PipelineExecuteOptions());
+  }
+
+  /**
+   * Executes the pipeline with the given parameter values and options.
+   *
+   * @param parameters The value of each parameter, keyed by parameter name. Values are encoded like
+   *     {@link com.google.cloud.firestore.pipeline.expressions.Expression#constant(Object)}.
+   * @param options Options for the execution.
+   * @return An {@link ApiFuture} representing the asynchronous pipeline execution.
+   * @throws IllegalArgumentException If a parameter is missing or a value is given for a name that
+   *     is not a parameter.
+   */
+  @Nonnull
+  public ApiFuture<Pipeline.Snapshot> execute(
+      @Nonnull Map<String, ?> parameters, @Nonnull PipelineExecuteOptions options) {
+    return pipeline.execute(toProto(parameters), options, null, null);
+  }
+
+  /** Returns the serialized pipeline with the parameters replaced by the given values. */
+  com.google.firestore.v1.Pipeline toProto(Map<String, ?> parameters) {
+    for (String name : parameters.keySet()) {
+      if (!parameterNames.contains(name)) {
+        throw new IllegalArgumentException(
+            String.format("'%s' is not a parameter of the pipeline", name));
+      }
+    }
+    Map<String, Value> values = new HashMap<>();
+    for (String name : parameterNames) {
+      if (!parameters.containsKey(name)) {
+        throw new IllegalArgumentException(
+            String.format("Missing value for pipeline parameter '%s'", name));
+      }
+      values.put(name, PipelineUtils.encodeValue(parameters.get(name)));
+    }
+    return parameterPositions == null ? proto : bindPipeline(proto, parameterPositions, values);
+  }
+
+  /**
+   * The positions of parameter references within a serialized pipeline, stage or value. Only
+   * positions that lead to a parameter reference are recorded, so that binding only rebuilds the
+   * messages on the path to each reference and shares all other messages with the cached proto.
+   */
+  private static final class Node {
+    /** The parameter name, if this position is a parameter reference. */
+    @Nullable String parameter;
+
+    /** Stages of a pipeline, arguments of a stage or function, or elements of an array. */
+    final Map<Integer, Node> indexed = new LinkedHashMap<>();
+
+    /** Options of a stage or function, or fields of a map. */
+    final Map<String, Node> keyed = new LinkedHashMap<>();
+
+    boolean isEmpty() {
+      return parameter == null && indexed.isEmpty() && keyed.isEmpty();
+    }
+  }
+
+  private static void findDefinitions(
+      com.google.firestore.v1.Pipeline pipeline, Set<String> names) {
+    for (Stage stage : pipeline.getStagesList()) {
+      if (DEFINE_STAGE.equals(stage.getName())) {
+        for (Value arg : stage.getArgsList()) {
+          names.addAll(arg.getMapValue().getFieldsMap().keySet());
+        }
+      }
+      for (Value arg : stage.getArgsList()) {
+        findDefinitions(arg, names);
+      }
+      for (Value option : stage.getOptionsMap().values()) {
+        findDefinitions(option, names);
+      }
+    }
+  }
+
+  private static void findDefinitions(Value value, Set<String> names) {
+    switch (value.getValueTypeCase()) {
+      case PIPELINE_VALUE:
+        findDefinitions(value.getPipelineValue(), names);
+        break;
+      case FUNCTION_VALUE:
+        for (Value arg : value.getFunctionValue().getArgsList()) {
+          findDefinitions(arg, names);
+        }
+        for (Value option : value.getFunctionValue().getOptionsMap().values()) {
+          findDefinitions(option, names);
+        }
+        break;
+      case ARRAY_VALUE:
+        for (Value element : value.getArrayValue().getValuesList()) {
+          findDefinitions(element, names);
+        }
+        break;
+      case MAP_VALUE:
+        for (Value field : value.getMapValue().getFieldsMap().values()) {
+          findDefinitions(field, names);
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Nullable
+  private static Node scan(
+      com.google.firestore.v1.Pipeline pipeline, Set<String> defined, Set<String> parameters) {
+    Node node = new Node();
+    for (int i = 0; i < pipeline.getStagesCount(); ++i) {
+      Stage stage = pipeline.getStages(i);
+      Node child = scan(stage.getArgsList(), stage.getOptionsMap(), defined, parameters);
+      if (child != null) {
+        node.indexed.put(i, child);
+      }
+    }
+    return node.isEmpty() ? null : node;
+  }
+
+  @Nullable
+  private static Node scan(
+      List<Value> args, Map<String, Value> options, Set<String> defined, Set<String> parameters) {
+    Node node = new Node();
+    for (int i = 0; i < args.size(); ++i) {
+      Node child = scan(args.get(i), defined, parameters);
+      if (child != null) {
+        node.indexed.put(i, child);
+      }
+    }
+    for (Map.Entry<String, Value> option : options.entrySet()) {
+      Node child = scan(option.getValue(), defined, parameters);
+      if (child != null) {
+        node.keyed.put(option.getKey(), child);
+      }
+    }
+    return node.isEmpty() ? null : node;
+  }
+
+  @Nullable
+  private static Node scan(Value value, Set<String> defined, Set<String> parameters) {
+    switch (value.getValueTypeCase()) {
+      case VARIABLE_REFERENCE_VALUE:
+        String name = value.getVariableReferenceValue();
+        if (defined.contains(name)) {
+          return null;
+        }
+        parameters.add(name);
+        Node node = new Node();
+        node.parameter = name;
+        return node;
+      case FUNCTION_VALUE:
+        Function function = value.getFunctionValue();
+        return scan(function.getArgsList(), function.getOptionsMap(), defined, parameters);
+      case ARRAY_VALUE:
+        return scan(
+            value.getArrayValue().getValuesList(),
+            Collections.<String, Value>emptyMap(),
+            defined,
+            parameters);
+      case MAP_VALUE:
+        return scan(
+            Collections.<Value>emptyList(),
+            value.getMapValue().getFieldsMap(),
+            defined,
+            parameters);
+      case PIPELINE_VALUE:
+        return scan(value.getPipelineValue(), defined, parameters);
+      default:
+        return null;
+    }
+  }
+
+  private static com.google.firestore.v1.Pipeline bindPipeline(
+      com.google.firestore.v1.Pipeline pipeline, Node node, Map<String, Value> values) {
+    com.google.firestore.v1.Pipeline.Builder builder = pipeline.toBuilder();
+    for (Map.Entry<Integer, Node> stage : node.indexed.entrySet()) {
+      int index = stage.getKey();
+      builder.setStages(index, bindStage(pipeline.getStages(index), stage.getValue(), values));
+    }
+    return builder.build();
+  }
+
+  private static Stage bindStage(Stage stage, Node node, Map<String, Value> values) {
+    Stage.Builder builder = stage.toBuilder();
+    for (Map.Entry<Integer, Node> arg : node.indexed.entrySet()) {
+      int index = arg.getKey();
+      builder.setArgs(index, bindValue(stage.getArgs(index), arg.getValue(), values));
+    }
+    for (Map.Entry<String, Node> option : node.keyed.entrySet()) {
+      String key = option.getKey();
+      builder.putOptions(key, bindValue(stage.getOptionsOrThrow(key), option.getValue(), values));
+    }
+    return builder.build();
+  }
+
+  private static Value bindValue(Value value, Node node, Map<String, Value> values) {
+    if (node.parameter != null) {
+      return values.get(node.parameter);
+    }
+    switch (value.getValueTypeCase()) {
+      case FUNCTION_VALUE:
+        {
+          Function function = value.getFunctionValue();
+          Function.Builder builder = function.toBuilder();
+          for (Map.Entry<Integer, Node> arg : node.indexed.entrySet()) {
+            int index = arg.getKey();
+            builder.setArgs(index, bindValue(function.getArgs(index), arg.getValue(), values));
+          }
+          for (Map.Entry<String, Node> option : node.keyed.entrySet()) {
+            String key = option.getKey();
+            builder.putOptions(
+                key, bindValue(function.getOptionsOrThrow(key), option.getValue(), values));
+          }
+          return Value.newBuilder().setFunctionValue(builder).build();
+        }
+      case ARRAY_VALUE:
+        {
+          ArrayValue array = value.getArrayValue();
+          ArrayValue.Builder builder = array.toBuilder();
+          for (Map.Entry<Integer, Node> element : node.indexed.entrySet()) {
+            int index = element.getKey();
+            builder.setValues(index, bindValue(array.getValues(index), element.getValue(), values));
+          }
+          return Value.newBuilder().setArrayValue(builder).build();
+        }
+      case MAP_VALUE:
+        {
+          MapValue map = value.getMapValue();
+          MapValue.Builder builder = map.toBuilder();
+          for (Map.Entry<String, Node> field : node.keyed.entrySet()) {
+            String key = field.getKey();
+            builder.putFields(key, bindValue(map.getFieldsOrThrow(key), field.getValue(), values));
+          }
+          return Value.newBuilder().setMapValue(builder).build();
+        }
+      case PIPELINE_VALUE:
+        return Value.newBuilder()
+            .setPipelineValue(bindPipeline(value.getPipelineValue(), node, values))
+            .build();
+      default:
+        throw new IllegalStateException("Unexpected value type: " + value.getValueTypeCase());
+    }
+  }
+}
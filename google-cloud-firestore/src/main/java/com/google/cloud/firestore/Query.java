@@ -32,9 +32,12 @@ import static com.google.firestore.v1.StructuredQuery.FieldFilter.Operator.NOT_E
 import static com.google.firestore.v1.StructuredQuery.FieldFilter.Operator.NOT_IN;
 
 import com.google.api.core.ApiFuture;
+import com.google.api.core.BetaApi;
 import com.google.api.core.InternalExtensionOnly;
 import com.google.api.core.SettableApiFuture;
 import com.google.api.gax.rpc.ApiStreamObserver;
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.StreamController;
 import com.google.auto.value.AutoValue;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.Query.QueryOptions.Builder;
@@ -73,9 +76,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.TreeSet;
 import java.util.concurrent.Executor;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -339,9 +346,15 @@ public class Query extends StreamableQuery<QuerySnapshot> {
   }
 
   static final class FieldOrder implements Comparator<QueryDocumentSnapshot> {
+    private static final Value NULL_VALUE =
+        Value.newBuilder().setNullValue(com.google.protobuf.NullValue.NULL_VALUE).build();
+
     private final FieldReference fieldReference;
     private final Direction direction;
 
+    /** The parsed field path, which is only computed once the order is used for comparisons. */
+    @Nullable private FieldPath fieldPath;
+
     FieldOrder(FieldReference fieldReference, Direction direction) {
       this.fieldReference = fieldReference;
       this.direction = direction;
@@ -375,22 +388,23 @@ public class Query extends StreamableQuery<QuerySnapshot> {
 
     @Override
     public int compare(QueryDocumentSnapshot left, QueryDocumentSnapshot right) {
-      Value leftValue =
-          left.extractField(FieldPath.fromDotSeparatedString(fieldReference.getFieldPath()));
-      Value rightValue =
-          right.extractField(FieldPath.fromDotSeparatedString(fieldReference.getFieldPath()));
+      return compareValues(extractValue(left), extractValue(right));
+    }
 
-      // If the field isn't present, we treat it as a null value.
-      if (leftValue == null) {
-        leftValue =
-            Value.newBuilder().setNullValue(com.google.protobuf.NullValue.NULL_VALUE).build();
-      }
-      if (rightValue == null) {
-        rightValue =
-            Value.newBuilder().setNullValue(com.google.protobuf.NullValue.NULL_VALUE).build();
+    /** Returns the value that the document is ordered by, or a null value if it is missing. */
+    Value extractValue(QueryDocumentSnapshot document) {
+      FieldPath path = fieldPath;
+      if (path == null) {
+        path = FieldPath.fromDotSeparatedString(fieldReference.getFieldPath());
+        fieldPath = path;
       }
+      Value value = document.extractField(path);
+      // If the field isn't present, we treat it as a null value.
+      return value != null ? value : NULL_VALUE;
+    }
 
-      int cmp = com.google.cloud.firestore.Order.INSTANCE.compare(leftValue, rightValue);
+    int compareValues(Value left, Value right) {
+      int cmp = com.google.cloud.firestore.Order.INSTANCE.compare(left, right);
 
       if (direction == Direction.DESCENDING) {
         cmp = -cmp;
@@ -400,6 +414,48 @@ public class Query extends StreamableQuery<QuerySnapshot> {
     }
   }
 
+  /**
+   * Orders query results by the query's field orders and then by document ID.
+   *
+   * <p>The values that a document is ordered by are extracted once per document and cached on the
+   * snapshot, so that sorting a result set only compares the extracted values.
+   */
+  static final class SortKeyComparator implements Comparator<QueryDocumentSnapshot> {
+    private final FieldOrder[] fieldOrders;
+    private final Comparator<QueryDocumentSnapshot> documentIdComparator;
+
+    SortKeyComparator(List<FieldOrder> fieldOrders) {
+      this.fieldOrders = fieldOrders.toArray(new FieldOrder[0]);
+      // Add implicit sorting by name, using the last specified direction.
+      this.documentIdComparator =
+          this.fieldOrders[this.fieldOrders.length - 1].direction.documentIdComparator;
+    }
+
+    @Override
+    public int compare(QueryDocumentSnapshot left, QueryDocumentSnapshot right) {
+      if (left == right) {
+        return 0;
+      }
+      Value[] leftValues = left.getSortValues(this);
+      Value[] rightValues = right.getSortValues(this);
+      for (int i = 0; i < fieldOrders.length; ++i) {
+        int cmp = fieldOrders[i].compareValues(leftValues[i], rightValues[i]);
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return documentIdComparator.compare(left, right);
+    }
+
+    Value[] extractValues(QueryDocumentSnapshot document) {
+      Value[] values = new Value[fieldOrders.length];
+      for (int i = 0; i < fieldOrders.length; ++i) {
+        values[i] = fieldOrders[i].extractValue(document);
+      }
+      return values;
+    }
+  }
+
   /** Denotes whether a provided limit is applied to the beginning or the end of the result set. */
   enum LimitType {
     First,
@@ -496,6 +552,9 @@ public class Query extends StreamableQuery<QuerySnapshot> {
             .build());
   }
 
+  /** The serialized form of this query, which is built on first use. */
+  @Nullable private volatile StructuredQuery structuredQuery;
+
   protected Query(FirestoreRpcContext<?> rpcContext, QueryOptions queryOptions) {
     super(rpcContext, queryOptions);
   }
@@ -1392,7 +1451,143 @@ public class Query extends StreamableQuery<QuerySnapshot> {
 
   /** Build the final Firestore query. */
   StructuredQuery.Builder buildQuery() {
-    return buildQuery(/* forceImplicitOrderBy= */ false);
+    return toStructuredQuery().toBuilder();
+  }
+
+  /**
+   * Returns the final Firestore query. Since queries are immutable, the query is only built once
+   * and reused by all requests for this query.
+   */
+  StructuredQuery toStructuredQuery() {
+    StructuredQuery query = structuredQuery;
+    if (query == null) {
+      query = buildQuery(/* forceImplicitOrderBy= */ false).build();
+      structuredQuery = query;
+    }
+    return query;
+  }
+
+  /**
+   * Returns a template of this query, which creates queries that differ from this query only in the
+   * values of their filters and cursors.
+   *
+   * <p>Queries created from a template reuse the validated constraints and the serialized form of
+   * this query, which is cheaper than building each query from scratch when the same query shape is
+   * run with different values.
+   *
+   * <p>Example:
+   *
+   * <pre>{@code
+   * QueryTemplate template = firestore.collection("cities")
+   *     .whereEqualTo("state", "CA")
+   *     .whereGreaterThan("population", 0)
+   *     .toTemplate();
+   * Query query = template.bind(Arrays.asList("WA", 100000));
+   * }</pre>
+   *
+   * @return A {@link QueryTemplate} for this query.
+   */
+  @BetaApi
+  @Nonnull
+  public QueryTemplate toTemplate() {
+    return new QueryTemplate(this);
+  }
+
+  /**
+   * Returns the comparison filters of this query, which are the filters that {@link #withValues}
+   * replaces.
+   */
+  List<ComparisonFilterInternal> getComparisonFilters() {
+    List<ComparisonFilterInternal> result = new ArrayList<>();
+    for (FilterInternal filter : options.getFilters()) {
+      for (FieldFilterInternal fieldFilter : filter.getFlattenedFilters()) {
+        if (fieldFilter instanceof ComparisonFilterInternal) {
+          result.add((ComparisonFilterInternal) fieldFilter);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a query with the same constraints as this query, but with new values for its comparison
+   * filters and cursors.
+   *
+   * @param filterValues The new values of the filters returned by {@link #getComparisonFilters()},
+   *     in the same order.
+   * @param startValues The new values of the start cursor, or null to keep the current cursor.
+   * @param endValues The new values of the end cursor, or null to keep the current cursor.
+   */
+  Query withValues(
+      List<?> filterValues, @Nullable List<?> startValues, @Nullable List<?> endValues) {
+    Iterator<?> values = filterValues.iterator();
+    ImmutableList.Builder<FilterInternal> filters = ImmutableList.builder();
+    for (FilterInternal filter : options.getFilters()) {
+      filters.add(withValues(filter, values));
+    }
+    Preconditions.checkArgument(
+        !values.hasNext(), "Too many filter values specified for the query template.");
+
+    Builder newOptions = options.toBuilder().setFilters(filters.build());
+    if (startValues != null) {
+      newOptions.setStartCursor(withValues(options.getStartCursor(), startValues, "start"));
+    }
+    if (endValues != null) {
+      newOptions.setEndCursor(withValues(options.getEndCursor(), endValues, "end"));
+    }
+    Query query = new Query(rpcContext, newOptions.build());
+
+    // The cursors of limitToLast() queries are swapped when serialized, so these queries are
+    // serialized on first use instead.
+    if (LimitType.First.equals(options.getLimitType())) {
+      StructuredQuery.Builder proto = toStructuredQuery().toBuilder();
+      if (!query.options.getFilters().isEmpty()) {
+        proto.setWhere(
+            new CompositeFilterInternal(query.options.getFilters(), CompositeFilter.Operator.AND)
+                .toProto());
+      }
+      if (query.options.getStartCursor() != null) {
+        proto.setStartAt(query.options.getStartCursor());
+      }
+      if (query.options.getEndCursor() != null) {
+        proto.setEndAt(query.options.getEndCursor());
+      }
+      query.structuredQuery = proto.build();
+    }
+    return query;
+  }
+
+  private FilterInternal withValues(FilterInternal filter, Iterator<?> values) {
+    if (filter instanceof ComparisonFilterInternal) {
+      ComparisonFilterInternal comparison = (ComparisonFilterInternal) filter;
+      Preconditions.checkArgument(
+          values.hasNext(), "Too few filter values specified for the query template.");
+      FieldPath fieldPath = FieldPath.fromServerFormat(comparison.fieldReference.getFieldPath());
+      FieldFilterInternal result =
+          parseFieldFilter(
+              new com.google.cloud.firestore.Filter.UnaryFilter(
+                  fieldPath, comparison.operator, values.next()));
+      Preconditions.checkArgument(
+          result instanceof ComparisonFilterInternal,
+          "Cannot use null or NaN as the value of the '%s' filter on '%s' of a query template.",
+          comparison.operator,
+          fieldPath);
+      return result;
+    } else if (filter instanceof CompositeFilterInternal) {
+      CompositeFilterInternal composite = (CompositeFilterInternal) filter;
+      List<FilterInternal> filters = new ArrayList<>(composite.getFilters().size());
+      for (FilterInternal subfilter : composite.getFilters()) {
+        filters.add(withValues(subfilter, values));
+      }
+      return new CompositeFilterInternal(filters, composite.getOperator());
+    }
+    return filter;
+  }
+
+  private Cursor withValues(@Nullable Cursor cursor, List<?> values, String name) {
+    Preconditions.checkArgument(
+        cursor != null, "The query template does not have an %s cursor.", name);
+    return createCursor(options.getFieldOrders(), values.toArray(), cursor.getBefore());
   }
 
   /**
@@ -1569,11 +1764,134 @@ public class Query extends StreamableQuery<QuerySnapshot> {
         new MonitoredStreamResponseObserver(observer, metricsContext),
         /* startTimeNanos= */ rpcContext.getClock().nanoTime(),
         /* transactionId= */ null,
+        /* newTransaction= */ null,
+        /* readTime= */ null,
+        /* explainOptions= */ null,
+        /* isRetryRequestWithCursor= */ false);
+  }
+
+  /**
+   * Executes the query and streams the results to the given observer, which controls how fast
+   * results are delivered.
+   *
+   * <p>The observer receives a {@link StreamController} in {@link
+   * ResponseObserver#onStart(StreamController)}. By default, results are delivered as fast as they
+   * arrive, just like with {@link #stream(ApiStreamObserver)}. To apply backpressure, call {@link
+   * StreamController#disableAutoInboundFlowControl()} in {@code onStart()} and then use {@link
+   * StreamController#request(int)} to request documents as the observer is ready to process them.
+   * Firestore only sends as many documents as were requested, which bounds the number of documents
+   * that are buffered when the observer is slower than the backend. The remaining demand is carried
+   * over if the query is retried after a transient error.
+   *
+   * @param responseObserver The observer to be notified when results arrive.
+   */
+  public void streamWithFlowControl(
+      @Nonnull final ResponseObserver<DocumentSnapshot> responseObserver) {
+    Preconditions.checkState(
+        !LimitType.Last.equals(Query.this.options.getLimitType()),
+        "Query results for queries that include limitToLast() constraints cannot be streamed. "
+            + "Use Query.get() instead.");
+
+    MetricsContext metricsContext =
+        createMetricsContext(TelemetryConstants.METHOD_NAME_RUN_QUERY_GET);
+
+    QueryStreamController flowController = new QueryStreamController();
+    responseObserver.onStart(flowController);
+    flowController.markStarted();
+
+    ApiStreamObserver<RunQueryResponse> observer =
+        new ApiStreamObserver<RunQueryResponse>() {
+          @Override
+          public void onNext(RunQueryResponse runQueryResponse) {
+            if (runQueryResponse.hasDocument()) {
+              Document document = runQueryResponse.getDocument();
+              QueryDocumentSnapshot documentSnapshot =
+                  QueryDocumentSnapshot.fromDocument(
+                      rpcContext, Timestamp.fromProto(runQueryResponse.getReadTime()), document);
+              responseObserver.onResponse(documentSnapshot);
+            }
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            responseObserver.onError(throwable);
+          }
+
+          @Override
+          public void onCompleted() {
+            responseObserver.onComplete();
+          }
+        };
+
+    internalStream(
+        new MonitoredStreamResponseObserver(observer, metricsContext, flowController),
+        /* startTimeNanos= */ rpcContext.getClock().nanoTime(),
+        /* transactionId= */ null,
+        /* newTransaction= */ null,
         /* readTime= */ null,
         /* explainOptions= */ null,
         /* isRetryRequestWithCursor= */ false);
   }
 
+  /**
+   * Returns an Iterable over the results of this query that holds at most {@code prefetch}
+   * documents in memory. Unlike {@link #get()}, this allows iterating over queries of any size with
+   * constant memory.
+   *
+   * <p>Every call to {@link Iterable#iterator()} executes the query. The iterator's methods block
+   * until the next document has arrived, and throw a {@link FirestoreException} if the query fails.
+   * Queries are resumed after the last received document when a retryable error occurs, as with
+   * {@link #stream(ApiStreamObserver)}. If iteration is abandoned before all results are consumed,
+   * the query is only cancelled when its deadline expires. Use {@link #streamAsStream(int)} to
+   * cancel the query explicitly.
+   *
+   * @param prefetch The maximum number of documents that are buffered or requested ahead of the
+   *     consumer.
+   * @return An Iterable over the query results.
+   */
+  @Nonnull
+  public Iterable<QueryDocumentSnapshot> streamAsIterable(int prefetch) {
+    checkStreamable(prefetch);
+    return () -> startDocumentIterator(prefetch);
+  }
+
+  /**
+   * Executes the query and returns a sequential {@link Stream} of its results that holds at most
+   * {@code prefetch} documents in memory. See {@link #streamAsIterable(int)}.
+   *
+   * <p>The query starts executing when this method is called. Closing the returned stream cancels
+   * the query if it is still running, so streams that may not be consumed completely should be used
+   * in a try-with-resources statement.
+   *
+   * @param prefetch The maximum number of documents that are buffered or requested ahead of the
+   *     consumer.
+   * @return A Stream of the query results.
+   */
+  @Nonnull
+  public Stream<QueryDocumentSnapshot> streamAsStream(int prefetch) {
+    checkStreamable(prefetch);
+    QueryDocumentIterator iterator = startDocumentIterator(prefetch);
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+            /* parallel= */ false)
+        .onClose(iterator::close);
+  }
+
+  private void checkStreamable(int prefetch) {
+    Preconditions.checkState(
+        !LimitType.Last.equals(Query.this.options.getLimitType()),
+        "Query results for queries that include limitToLast() constraints cannot be streamed. "
+            + "Use Query.get() instead.");
+    Preconditions.checkArgument(prefetch > 0, "prefetch must be positive.");
+  }
+
+  QueryDocumentIterator startDocumentIterator(int prefetch) {
+    QueryDocumentIterator iterator = new QueryDocumentIterator(prefetch);
+    streamWithFlowControl(iterator.getObserver());
+    return iterator;
+  }
+
   /**
    * Executes the query, streams the results as a StreamObserver of DocumentSnapshots, and returns
    * an ApiFuture that will be resolved with the associated {@link ExplainMetrics}.
@@ -1633,6 +1951,7 @@ public class Query extends StreamableQuery<QuerySnapshot> {
         new MonitoredStreamResponseObserver(observer, metricsContext),
         /* startTimeNanos= */ rpcContext.getClock().nanoTime(),
         /* transactionId= */ null,
+        /* newTransaction= */ null,
         /* readTime= */ null,
         /* explainOptions= */ options,
         /* isRetryRequestWithCursor= */ false);
@@ -1650,18 +1969,19 @@ public class Query extends StreamableQuery<QuerySnapshot> {
    * @return the serialized RunQueryRequest
    */
   public RunQueryRequest toProto() {
-    return toRunQueryRequestBuilder(null, null, null).build();
+    return toRunQueryRequestBuilder(null, null, null, null).build();
   }
 
   @Override
   protected RunQueryRequest.Builder toRunQueryRequestBuilder(
       @Nullable final ByteString transactionId,
+      @Nullable final com.google.firestore.v1.TransactionOptions newTransaction,
       @Nullable final Timestamp readTime,
       @Nullable ExplainOptions explainOptions) {
 
     // Builder for RunQueryRequest
     RunQueryRequest.Builder request = RunQueryRequest.newBuilder();
-    request.setStructuredQuery(buildQuery());
+    request.setStructuredQuery(toStructuredQuery());
     request.setParent(options.getParentPath().toString());
     if (explainOptions != null) {
       request.setExplainOptions(explainOptions.toProto());
@@ -1669,6 +1989,9 @@ public class Query extends StreamableQuery<QuerySnapshot> {
     if (transactionId != null) {
       request.setTransaction(transactionId);
     }
+    if (newTransaction != null) {
+      request.setNewTransaction(newTransaction);
+    }
     if (readTime != null) {
       request.setReadTime(readTime.toProto());
     }
@@ -1696,6 +2019,21 @@ public class Query extends StreamableQuery<QuerySnapshot> {
     return fromProto((FirestoreRpcContext<?>) firestore, proto);
   }
 
+  /** Returns the query that a bundle element, written by {@link FirestoreBundle}, describes. */
+  static Query fromBundledQuery(FirestoreRpcContext<?> rpcContext, BundledQuery bundledQuery) {
+    Query query =
+        fromProto(
+            rpcContext,
+            RunQueryRequest.newBuilder()
+                .setParent(bundledQuery.getParent())
+                .setStructuredQuery(bundledQuery.getStructuredQuery())
+                .build());
+    if (bundledQuery.getLimitType() == BundledQuery.LimitType.LAST) {
+      query = new Query(rpcContext, query.options.toBuilder().setLimitType(LimitType.Last).build());
+    }
+    return query;
+  }
+
   private static Query fromProto(FirestoreRpcContext<?> rpcContext, RunQueryRequest proto) {
     QueryOptions.Builder queryOptions = QueryOptions.builder();
     StructuredQuery structuredQuery = proto.getStructuredQuery();
@@ -1824,20 +2162,30 @@ public class Query extends StreamableQuery<QuerySnapshot> {
     return Watch.forQuery(this).runWatch(executor, listener);
   }
 
+  /**
+   * Keeps the documents that match this query up to date in the client-side document cache. While
+   * the listener is active, these documents are served from the cache without expiring and changes
+   * on the backend are applied as they are received. If the listen stream is interrupted, the
+   * documents expire based on the time to live configured in {@link DocumentCacheOptions}.
+   *
+   * @return A registration object that can be used to stop updating the cache.
+   * @throws IllegalStateException If the document cache is not enabled.
+   */
+  @Nonnull
+  public ListenerRegistration keepCached() {
+    DocumentCache documentCache = ((FirestoreImpl) getFirestore()).getDocumentCache();
+    Preconditions.checkState(
+        documentCache != null,
+        "keepCached() requires a document cache. Use"
+            + " FirestoreOptions.Builder.setDocumentCacheOptions() to enable it.");
+    return documentCache.subscribe(this);
+  }
+
   Comparator<QueryDocumentSnapshot> comparator() {
-    Iterator<FieldOrder> iterator = options.getFieldOrders().iterator();
-    if (!iterator.hasNext()) {
+    if (options.getFieldOrders().isEmpty()) {
       return DOCUMENT_ID_COMPARATOR;
     }
-    FieldOrder fieldOrder = iterator.next();
-    Comparator<QueryDocumentSnapshot> comparator = fieldOrder;
-    while (iterator.hasNext()) {
-      fieldOrder = iterator.next();
-      comparator = comparator.thenComparing(fieldOrder);
-    }
-    // Add implicit sorting by name, using the last specified direction.
-    Direction lastDirection = fieldOrder.direction;
-    return comparator.thenComparing(lastDirection.documentIdComparator);
+    return new SortKeyComparator(options.getFieldOrders());
   }
 
   /**
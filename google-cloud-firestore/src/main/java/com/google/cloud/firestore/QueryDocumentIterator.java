@@ -0,0 +1,70 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.StreamController;
+
+/**
+ * A blocking iterator over the results of a query stream that buffers at most a fixed number of
+ * documents.
+ *
+ * <p>Every stream message contains one document. The iterator initially requests {@code prefetch}
+ * documents. As documents are consumed, it requests more in chunks of half the prefetch size, so
+ * that the number of buffered and outstanding documents never exceeds {@code prefetch}.
+ */
+final class QueryDocumentIterator extends BufferedStreamIterator<QueryDocumentSnapshot> {
+  private final int prefetch;
+  private final int refillThreshold;
+
+  QueryDocumentIterator(int prefetch) {
+    this.prefetch = prefetch;
+    this.refillThreshold = Math.max(1, prefetch / 2);
+  }
+
+  @Override
+  int getRequestCountLocked(int bufferedCount, int outstandingMessages) {
+    int available = prefetch - bufferedCount - outstandingMessages;
+    return available >= refillThreshold ? available : 0;
+  }
+
+  /** Returns the observer that feeds the iterator. Must be passed to exactly one query stream. */
+  ResponseObserver<DocumentSnapshot> getObserver() {
+    return new ResponseObserver<DocumentSnapshot>() {
+      @Override
+      public void onStart(StreamController streamController) {
+        start(streamController);
+      }
+
+      @Override
+      public void onResponse(DocumentSnapshot documentSnapshot) {
+        add((QueryDocumentSnapshot) documentSnapshot);
+        endMessage();
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        finish(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        finish(null);
+      }
+    };
+  }
+}
@@ -23,6 +23,7 @@ import com.google.firestore.v1.Document;
 import com.google.firestore.v1.Value;
 import java.util.Map;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * A QueryDocumentSnapshot contains data read from a document in a Firestore database as part of a
@@ -49,6 +50,12 @@ public class QueryDocumentSnapshot extends DocumentSnapshot {
     super(rpcContext, docRef, fields, readTime, updateTime, createTime);
   }
 
+  /**
+   * The values that this document is ordered by, cached for the comparator that extracted them.
+   * Races only cause the values to be extracted again, since {@link SortValues} is immutable.
+   */
+  @Nullable private SortValues sortValues;
+
   static QueryDocumentSnapshot fromDocument(
       FirestoreRpcContext<?> rpcContext, Timestamp readTime, Document document) {
     return new QueryDocumentSnapshot(
@@ -88,6 +95,26 @@ public class QueryDocumentSnapshot extends DocumentSnapshot {
     return result;
   }
 
+  /** Returns the values that the given comparator orders this document by. */
+  Value[] getSortValues(Query.SortKeyComparator comparator) {
+    SortValues cached = sortValues;
+    if (cached == null || cached.comparator != comparator) {
+      cached = new SortValues(comparator, comparator.extractValues(this));
+      sortValues = cached;
+    }
+    return cached.values;
+  }
+
+  private static final class SortValues {
+    final Query.SortKeyComparator comparator;
+    final Value[] values;
+
+    SortValues(Query.SortKeyComparator comparator, Value[] values) {
+      this.comparator = comparator;
+      this.values = values;
+    }
+  }
+
   static int compareDocumentId(QueryDocumentSnapshot doc1, QueryDocumentSnapshot doc2) {
     return doc1.getReference().getResourcePath().compareTo(doc2.getReference().getResourcePath());
   }
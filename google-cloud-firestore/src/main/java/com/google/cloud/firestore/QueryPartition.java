@@ -60,6 +60,11 @@ public class QueryPartition {
     return endBefore;
   }
 
+  /** Returns the query that this partition was created from, without the partition's cursors. */
+  Query getQuery() {
+    return query;
+  }
+
   /**
    * Returns a query that only returns the documents for this partition.
    *
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.api.gax.rpc.StreamController;
+import com.google.common.base.Preconditions;
+import javax.annotation.Nullable;
+
+/**
+ * The {@link StreamController} that is passed to the observer of a query stream.
+ *
+ * <p>The observer requests documents, but every {@code RunQueryResponse} counts against the demand
+ * of the underlying gRPC stream, including responses that only report progress and do not contain a
+ * document. This controller keeps the number of outstanding gRPC requests equal to the number of
+ * documents that were requested but not delivered yet, by requesting another response whenever a
+ * response without a document arrives. When the query is retried, the remaining demand is requested
+ * on the new stream.
+ */
+final class QueryStreamController implements StreamController {
+  private boolean started;
+  private boolean autoFlowControl = true;
+
+  /** The number of documents that were requested but not delivered yet. */
+  private long demand;
+
+  private boolean cancelled;
+  @Nullable private StreamController currentStream;
+
+  /** Marks the end of the observer's {@code onStart()} callback. */
+  synchronized void markStarted() {
+    started = true;
+  }
+
+  @Override
+  public synchronized void disableAutoInboundFlowControl() {
+    Preconditions.checkState(
+        !started, "Can't disable automatic flow control once the stream has started.");
+    autoFlowControl = false;
+  }
+
+  @Override
+  public synchronized void request(int count) {
+    Preconditions.checkState(!autoFlowControl, "Autoflow control is enabled.");
+    Preconditions.checkArgument(count > 0, "Count must be positive.");
+    demand += count;
+    if (currentStream != null) {
+      currentStream.request(count);
+    }
+  }
+
+  @Override
+  public synchronized void cancel() {
+    cancelled = true;
+    if (currentStream != null) {
+      currentStream.cancel();
+    }
+  }
+
+  /** Called when a new gRPC stream for the query (or one of its retries) starts. */
+  synchronized void onStreamStart(StreamController stream) {
+    currentStream = stream;
+    if (cancelled) {
+      stream.cancel();
+      return;
+    }
+    if (!autoFlowControl) {
+      stream.disableAutoInboundFlowControl();
+      if (demand > 0) {
+        stream.request((int) Math.min(demand, Integer.MAX_VALUE));
+      }
+    }
+  }
+
+  /** Called for every response of the gRPC stream, before it is delivered to the observer. */
+  synchronized void onStreamResponse(boolean hasDocument) {
+    if (autoFlowControl) {
+      return;
+    }
+    if (hasDocument) {
+      --demand;
+    } else if (demand > 0 && currentStream != null) {
+      // The response used up one of the requested messages without satisfying any demand.
+      currentStream.request(1);
+    }
+  }
+}
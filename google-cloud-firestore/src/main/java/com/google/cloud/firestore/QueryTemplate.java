@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.api.core.BetaApi;
+import com.google.cloud.firestore.Query.ComparisonFilterInternal;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A template for queries that differ only in the values of their filters and cursors. Created by
+ * {@link Query#toTemplate()}.
+ *
+ * <p>The filters whose values can be replaced are the comparison filters of the query, such as
+ * {@code whereEqualTo()} or {@code whereIn()}, in the order in which they were added. Filters on
+ * null or NaN values have no value to replace and are kept as is.
+ *
+ * <p>Instances are immutable and can be used concurrently.
+ */
+@BetaApi
+public final class QueryTemplate {
+
+  private final Query query;
+  private final List<FieldPath> filterFields;
+
+  QueryTemplate(Query query) {
+    // Build the serialized form of the query eagerly, so that invalid queries are rejected here
+    // and all bound queries share it.
+    query.toStructuredQuery();
+    this.query = query;
+
+    ImmutableList.Builder<FieldPath> fields = ImmutableList.builder();
+    for (ComparisonFilterInternal filter : query.getComparisonFilters()) {
+      fields.add(FieldPath.fromServerFormat(filter.fieldReference.getFieldPath()));
+    }
+    this.filterFields = fields.build();
+  }
+
+  /** Returns the query that this template was created from. */
+  @Nonnull
+  public Query getQuery() {
+    return query;
+  }
+
+  /**
+   * Returns the fields of the filters whose values are replaced by {@link #bind}, in the order in
+   * which the values must be specified.
+   */
+  @Nonnull
+  public List<FieldPath> getFilterFields() {
+    return filterFields;
+  }
+
+  /**
+   * Creates a query with the given filter values and the cursors of the template query.
+   *
+   * @param filterValues The values of the filters returned by {@link #getFilterFields()}, in the
+   *     same order.
+   * @return The created Query.
+   * @throws IllegalArgumentException If the number of values does not match the number of filters
+   *     or a value is invalid for its filter.
+   */
+  @Nonnull
+  public Query bind(@Nonnull List<?> filterValues) {
+    return bind(filterValues, null, null);
+  }
+
+  /**
+   * Creates a query with the given filter and cursor values.
+   *
+   * @param filterValues The values of the filters returned by {@link #getFilterFields()}, in the
+   *     same order.
+   * @param startValues The field values of the start cursor, or null to keep the start cursor of
+   *     the template query. Whether the cursor includes its position is taken from the template.
+   * @param endValues The field values of the end cursor, or null to keep the end cursor of the
+   *     template query. Whether the cursor includes its position is taken from the template.
+   * @return The created Query.
+   * @throws IllegalArgumentException If the number of values does not match the number of filters,
+   *     a value is invalid for its filter or a cursor is given that the template query does not
+   *     have.
+   * @throws IllegalStateException If a cursor has more values than the template query has orders.
+   */
+  @Nonnull
+  public Query bind(
+      @Nonnull List<?> filterValues, @Nullable List<?> startValues, @Nullable List<?> endValues) {
+    return query.withValues(filterValues, startValues, endValues);
+  }
+}
@@ -40,6 +40,9 @@ class RateLimiter {
   private final long startTimeMillis;
   private final int maximumRate;
 
+  /** The capacity set via {@link #setCapacity}, or -1 if the capacity ramps up over time. */
+  private int fixedCapacity = -1;
+
   private int availableTokens;
   private long lastRefillTimeMillis;
 
@@ -100,6 +103,17 @@ class RateLimiter {
     return false;
   }
 
+  /**
+   * Returns whether the number of operations can be made, without using any tokens.
+   *
+   * @param requestTimeMillis The time used to calculate the number of available tokens. Used for
+   *     testing the limiter.
+   */
+  boolean canMakeRequest(int numOperations, long requestTimeMillis) {
+    refillTokens(requestTimeMillis);
+    return numOperations <= availableTokens;
+  }
+
   public long getNextRequestDelayMs(int numOperations) {
     return getNextRequestDelayMs(numOperations, new Date().getTime());
   }
@@ -139,14 +153,30 @@ class RateLimiter {
         "Request time should not be before the last token refill time");
     long elapsedTime = requestTimeMillis - lastRefillTimeMillis;
     int capacity = calculateCapacity(requestTimeMillis);
-    int tokensToAdd = (int) ((elapsedTime * capacity) / 1000);
+    // Use long arithmetic since unlimited rate limiters use a capacity of Integer.MAX_VALUE.
+    long tokensToAdd = (elapsedTime * capacity) / 1000;
     if (tokensToAdd > 0) {
-      availableTokens = Math.min(capacity, availableTokens + tokensToAdd);
+      availableTokens = (int) Math.min(capacity, availableTokens + tokensToAdd);
       lastRefillTimeMillis = requestTimeMillis;
     }
   }
 
+  /**
+   * Replaces the gradual ramp-up with a fixed number of operations per second, which is still
+   * bounded by the maximum rate. Used by BulkWriter's adaptive throttling.
+   *
+   * @param operationsPerSecond The new number of allowed operations per second.
+   */
+  void setCapacity(int operationsPerSecond) {
+    Preconditions.checkArgument(operationsPerSecond > 0, "Capacity must be positive");
+    fixedCapacity = operationsPerSecond;
+    availableTokens = Math.min(availableTokens, Math.min(operationsPerSecond, maximumRate));
+  }
+
   public int calculateCapacity(long requestTimeMillis) {
+    if (fixedCapacity > 0) {
+      return Math.min(fixedCapacity, maximumRate);
+    }
     long millisElapsed = requestTimeMillis - startTimeMillis;
     int operationsPerSecond =
         Math.min(
@@ -17,16 +17,27 @@
 package com.google.cloud.firestore;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.firestore.v1.DatabaseRootName;
-import java.util.Arrays;
 import java.util.Comparator;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-/** An immutable representation of a Firestore path to a Document or Collection. */
+/**
+ * An immutable representation of a Firestore path to a Document or Collection.
+ *
+ * <p>The resource name and hash code of a path are computed once and cached, since they are used
+ * for every request that refers to the path. Paths that are parsed from resource names share their
+ * database name and collection IDs with previously parsed paths.
+ */
 @AutoValue
 abstract class ResourcePath extends BasePath<ResourcePath> {
+  // Interners for the parts of parsed resource names that repeat across many documents.
+  private static final Interner<DatabaseRootName> DATABASE_NAMES = Interners.newWeakInterner();
+  private static final Interner<String> COLLECTION_IDS = Interners.newWeakInterner();
 
   /**
    * Creates a new Path.
@@ -56,10 +67,14 @@ abstract class ResourcePath extends BasePath<ResourcePath> {
     String[] parts = resourceName.split("/");
 
     if (parts.length >= 5 && parts[0].equals("projects") && parts[2].equals("databases")) {
-      String[] path = Arrays.copyOfRange(parts, 5, parts.length);
+      ImmutableList.Builder<String> segments =
+          ImmutableList.builderWithExpectedSize(parts.length - 5);
+      for (int i = 5; i < parts.length; ++i) {
+        // Collection IDs are at even indices relative to the root.
+        segments.add((i - 5) % 2 == 0 ? COLLECTION_IDS.intern(parts[i]) : parts[i]);
+      }
       return create(
-          DatabaseRootName.of(parts[1], parts[3]),
-          ImmutableList.<String>builder().add(path).build());
+          DATABASE_NAMES.intern(DatabaseRootName.of(parts[1], parts[3])), segments.build());
     }
 
     return create(DatabaseRootName.parse(resourceName));
@@ -104,6 +119,7 @@ abstract class ResourcePath extends BasePath<ResourcePath> {
    *
    * @return The resource path relative to the root of the database.
    */
+  @Memoized
   String getPath() {
     return String.join("/", getSegments());
   }
@@ -113,15 +129,27 @@ abstract class ResourcePath extends BasePath<ResourcePath> {
    *
    * @return The formatted name of the resource.
    */
+  @Memoized
   String getName() {
-    String path = getPath();
-    if (path.isEmpty()) {
-      return getDatabaseName() + "/documents";
-    } else {
-      return getDatabaseName() + "/documents/" + path;
+    // Formatting the database name through its path template is comparatively expensive, so the
+    // name is assembled directly.
+    DatabaseRootName databaseName = getDatabaseName();
+    StringBuilder name =
+        new StringBuilder("projects/")
+            .append(databaseName.getProject())
+            .append("/databases/")
+            .append(databaseName.getDatabase())
+            .append("/documents");
+    for (String segment : getSegments()) {
+      name.append('/').append(segment);
     }
+    return name.toString();
   }
 
+  @Memoized
+  @Override
+  public abstract int hashCode();
+
   /**
    * Compare the current path against another ResourcePath object.
    *
@@ -16,8 +16,11 @@
 
 package com.google.cloud.firestore;
 
+import com.google.api.core.ApiAsyncFunction;
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
 import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
 import com.google.cloud.firestore.TransactionOptions.TransactionOptionsType;
 import com.google.cloud.firestore.pipeline.stages.PipelineExecuteOptions;
 import com.google.cloud.firestore.telemetry.TelemetryConstants;
@@ -30,11 +33,15 @@ import com.google.firestore.v1.RollbackRequest;
 import com.google.firestore.v1.TransactionOptions.ReadOnly;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 
 /**
  * A `ServerSideTransaction` is a `Transaction` that uses server generated `transactionId` on
@@ -42,6 +49,11 @@ import javax.annotation.Nullable;
  * `transactionId` from server. The `ServerSideTransactionRunner` must either `commit()` or
  * `rollback()` when done.
  *
+ * <p>With inline begin, no `beginTransaction` request is sent up front. Instead, the first read,
+ * whether of documents, a query, an aggregation or a pipeline, begins the transaction and returns
+ * its `transactionId`. Later reads wait for the `transactionId`. A transaction without reads
+ * commits its writes without a `transactionId`.
+ *
  * @see Transaction
  * @see ServerSideTransactionRunner
  */
@@ -52,63 +64,278 @@ final class ServerSideTransaction extends Transaction {
   private static final String READ_BEFORE_WRITE_ERROR_MSG =
       "Firestore transactions require all reads to be executed before all writes";
 
+  private static final com.google.firestore.v1.TransactionOptions DEFAULT_READ_WRITE_OPTIONS =
+      com.google.firestore.v1.TransactionOptions.newBuilder()
+          .setReadWrite(com.google.firestore.v1.TransactionOptions.ReadWrite.getDefaultInstance())
+          .build();
+
   private final FirestoreImpl firestore;
 
-  final ByteString transactionId;
+  private final TransactionOptions transactionOptions;
+  @Nullable private final ByteString previousTransactionId;
+
+  /**
+   * Resolves to the ID of the transaction once it was begun. Null if the transaction uses inline
+   * begin and no read was sent yet.
+   */
+  @GuardedBy("this")
+  @Nullable
+  private ApiFuture<ByteString> transactionIdFuture;
 
-  private ServerSideTransaction(FirestoreImpl firestore, ByteString transactionId) {
+  private ServerSideTransaction(
+      FirestoreImpl firestore,
+      TransactionOptions transactionOptions,
+      @Nullable ByteString previousTransactionId,
+      @Nullable ApiFuture<ByteString> transactionIdFuture) {
     super(firestore);
     this.firestore = firestore;
-    this.transactionId = transactionId;
+    this.transactionOptions = transactionOptions;
+    this.previousTransactionId = previousTransactionId;
+    this.transactionIdFuture = transactionIdFuture;
   }
 
+  /** Returns the ID of the transaction, or null if the transaction has not been begun yet. */
+  @Nullable
   public ByteString getTransactionId() {
-    return transactionId;
+    ApiFuture<ByteString> transactionId;
+    synchronized (this) {
+      transactionId = transactionIdFuture;
+    }
+    if (transactionId == null || !transactionId.isDone()) {
+      return null;
+    }
+    try {
+      return transactionId.get();
+    } catch (ExecutionException | InterruptedException e) {
+      return null;
+    }
   }
 
   public static ApiFuture<ServerSideTransaction> begin(
       FirestoreImpl firestore,
       TransactionOptions transactionOptions,
       @Nullable ServerSideTransaction previousTransaction) {
+    ByteString previousTransactionId =
+        previousTransaction != null ? previousTransaction.getTransactionId() : null;
+    return ApiFutures.transform(
+        beginTransaction(firestore, transactionOptions, previousTransactionId),
+        transactionId ->
+            new ServerSideTransaction(
+                firestore,
+                transactionOptions,
+                previousTransactionId,
+                ApiFutures.immediateFuture(transactionId)),
+        MoreExecutors.directExecutor());
+  }
+
+  /** Creates a transaction that is begun by its first read. */
+  static ServerSideTransaction createWithInlineBegin(
+      FirestoreImpl firestore,
+      TransactionOptions transactionOptions,
+      @Nullable ServerSideTransaction previousTransaction) {
+    return new ServerSideTransaction(
+        firestore,
+        transactionOptions,
+        previousTransaction != null ? previousTransaction.getTransactionId() : null,
+        /* transactionIdFuture= */ null);
+  }
+
+  private static ApiFuture<ByteString> beginTransaction(
+      FirestoreImpl firestore,
+      TransactionOptions transactionOptions,
+      @Nullable ByteString previousTransactionId) {
     BeginTransactionRequest.Builder beginTransaction = BeginTransactionRequest.newBuilder();
     beginTransaction.setDatabase(firestore.getDatabaseName());
-    ByteString previousTransactionId =
-        previousTransaction != null ? previousTransaction.transactionId : null;
+    com.google.firestore.v1.TransactionOptions options =
+        toProto(transactionOptions, previousTransactionId);
+    if (options != null) {
+      beginTransaction.setOptions(options);
+    }
+
+    ApiFuture<BeginTransactionResponse> transactionBeginFuture =
+        firestore.sendRequest(
+            beginTransaction.build(), firestore.getClient().beginTransactionCallable());
+
+    return ApiFutures.transform(
+        transactionBeginFuture,
+        BeginTransactionResponse::getTransaction,
+        MoreExecutors.directExecutor());
+  }
 
+  /** Returns the options to begin the transaction with, or null if the defaults apply. */
+  @Nullable
+  private static com.google.firestore.v1.TransactionOptions toProto(
+      TransactionOptions transactionOptions, @Nullable ByteString previousTransactionId) {
+    com.google.firestore.v1.TransactionOptions.Builder options =
+        com.google.firestore.v1.TransactionOptions.newBuilder();
     if (TransactionOptionsType.READ_WRITE.equals(transactionOptions.getType())
         && previousTransactionId != null) {
-      beginTransaction
-          .getOptionsBuilder()
-          .getReadWriteBuilder()
-          .setRetryTransaction(previousTransactionId);
+      options.getReadWriteBuilder().setRetryTransaction(previousTransactionId);
     } else if (TransactionOptionsType.READ_ONLY.equals(transactionOptions.getType())) {
       final ReadOnly.Builder readOnlyBuilder = ReadOnly.newBuilder();
       if (transactionOptions.getReadTime() != null) {
         readOnlyBuilder.setReadTime(transactionOptions.getReadTime());
       }
-      beginTransaction.getOptionsBuilder().setReadOnly(readOnlyBuilder);
+      options.setReadOnly(readOnlyBuilder);
+    } else {
+      return null;
     }
+    return options.build();
+  }
 
-    ApiFuture<BeginTransactionResponse> transactionBeginFuture =
-        firestore.sendRequest(
-            beginTransaction.build(), firestore.getClient().beginTransactionCallable());
+  /** Runs the given request once the ID of the transaction is known. */
+  private <R> ApiFuture<R> withTransactionId(
+      ApiFuture<ByteString> transactionId, ApiAsyncFunction<ByteString, R> request) {
+    if (transactionId.isDone()) {
+      // Send the request right away to preserve the behavior of eagerly begun transactions.
+      ByteString begunTransactionId;
+      try {
+        begunTransactionId = transactionId.get();
+      } catch (ExecutionException e) {
+        return ApiFutures.immediateFailedFuture(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return ApiFutures.immediateFailedFuture(e);
+      }
+      try {
+        return request.apply(begunTransactionId);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        return ApiFutures.immediateFailedFuture(e);
+      }
+    }
+    return ApiFutures.transformAsync(transactionId, request, MoreExecutors.directExecutor());
+  }
 
-    return ApiFutures.transform(
-        transactionBeginFuture,
-        beginTransactionResponse ->
-            new ServerSideTransaction(firestore, beginTransactionResponse.getTransaction()),
+  /** A read that begins a new transaction with the given options. */
+  private interface BeginningRead<T> {
+    ApiFuture<T> run(
+        com.google.firestore.v1.TransactionOptions newTransaction,
+        Consumer<ByteString> onTransactionBegun);
+  }
+
+  /**
+   * Runs a read in this transaction. If the transaction has not been begun yet, the read begins it
+   * and the ID of the new transaction is taken from its response. Otherwise, the read runs once the
+   * ID of the transaction is known.
+   */
+  private <T> ApiFuture<T> read(
+      ApiAsyncFunction<ByteString, T> transactionalRead, BeginningRead<T> beginningRead) {
+    final ApiFuture<ByteString> transactionId;
+    final SettableApiFuture<ByteString> begunTransactionId;
+    synchronized (this) {
+      if (transactionIdFuture != null) {
+        transactionId = transactionIdFuture;
+        begunTransactionId = null;
+      } else {
+        begunTransactionId = SettableApiFuture.create();
+        transactionId = begunTransactionId;
+        transactionIdFuture = begunTransactionId;
+      }
+    }
+
+    if (begunTransactionId == null) {
+      return withTransactionId(transactionId, transactionalRead);
+    }
+
+    com.google.firestore.v1.TransactionOptions options =
+        toProto(transactionOptions, previousTransactionId);
+    ApiFuture<T> result;
+    try {
+      result =
+          beginningRead.run(
+              options != null ? options : DEFAULT_READ_WRITE_OPTIONS, begunTransactionId::set);
+    } catch (RuntimeException e) {
+      begunTransactionId.setException(e);
+      throw e;
+    }
+    ApiFutures.addCallback(
+        result,
+        new ApiFutureCallback<T>() {
+          @Override
+          public void onFailure(Throwable t) {
+            // Operations that wait for the transaction fail with the error of the read that was
+            // supposed to begin it.
+            begunTransactionId.setException(t);
+          }
+
+          @Override
+          public void onSuccess(T value) {
+            if (!begunTransactionId.isDone()) {
+              begunTransactionId.setException(
+                  FirestoreException.forInvalidArgument(
+                      "The backend did not return the ID of the new transaction."));
+            }
+          }
+        },
         MoreExecutors.directExecutor());
+    return result;
+  }
+
+  /** Reads documents in this transaction. */
+  private ApiFuture<List<DocumentSnapshot>> getAllInTransaction(
+      DocumentReference[] documentReferences, @Nullable FieldMask fieldMask) {
+    return read(
+        transactionId ->
+            firestore.getAll(documentReferences, fieldMask, transactionId, /* readTime= */ null),
+        (newTransaction, onTransactionBegun) ->
+            firestore.getAllInNewTransaction(
+                documentReferences, fieldMask, newTransaction, onTransactionBegun));
   }
 
   /** Commits a transaction. */
   ApiFuture<List<WriteResult>> commit() {
-    try (TraceUtil.Scope ignored = transactionTraceContext.makeCurrent()) {
-      return super.commit(transactionId);
+    ApiFuture<ByteString> transactionId;
+    synchronized (this) {
+      transactionId = transactionIdFuture;
+      if (transactionId == null) {
+        // The transaction has not read any documents and therefore was never begun. Its writes are
+        // committed atomically without a transaction.
+        if (isEmpty()) {
+          return ApiFutures.immediateFuture(Collections.emptyList());
+        }
+        try (TraceUtil.Scope ignored = transactionTraceContext.makeCurrent()) {
+          return super.commit(null);
+        }
+      }
     }
+    return withTransactionId(
+        transactionId,
+        begunTransactionId -> {
+          try (TraceUtil.Scope ignored = transactionTraceContext.makeCurrent()) {
+            return super.commit(begunTransactionId);
+          }
+        });
   }
 
   /** Rolls a transaction back and releases all read locks. */
   ApiFuture<Void> rollback() {
+    ApiFuture<ByteString> transactionId;
+    synchronized (this) {
+      transactionId = transactionIdFuture;
+    }
+    if (transactionId == null) {
+      return ApiFutures.immediateFuture(null);
+    }
+    if (transactionId.isDone()) {
+      ByteString begunTransactionId = getTransactionId();
+      return begunTransactionId != null
+          ? rollback(begunTransactionId)
+          : ApiFutures.immediateFuture(null);
+    }
+    // A transaction that failed to begin does not need to be rolled back.
+    return ApiFutures.transformAsync(
+        ApiFutures.catching(
+            transactionId, Throwable.class, error -> null, MoreExecutors.directExecutor()),
+        begunTransactionId ->
+            begunTransactionId != null
+                ? rollback(begunTransactionId)
+                : ApiFutures.immediateFuture(null),
+        MoreExecutors.directExecutor());
+  }
+
+  private ApiFuture<Void> rollback(ByteString transactionId) {
     TraceUtil.Span span =
         getTraceUtil()
             .startSpan(
@@ -168,11 +395,7 @@ final class ServerSideTransaction extends Transaction {
       Preconditions.checkState(isEmpty(), READ_BEFORE_WRITE_ERROR_MSG);
       ApiFuture<DocumentSnapshot> result =
           ApiFutures.transform(
-              firestore.getAll(
-                  new DocumentReference[] {documentRef},
-                  /* fieldMask= */ null,
-                  transactionId,
-                  /* readTime= */ null),
+              getAllInTransaction(new DocumentReference[] {documentRef}, /* fieldMask= */ null),
               snapshots -> snapshots.isEmpty() ? null : snapshots.get(0),
               MoreExecutors.directExecutor());
       span.endAtFuture(result);
@@ -200,8 +423,7 @@ final class ServerSideTransaction extends Transaction {
                 TelemetryConstants.METHOD_NAME_TRANSACTION_GET_DOCUMENTS, transactionTraceContext);
     try (TraceUtil.Scope ignored = span.makeCurrent()) {
       ApiFuture<List<DocumentSnapshot>> result =
-          firestore.getAll(
-              documentReferences, /* fieldMask= */ null, transactionId, /* readTime= */ null);
+          getAllInTransaction(documentReferences, /* fieldMask= */ null);
       span.endAtFuture(result);
       return result;
     } catch (Exception error) {
@@ -228,8 +450,7 @@ final class ServerSideTransaction extends Transaction {
             .startSpan(
                 TelemetryConstants.METHOD_NAME_TRANSACTION_GET_DOCUMENTS, transactionTraceContext);
     try (TraceUtil.Scope ignored = span.makeCurrent()) {
-      ApiFuture<List<DocumentSnapshot>> result =
-          firestore.getAll(documentReferences, fieldMask, transactionId, /* readTime= */ null);
+      ApiFuture<List<DocumentSnapshot>> result = getAllInTransaction(documentReferences, fieldMask);
       span.endAtFuture(result);
       return result;
     } catch (Exception error) {
@@ -249,7 +470,13 @@ final class ServerSideTransaction extends Transaction {
   public ApiFuture<QuerySnapshot> get(@Nonnull Query query) {
     Preconditions.checkState(isEmpty(), READ_BEFORE_WRITE_ERROR_MSG);
     try (TraceUtil.Scope ignored = transactionTraceContext.makeCurrent()) {
-      return query.get(transactionId, /* readTime= */ null);
+      return read(
+          transactionId -> {
+            try (TraceUtil.Scope scope = transactionTraceContext.makeCurrent()) {
+              return query.get(transactionId, /* readTime= */ null);
+            }
+          },
+          query::getInNewTransaction);
     }
   }
 
@@ -264,7 +491,13 @@ final class ServerSideTransaction extends Transaction {
   public ApiFuture<AggregateQuerySnapshot> get(@Nonnull AggregateQuery query) {
     Preconditions.checkState(isEmpty(), READ_BEFORE_WRITE_ERROR_MSG);
     try (TraceUtil.Scope ignored = transactionTraceContext.makeCurrent()) {
-      return query.get(transactionId, null);
+      return read(
+          transactionId -> {
+            try (TraceUtil.Scope scope = transactionTraceContext.makeCurrent()) {
+              return query.get(transactionId, null);
+            }
+          },
+          query::getInNewTransaction);
     }
   }
 
@@ -281,7 +514,14 @@ final class ServerSideTransaction extends Transaction {
       @Nonnull Pipeline pipeline, @Nonnull PipelineExecuteOptions options) {
     Preconditions.checkState(isEmpty(), READ_BEFORE_WRITE_ERROR_MSG);
     try (TraceUtil.Scope ignored = transactionTraceContext.makeCurrent()) {
-      return pipeline.execute(options, transactionId, null);
+      return read(
+          transactionId -> {
+            try (TraceUtil.Scope scope = transactionTraceContext.makeCurrent()) {
+              return pipeline.execute(options, transactionId, null);
+            }
+          },
+          (newTransaction, onTransactionBegun) ->
+              pipeline.executeInNewTransaction(options, newTransaction, onTransactionBegun));
     }
   }
 }
@@ -135,6 +135,17 @@ final class ServerSideTransactionRunner<T> {
   }
 
   ApiFuture<ServerSideTransaction> begin() {
+    if (transactionOptions.isInlineBeginEnabled()) {
+      // The transaction is begun by its first read, or not at all if it only writes.
+      ServerSideTransaction previousTransaction = this.transaction;
+      this.transaction = null;
+      ServerSideTransaction serverSideTransaction =
+          ServerSideTransaction.createWithInlineBegin(
+              firestore, transactionOptions, previousTransaction);
+      serverSideTransaction.setTransactionTraceContext(runTransactionContext);
+      return ApiFutures.immediateFuture(serverSideTransaction);
+    }
+
     TraceUtil.Span span =
         getTraceUtil()
             .startSpan(TelemetryConstants.METHOD_NAME_TRANSACTION_BEGIN, runTransactionContext);
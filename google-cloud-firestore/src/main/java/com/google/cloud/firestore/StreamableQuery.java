@@ -45,6 +45,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -66,6 +67,7 @@ public abstract class StreamableQuery<SnapshotType> {
 
   abstract RunQueryRequest.Builder toRunQueryRequestBuilder(
       @Nullable final ByteString transactionId,
+      @Nullable final com.google.firestore.v1.TransactionOptions newTransaction,
       @Nullable final Timestamp readTime,
       @Nullable ExplainOptions explainOptions);
 
@@ -105,18 +107,41 @@ public abstract class StreamableQuery<SnapshotType> {
    */
   ApiFuture<SnapshotType> get(
       @Nullable ByteString transactionId, @Nullable Timestamp requestReadTime) {
+    return get(
+        transactionId, /* newTransaction= */ null, /* onTransactionBegun= */ null, requestReadTime);
+  }
+
+  /**
+   * Executes the query in a new transaction that the query begins with the given options.
+   *
+   * @param onTransactionBegun Receives the ID of the new transaction from the first response.
+   * @return An ApiFuture that will be resolved with the results of the Query.
+   */
+  ApiFuture<SnapshotType> getInNewTransaction(
+      @Nonnull com.google.firestore.v1.TransactionOptions newTransaction,
+      @Nonnull Consumer<ByteString> onTransactionBegun) {
+    return get(
+        /* transactionId= */ null, newTransaction, onTransactionBegun, /* requestReadTime= */ null);
+  }
+
+  private ApiFuture<SnapshotType> get(
+      @Nullable ByteString transactionId,
+      @Nullable com.google.firestore.v1.TransactionOptions newTransaction,
+      @Nullable Consumer<ByteString> onTransactionBegun,
+      @Nullable Timestamp requestReadTime) {
+    boolean transactional = transactionId != null || newTransaction != null;
     TraceUtil.Span span =
         getFirestore()
             .getOptions()
             .getTraceUtil()
             .startSpan(
-                transactionId == null
-                    ? TelemetryConstants.METHOD_NAME_QUERY_GET
-                    : TelemetryConstants.METHOD_NAME_TRANSACTION_GET_QUERY);
+                transactional
+                    ? TelemetryConstants.METHOD_NAME_TRANSACTION_GET_QUERY
+                    : TelemetryConstants.METHOD_NAME_QUERY_GET);
 
     MetricsContext metricsContext =
         createMetricsContext(
-            transactionId != null
+            transactional
                 ? TelemetryConstants.METHOD_NAME_RUN_QUERY_TRANSACTIONAL
                 : TelemetryConstants.METHOD_NAME_RUN_QUERY_GET);
 
@@ -130,6 +155,9 @@ public abstract class StreamableQuery<SnapshotType> {
 
             @Override
             public void onNext(RunQueryResponse runQueryResponse) {
+              if (onTransactionBegun != null && !runQueryResponse.getTransaction().isEmpty()) {
+                onTransactionBegun.accept(runQueryResponse.getTransaction());
+              }
               if (runQueryResponse.hasDocument()) {
                 Document document = runQueryResponse.getDocument();
                 QueryDocumentSnapshot documentSnapshot =
@@ -164,6 +192,7 @@ public abstract class StreamableQuery<SnapshotType> {
           new MonitoredStreamResponseObserver(observer, metricsContext),
           /* startTimeNanos= */ rpcContext.getClock().nanoTime(),
           transactionId,
+          newTransaction,
           /* readTime= */ requestReadTime,
           /* explainOptions= */ null,
           /* isRetryRequestWithCursor= */ false);
@@ -258,6 +287,7 @@ public abstract class StreamableQuery<SnapshotType> {
           new MonitoredStreamResponseObserver(observer, metricsContext),
           /* startTimeNanos= */ rpcContext.getClock().nanoTime(),
           /* transactionId= */ null,
+          /* newTransaction= */ null,
           /* readTime= */ null,
           /* explainOptions= */ options,
           /* isRetryRequestWithCursor= */ false);
@@ -274,13 +304,29 @@ public abstract class StreamableQuery<SnapshotType> {
   class MonitoredStreamResponseObserver implements ApiStreamObserver<RunQueryResponse> {
     private final ApiStreamObserver<RunQueryResponse> observer;
     private final MetricsContext metricsContext;
+    // Applies the flow control of the stream's observer, if any, to all attempts of the query.
+    @Nullable private final QueryStreamController flowController;
     private boolean receivedFirstResponse = false;
 
     // Constructor to initialize with the delegate and MetricsContext
     public MonitoredStreamResponseObserver(
         ApiStreamObserver<RunQueryResponse> observer, MetricsContext metricsContext) {
+      this(observer, metricsContext, /* flowController= */ null);
+    }
+
+    MonitoredStreamResponseObserver(
+        ApiStreamObserver<RunQueryResponse> observer,
+        MetricsContext metricsContext,
+        @Nullable QueryStreamController flowController) {
       this.observer = observer;
       this.metricsContext = metricsContext;
+      this.flowController = flowController;
+    }
+
+    void onStart(StreamController streamController) {
+      if (flowController != null) {
+        flowController.onStreamStart(streamController);
+      }
     }
 
     @Override
@@ -289,6 +335,9 @@ public abstract class StreamableQuery<SnapshotType> {
         receivedFirstResponse = true;
         metricsContext.recordLatency(MetricType.FIRST_RESPONSE_LATENCY);
       }
+      if (flowController != null) {
+        flowController.onStreamResponse(value.hasDocument());
+      }
       observer.onNext(value);
     }
 
@@ -309,6 +358,7 @@ public abstract class StreamableQuery<SnapshotType> {
       final MonitoredStreamResponseObserver streamResponseObserver,
       final long startTimeNanos,
       @Nullable final ByteString transactionId,
+      @Nullable final com.google.firestore.v1.TransactionOptions newTransaction,
       @Nullable final Timestamp readTime,
       @Nullable final ExplainOptions explainOptions,
       final boolean isRetryRequestWithCursor) {
@@ -322,7 +372,7 @@ public abstract class StreamableQuery<SnapshotType> {
     currentSpan.addEvent(
         TelemetryConstants.METHOD_NAME_RUN_QUERY,
         new ImmutableMap.Builder<String, Object>()
-            .put(ATTRIBUTE_KEY_IS_TRANSACTIONAL, transactionId != null)
+            .put(ATTRIBUTE_KEY_IS_TRANSACTIONAL, transactionId != null || newTransaction != null)
             .put(ATTRIBUTE_KEY_IS_RETRY_WITH_CURSOR, isRetryRequestWithCursor)
             .build());
 
@@ -339,7 +389,9 @@ public abstract class StreamableQuery<SnapshotType> {
           boolean hasCompleted = false;
 
           @Override
-          public void onStart(StreamController streamController) {}
+          public void onStart(StreamController streamController) {
+            streamResponseObserver.onStart(streamController);
+          }
 
           @Override
           public void onResponse(RunQueryResponse response) {
@@ -386,6 +438,7 @@ public abstract class StreamableQuery<SnapshotType> {
                       streamResponseObserver,
                       startTimeNanos,
                       /* transactionId= */ null,
+                      /* newTransaction= */ null,
                       options.getRequireConsistency() ? cursor.getReadTime() : null,
                       explainOptions,
                       /* isRetryRequestWithCursor= */ true);
@@ -421,6 +474,12 @@ public abstract class StreamableQuery<SnapshotType> {
               return false;
             }
 
+            // Like transactional queries, queries that begin a transaction are retried via the
+            // transaction runner.
+            if (newTransaction != null) {
+              return false;
+            }
+
             Set<StatusCode.Code> retryableCodes =
                 FirestoreSettings.newBuilder().runQuerySettings().getRetryableCodes();
             return shouldRetryQuery(t, transactionId, startTimeNanos, retryableCodes);
@@ -428,7 +487,7 @@ public abstract class StreamableQuery<SnapshotType> {
         };
 
     rpcContext.streamRequest(
-        toRunQueryRequestBuilder(transactionId, readTime, explainOptions).build(),
+        toRunQueryRequestBuilder(transactionId, newTransaction, readTime, explainOptions).build(),
         observer,
         rpcContext.getClient().runQueryCallable());
   }
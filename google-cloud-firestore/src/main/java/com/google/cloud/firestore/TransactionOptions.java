@@ -50,16 +50,19 @@ public final class TransactionOptions {
   private final TransactionOptionsType type;
   private final int numberOfAttempts;
   @Nullable private final Timestamp readTime;
+  private final boolean inlineBeginEnabled;
 
   TransactionOptions(
       Executor executor,
       TransactionOptionsType type,
       int numberOfAttempts,
-      @Nullable Timestamp readTime) {
+      @Nullable Timestamp readTime,
+      boolean inlineBeginEnabled) {
     this.executor = executor;
     this.type = type;
     this.numberOfAttempts = numberOfAttempts;
     this.readTime = readTime;
+    this.inlineBeginEnabled = inlineBeginEnabled;
   }
 
   /**
@@ -110,6 +113,21 @@ public final class TransactionOptions {
     }
   }
 
+  /**
+   * Whether the transaction is begun by its first read rather than by a separate BeginTransaction
+   * request.
+   *
+   * <p>With inline begin, the first read of each attempt starts the transaction, which saves one
+   * round trip to the backend. This applies to every kind of read: document lookups, queries,
+   * aggregations and pipelines. Transactions that only write are committed without beginning a
+   * transaction at all.
+   *
+   * @return Whether the transaction is begun by its first read.
+   */
+  public boolean isInlineBeginEnabled() {
+    return inlineBeginEnabled;
+  }
+
   /**
    * Create a default set of options suitable for most use cases. Transactions will be opened as
    * ReadWrite transactions and attempted up to 5 times.
@@ -190,6 +208,7 @@ public final class TransactionOptions {
   @InternalExtensionOnly
   public abstract static class Builder<B extends Builder<B>> {
     @Nullable protected Executor executor;
+    protected boolean inlineBeginEnabled;
 
     protected Builder(@Nullable Executor executor) {
       this.executor = executor;
@@ -216,6 +235,29 @@ public final class TransactionOptions {
       return (B) this;
     }
 
+    /**
+     * @return Whether the transaction is begun by its first read.
+     */
+    public boolean isInlineBeginEnabled() {
+      return inlineBeginEnabled;
+    }
+
+    /**
+     * Specify whether the transaction should be begun by its first read rather than by a separate
+     * BeginTransaction request, which saves one round trip per attempt. By default, inline begin is
+     * disabled.
+     *
+     * @param inlineBeginEnabled Whether the transaction is begun by its first read.
+     * @return {@code this} builder
+     * @see TransactionOptions#isInlineBeginEnabled()
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public B setInlineBeginEnabled(boolean inlineBeginEnabled) {
+      this.inlineBeginEnabled = inlineBeginEnabled;
+      return (B) this;
+    }
+
     /**
      * @return an instance of {@link TransactionOptions} from the values passed to this builder
      */
@@ -267,7 +309,8 @@ public final class TransactionOptions {
       } else {
         timestamp = (Timestamp) readTime;
       }
-      return new TransactionOptions(executor, TransactionOptionsType.READ_ONLY, 1, timestamp);
+      return new TransactionOptions(
+          executor, TransactionOptionsType.READ_ONLY, 1, timestamp, inlineBeginEnabled);
     }
   }
 
@@ -314,7 +357,7 @@ public final class TransactionOptions {
     @Override
     public TransactionOptions build() {
       return new TransactionOptions(
-          executor, TransactionOptionsType.READ_WRITE, numberOfAttempts, null);
+          executor, TransactionOptionsType.READ_WRITE, numberOfAttempts, null, inlineBeginEnabled);
     }
   }
 
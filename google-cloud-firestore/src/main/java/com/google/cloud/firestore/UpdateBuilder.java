@@ -147,14 +147,16 @@ public abstract class UpdateBuilder<T> {
   @Nonnull
   public T create(
       @Nonnull DocumentReference documentReference, @Nonnull Map<String, Object> fields) {
-    return performCreate(documentReference, fields);
+    return performCreate(documentReference, fields, /* isPlainJavaTypes= */ false);
   }
 
   private T performCreate(
-      @Nonnull DocumentReference documentReference, @Nonnull Map<String, Object> fields) {
+      @Nonnull DocumentReference documentReference,
+      @Nonnull Map<String, Object> fields,
+      boolean isPlainJavaTypes) {
     DocumentSnapshot documentSnapshot =
         DocumentSnapshot.fromObject(
-            firestore, documentReference, fields, UserDataConverter.NO_DELETES);
+            firestore, documentReference, fields, UserDataConverter.NO_DELETES, isPlainJavaTypes);
     DocumentTransform documentTransform =
         DocumentTransform.fromFieldPathMap(convertToFieldPaths(fields));
 
@@ -183,7 +185,8 @@ public abstract class UpdateBuilder<T> {
       throw FirestoreException.forInvalidArgument(
           "Can't set a document's data to an array or primitive");
     }
-    return performCreate(documentReference, (Map<String, Object>) data);
+    return performCreate(
+        documentReference, (Map<String, Object>) data, /* isPlainJavaTypes= */ true);
   }
 
   /**
@@ -214,7 +217,7 @@ public abstract class UpdateBuilder<T> {
       @Nonnull DocumentReference documentReference,
       @Nonnull Map<String, Object> fields,
       @Nonnull SetOptions options) {
-    return performSet(documentReference, fields, options);
+    return performSet(documentReference, fields, options, /* isPlainJavaTypes= */ false);
   }
 
   /**
@@ -249,13 +252,15 @@ public abstract class UpdateBuilder<T> {
     if (!(data instanceof Map)) {
       throw new IllegalArgumentException("Can't set a document's data to an array or primitive");
     }
-    return performSet(documentReference, (Map<String, Object>) data, options);
+    return performSet(
+        documentReference, (Map<String, Object>) data, options, /* isPlainJavaTypes= */ true);
   }
 
   private T performSet(
       @Nonnull DocumentReference documentReference,
       @Nonnull Map<String, Object> fields,
-      @Nonnull SetOptions options) {
+      @Nonnull SetOptions options,
+      boolean isPlainJavaTypes) {
     Map<FieldPath, Object> documentData;
 
     if (options.getFieldMask() != null) {
@@ -266,7 +271,11 @@ public abstract class UpdateBuilder<T> {
 
     DocumentSnapshot documentSnapshot =
         DocumentSnapshot.fromObject(
-            firestore, documentReference, expandObject(documentData), options.getEncodingOptions());
+            firestore,
+            documentReference,
+            expandObject(documentData),
+            options.getEncodingOptions(),
+            isPlainJavaTypes);
     FieldMask documentMask = FieldMask.EMPTY_MASK;
     DocumentTransform documentTransform = DocumentTransform.fromFieldPathMap(documentData);
 
@@ -642,6 +651,7 @@ public abstract class UpdateBuilder<T> {
 
       ApiFuture<CommitResponse> response =
           firestore.sendRequest(request, firestore.getClient().commitCallable());
+      response.addListener(this::invalidateCachedDocuments, MoreExecutors.directExecutor());
 
       ApiFuture<List<WriteResult>> returnValue =
           ApiFutures.transform(
@@ -671,6 +681,21 @@ public abstract class UpdateBuilder<T> {
     return builder.build();
   }
 
+  /**
+   * Evicts the documents written by this batch from the client-side document cache. Called once the
+   * commit completed, regardless of its outcome.
+   */
+  void invalidateCachedDocuments() {
+    DocumentCache documentCache = firestore.getDocumentCache();
+    if (documentCache != null) {
+      synchronized (writes) {
+        for (WriteOperation writeOperation : writes) {
+          documentCache.invalidate(writeOperation.documentReference.getResourcePath());
+        }
+      }
+    }
+  }
+
   /** Checks whether any updates have been queued. */
   boolean isEmpty() {
     synchronized (writes) {
@@ -686,6 +711,35 @@ public abstract class UpdateBuilder<T> {
     }
   }
 
+  /** Returns the write at the given index. */
+  Write getWrite(int index) {
+    synchronized (writes) {
+      return writes.get(index).write;
+    }
+  }
+
+  /** Replaces the write at the given index, which must target the same document. */
+  void replaceWrite(int index, Write write) {
+    synchronized (writes) {
+      WriteOperation operation = writes.get(index);
+      writes.set(index, new WriteOperation(operation.documentReference, write));
+    }
+  }
+
+  /** Adds a write that was created for a different instance. */
+  void appendWrite(DocumentReference documentReference, Write write) {
+    synchronized (writes) {
+      writes.add(new WriteOperation(documentReference, write));
+    }
+  }
+
+  /** Removes and returns the write that was added last. */
+  Write removeLastWrite() {
+    synchronized (writes) {
+      return writes.remove(writes.size() - 1).write;
+    }
+  }
+
   /** Get the number of writes. */
   public int getMutationsSize() {
     synchronized (writes) {
@@ -23,6 +23,7 @@ import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.pipeline.expressions.AggregateFunction;
 import com.google.cloud.firestore.pipeline.expressions.Expression;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Doubles;
@@ -32,6 +33,7 @@ import com.google.firestore.v1.Value;
 import com.google.protobuf.NullValue;
 import com.google.protobuf.Struct;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -113,9 +115,17 @@ class UserDataConverter {
   @Nullable
   static Value encodeValue(
       FieldPath path, @Nullable Object sanitizedObject, EncodingOptions options) {
+    return encodeValue(new EncodingPath(path), sanitizedObject, options);
+  }
+
+  @Nullable
+  private static Value encodeValue(
+      EncodingPath path, @Nullable Object sanitizedObject, EncodingOptions options) {
     if (sanitizedObject == FieldValue.DELETE_SENTINEL) {
       Preconditions.checkArgument(
-          options.allowDelete(path), "FieldValue.delete() is not supported at field '%s'.", path);
+          options.allowDelete(path.toFieldPath()),
+          "FieldValue.delete() is not supported at field '%s'.",
+          path);
       return null;
     } else if (sanitizedObject instanceof FieldValue) {
       Preconditions.checkArgument(
@@ -155,13 +165,16 @@ class UserDataConverter {
     } else if (sanitizedObject instanceof List) {
       ArrayValue.Builder res = ArrayValue.newBuilder();
       int i = 0;
+      path.push();
       for (Object child : (List) sanitizedObject) {
-        Value encodedValue = encodeValue(path.append(Integer.toString(i++)), child, options);
+        path.setIndex(i++);
+        Value encodedValue = encodeValue(path, child, options);
         if (encodedValue != null) {
           res.addValues(encodedValue);
         }
       }
-      return Value.newBuilder().setArrayValue(res.build()).build();
+      path.pop();
+      return Value.newBuilder().setArrayValue(res).build();
     } else if (sanitizedObject instanceof GeoPoint) {
       GeoPoint geopoint = (GeoPoint) sanitizedObject;
       return Value.newBuilder().setGeoPointValue(geopoint.toProto()).build();
@@ -181,19 +194,20 @@ class UserDataConverter {
       MapValue.Builder res = MapValue.newBuilder();
       Map<String, Object> map = (Map<String, Object>) sanitizedObject;
 
+      path.push();
       for (Map.Entry<String, Object> entry : map.entrySet()) {
-        Value encodedValue =
-            encodeValue(
-                path.append(entry.getKey(), /* splitPath= */ false), entry.getValue(), options);
+        path.setKey(entry.getKey());
+        Value encodedValue = encodeValue(path, entry.getValue(), options);
         if (encodedValue != null) {
           res.putFields(entry.getKey(), encodedValue);
         }
       }
+      path.pop();
 
       // If we encounter an empty object, we always need to send it to make sure
       // the server creates a map entry.
       if (map.isEmpty() || res.getFieldsCount() != 0) {
-        return Value.newBuilder().setMapValue(res.build()).build();
+        return Value.newBuilder().setMapValue(res).build();
       } else {
         // The input map may only have contained field transforms, in which case we don't need to
         // send the map.
@@ -208,6 +222,65 @@ class UserDataConverter {
         "Cannot convert %s to Firestore Value", sanitizedObject);
   }
 
+  /**
+   * The field path of the value that is being encoded. Segments for list elements and map entries
+   * are tracked on a stack that is updated in place, and a {@link FieldPath} is only created if one
+   * is needed for a field delete or an error message.
+   */
+  private static final class EncodingPath {
+    private final FieldPath basePath;
+    // For every nesting level, the map key, or null for a list element.
+    private String[] keys = new String[4];
+    // For every nesting level, the list index if the level is a list element.
+    private int[] indices = new int[4];
+    private int depth;
+
+    EncodingPath(FieldPath basePath) {
+      this.basePath = basePath;
+    }
+
+    /** Adds a nesting level, which is set with {@link #setKey} or {@link #setIndex}. */
+    void push() {
+      if (depth == keys.length) {
+        keys = Arrays.copyOf(keys, depth * 2);
+        indices = Arrays.copyOf(indices, depth * 2);
+      }
+      ++depth;
+    }
+
+    void setKey(String key) {
+      Preconditions.checkArgument(
+          key != null && !key.isEmpty(), "'path' must be a non-empty String");
+      keys[depth - 1] = key;
+    }
+
+    void setIndex(int index) {
+      keys[depth - 1] = null;
+      indices[depth - 1] = index;
+    }
+
+    void pop() {
+      keys[--depth] = null;
+    }
+
+    FieldPath toFieldPath() {
+      if (depth == 0) {
+        return basePath;
+      }
+      ImmutableList.Builder<String> segments = ImmutableList.builder();
+      segments.addAll(basePath.getSegments());
+      for (int i = 0; i < depth; ++i) {
+        segments.add(keys[i] != null ? keys[i] : Integer.toString(indices[i]));
+      }
+      return basePath.createPathWithSegments(segments.build());
+    }
+
+    @Override
+    public String toString() {
+      return toFieldPath().toString();
+    }
+  }
+
   static MapValue encodeVector(double[] rawVector) {
     MapValue.Builder res = MapValue.newBuilder();
 
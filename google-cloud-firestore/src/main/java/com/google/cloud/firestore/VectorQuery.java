@@ -112,12 +112,13 @@ public final class VectorQuery extends StreamableQuery<VectorQuerySnapshot> {
   @Override
   protected RunQueryRequest.Builder toRunQueryRequestBuilder(
       @Nullable final ByteString transactionId,
+      @Nullable final com.google.firestore.v1.TransactionOptions newTransaction,
       @Nullable final Timestamp readTime,
       @Nullable ExplainOptions explainOptions) {
 
     // Builder for the base query
     RunQueryRequest.Builder requestBuilder =
-        query.toRunQueryRequestBuilder(transactionId, readTime, explainOptions);
+        query.toRunQueryRequestBuilder(transactionId, newTransaction, readTime, explainOptions);
 
     // Builder for find nearest
     StructuredQuery.FindNearest.Builder findNearestBuilder =
@@ -16,28 +16,17 @@
 
 package com.google.cloud.firestore;
 
-import com.google.api.core.CurrentMillisClock;
 import com.google.api.gax.grpc.GrpcStatusCode;
-import com.google.api.gax.retrying.ExponentialRetryAlgorithm;
-import com.google.api.gax.retrying.TimedAttemptSettings;
 import com.google.api.gax.rpc.ApiException;
-import com.google.api.gax.rpc.BidiStreamObserver;
-import com.google.api.gax.rpc.ClientStream;
-import com.google.api.gax.rpc.StreamController;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.DocumentChange.Type;
 import com.google.common.base.Preconditions;
 import com.google.firestore.v1.Document;
-import com.google.firestore.v1.ListenRequest;
-import com.google.firestore.v1.ListenResponse;
 import com.google.firestore.v1.Target;
 import com.google.firestore.v1.Target.QueryTarget;
-import com.google.firestore.v1.TargetChange;
 import com.google.protobuf.ByteString;
 import io.grpc.Status;
 import io.grpc.Status.Code;
-import io.grpc.StatusException;
-import io.grpc.StatusRuntimeException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -45,8 +34,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -55,27 +42,23 @@ import javax.annotation.Nullable;
  * Watch provides listen functionality and exposes snapshot listeners. It can be used with any valid
  * Firestore Listen target.
  *
- * <p>This class is thread-compatible when called through the methods defined in ApiStreamObserver.
- * It synchronizes on its own instance so it is advisable not to use this class for external
- * synchronization.
+ * <p>Watch tracks the state of a single target. The Listen streams are owned by {@link
+ * WatchStreamPool}, which multiplexes the targets of many Watch instances over a shared stream and
+ * routes the responses to the target they belong to. All methods other than {@link #runWatch} are
+ * invoked by the stream while it holds its lock, which also guards the state of this class.
  */
-final class Watch implements BidiStreamObserver<ListenRequest, ListenResponse> {
+final class Watch {
   private static final Logger LOGGER = Logger.getLogger(Watch.class.getName());
 
-  /**
-   * Target ID used by watch. Watch uses a fixed target id since we only support one target per
-   * stream. The actual target ID we use is arbitrary.
-   */
-  private static final int WATCH_TARGET_ID = 0x1;
-
   private final FirestoreImpl firestore;
-  private final ScheduledExecutorService firestoreExecutor;
   private final Query query;
   private final Comparator<QueryDocumentSnapshot> comparator;
-  private final ExponentialRetryAlgorithm backoff;
+
+  /** The Listen target without its target ID, which is assigned by the stream. */
   private final Target target;
-  private TimedAttemptSettings nextAttempt;
-  private SilenceableBidiStream<ListenRequest, ListenResponse> stream;
+
+  /** The ID of this target within its stream. */
+  private int targetId;
 
   /** The sorted tree of DocumentSnapshots as sent in the last snapshot. */
   private DocumentSet documentSet;
@@ -92,6 +75,9 @@ final class Watch implements BidiStreamObserver<ListenRequest, ListenResponse> {
   /** The user-provided callback executor. */
   private Executor userCallbackExecutor;
 
+  /** Optional callback that is invoked when the stream is re-established. */
+  @Nullable private Runnable streamResetCallback;
+
   /**
    * Whether the retrieved result set has been marked 'CURRENT' (has caught up with the backend
    * state at target initialization).
@@ -127,12 +113,7 @@ final class Watch implements BidiStreamObserver<ListenRequest, ListenResponse> {
     this.target = target;
     this.query = query;
     this.comparator = query.comparator();
-    this.backoff =
-        new ExponentialRetryAlgorithm(
-            firestore.getOptions().getRetrySettings(), CurrentMillisClock.getDefaultClock());
-    this.firestoreExecutor = firestore.getClient().getExecutor();
     this.isActive = new AtomicBoolean();
-    this.nextAttempt = backoff.createFirstAttempt();
   }
 
   /**
@@ -144,7 +125,6 @@ final class Watch implements BidiStreamObserver<ListenRequest, ListenResponse> {
   static Watch forDocument(DocumentReference documentReference) {
     Target.Builder target = Target.newBuilder();
     target.getDocumentsBuilder().addDocuments(documentReference.getName());
-    target.setTargetId(WATCH_TARGET_ID);
 
     return new Watch(
         (FirestoreImpl) documentReference.getFirestore(),
@@ -165,192 +145,136 @@ final class Watch implements BidiStreamObserver<ListenRequest, ListenResponse> {
             .setStructuredQuery(query.buildQuery(/* forceImplicitOrderBy= */ true))
             .setParent(query.options.getParentPath().getName())
             .build());
-    target.setTargetId(WATCH_TARGET_ID);
 
     return new Watch((FirestoreImpl) query.getFirestore(), query, target.build());
   }
 
-  @Override
-  public void onStart(StreamController streamController) {}
-
-  @Override
-  public void onReady(ClientStream<ListenRequest> clientStream) {}
-
-  @Override
-  public synchronized void onResponse(ListenResponse listenResponse) {
-    switch (listenResponse.getResponseTypeCase()) {
-      case TARGET_CHANGE:
-        TargetChange change = listenResponse.getTargetChange();
-        boolean noTargetIds = change.getTargetIdsCount() == 0;
-
-        switch (change.getTargetChangeType()) {
-          case NO_CHANGE:
-            if (noTargetIds && change.hasReadTime() && current) {
-              // This means everything is up-to-date, so emit the current set of docs as a snapshot,
-              // if there were changes.
-              pushSnapshot(Timestamp.fromProto(change.getReadTime()), change.getResumeToken());
-            }
-            break;
-          case ADD:
-            if (WATCH_TARGET_ID != change.getTargetIds(0)) {
-              closeStream(FirestoreException.forInvalidArgument("Target ID must be 0x01"));
-            }
-            break;
-          case REMOVE:
-            Status status =
-                change.hasCause()
-                    ? Status.fromCodeValue(change.getCause().getCode())
-                    : Status.CANCELLED;
-            closeStream(
-                FirestoreException.forServerRejection(
-                    status, "Backend ended Listen stream: " + change.getCause().getMessage()));
-            break;
-          case CURRENT:
-            current = true;
-            break;
-          case RESET:
-            resetDocs();
-            break;
-          default:
-            closeStream(
-                FirestoreException.forInvalidArgument(
-                    "Encountered invalid target change type: " + change.getTargetChangeType()));
-        }
-
-        if (change.getResumeToken() != null
-            && affectsTarget(change.getTargetIdsList(), WATCH_TARGET_ID)) {
-          nextAttempt = backoff.createFirstAttempt();
-        }
-
-        break;
-      case DOCUMENT_CHANGE:
-        // No other targetIds can show up here, but we still need to see if the targetId was in the
-        // added list or removed list.
-        List<Integer> targetIds = listenResponse.getDocumentChange().getTargetIdsList();
-        List<Integer> removedTargetIds =
-            listenResponse.getDocumentChange().getRemovedTargetIdsList();
-        boolean changed = targetIds.contains(WATCH_TARGET_ID);
-        boolean removed = removedTargetIds.contains(WATCH_TARGET_ID);
-
-        Document document = listenResponse.getDocumentChange().getDocument();
-        ResourcePath name = ResourcePath.create(document.getName());
-
-        if (changed) {
-          changeMap.put(name, document);
-        } else if (removed) {
-          changeMap.put(name, null);
-        }
-        break;
-      case DOCUMENT_DELETE:
-        changeMap.put(ResourcePath.create(listenResponse.getDocumentDelete().getDocument()), null);
-        break;
-      case DOCUMENT_REMOVE:
-        changeMap.put(ResourcePath.create(listenResponse.getDocumentRemove().getDocument()), null);
-        break;
-      case FILTER:
-        // Keep copy of counts for producing log message.
-        // The method currentSize() is computationally expensive, and should only be run once.
-        int filterCount = listenResponse.getFilter().getCount();
-        int currentSize = currentSize();
-        if (filterCount != currentSize) {
-          LOGGER.info(
-              () ->
-                  String.format(
-                      "filter: count mismatch filter count %d != current size %d",
-                      filterCount, currentSize));
-          // We need to remove all the current results.
-          resetDocs();
-          // The filter didn't match, so re-issue the query.
-          resetStream();
-        }
-        break;
-      default:
-        closeStream(
-            FirestoreException.forInvalidArgument("Encountered invalid listen response type"));
-        break;
-    }
-  }
-
-  @Override
-  public synchronized void onError(Throwable throwable) {
-    maybeReopenStream(throwable);
-  }
-
-  @Override
-  public synchronized void onComplete() {
-    maybeReopenStream(new StatusException(Status.fromCode(Code.UNKNOWN)));
-  }
-
   /** API entry point that starts the Watch stream. */
   ListenerRegistration runWatch(
       final Executor userCallbackExecutor, EventListener<QuerySnapshot> listener) {
+    return runWatch(userCallbackExecutor, listener, /* streamResetCallback= */ null);
+  }
+
+  /**
+   * Starts the Watch stream.
+   *
+   * @param streamResetCallback Invoked on the callback executor whenever the stream is closed and
+   *     re-established. Until the next snapshot is raised, changes on the backend may not have been
+   *     delivered yet.
+   */
+  ListenerRegistration runWatch(
+      final Executor userCallbackExecutor,
+      EventListener<QuerySnapshot> listener,
+      @Nullable Runnable streamResetCallback) {
     boolean watchStarted = isActive.compareAndSet(false, true);
 
     Preconditions.checkState(watchStarted, "Can't restart an already active watch");
 
     this.userCallbackExecutor = userCallbackExecutor;
     this.listener = listener;
+    this.streamResetCallback = streamResetCallback;
 
-    this.stream = null;
     this.documentSet = DocumentSet.emptySet(comparator);
     this.changeMap = new HashMap<>();
     this.resumeToken = null;
     this.current = false;
 
-    initStream();
+    final WatchStreamPool.WatchStream stream = firestore.getWatchStreamPool().addTarget(this);
 
     return () -> {
       isActive.set(false);
-
-      firestore
-          .getClient()
-          .getExecutor()
-          .execute(
-              () -> {
-                synchronized (Watch.this) {
-                  stream.closeSend();
-                  stream = null;
-                }
-              });
+      stream.removeTarget(Watch.this);
     };
   }
 
+  /** Called by the stream when this target is registered or re-registered under a new ID. */
+  void setTargetId(int targetId) {
+    this.targetId = targetId;
+  }
+
+  FirestoreImpl getFirestore() {
+    return firestore;
+  }
+
+  int getTargetId() {
+    return targetId;
+  }
+
+  /** Returns the Listen target to send to the backend, including the last resume token. */
+  Target buildTarget() {
+    Target.Builder result = target.toBuilder().setTargetId(targetId);
+    if (resumeToken != null) {
+      result.setResumeToken(resumeToken);
+    }
+    return result.build();
+  }
+
+  /** Called when the backend has sent all changes up to the time at which the target was added. */
+  void onCurrent() {
+    current = true;
+  }
+
+  /** Called when the backend requests that the target is reset. */
+  void onReset() {
+    resetDocs();
+  }
+
   /**
-   * Returns the current count of all documents, including the changes from the current changeMap.
+   * Records a document change for the next snapshot.
+   *
+   * @param document The new document, or null if it was deleted or no longer matches the target.
    */
-  private int currentSize() {
-    ChangeSet changeSet = extractChanges(Timestamp.now());
-    return documentSet.size() + changeSet.adds.size() - changeSet.deletes.size();
+  void onDocumentChange(ResourcePath name, @Nullable Document document) {
+    changeMap.put(name, document);
   }
 
-  /** Helper to clear the docs on RESET or filter mismatch. */
-  private void resetDocs() {
-    changeMap.clear();
-    resumeToken = null;
+  /** Called when all targets of the stream are consistent at the given read time. */
+  void onGlobalSnapshot(Timestamp readTime, ByteString nextResumeToken) {
+    if (current) {
+      // This means everything is up-to-date, so emit the current set of docs as a snapshot,
+      // if there were changes.
+      pushSnapshot(readTime, nextResumeToken);
+    }
+  }
 
-    for (DocumentSnapshot snapshot : documentSet) {
-      // Mark each document as deleted. If documents are not deleted, they  will be sent again by
-      // the server.
-      changeMap.put(snapshot.getReference().getResourcePath(), null);
+  /**
+   * Verifies the number of documents that match the target. On a mismatch, all documents are reset
+   * and true is returned, in which case the stream needs to re-issue the target.
+   */
+  boolean onExistenceFilter(int filterCount) {
+    // Keep copy of counts for producing log message.
+    // The method currentSize() is computationally expensive, and should only be run once.
+    int currentSize = currentSize();
+    if (filterCount != currentSize) {
+      LOGGER.info(
+          () ->
+              String.format(
+                  "filter: count mismatch filter count %d != current size %d",
+                  filterCount, currentSize));
+      // We need to remove all the current results.
+      resetDocs();
+      notifyStreamReset();
+      return true;
     }
+    return false;
+  }
 
+  /** Called when the stream is re-established. Clears the changes since the last snapshot. */
+  void onStreamReset() {
+    changeMap.clear();
     current = false;
+    notifyStreamReset();
   }
 
-  /** Closes the stream and calls onError() if the stream is still active. */
-  private void closeStream(final Throwable throwable) {
-    if (stream != null) {
-      stream.closeSendAndSilence();
-      stream = null;
-    }
-
+  /** Called when the target is removed by the stream because of an error. */
+  void onClose(final Throwable throwable) {
     if (isActive.getAndSet(false)) {
       userCallbackExecutor.execute(
           () -> {
             if (throwable instanceof FirestoreException) {
               listener.onEvent(null, (FirestoreException) throwable);
             } else {
-              Status status = getStatus(throwable);
+              Status status = WatchStreamPool.getStatus(throwable);
               FirestoreException firestoreException =
                   FirestoreException.forApiException(
                       new ApiException(
@@ -363,81 +287,40 @@ final class Watch implements BidiStreamObserver<ListenRequest, ListenResponse> {
     }
   }
 
-  /**
-   * Re-opens the stream unless the specified error is considered permanent. Clears the change map.
-   */
-  private void maybeReopenStream(Throwable throwable) {
-    if (isActive.get() && !isPermanentError(throwable)) {
-      if (isResourceExhaustedError(throwable)) {
-        nextAttempt = backoff.createNextAttempt(nextAttempt);
-      }
-
-      changeMap.clear();
-      resetStream();
-    } else {
-      closeStream(throwable);
+  private void notifyStreamReset() {
+    if (streamResetCallback != null) {
+      userCallbackExecutor.execute(streamResetCallback);
     }
   }
 
-  /** Helper to restart the outgoing stream to the backend. */
-  private void resetStream() {
-    if (stream != null) {
-      stream.closeSendAndSilence();
-      stream = null;
+  /**
+   * Returns the current count of all documents, including the changes from the current changeMap.
+   */
+  private int currentSize() {
+    int size = documentSet.size();
+    for (Entry<ResourcePath, Document> change : changeMap.entrySet()) {
+      boolean exists = documentSet.contains(change.getKey());
+      if (change.getValue() == null && exists) {
+        --size;
+      } else if (change.getValue() != null && !exists) {
+        ++size;
+      }
     }
-
-    initStream();
+    return size;
   }
 
-  /** Initializes a new stream to the backend with backoff. */
-  private void initStream() {
-    firestoreExecutor.schedule(
-        () -> {
-          try {
-            if (!isActive.get()) {
-              return;
-            }
-
-            synchronized (Watch.this) {
-              if (!isActive.get()) {
-                return;
-              }
-
-              Preconditions.checkState(stream == null);
-
-              current = false;
-              nextAttempt = backoff.createNextAttempt(nextAttempt);
-
-              stream =
-                  new SilenceableBidiStream<>(
-                      Watch.this,
-                      observer ->
-                          firestore.streamRequest(
-                              observer, firestore.getClient().listenCallable()));
-
-              ListenRequest.Builder request = ListenRequest.newBuilder();
-              request.setDatabase(firestore.getDatabaseName());
-              request.setAddTarget(target);
-              if (resumeToken != null) {
-                request.getAddTargetBuilder().setResumeToken(resumeToken);
-              }
+  /** Helper to clear the docs on RESET or filter mismatch. */
+  private void resetDocs() {
+    changeMap.clear();
+    resumeToken = null;
 
-              stream.send(request.build());
-            }
-          } catch (Throwable throwable) {
-            onError(throwable);
-          }
-        },
-        nextAttempt.getRandomizedRetryDelay().toMillis(),
-        TimeUnit.MILLISECONDS);
-  }
+    for (DocumentSnapshot snapshot : documentSet) {
+      // Mark each document as deleted. If documents are not deleted, they  will be sent again by
+      // the server.
+      changeMap.put(snapshot.getReference().getResourcePath(), null);
+    }
 
-  /**
-   * Checks if the current target id is included in the list of target ids. Returns true if no
-   * targetIds are provided.
-   */
-  private boolean affectsTarget(List<Integer> targetIds, int currentId) {
-    return targetIds == null || targetIds.isEmpty() || targetIds.contains(currentId);
+    current = false;
   }
 
   /** Splits up document changes into removals, additions, and updates. */
@@ -522,6 +405,59 @@ final class Watch implements BidiStreamObserver<ListenRequest, ListenResponse> {
     return null;
   }
 
+  /**
+   * Returns whether removals and additions should be applied by rebuilding the document tree.
+   * Applying a change individually costs O(log n) comparisons and allocations, while a rebuild
+   * costs O(n) but no comparisons beyond the merge.
+   */
+  private boolean shouldRebuild(int changeCount) {
+    int size = documentSet.size();
+    int log2Size = 32 - Integer.numberOfLeadingZeros(size);
+    return (long) changeCount * log2Size >= size;
+  }
+
+  /**
+   * Applies the sorted removals and additions by merging them with the current documents in a
+   * single pass. Produces the same DocumentChange events as applying the changes one by one: a
+   * removal's old index is its position in the document tree minus the number of preceding
+   * removals, and an addition's new index is its position in the merged result.
+   */
+  private void rebuildDocs(
+      List<QueryDocumentSnapshot> deletes,
+      List<QueryDocumentSnapshot> adds,
+      List<DocumentChange> appliedChanges) {
+    List<QueryDocumentSnapshot> mergedDocs =
+        new ArrayList<>(documentSet.size() - deletes.size() + adds.size());
+    List<DocumentChange> addChanges = new ArrayList<>(adds.size());
+    int deleteCount = 0;
+    int addCount = 0;
+    int oldIndex = 0;
+
+    for (QueryDocumentSnapshot document : documentSet) {
+      if (deleteCount < deletes.size() && deletes.get(deleteCount) == document) {
+        appliedChanges.add(new DocumentChange(document, Type.REMOVED, oldIndex - deleteCount, -1));
+        ++deleteCount;
+      } else {
+        while (addCount < adds.size() && comparator.compare(adds.get(addCount), document) < 0) {
+          QueryDocumentSnapshot add = adds.get(addCount++);
+          addChanges.add(new DocumentChange(add, Type.ADDED, -1, mergedDocs.size()));
+          mergedDocs.add(add);
+        }
+        mergedDocs.add(document);
+      }
+      ++oldIndex;
+    }
+
+    while (addCount < adds.size()) {
+      QueryDocumentSnapshot add = adds.get(addCount++);
+      addChanges.add(new DocumentChange(add, Type.ADDED, -1, mergedDocs.size()));
+      mergedDocs.add(add);
+    }
+
+    appliedChanges.addAll(addChanges);
+    documentSet = documentSet.rebuild(mergedDocs, deletes, adds);
+  }
+
   /**
    * Applies the mutations in changeMap to the document tree. Modified 'documentSet' in-place and
    * returns the changed documents.
@@ -537,13 +473,18 @@ final class Watch implements BidiStreamObserver<ListenRequest, ListenResponse> {
     // and then modifications). We also need to sort the individual changes to assure that
     // oldIndex/newIndex keep incrementing.
     changeSet.deletes.sort(comparator);
-    for (QueryDocumentSnapshot delete : changeSet.deletes) {
-      appliedChanges.add(deleteDoc(delete));
-    }
-
     changeSet.adds.sort(comparator);
-    for (QueryDocumentSnapshot add : changeSet.adds) {
-      appliedChanges.add(addDoc(add));
+
+    if (shouldRebuild(changeSet.deletes.size() + changeSet.adds.size())) {
+      rebuildDocs(changeSet.deletes, changeSet.adds, appliedChanges);
+    } else {
+      for (QueryDocumentSnapshot delete : changeSet.deletes) {
+        appliedChanges.add(deleteDoc(delete));
+      }
+
+      for (QueryDocumentSnapshot add : changeSet.adds) {
+        appliedChanges.add(addDoc(add));
+      }
     }
 
     changeSet.updates.sort(comparator);
@@ -556,46 +497,4 @@ final class Watch implements BidiStreamObserver<ListenRequest, ListenResponse> {
 
     return appliedChanges;
   }
-
-  /** Determines whether a GRPC Error is considered permanent and should not be retried. */
-  private static boolean isPermanentError(Throwable throwable) {
-    Status status = getStatus(throwable);
-
-    if (status == null) {
-      return true;
-    }
-
-    switch (status.getCode()) {
-      case CANCELLED:
-      case UNKNOWN:
-      case DEADLINE_EXCEEDED:
-      case RESOURCE_EXHAUSTED:
-      case INTERNAL:
-      case UNAVAILABLE:
-      case UNAUTHENTICATED:
-        return false;
-      default:
-        return true;
-    }
-  }
-
-  /** Extracts the GRPC status code if available. Returns `null` for non-GRPC exceptions. */
-  @Nullable
-  private static Status getStatus(Throwable throwable) {
-    if (throwable instanceof StatusRuntimeException) {
-      return ((StatusRuntimeException) throwable).getStatus();
-    } else if (throwable instanceof StatusException) {
-      return ((StatusException) throwable).getStatus();
-    } else if (throwable instanceof ApiException
-        && ((ApiException) throwable).getStatusCode().getTransportCode() instanceof Code) {
-      return ((Code) ((ApiException) throwable).getStatusCode().getTransportCode()).toStatus();
-    }
-    return null;
-  }
-
-  /** Determines whether we need to initiate a longer backoff due to system overload. */
-  private static boolean isResourceExhaustedError(Throwable throwable) {
-    Status status = getStatus(throwable);
-    return status != null && status.getCode().equals(Code.RESOURCE_EXHAUSTED);
-  }
 }
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.api.core.CurrentMillisClock;
+import com.google.api.gax.retrying.ExponentialRetryAlgorithm;
+import com.google.api.gax.retrying.TimedAttemptSettings;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.BidiStreamObserver;
+import com.google.api.gax.rpc.ClientStream;
+import com.google.api.gax.rpc.StreamController;
+import com.google.cloud.Timestamp;
+import com.google.common.base.Preconditions;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.ExistenceFilter;
+import com.google.firestore.v1.ListenRequest;
+import com.google.firestore.v1.ListenResponse;
+import com.google.firestore.v1.TargetChange;
+import io.grpc.Status;
+import io.grpc.Status.Code;
+import io.grpc.StatusException;
+import io.grpc.StatusRuntimeException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Multiplexes the targets of all active {@link Watch} instances of a Firestore client over a small
+ * number of Listen streams. Each stream carries up to {@code maxTargetsPerStream} targets, which
+ * are identified by target IDs that are unique within their stream.
+ *
+ * <p>Streams are opened when the first target is added and closed once their last target is
+ * removed.
+ */
+final class WatchStreamPool {
+  /** The default number of targets that share a single Listen stream. */
+  static final int DEFAULT_MAX_TARGETS_PER_STREAM = 100;
+
+  private final int maxTargetsPerStream;
+
+  /** The streams that may still accept targets. Closed streams are removed lazily. */
+  private final List<WatchStream> streams = new ArrayList<>();
+
+  WatchStreamPool() {
+    this(DEFAULT_MAX_TARGETS_PER_STREAM);
+  }
+
+  WatchStreamPool(int maxTargetsPerStream) {
+    Preconditions.checkArgument(maxTargetsPerStream > 0, "maxTargetsPerStream must be positive");
+    this.maxTargetsPerStream = maxTargetsPerStream;
+  }
+
+  /**
+   * Registers the target with a stream that has spare capacity, opening a new stream if needed.
+   *
+   * @return The stream that the target was added to.
+   */
+  synchronized WatchStream addTarget(Watch watch) {
+    Iterator<WatchStream> iterator = streams.iterator();
+    while (iterator.hasNext()) {
+      WatchStream stream = iterator.next();
+      if (stream.tryAddTarget(watch)) {
+        return stream;
+      }
+      if (stream.isClosed()) {
+        iterator.remove();
+      }
+    }
+
+    WatchStream stream = new WatchStream(watch.getFirestore(), maxTargetsPerStream);
+    Preconditions.checkState(stream.tryAddTarget(watch));
+    streams.add(stream);
+    return stream;
+  }
+
+  /** Determines whether a GRPC Error is considered permanent and should not be retried. */
+  static boolean isPermanentError(Throwable throwable) {
+    Status status = getStatus(throwable);
+
+    if (status == null) {
+      return true;
+    }
+
+    switch (status.getCode()) {
+      case CANCELLED:
+      case UNKNOWN:
+      case DEADLINE_EXCEEDED:
+      case RESOURCE_EXHAUSTED:
+      case INTERNAL:
+      case UNAVAILABLE:
+      case UNAUTHENTICATED:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  /** Extracts the GRPC status code if available. Returns `null` for non-GRPC exceptions. */
+  @Nullable
+  static Status getStatus(Throwable throwable) {
+    if (throwable instanceof StatusRuntimeException) {
+      return ((StatusRuntimeException) throwable).getStatus();
+    } else if (throwable instanceof StatusException) {
+      return ((StatusException) throwable).getStatus();
+    } else if (throwable instanceof ApiException
+        && ((ApiException) throwable).getStatusCode().getTransportCode() instanceof Code) {
+      return ((Code) ((ApiException) throwable).getStatusCode().getTransportCode()).toStatus();
+    }
+    return null;
+  }
+
+  /** Determines whether we need to initiate a longer backoff due to system overload. */
+  private static boolean isResourceExhaustedError(Throwable throwable) {
+    Status status = getStatus(throwable);
+    return status != null && status.getCode().equals(Code.RESOURCE_EXHAUSTED);
+  }
+
+  /**
+   * A Listen stream that is shared by multiple targets. Responses are routed to the targets based
+   * on the target IDs they contain.
+   *
+   * <p>This class is thread-compatible when called through the methods defined in
+   * BidiStreamObserver. It synchronizes on its own instance, which also guards the state of the
+   * registered targets.
+   */
+  static final class WatchStream implements BidiStreamObserver<ListenRequest, ListenResponse> {
+    private final FirestoreImpl firestore;
+    private final ScheduledExecutorService firestoreExecutor;
+    private final ExponentialRetryAlgorithm backoff;
+    private final int maxTargets;
+    private TimedAttemptSettings nextAttempt;
+    private SilenceableBidiStream<ListenRequest, ListenResponse> stream;
+
+    /** The registered targets, keyed by target ID. */
+    private final Map<Integer, Watch> targets = new LinkedHashMap<>();
+
+    /** The next target ID. IDs are not reused so that late responses cannot be misrouted. */
+    private int nextTargetId = 1;
+
+    /** Whether a new stream is about to be opened. */
+    private boolean initScheduled;
+
+    /** Set once the last target is removed or the stream failed permanently. */
+    private boolean closed;
+
+    WatchStream(FirestoreImpl firestore, int maxTargets) {
+      this.firestore = firestore;
+      this.maxTargets = maxTargets;
+      this.backoff =
+          new ExponentialRetryAlgorithm(
+              firestore.getOptions().getRetrySettings(), CurrentMillisClock.getDefaultClock());
+      this.firestoreExecutor = firestore.getClient().getExecutor();
+      this.nextAttempt = backoff.createFirstAttempt();
+    }
+
+    synchronized boolean isClosed() {
+      return closed;
+    }
+
+    /** Adds the target to this stream unless the stream is closed or full. */
+    synchronized boolean tryAddTarget(Watch watch) {
+      if (closed || targets.size() >= maxTargets) {
+        return false;
+      }
+
+      registerTarget(watch);
+      if (stream == null && !initScheduled) {
+        initStream();
+      }
+      return true;
+    }
+
+    /** Removes the target from this stream and closes the stream if it was the last target. */
+    synchronized void removeTarget(Watch watch) {
+      int targetId = watch.getTargetId();
+      if (targets.get(targetId) != watch) {
+        return;
+      }
+      targets.remove(targetId);
+
+      if (targets.isEmpty()) {
+        closed = true;
+        if (stream != null) {
+          final SilenceableBidiStream<ListenRequest, ListenResponse> currentStream = stream;
+          stream = null;
+          firestoreExecutor.execute(currentStream::closeSendAndSilence);
+        }
+      } else if (stream != null) {
+        stream.send(
+            ListenRequest.newBuilder()
+                .setDatabase(firestore.getDatabaseName())
+                .setRemoveTarget(targetId)
+                .build());
+      }
+    }
+
+    @Override
+    public void onStart(StreamController streamController) {}
+
+    @Override
+    public void onReady(ClientStream<ListenRequest> clientStream) {}
+
+    @Override
+    public synchronized void onResponse(ListenResponse listenResponse) {
+      switch (listenResponse.getResponseTypeCase()) {
+        case TARGET_CHANGE:
+          TargetChange change = listenResponse.getTargetChange();
+
+          switch (change.getTargetChangeType()) {
+            case NO_CHANGE:
+              if (change.getTargetIdsCount() == 0 && change.hasReadTime()) {
+                Timestamp readTime = Timestamp.fromProto(change.getReadTime());
+                for (Watch watch : new ArrayList<>(targets.values())) {
+                  watch.onGlobalSnapshot(readTime, change.getResumeToken());
+                }
+              }
+              break;
+            case ADD:
+              // Acknowledges a target that we added. Targets that were removed since may still be
+              // acknowledged, but IDs that this stream never issued indicate a protocol error.
+              for (int targetId : change.getTargetIdsList()) {
+                if (targetId <= 0 || targetId >= nextTargetId) {
+                  closeStream(
+                      FirestoreException.forInvalidArgument("Unknown target ID: " + targetId));
+                  break;
+                }
+              }
+              break;
+            case REMOVE:
+              Status status =
+                  change.hasCause()
+                      ? Status.fromCodeValue(change.getCause().getCode())
+                      : Status.CANCELLED;
+              FirestoreException exception =
+                  FirestoreException.forServerRejection(
+                      status, "Backend ended Listen stream: " + change.getCause().getMessage());
+              for (Watch watch : getTargets(change.getTargetIdsList())) {
+                targets.remove(watch.getTargetId());
+                watch.onClose(exception);
+              }
+              if (targets.isEmpty()) {
+                closeStream(exception);
+              }
+              break;
+            case CURRENT:
+              for (Watch watch : getTargets(change.getTargetIdsList())) {
+                watch.onCurrent();
+              }
+              break;
+            case RESET:
+              for (Watch watch : getTargets(change.getTargetIdsList())) {
+                watch.onReset();
+              }
+              break;
+            default:
+              closeStream(
+                  FirestoreException.forInvalidArgument(
+                      "Encountered invalid target change type: " + change.getTargetChangeType()));
+          }
+
+          nextAttempt = backoff.createFirstAttempt();
+          break;
+        case DOCUMENT_CHANGE:
+          Document document = listenResponse.getDocumentChange().getDocument();
+          ResourcePath name = ResourcePath.create(document.getName());
+
+          // A target that is listed in both lists receives the document.
+          for (int targetId : listenResponse.getDocumentChange().getRemovedTargetIdsList()) {
+            Watch watch = targets.get(targetId);
+            if (watch != null) {
+              watch.onDocumentChange(name, null);
+            }
+          }
+          for (int targetId : listenResponse.getDocumentChange().getTargetIdsList()) {
+            Watch watch = targets.get(targetId);
+            if (watch != null) {
+              watch.onDocumentChange(name, document);
+            }
+          }
+          break;
+        case DOCUMENT_DELETE:
+          ResourcePath deletedName =
+              ResourcePath.create(listenResponse.getDocumentDelete().getDocument());
+          for (Watch watch :
+              getTargets(listenResponse.getDocumentDelete().getRemovedTargetIdsList())) {
+            watch.onDocumentChange(deletedName, null);
+          }
+          break;
+        case DOCUMENT_REMOVE:
+          ResourcePath removedName =
+              ResourcePath.create(listenResponse.getDocumentRemove().getDocument());
+          for (Watch watch :
+              getTargets(listenResponse.getDocumentRemove().getRemovedTargetIdsList())) {
+            watch.onDocumentChange(removedName, null);
+          }
+          break;
+        case FILTER:
+          ExistenceFilter filter = listenResponse.getFilter();
+          List<Integer> filterTargetIds =
+              filter.getTargetId() != 0
+                  ? Collections.singletonList(filter.getTargetId())
+                  : Collections.emptyList();
+          for (Watch watch : getTargets(filterTargetIds)) {
+            if (watch.onExistenceFilter(filter.getCount())) {
+              // The filter didn't match, so re-issue the target under a new ID. Responses for the
+              // old ID that are still in flight are ignored.
+              int oldTargetId = watch.getTargetId();
+              targets.remove(oldTargetId);
+              if (stream != null) {
+                stream.send(
+                    ListenRequest.newBuilder()
+                        .setDatabase(firestore.getDatabaseName())
+                        .setRemoveTarget(oldTargetId)
+                        .build());
+              }
+              registerTarget(watch);
+            }
+          }
+          break;
+        default:
+          closeStream(
+              FirestoreException.forInvalidArgument("Encountered invalid listen response type"));
+          break;
+      }
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+      maybeReopenStream(throwable);
+    }
+
+    @Override
+    public synchronized void onComplete() {
+      maybeReopenStream(new StatusException(Status.fromCode(Code.UNKNOWN)));
+    }
+
+    /**
+     * Returns the registered targets with the given IDs. Returns all targets if no IDs are
+     * provided.
+     */
+    private List<Watch> getTargets(List<Integer> targetIds) {
+      if (targetIds.isEmpty()) {
+        return new ArrayList<>(targets.values());
+      }
+      List<Watch> result = new ArrayList<>(targetIds.size());
+      for (int targetId : targetIds) {
+        Watch watch = targets.get(targetId);
+        if (watch != null) {
+          result.add(watch);
+        }
+      }
+      return result;
+    }
+
+    /** Assigns a new target ID and sends the target if the stream is open. */
+    private void registerTarget(Watch watch) {
+      int targetId = nextTargetId++;
+      watch.setTargetId(targetId);
+      targets.put(targetId, watch);
+      if (stream != null) {
+        sendAddTarget(watch);
+      }
+    }
+
+    private void sendAddTarget(Watch watch) {
+      stream.send(
+          ListenRequest.newBuilder()
+              .setDatabase(firestore.getDatabaseName())
+              .setAddTarget(watch.buildTarget())
+              .build());
+    }
+
+    /** Closes the stream and notifies all remaining targets. */
+    private void closeStream(final Throwable throwable) {
+      if (stream != null) {
+        stream.closeSendAndSilence();
+        stream = null;
+      }
+
+      closed = true;
+      for (Watch watch : targets.values()) {
+        watch.onClose(throwable);
+      }
+      targets.clear();
+    }
+
+    /**
+     * Re-opens the stream unless the specified error is considered permanent. Clears the pending
+     * changes of all targets.
+     */
+    private void maybeReopenStream(Throwable throwable) {
+      if (!closed && !isPermanentError(throwable)) {
+        if (isResourceExhaustedError(throwable)) {
+          nextAttempt = backoff.createNextAttempt(nextAttempt);
+        }
+
+        resetStream();
+      } else {
+        closeStream(throwable);
+      }
+    }
+
+    /** Helper to restart the outgoing stream to the backend. */
+    private void resetStream() {
+      if (stream != null) {
+        stream.closeSendAndSilence();
+        stream = null;
+      }
+
+      for (Watch watch : targets.values()) {
+        watch.onStreamReset();
+      }
+
+      initStream();
+    }
+
+    /** Initializes a new stream to the backend with backoff and re-adds all targets. */
+    private void initStream() {
+      initScheduled = true;
+      firestoreExecutor.schedule(
+          () -> {
+            try {
+              synchronized (WatchStream.this) {
+                initScheduled = false;
+                if (closed) {
+                  return;
+                }
+
+                Preconditions.checkState(stream == null);
+
+                nextAttempt = backoff.createNextAttempt(nextAttempt);
+
+                stream =
+                    new SilenceableBidiStream<>(
+                        WatchStream.this,
+                        observer ->
+                            firestore.streamRequest(
+                                observer, firestore.getClient().listenCallable()));
+
+                for (Watch watch : targets.values()) {
+                  sendAddTarget(watch);
+                }
+              }
+            } catch (Throwable throwable) {
+              onError(throwable);
+            }
+          },
+          nextAttempt.getRandomizedRetryDelay().toMillis(),
+          TimeUnit.MILLISECONDS);
+    }
+  }
+}
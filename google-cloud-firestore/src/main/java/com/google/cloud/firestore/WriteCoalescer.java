@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import com.google.firestore.v1.DocumentMask;
+import com.google.firestore.v1.DocumentTransform.FieldTransform;
+import com.google.firestore.v1.MapValue;
+import com.google.firestore.v1.Precondition;
+import com.google.firestore.v1.Value;
+import com.google.firestore.v1.Write;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Combines two consecutive set or update writes to the same document into a single write that has
+ * the same effect as applying both writes in order.
+ *
+ * <p>Writes are only combined if the result can be expressed as a single write:
+ *
+ * <ul>
+ *   <li>Both writes must be set or update writes. Deletes are never combined.
+ *   <li>The combined write checks a single precondition, which must fail exactly when either write
+ *       would fail. The first write therefore may not have a precondition, in which case the second
+ *       write may only require that the document exists, which the first write guarantees.
+ *       Otherwise, both writes must require that the document exists.
+ *   <li>The second write may not overwrite a field that the first write transforms, since a single
+ *       write applies its transforms after its field values.
+ *   <li>Transforms of both writes may only target the same field if both are increments of the same
+ *       numeric type, which are summed.
+ * </ul>
+ */
+final class WriteCoalescer {
+
+  private WriteCoalescer() {}
+
+  /**
+   * Returns a write that is equivalent to applying {@code pending} followed by {@code next}, or
+   * null if the two writes cannot be combined.
+   */
+  @Nullable
+  static Write merge(Write pending, Write next) {
+    if (pending.getOperationCase() != Write.OperationCase.UPDATE
+        || next.getOperationCase() != Write.OperationCase.UPDATE) {
+      return null;
+    }
+    if (next.hasCurrentDocument() && !requiresExistence(next.getCurrentDocument())) {
+      return null;
+    }
+    if (pending.hasCurrentDocument()
+        && !(requiresExistence(pending.getCurrentDocument()) && next.hasCurrentDocument())) {
+      // If only the first write has a precondition, the second write would be applied even if the
+      // precondition fails.
+      return null;
+    }
+
+    if (!next.hasUpdateMask()) {
+      // The second write replaces the entire document, including all transformed fields.
+      return pending.toBuilder()
+          .setUpdate(next.getUpdate())
+          .clearUpdateMask()
+          .clearUpdateTransforms()
+          .addAllUpdateTransforms(next.getUpdateTransformsList())
+          .build();
+    }
+
+    List<FieldPath> pendingTransformPaths = transformPaths(pending);
+    List<FieldPath> nextMask = fieldPaths(next.getUpdateMask());
+    for (FieldPath path : nextMask) {
+      if (overlapsAny(path, pendingTransformPaths)) {
+        return null;
+      }
+    }
+
+    List<FieldTransform> transforms = mergeTransforms(pending, next, pendingTransformPaths);
+    if (transforms == null) {
+      return null;
+    }
+
+    Write.Builder merged = pending.toBuilder();
+    if (pending.hasUpdateMask()) {
+      DocumentMask mask = mergeMasks(pending.getUpdateMask(), nextMask);
+      if (mask == null) {
+        return null;
+      }
+      merged.setUpdateMask(mask);
+    }
+
+    Map<String, Value> fields = new HashMap<>(pending.getUpdate().getFieldsMap());
+    Map<String, Value> nextFields = next.getUpdate().getFieldsMap();
+    for (FieldPath path : nextMask) {
+      // Fields that are in the mask but have no value are deleted.
+      setField(fields, path.getSegments(), getField(nextFields, path.getSegments()));
+    }
+    merged.getUpdateBuilder().clearFields().putAllFields(fields);
+
+    return merged.clearUpdateTransforms().addAllUpdateTransforms(transforms).build();
+  }
+
+  private static boolean requiresExistence(Precondition precondition) {
+    return precondition.getConditionTypeCase() == Precondition.ConditionTypeCase.EXISTS
+        && precondition.getExists();
+  }
+
+  /**
+   * Returns the transforms of both writes, with increments of the same field summed. Returns null
+   * if both writes transform the same field in any other way.
+   */
+  @Nullable
+  private static List<FieldTransform> mergeTransforms(
+      Write pending, Write next, List<FieldPath> pendingTransformPaths) {
+    List<FieldTransform> transforms = new ArrayList<>(pending.getUpdateTransformsList());
+    for (FieldTransform transform : next.getUpdateTransformsList()) {
+      FieldPath path = FieldPath.fromServerFormat(transform.getFieldPath());
+      int index = pendingTransformPaths.indexOf(path);
+      if (index >= 0) {
+        FieldTransform sum = sumIncrements(transforms.get(index), transform);
+        if (sum == null) {
+          return null;
+        }
+        transforms.set(index, sum);
+      } else if (overlapsAny(path, pendingTransformPaths)) {
+        return null;
+      } else {
+        transforms.add(transform);
+      }
+    }
+    return transforms;
+  }
+
+  @Nullable
+  private static FieldTransform sumIncrements(FieldTransform first, FieldTransform second) {
+    if (!first.hasIncrement() || !second.hasIncrement()) {
+      return null;
+    }
+    Value left = first.getIncrement();
+    Value right = second.getIncrement();
+    Value sum;
+    if (left.hasIntegerValue() && right.hasIntegerValue()) {
+      try {
+        sum =
+            Value.newBuilder()
+                .setIntegerValue(Math.addExact(left.getIntegerValue(), right.getIntegerValue()))
+                .build();
+      } catch (ArithmeticException e) {
+        return null;
+      }
+    } else if (left.hasDoubleValue() && right.hasDoubleValue()) {
+      sum =
+          Value.newBuilder().setDoubleValue(left.getDoubleValue() + right.getDoubleValue()).build();
+    } else {
+      return null;
+    }
+    return first.toBuilder().setIncrement(sum).build();
+  }
+
+  /**
+   * Returns the union of the two masks, or null if a path of one mask is a parent of a different
+   * path of the other mask.
+   */
+  @Nullable
+  private static DocumentMask mergeMasks(DocumentMask pendingMask, List<FieldPath> nextMask) {
+    List<FieldPath> pendingPaths = fieldPaths(pendingMask);
+    Set<String> paths = new LinkedHashSet<>(pendingMask.getFieldPathsList());
+    for (FieldPath path : nextMask) {
+      if (!pendingPaths.contains(path)) {
+        if (overlapsAny(path, pendingPaths)) {
+          return null;
+        }
+        paths.add(path.getEncodedPath());
+      }
+    }
+    return DocumentMask.newBuilder().addAllFieldPaths(paths).build();
+  }
+
+  private static List<FieldPath> transformPaths(Write write) {
+    List<FieldPath> paths = new ArrayList<>(write.getUpdateTransformsCount());
+    for (FieldTransform transform : write.getUpdateTransformsList()) {
+      paths.add(FieldPath.fromServerFormat(transform.getFieldPath()));
+    }
+    return paths;
+  }
+
+  private static List<FieldPath> fieldPaths(DocumentMask mask) {
+    List<FieldPath> paths = new ArrayList<>(mask.getFieldPathsCount());
+    for (String path : mask.getFieldPathsList()) {
+      paths.add(FieldPath.fromServerFormat(path));
+    }
+    return paths;
+  }
+
+  /** Returns whether the path is equal to, a parent of or a child of any of the given paths. */
+  private static boolean overlapsAny(FieldPath path, List<FieldPath> paths) {
+    for (FieldPath other : paths) {
+      if (path.isPrefixOf(other) || other.isPrefixOf(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  private static Value getField(Map<String, Value> fields, List<String> segments) {
+    Value value = fields.get(segments.get(0));
+    for (int i = 1; value != null && i < segments.size(); ++i) {
+      if (!value.hasMapValue()) {
+        return null;
+      }
+      value = value.getMapValue().getFieldsOrDefault(segments.get(i), null);
+    }
+    return value;
+  }
+
+  /** Sets the field at the given path, or deletes it if {@code value} is null. */
+  private static void setField(
+      Map<String, Value> fields, List<String> segments, @Nullable Value value) {
+    String key = segments.get(0);
+    if (segments.size() == 1) {
+      if (value != null) {
+        fields.put(key, value);
+      } else {
+        fields.remove(key);
+      }
+      return;
+    }
+
+    Value current = fields.get(key);
+    if (current == null || !current.hasMapValue()) {
+      if (value == null) {
+        return;
+      }
+      current = Value.newBuilder().setMapValue(MapValue.getDefaultInstance()).build();
+    }
+    Map<String, Value> nested = new HashMap<>(current.getMapValue().getFieldsMap());
+    setField(nested, segments.subList(1, segments.size()), value);
+    fields.put(
+        key, Value.newBuilder().setMapValue(MapValue.newBuilder().putAllFields(nested)).build());
+  }
+}
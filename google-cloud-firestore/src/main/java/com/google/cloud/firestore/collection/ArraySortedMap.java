@@ -37,13 +37,21 @@ import java.util.Map;
 @InternalApi
 public class ArraySortedMap<K, V> extends ImmutableSortedMap<K, V> {
 
-  @SuppressWarnings("unchecked")
   public static <A, B, C> ArraySortedMap<A, C> buildFrom(
       List<A> keys,
       Map<B, C> values,
       Builder.KeyTranslator<A, B> translator,
       Comparator<A> comparator) {
     keys.sort(comparator);
+    return buildFromSorted(keys, values, translator, comparator);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <A, B, C> ArraySortedMap<A, C> buildFromSorted(
+      List<A> keys,
+      Map<B, C> values,
+      Builder.KeyTranslator<A, B> translator,
+      Comparator<A> comparator) {
     int size = keys.size();
     A[] keyArray = (A[]) new Object[size];
     C[] valueArray = (C[]) new Object[size];
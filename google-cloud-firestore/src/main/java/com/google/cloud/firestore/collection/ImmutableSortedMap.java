@@ -154,5 +154,21 @@ public abstract class ImmutableSortedMap<K, V> implements Iterable<Map.Entry<K,
         return RBTreeSortedMap.buildFrom(keys, values, translator, comparator);
       }
     }
+
+    /**
+     * Builds a map from keys that are already sorted by the comparator. Unlike {@link #buildFrom},
+     * this does not compare any keys.
+     */
+    public static <A, B, C> ImmutableSortedMap<A, C> buildFromSorted(
+        List<A> keys,
+        Map<B, C> values,
+        ImmutableSortedMap.Builder.KeyTranslator<A, B> translator,
+        Comparator<A> comparator) {
+      if (keys.size() < ARRAY_TO_RB_TREE_SIZE_THRESHOLD) {
+        return ArraySortedMap.buildFromSorted(keys, values, translator, comparator);
+      } else {
+        return RBTreeSortedMap.buildFromSorted(keys, values, translator, comparator);
+      }
+    }
   }
 }
@@ -66,6 +66,16 @@ public class ImmutableSortedSet<T> implements Iterable<T> {
     this.map = map;
   }
 
+  /** Creates a set from elements that are already sorted by the comparator. */
+  public static <T> ImmutableSortedSet<T> fromSortedList(List<T> elems, Comparator<T> comparator) {
+    return new ImmutableSortedSet<>(
+        ImmutableSortedMap.Builder.buildFromSorted(
+            elems,
+            Collections.emptyMap(),
+            ImmutableSortedMap.Builder.identityTranslator(),
+            comparator));
+  }
+
   @Override
   public boolean equals(Object other) {
     if (this == other) {
@@ -135,4 +145,8 @@ public class ImmutableSortedSet<T> implements Iterable<T> {
   public int indexOf(T entry) {
     return this.map.indexOf(entry);
   }
+
+  public Comparator<T> getComparator() {
+    return this.map.getComparator();
+  }
 }
@@ -230,6 +230,14 @@ public class RBTreeSortedMap<K, V> extends ImmutableSortedMap<K, V> {
     return Builder.buildFrom(keys, values, translator, comparator);
   }
 
+  public static <A, B, C> RBTreeSortedMap<A, C> buildFromSorted(
+      List<A> keys,
+      Map<B, C> values,
+      ImmutableSortedMap.Builder.KeyTranslator<A, B> translator,
+      Comparator<A> comparator) {
+    return Builder.buildFromSorted(keys, values, translator, comparator);
+  }
+
   public static <A, B> RBTreeSortedMap<A, B> fromMap(Map<A, B> values, Comparator<A> comparator) {
     return Builder.buildFrom(
         new ArrayList<>(values.keySet()),
@@ -348,8 +356,16 @@ public class RBTreeSortedMap<K, V> extends ImmutableSortedMap<K, V> {
         Map<B, C> values,
         ImmutableSortedMap.Builder.KeyTranslator<A, B> translator,
         Comparator<A> comparator) {
-      Builder<A, B, C> builder = new Builder<>(keys, values, translator);
       keys.sort(comparator);
+      return buildFromSorted(keys, values, translator, comparator);
+    }
+
+    public static <A, B, C> RBTreeSortedMap<A, C> buildFromSorted(
+        List<A> keys,
+        Map<B, C> values,
+        ImmutableSortedMap.Builder.KeyTranslator<A, B> translator,
+        Comparator<A> comparator) {
+      Builder<A, B, C> builder = new Builder<>(keys, values, translator);
       Iterator<BooleanChunk> iter = (new Base1_2(keys.size())).iterator();
       int index = keys.size();
       while (iter.hasNext()) {
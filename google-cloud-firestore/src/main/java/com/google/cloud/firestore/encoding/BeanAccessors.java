@@ -0,0 +1,214 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore.encoding;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.logging.Logger;
+
+/**
+ * Creates the accessors that bean mappers use to read and write properties.
+ *
+ * <p>By default, accessors are backed by {@link MethodHandle}s that are resolved once per class
+ * member and then invoked without the per-call access checks and argument boxing of {@code
+ * java.lang.reflect}. Members that cannot be converted to a method handle (for example final
+ * fields) fall back to reflection. Setting the environment variable {@code
+ * FIRESTORE_ENABLE_METHOD_HANDLE_ACCESSORS} to {@code false} or {@code off} uses reflection for all
+ * members.
+ *
+ * <p>Both implementations report failures the same way: exceptions thrown by user code are wrapped
+ * in an {@link InvocationTargetException}, which the mappers rethrow as a {@link RuntimeException}.
+ */
+final class BeanAccessors {
+  private static final Logger LOGGER = Logger.getLogger(BeanAccessors.class.getName());
+
+  static final String ENABLE_METHOD_HANDLE_ACCESSORS_ENV_VAR =
+      "FIRESTORE_ENABLE_METHOD_HANDLE_ACCESSORS";
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  /** Whether method handle accessors are used by default. */
+  static final boolean METHOD_HANDLES_ENABLED = shouldEnableMethodHandles();
+
+  private BeanAccessors() {}
+
+  /** Reads a property from a bean instance. */
+  interface Getter {
+    Object get(Object instance) throws IllegalAccessException, InvocationTargetException;
+  }
+
+  /** Writes a property of a bean instance. */
+  interface Setter {
+    void set(Object instance, Object value)
+        throws IllegalAccessException, InvocationTargetException;
+  }
+
+  /** Creates a new bean instance from the given constructor arguments. */
+  interface Instantiator<T> {
+    T newInstance(Object... args)
+        throws InstantiationException, IllegalAccessException, InvocationTargetException;
+  }
+
+  static boolean shouldEnableMethodHandles() {
+    String enableMethodHandlesEnvVar = System.getenv(ENABLE_METHOD_HANDLE_ACCESSORS_ENV_VAR);
+    if (enableMethodHandlesEnvVar != null
+        && (enableMethodHandlesEnvVar.equalsIgnoreCase("false")
+            || enableMethodHandlesEnvVar.equalsIgnoreCase("off"))) {
+      return false;
+    }
+    return true;
+  }
+
+  /** Returns a getter that invokes the given accessible, zero-argument method. */
+  static Getter getter(Method method, boolean useMethodHandles) {
+    if (useMethodHandles) {
+      try {
+        MethodHandle handle =
+            LOOKUP.unreflect(method).asType(MethodType.methodType(Object.class, Object.class));
+        return instance -> {
+          try {
+            return handle.invokeExact(instance);
+          } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+          }
+        };
+      } catch (IllegalAccessException e) {
+        logFallback(method, e);
+      }
+    }
+    return instance -> method.invoke(instance);
+  }
+
+  /** Returns a getter that reads the given accessible field. */
+  static Getter getter(Field field, boolean useMethodHandles) {
+    if (useMethodHandles) {
+      try {
+        MethodHandle handle =
+            LOOKUP.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+        return instance -> {
+          try {
+            return handle.invokeExact(instance);
+          } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+          }
+        };
+      } catch (IllegalAccessException e) {
+        logFallback(field, e);
+      }
+    }
+    return field::get;
+  }
+
+  /** Returns a setter that invokes the given accessible, single-argument method. */
+  static Setter setter(Method method, boolean useMethodHandles) {
+    if (useMethodHandles) {
+      try {
+        MethodHandle handle =
+            LOOKUP
+                .unreflect(method)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return checkPrimitive(
+            method.getParameterTypes()[0],
+            (instance, value) -> {
+              try {
+                handle.invokeExact(instance, value);
+              } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+              }
+            });
+      } catch (IllegalAccessException e) {
+        logFallback(method, e);
+      }
+    }
+    return (instance, value) -> method.invoke(instance, value);
+  }
+
+  /** Returns a setter that writes the given accessible field. */
+  static Setter setter(Field field, boolean useMethodHandles) {
+    if (useMethodHandles) {
+      try {
+        MethodHandle handle =
+            LOOKUP
+                .unreflectSetter(field)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return checkPrimitive(
+            field.getType(),
+            (instance, value) -> {
+              try {
+                handle.invokeExact(instance, value);
+              } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+              }
+            });
+      } catch (IllegalAccessException e) {
+        logFallback(field, e);
+      }
+    }
+    return field::set;
+  }
+
+  /** Returns an instantiator that invokes the given accessible constructor. */
+  static <T> Instantiator<T> instantiator(Constructor<T> constructor, boolean useMethodHandles) {
+    if (useMethodHandles) {
+      try {
+        int parameterCount = constructor.getParameterTypes().length;
+        MethodHandle handle =
+            LOOKUP
+                .unreflectConstructor(constructor)
+                .asType(MethodType.genericMethodType(parameterCount))
+                .asSpreader(Object[].class, parameterCount);
+        Class<T> clazz = constructor.getDeclaringClass();
+        return args -> {
+          try {
+            return clazz.cast(handle.invokeExact(args));
+          } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+          }
+        };
+      } catch (IllegalAccessException e) {
+        logFallback(constructor, e);
+      }
+    }
+    return constructor::newInstance;
+  }
+
+  /**
+   * Mirrors the reflective behavior of rejecting {@code null} for primitive parameters, which would
+   * otherwise surface as a {@link NullPointerException} during unboxing.
+   */
+  private static Setter checkPrimitive(Class<?> type, Setter setter) {
+    if (!type.isPrimitive()) {
+      return setter;
+    }
+    return (instance, value) -> {
+      if (value == null) {
+        throw new IllegalArgumentException(
+            "Cannot assign null to property of primitive type " + type.getName());
+      }
+      setter.set(instance, value);
+    };
+  }
+
+  private static void logFallback(Object member, IllegalAccessException e) {
+    LOGGER.fine(() -> "Using reflection to access " + member + ": " + e.getMessage());
+  }
+}
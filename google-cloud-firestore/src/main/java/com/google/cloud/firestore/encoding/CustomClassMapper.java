@@ -44,6 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 /** Helper class to convert to/from custom POJO classes and plain Java types. */
 @InternalApi
@@ -52,6 +53,9 @@ public class CustomClassMapper {
   /** Maximum depth before we give up and assume it's a recursive object graph. */
   private static final int MAX_DEPTH = 500;
 
+  /** Key that marks a map value as the encoding of a special type (for example a vector). */
+  private static final String RESERVED_MAP_KEY = "__type__";
+
   private static final ConcurrentMap<Class<?>, BeanMapper<?>> mappers = new ConcurrentHashMap<>();
 
   /**
@@ -88,6 +92,54 @@ public class CustomClassMapper {
         object, clazz, new DeserializeContext(DeserializeContext.ErrorPath.EMPTY, docRef));
   }
 
+  /**
+   * Converts the encoded fields of a document to an object of the provided class, without first
+   * decoding them to standard library Java types. Nested maps and arrays are mapped directly onto
+   * the properties of the target class, and only values that are assigned to a property are
+   * decoded.
+   *
+   * @param fields The encoded fields of the document
+   * @param clazz The class of the object to convert to
+   * @param docRef The value to set to {@link DocumentId} annotated fields in the custom class.
+   * @param valueDecoder Decodes a single value to its standard library Java representation.
+   * @return The POJO object.
+   */
+  public static <T> T convertToCustomClass(
+      Map<String, Value> fields,
+      Class<T> clazz,
+      DocumentReference docRef,
+      Function<Value, Object> valueDecoder) {
+    if (!isBeanClass(clazz)) {
+      Map<String, Object> data = new HashMap<>();
+      for (Map.Entry<String, Value> entry : fields.entrySet()) {
+        data.put(entry.getKey(), valueDecoder.apply(entry.getValue()));
+      }
+      return convertToCustomClass(data, clazz, docRef);
+    }
+    return deserializeToClass(
+        fields,
+        clazz,
+        new DeserializeContext(DeserializeContext.ErrorPath.EMPTY, docRef, valueDecoder));
+  }
+
+  /**
+   * Converts an encoded value to an object of the provided class, without first decoding it to
+   * standard library Java types.
+   *
+   * @param value The encoded value
+   * @param clazz The class of the object to convert to
+   * @param docRef The value to set to {@link DocumentId} annotated fields in the custom class.
+   * @param valueDecoder Decodes a single value to its standard library Java representation.
+   * @return The POJO object.
+   */
+  public static <T> T convertToCustomClass(
+      Value value, Class<T> clazz, DocumentReference docRef, Function<Value, Object> valueDecoder) {
+    return deserializeToClass(
+        value,
+        clazz,
+        new DeserializeContext(DeserializeContext.ErrorPath.EMPTY, docRef, valueDecoder));
+  }
+
   public static <T> Object serialize(T o) {
     return serialize(o, DeserializeContext.ErrorPath.EMPTY);
   }
@@ -214,6 +266,11 @@ public class CustomClassMapper {
       Object o, ParameterizedType type, DeserializeContext context) {
     // getRawType should always return a Class<?>
     Class<?> rawType = (Class<?>) type.getRawType();
+    if (o instanceof Value && context.valueDecoder != null) {
+      boolean isList = List.class.isAssignableFrom(rawType);
+      boolean isMapOrBean = !isList && !Collection.class.isAssignableFrom(rawType);
+      o = unwrapValue((Value) o, isList, isMapOrBean, context);
+    }
     if (List.class.isAssignableFrom(rawType)) {
       Type genericType = type.getActualTypeArguments()[0];
       if (o instanceof List) {
@@ -295,6 +352,9 @@ public class CustomClassMapper {
 
   @SuppressWarnings("unchecked")
   private static <T> T deserializeToClass(Object o, Class<T> clazz, DeserializeContext context) {
+    if (o instanceof Value && context.valueDecoder != null) {
+      o = unwrapValue((Value) o, /* unwrapArray= */ false, isBeanClass(clazz), context);
+    }
     if (o == null) {
       return null;
     } else if (clazz.isPrimitive()
@@ -335,6 +395,47 @@ public class CustomClassMapper {
     }
   }
 
+  /**
+   * Returns whether {@link #deserializeToClass} populates instances of {@code clazz} via a {@link
+   * BeanMapper}.
+   */
+  private static boolean isBeanClass(Class<?> clazz) {
+    return !clazz.isPrimitive()
+        && !Number.class.isAssignableFrom(clazz)
+        && !Boolean.class.isAssignableFrom(clazz)
+        && !Character.class.isAssignableFrom(clazz)
+        && !String.class.isAssignableFrom(clazz)
+        && !Date.class.isAssignableFrom(clazz)
+        && !Timestamp.class.isAssignableFrom(clazz)
+        && !Instant.class.isAssignableFrom(clazz)
+        && !Blob.class.isAssignableFrom(clazz)
+        && !GeoPoint.class.isAssignableFrom(clazz)
+        && !VectorValue.class.isAssignableFrom(clazz)
+        && !DocumentReference.class.isAssignableFrom(clazz)
+        && !clazz.isArray()
+        && clazz.getTypeParameters().length == 0
+        && !clazz.equals(Object.class)
+        && !clazz.isEnum();
+  }
+
+  /**
+   * Prepares an encoded value for deserialization. Arrays and maps that are converted to a List, a
+   * Map or a bean are unwrapped by one level, so that their elements can be decoded directly into
+   * the target type. All other values are fully decoded to their standard library Java
+   * representation.
+   */
+  private static Object unwrapValue(
+      Value value, boolean unwrapArray, boolean unwrapMap, DeserializeContext context) {
+    if (unwrapArray && value.getValueTypeCase() == Value.ValueTypeCase.ARRAY_VALUE) {
+      return value.getArrayValue().getValuesList();
+    } else if (unwrapMap
+        && value.getValueTypeCase() == Value.ValueTypeCase.MAP_VALUE
+        && !value.getMapValue().containsFields(RESERVED_MAP_KEY)) {
+      return value.getMapValue().getFieldsMap();
+    }
+    return context.valueDecoder.apply(value);
+  }
+
   private static <T> T convertBean(Object o, Class<T> clazz, DeserializeContext context) {
     BeanMapper<T> mapper = loadOrCreateBeanMapperForClass(clazz);
     if (o instanceof Map) {
@@ -18,6 +18,9 @@ package com.google.cloud.firestore.encoding;
 
 import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.annotation.DocumentId;
+import com.google.firestore.v1.Value;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 
 /** Holds information a deserialization operation needs to complete the job. */
 class DeserializeContext {
@@ -81,12 +84,24 @@ class DeserializeContext {
   /** Value used to set to {@link DocumentId} annotated fields during deserialization, if any. */
   final DocumentReference documentRef;
 
+  /**
+   * Decodes {@link Value} protos to standard library Java types, if the data being deserialized has
+   * not been decoded yet.
+   */
+  @Nullable final Function<Value, Object> valueDecoder;
+
   DeserializeContext newInstanceWithErrorPath(ErrorPath newPath) {
-    return new DeserializeContext(newPath, documentRef);
+    return new DeserializeContext(newPath, documentRef, valueDecoder);
   }
 
   DeserializeContext(ErrorPath path, DocumentReference docRef) {
+    this(path, docRef, null);
+  }
+
+  DeserializeContext(
+      ErrorPath path, DocumentReference docRef, @Nullable Function<Value, Object> decoder) {
     errorPath = path;
     documentRef = docRef;
+    valueDecoder = decoder;
   }
 }
@@ -37,6 +37,7 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
   private static final Logger LOGGER = Logger.getLogger(PojoBeanMapper.class.getName());
 
   private final Constructor<T> constructor;
+  private final BeanAccessors.Instantiator<T> instantiator;
 
   // Case insensitive mapping of properties to their case sensitive versions
   private final Map<String, String> properties;
@@ -49,7 +50,17 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
   private final Map<String, Method> setters;
   private final Map<String, Field> fields;
 
+  // Accessors for the getters/setters/fields above, resolved once when the mapper is created.
+  private final Map<String, BeanAccessors.Getter> getterAccessors;
+  private final Map<String, BeanAccessors.Setter> setterAccessors;
+  private final Map<String, BeanAccessors.Getter> fieldGetterAccessors;
+  private final Map<String, BeanAccessors.Setter> fieldSetterAccessors;
+
   PojoBeanMapper(Class<T> clazz) {
+    this(clazz, BeanAccessors.METHOD_HANDLES_ENABLED);
+  }
+
+  PojoBeanMapper(Class<T> clazz, boolean useMethodHandles) {
     super(clazz);
     properties = new HashMap<>();
 
@@ -57,6 +68,11 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
     getters = new HashMap<>();
     fields = new HashMap<>();
 
+    getterAccessors = new HashMap<>();
+    setterAccessors = new HashMap<>();
+    fieldGetterAccessors = new HashMap<>();
+    fieldSetterAccessors = new HashMap<>();
+
     Constructor<T> constructor;
     try {
       constructor = clazz.getDeclaredConstructor();
@@ -66,6 +82,8 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
       constructor = null;
     }
     this.constructor = constructor;
+    this.instantiator =
+        constructor != null ? BeanAccessors.instantiator(constructor, useMethodHandles) : null;
     // Add any public getters to properties (including isXyz())
     for (Method method : clazz.getMethods()) {
       if (shouldIncludeGetter(method)) {
@@ -176,6 +194,21 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
                 + " but no field or public setter was found");
       }
     }
+
+    for (Map.Entry<String, Method> getter : getters.entrySet()) {
+      getterAccessors.put(
+          getter.getKey(), BeanAccessors.getter(getter.getValue(), useMethodHandles));
+    }
+    for (Map.Entry<String, Method> setter : setters.entrySet()) {
+      setterAccessors.put(
+          setter.getKey(), BeanAccessors.setter(setter.getValue(), useMethodHandles));
+    }
+    for (Map.Entry<String, Field> field : fields.entrySet()) {
+      fieldGetterAccessors.put(
+          field.getKey(), BeanAccessors.getter(field.getValue(), useMethodHandles));
+      fieldSetterAccessors.put(
+          field.getKey(), BeanAccessors.setter(field.getValue(), useMethodHandles));
+    }
   }
 
   @Override
@@ -189,24 +222,18 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
       }
 
       Object propertyValue;
-      if (getters.containsKey(property)) {
-        Method getter = getters.get(property);
-        try {
-          propertyValue = getter.invoke(object);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-          throw new RuntimeException(e);
-        }
-      } else {
+      BeanAccessors.Getter getter = getterAccessors.get(property);
+      if (getter == null) {
         // Must be a field
-        Field field = fields.get(property);
-        if (field == null) {
+        getter = fieldGetterAccessors.get(property);
+        if (getter == null) {
           throw new IllegalStateException("Bean property without field or getter: " + property);
         }
-        try {
-          propertyValue = field.get(object);
-        } catch (IllegalAccessException e) {
-          throw new RuntimeException(e);
-        }
+      }
+      try {
+        propertyValue = getter.get(object);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        throw new RuntimeException(e);
       }
 
       Object serializedValue = getSerializedValue(property, propertyValue, path);
@@ -231,7 +258,7 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
 
     T instance;
     try {
-      instance = constructor.newInstance();
+      instance = instantiator.newInstance();
     } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
       throw new RuntimeException(e);
     }
@@ -250,7 +277,7 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
             CustomClassMapper.deserializeToType(
                 entry.getValue(), resolvedType, context.newInstanceWithErrorPath(childPath));
         try {
-          setter.invoke(instance, value);
+          setterAccessors.get(propertyName).set(instance, value);
         } catch (IllegalAccessException | InvocationTargetException e) {
           throw new RuntimeException(e);
         }
@@ -262,8 +289,8 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
             CustomClassMapper.deserializeToType(
                 entry.getValue(), resolvedType, context.newInstanceWithErrorPath(childPath));
         try {
-          field.set(instance, value);
-        } catch (IllegalAccessException e) {
+          fieldSetterAccessors.get(propertyName).set(instance, value);
+        } catch (IllegalAccessException | InvocationTargetException e) {
           throw new RuntimeException(e);
         }
         deserializedProperties.add(propertyName);
@@ -313,24 +340,26 @@ class PojoBeanMapper<T> extends BeanMapper<T> {
           throw childPath.deserializeError("Setter does not have exactly one parameter");
         }
         Type resolvedType = resolveType(params[0], types);
+        BeanAccessors.Setter setterAccessor = setterAccessors.get(docIdPropertyName);
         try {
           if (resolvedType == String.class) {
-            setter.invoke(instance, context.documentRef.getId());
+            setterAccessor.set(instance, context.documentRef.getId());
           } else {
-            setter.invoke(instance, context.documentRef);
+            setterAccessor.set(instance, context.documentRef);
           }
         } catch (IllegalAccessException | InvocationTargetException e) {
           throw new RuntimeException(e);
         }
       } else {
         Field docIdField = fields.get(docIdPropertyName);
+        BeanAccessors.Setter fieldAccessor = fieldSetterAccessors.get(docIdPropertyName);
         try {
           if (docIdField.getType() == String.class) {
-            docIdField.set(instance, context.documentRef.getId());
+            fieldAccessor.set(instance, context.documentRef.getId());
           } else {
-            docIdField.set(instance, context.documentRef);
+            fieldAccessor.set(instance, context.documentRef);
           }
-        } catch (IllegalAccessException e) {
+        } catch (IllegalAccessException | InvocationTargetException e) {
           throw new RuntimeException(e);
         }
       }
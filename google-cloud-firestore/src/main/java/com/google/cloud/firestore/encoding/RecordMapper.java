@@ -44,13 +44,20 @@ class RecordMapper<T> extends BeanMapper<T> {
   // A property name is the name annotated by @PropertyName, if exists; or the component name.
   // See method propertyName for details.
   private final Map<String, Method> accessors = new HashMap<>();
+  private final Map<String, BeanAccessors.Getter> accessorHandles = new HashMap<>();
   private final Constructor<T> constructor;
+  private final BeanAccessors.Instantiator<T> instantiator;
   private final Map<String, Integer> constructorParamIndexes = new HashMap<>();
 
   RecordMapper(Class<T> clazz) {
+    this(clazz, BeanAccessors.METHOD_HANDLES_ENABLED);
+  }
+
+  RecordMapper(Class<T> clazz, boolean useMethodHandles) {
     super(clazz);
 
     constructor = RECORD_INSPECTOR.getCanonicalConstructor(clazz);
+    instantiator = BeanAccessors.instantiator(constructor, useMethodHandles);
 
     AnnotatedElement[] recordComponents = RECORD_INSPECTOR.getRecordComponents(clazz);
     if (recordComponents.length == 0) {
@@ -62,7 +69,9 @@ class RecordMapper<T> extends BeanMapper<T> {
         Field field = clazz.getDeclaredField(RECORD_INSPECTOR.getName(recordComponents[i]));
         String propertyName = propertyName(field);
         constructorParamIndexes.put(propertyName, i);
-        accessors.put(propertyName, RECORD_INSPECTOR.getAccessor(recordComponents[i]));
+        Method accessor = RECORD_INSPECTOR.getAccessor(recordComponents[i]);
+        accessors.put(propertyName, accessor);
+        accessorHandles.put(propertyName, BeanAccessors.getter(accessor, useMethodHandles));
         applyFieldAnnotations(field);
       }
     } catch (NoSuchFieldException e) {
@@ -74,7 +83,7 @@ class RecordMapper<T> extends BeanMapper<T> {
   Map<String, Object> serialize(T object, DeserializeContext.ErrorPath path) {
     verifyValidType(object);
     Map<String, Object> result = new HashMap<>();
-    for (Map.Entry<String, Method> entry : accessors.entrySet()) {
+    for (Map.Entry<String, BeanAccessors.Getter> entry : accessorHandles.entrySet()) {
       String property = entry.getKey();
       // Skip @DocumentId annotated properties;
       if (documentIdPropertyNames.contains(property)) {
@@ -82,9 +91,8 @@ class RecordMapper<T> extends BeanMapper<T> {
       }
 
       Object propertyValue;
-      Method accessor = entry.getValue();
       try {
-        propertyValue = accessor.invoke(object);
+        propertyValue = entry.getValue().get(object);
       } catch (IllegalAccessException | InvocationTargetException e) {
         throw new RuntimeException(e);
       }
@@ -129,7 +137,7 @@ class RecordMapper<T> extends BeanMapper<T> {
     populateDocumentIdProperties(types, context, constructorParams, deserializedProperties);
 
     try {
-      return constructor.newInstance(constructorParams);
+      return instantiator.newInstance(constructorParams);
     } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
       throw new RuntimeException(e);
     }
@@ -20,6 +20,8 @@ import static com.google.cloud.firestore.telemetry.TelemetryConstants.FIRESTORE_
 import static com.google.cloud.firestore.telemetry.TelemetryConstants.METRIC_ATTRIBUTE_KEY_CLIENT_UID;
 import static com.google.cloud.firestore.telemetry.TelemetryConstants.METRIC_ATTRIBUTE_KEY_LIBRARY_NAME;
 import static com.google.cloud.firestore.telemetry.TelemetryConstants.METRIC_ATTRIBUTE_KEY_LIBRARY_VERSION;
+import static com.google.cloud.firestore.telemetry.TelemetryConstants.METRIC_NAME_DOCUMENT_CACHE_HIT_COUNT;
+import static com.google.cloud.firestore.telemetry.TelemetryConstants.METRIC_NAME_DOCUMENT_CACHE_MISS_COUNT;
 import static com.google.cloud.firestore.telemetry.TelemetryConstants.METRIC_NAME_END_TO_END_LATENCY;
 import static com.google.cloud.firestore.telemetry.TelemetryConstants.METRIC_NAME_FIRST_RESPONSE_LATENCY;
 import static com.google.cloud.firestore.telemetry.TelemetryConstants.METRIC_NAME_TRANSACTION_ATTEMPT_COUNT;
@@ -54,6 +56,8 @@ class BuiltinMetricsProvider {
   private DoubleHistogram firstResponseLatency;
   private DoubleHistogram transactionLatency;
   private LongCounter transactionAttemptCount;
+  private LongCounter documentCacheHitCount;
+  private LongCounter documentCacheMissCount;
 
   private ApiTracerFactory apiTracerFactory;
   private final Map<String, String> staticAttributes;
@@ -121,6 +125,21 @@ class BuiltinMetricsProvider {
             .setDescription("Number of Firestore transaction attempts including retries")
             .setUnit(INTEGER_UNIT)
             .build();
+
+    this.documentCacheHitCount =
+        meter
+            .counterBuilder(METRIC_PREFIX + "/" + METRIC_NAME_DOCUMENT_CACHE_HIT_COUNT)
+            .setDescription("Number of document reads served by the client-side document cache")
+            .setUnit(INTEGER_UNIT)
+            .build();
+
+    this.documentCacheMissCount =
+        meter
+            .counterBuilder(METRIC_PREFIX + "/" + METRIC_NAME_DOCUMENT_CACHE_MISS_COUNT)
+            .setDescription(
+                "Number of document reads that were not found in the client-side document cache")
+            .setUnit(INTEGER_UNIT)
+            .build();
   }
 
   public ApiTracerFactory getApiTracerFactory() {
@@ -166,10 +185,15 @@ class BuiltinMetricsProvider {
   }
 
   public LongCounter getCounter(MetricType metricType) {
-    if (metricType == MetricType.TRANSACTION_ATTEMPT_COUNT) {
-      return transactionAttemptCount;
-    } else {
-      throw new IllegalArgumentException("Unknown counter MetricType: " + metricType);
+    switch (metricType) {
+      case TRANSACTION_ATTEMPT_COUNT:
+        return transactionAttemptCount;
+      case DOCUMENT_CACHE_HIT_COUNT:
+        return documentCacheHitCount;
+      case DOCUMENT_CACHE_MISS_COUNT:
+        return documentCacheMissCount;
+      default:
+        throw new IllegalArgumentException("Unknown counter MetricType: " + metricType);
     }
   }
 
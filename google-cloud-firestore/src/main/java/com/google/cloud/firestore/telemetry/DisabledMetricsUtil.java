@@ -43,6 +43,9 @@ class DisabledMetricsUtil implements MetricsUtil {
 
     @Override
     public void incrementCounter() {}
+
+    @Override
+    public void recordCounter(MetricType metric, long count) {}
   }
 
   @Override
@@ -233,12 +233,18 @@ class EnabledMetricsUtil implements MetricsUtil {
           MoreExecutors.directExecutor());
     }
 
+    public void recordCounter(MetricType metric, long count) {
+      recordCounter(metric, count, StatusCode.Code.OK.toString());
+    }
+
     private void recordCounter(MetricType metric, String status) {
+      recordCounter(metric, counter, status);
+    }
+
+    private void recordCounter(MetricType metric, long count, String status) {
       Map<String, String> attributes = createAttributes(status, methodName);
-      defaultMetricsProvider.counterRecorder(
-          MetricType.TRANSACTION_ATTEMPT_COUNT, (long) counter, attributes);
-      customMetricsProvider.counterRecorder(
-          MetricType.TRANSACTION_ATTEMPT_COUNT, (long) counter, attributes);
+      defaultMetricsProvider.counterRecorder(metric, count, attributes);
+      customMetricsProvider.counterRecorder(metric, count, attributes);
     }
   }
 
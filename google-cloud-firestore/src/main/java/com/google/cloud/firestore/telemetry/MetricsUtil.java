@@ -115,5 +115,8 @@ public interface MetricsUtil {
 
     /** Increments the counter tracked inside the MetricsContext. */
     void incrementCounter();
+
+    /** Records the given value for a counter metric type for the current operation. */
+    void recordCounter(MetricType metric, long count);
   }
 }
@@ -102,6 +102,8 @@ public interface TelemetryConstants {
   String METRIC_NAME_END_TO_END_LATENCY = "end_to_end_latency";
   String METRIC_NAME_TRANSACTION_LATENCY = "transaction_latency";
   String METRIC_NAME_TRANSACTION_ATTEMPT_COUNT = "transaction_attempt_count";
+  String METRIC_NAME_DOCUMENT_CACHE_HIT_COUNT = "document_cache_hit_count";
+  String METRIC_NAME_DOCUMENT_CACHE_MISS_COUNT = "document_cache_miss_count";
 
   // Metrics collected on GAX and Firestore SDK layer
   Set<String> GAX_METRICS =
@@ -116,12 +118,16 @@ public interface TelemetryConstants {
           METRIC_NAME_FIRST_RESPONSE_LATENCY,
           METRIC_NAME_END_TO_END_LATENCY,
           METRIC_NAME_TRANSACTION_LATENCY,
-          METRIC_NAME_TRANSACTION_ATTEMPT_COUNT);
+          METRIC_NAME_TRANSACTION_ATTEMPT_COUNT,
+          METRIC_NAME_DOCUMENT_CACHE_HIT_COUNT,
+          METRIC_NAME_DOCUMENT_CACHE_MISS_COUNT);
 
   public enum MetricType {
     END_TO_END_LATENCY,
     FIRST_RESPONSE_LATENCY,
     TRANSACTION_LATENCY,
-    TRANSACTION_ATTEMPT_COUNT
+    TRANSACTION_ATTEMPT_COUNT,
+    DOCUMENT_CACHE_HIT_COUNT,
+    DOCUMENT_CACHE_MISS_COUNT
   }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static com.google.cloud.firestore.AdaptiveThrottler.EVALUATION_INTERVAL_MILLIS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.Status;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AdaptiveThrottlerTest {
+  private AdaptiveThrottler throttler;
+  private long nowMillis;
+
+  @Before
+  public void before() {
+    throttler =
+        new AdaptiveThrottler(
+            /* initialOpsPerSecond= */ 500,
+            /* maxOpsPerSecond= */ 10000,
+            /* initialBatchSize= */ 20,
+            /* initialMaxPendingOpCount= */ 500,
+            /* startTimeMillis= */ 0);
+  }
+
+  private void completeWindow(int writeCount, int throttledCount, long latencyMillis) {
+    nowMillis += EVALUATION_INTERVAL_MILLIS;
+    throttler.recordBatch(writeCount, throttledCount, latencyMillis, nowMillis);
+  }
+
+  @Test
+  public void startsWithInitialLimits() {
+    assertEquals(500, throttler.getOpsPerSecond());
+    assertEquals(20, throttler.getBatchSize());
+    assertEquals(500, throttler.getMaxPendingOpCount());
+  }
+
+  @Test
+  public void onlyAdjustsOncePerWindow() {
+    throttler.recordBatch(20, 0, 100, EVALUATION_INTERVAL_MILLIS - 1);
+    assertEquals(500, throttler.getOpsPerSecond());
+
+    throttler.recordBatch(20, 0, 100, EVALUATION_INTERVAL_MILLIS);
+    assertEquals(600, throttler.getOpsPerSecond());
+
+    throttler.recordBatch(20, 0, 100, EVALUATION_INTERVAL_MILLIS + 1);
+    assertEquals(600, throttler.getOpsPerSecond());
+  }
+
+  @Test
+  public void increasesAdditivelyWhileHealthy() {
+    completeWindow(20, 0, 100);
+    assertEquals(600, throttler.getOpsPerSecond());
+    assertEquals(40, throttler.getBatchSize());
+    assertEquals(40 * 26, throttler.getMaxPendingOpCount());
+
+    for (int i = 0; i < 100; ++i) {
+      completeWindow(40, 0, 100);
+    }
+    assertEquals(10000, throttler.getOpsPerSecond());
+    assertEquals(AdaptiveThrottler.MAX_BATCH_SIZE, throttler.getBatchSize());
+    assertEquals(
+        AdaptiveThrottler.MAX_BATCH_SIZE * AdaptiveThrottler.MAX_IN_FLIGHT_BATCHES,
+        throttler.getMaxPendingOpCount());
+  }
+
+  @Test
+  public void halvesLimitsWhenWritesAreThrottled() {
+    completeWindow(20, 0, 100);
+    completeWindow(100, 10, 100);
+    assertEquals(300, throttler.getOpsPerSecond());
+    assertEquals(20, throttler.getBatchSize());
+    assertEquals(20 * 13, throttler.getMaxPendingOpCount());
+  }
+
+  @Test
+  public void toleratesOccasionalThrottling() {
+    completeWindow(100, 5, 100);
+    assertEquals(600, throttler.getOpsPerSecond());
+  }
+
+  @Test
+  public void reducesLimitsWhenLatencyIncreases() {
+    completeWindow(20, 0, AdaptiveThrottler.MAX_HEALTHY_LATENCY_MILLIS + 1);
+    assertEquals(375, throttler.getOpsPerSecond());
+    assertEquals(15, throttler.getBatchSize());
+    assertEquals(15 * 18, throttler.getMaxPendingOpCount());
+  }
+
+  @Test
+  public void neverDropsBelowOneOperation() {
+    for (int i = 0; i < 20; ++i) {
+      completeWindow(10, 10, 100);
+    }
+    assertEquals(1, throttler.getOpsPerSecond());
+    assertEquals(1, throttler.getBatchSize());
+    assertEquals(1, throttler.getMaxPendingOpCount());
+  }
+
+  @Test
+  public void batchSizeDoesNotExceedRate() {
+    throttler =
+        new AdaptiveThrottler(
+            /* initialOpsPerSecond= */ 10,
+            /* maxOpsPerSecond= */ 30,
+            /* initialBatchSize= */ 20,
+            /* initialMaxPendingOpCount= */ 500,
+            /* startTimeMillis= */ 0);
+    assertEquals(10, throttler.getBatchSize());
+
+    completeWindow(10, 0, 100);
+    assertEquals(30, throttler.getOpsPerSecond());
+    assertEquals(30, throttler.getBatchSize());
+  }
+
+  @Test
+  public void treatsContentionAndOverloadAsThrottling() {
+    assertTrue(AdaptiveThrottler.isThrottled(Status.Code.RESOURCE_EXHAUSTED));
+    assertTrue(AdaptiveThrottler.isThrottled(Status.Code.ABORTED));
+    assertFalse(AdaptiveThrottler.isThrottled(Status.Code.UNAVAILABLE));
+    assertFalse(AdaptiveThrottler.isThrottled(Status.Code.INVALID_ARGUMENT));
+  }
+}
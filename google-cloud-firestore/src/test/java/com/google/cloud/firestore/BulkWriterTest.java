@@ -25,6 +25,8 @@ import static com.google.cloud.firestore.LocalFirestoreHelper.update;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
@@ -50,6 +52,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -57,6 +60,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nonnull;
 import org.junit.After;
 import org.junit.Assert;
@@ -414,6 +418,133 @@ public class BulkWriterTest {
     responseStubber.verifyAllRequestsSent();
   }
 
+  @Test
+  public void coalescesWritesToSameDocument() throws Exception {
+    Write mergedWrite =
+        set(
+                map(
+                    "foo",
+                    Value.newBuilder().setStringValue("bar").build(),
+                    "boo",
+                    Value.newBuilder().setStringValue("far").build()),
+                "coll/doc1")
+            .toBuilder()
+            .addAllUpdateTransforms(
+                LocalFirestoreHelper.transform(
+                    "count",
+                    LocalFirestoreHelper.increment(Value.newBuilder().setIntegerValue(3).build())))
+            .build();
+    ResponseStubber responseStubber =
+        new ResponseStubber() {
+          {
+            put(
+                batchWrite(
+                    mergedWrite,
+                    update(
+                        map("foo", Value.newBuilder().setStringValue("bar").build()),
+                        Collections.singletonList("foo"),
+                        com.google.firestore.v1.Precondition.newBuilder().setExists(true).build(),
+                        "coll/doc2")),
+                mergeResponses(successResponse(1), successResponse(2)));
+          }
+        };
+    responseStubber.initializeStub(batchWriteCapture, firestoreMock);
+
+    bulkWriter =
+        firestoreMock.bulkWriter(
+            BulkWriterOptions.builder()
+                .setExecutor(timeoutExecutor)
+                .setWriteCoalescingEnabled(true)
+                .build());
+    List<ApiFuture<WriteResult>> results = new ArrayList<>();
+    results.add(bulkWriter.set(doc1, LocalFirestoreHelper.SINGLE_FIELD_MAP));
+    results.add(bulkWriter.update(doc1, "count", FieldValue.increment(1)));
+    results.add(bulkWriter.update(doc1, "count", FieldValue.increment(2)));
+    results.add(bulkWriter.update(doc1, "boo", "far"));
+    ApiFuture<WriteResult> result2 = bulkWriter.update(doc2, "foo", "bar");
+    bulkWriter.close();
+
+    for (ApiFuture<WriteResult> result : results) {
+      assertEquals(Timestamp.ofTimeSecondsAndNanos(1, 0), result.get().getUpdateTime());
+    }
+    assertEquals(Timestamp.ofTimeSecondsAndNanos(2, 0), result2.get().getUpdateTime());
+    responseStubber.verifyAllRequestsSent();
+  }
+
+  @Test
+  public void coalesceOperationRestoresBatchWhenWriteFails() {
+    BulkCommitBatch batch =
+        new BulkCommitBatch(firestoreMock, MoreExecutors.directExecutor(), /* maxBatchSize= */ 20);
+    BulkWriterOperation first = operation(doc1, BulkWriter.OperationType.SET);
+    batch.enqueueOperation(first);
+    assertSame(first.getFuture(), batch.set(doc1, LocalFirestoreHelper.SINGLE_FIELD_MAP));
+    Write pending = batch.getWrite(0);
+
+    BulkWriterOperation failed = operation(doc1, BulkWriter.OperationType.UPDATE);
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            batch.coalesceOperation(
+                failed,
+                b -> {
+                  b.update(doc1, "foo", "baz");
+                  throw new IllegalStateException("Simulated failure");
+                }));
+    assertEquals(1, batch.getMutationsSize());
+    assertEquals(pending, batch.getWrite(0));
+    assertEquals(Collections.singletonList(first), batch.pendingOperations);
+
+    BulkWriterOperation coalesced = operation(doc1, BulkWriter.OperationType.UPDATE);
+    AtomicReference<ApiFuture<WriteResult>> result = new AtomicReference<>();
+    assertTrue(
+        batch.coalesceOperation(
+            coalesced,
+            b -> {
+              result.set(b.update(doc1, "foo", "baz"));
+              return result.get();
+            }));
+    assertSame(coalesced.getFuture(), result.get());
+    assertEquals(1, batch.getMutationsSize());
+  }
+
+  private static BulkWriterOperation operation(
+      DocumentReference documentReference, BulkWriter.OperationType operationType) {
+    return new BulkWriterOperation(
+        documentReference,
+        operationType,
+        op -> null,
+        writeResult -> ApiFutures.immediateFuture(null),
+        e -> ApiFutures.immediateFuture(false));
+  }
+
+  @Test
+  public void sendsWritesThatCannotBeCoalescedInDifferentBatches() throws Exception {
+    ResponseStubber responseStubber =
+        new ResponseStubber() {
+          {
+            put(
+                batchWrite(set(LocalFirestoreHelper.SINGLE_FIELD_PROTO, "coll/doc1")),
+                successResponse(1));
+            put(batchWrite(delete("coll/doc1")), successResponse(2));
+          }
+        };
+    responseStubber.initializeStub(batchWriteCapture, firestoreMock);
+
+    bulkWriter =
+        firestoreMock.bulkWriter(
+            BulkWriterOptions.builder()
+                .setExecutor(timeoutExecutor)
+                .setWriteCoalescingEnabled(true)
+                .build());
+    ApiFuture<WriteResult> result1 = bulkWriter.set(doc1, LocalFirestoreHelper.SINGLE_FIELD_MAP);
+    ApiFuture<WriteResult> result2 = bulkWriter.delete(doc1);
+    bulkWriter.close();
+
+    assertEquals(Timestamp.ofTimeSecondsAndNanos(1, 0), result1.get().getUpdateTime());
+    assertEquals(Timestamp.ofTimeSecondsAndNanos(2, 0), result2.get().getUpdateTime());
+    responseStubber.verifyAllRequestsSent();
+  }
+
   @Test
   public void sendWritesToDifferentDocsInSameBatch() throws Exception {
     ResponseStubber responseStubber =
@@ -1366,6 +1497,146 @@ public class BulkWriterTest {
     }
   }
 
+  @Test
+  public void cannotEnableAdaptiveThrottlingWithThrottlingDisabled() throws Exception {
+    try {
+      firestoreMock.bulkWriter(
+          BulkWriterOptions.builder()
+              .setThrottlingEnabled(false)
+              .setAdaptiveThrottlingEnabled(true)
+              .build());
+      fail("bulkWriter() call should have failed");
+    } catch (Exception e) {
+      assertEquals(
+          e.getMessage(),
+          "Cannot enable 'adaptiveThrottlingEnabled' when 'throttlingEnabled' is set to false.");
+    }
+  }
+
+  @Test
+  public void adaptiveThrottlingAdjustsBatchSize() throws Exception {
+    List<BatchWriteRequest> requests = stubSuccessfulBatchWrites();
+
+    bulkWriter =
+        firestoreMock.bulkWriter(
+            BulkWriterOptions.builder()
+                .setAdaptiveThrottlingEnabled(true)
+                .setExecutor(timeoutExecutor)
+                .build());
+    AdaptiveThrottler throttler = bulkWriter.getAdaptiveThrottler();
+    assertEquals(BulkWriter.MAX_BATCH_SIZE, throttler.getBatchSize());
+
+    // Report a window in which most writes were rejected, which halves the batch size.
+    throttler.recordBatch(20, 20, 100, Long.MAX_VALUE / 2);
+    assertEquals(BulkWriter.MAX_BATCH_SIZE / 2, throttler.getBatchSize());
+
+    for (int i = 0; i < 31; ++i) {
+      bulkWriter.set(firestoreMock.document("coll/doc" + i), LocalFirestoreHelper.SINGLE_FIELD_MAP);
+    }
+    bulkWriter.close();
+    // The first batch was created before the new limits were applied.
+    List<Integer> batchSizes = new ArrayList<>();
+    for (BatchWriteRequest request : requests) {
+      batchSizes.add(request.getWritesCount());
+    }
+    assertEquals(Arrays.asList(20, 10, 1), batchSizes);
+  }
+
+  @Test
+  public void adaptiveThrottlingSplitsBatchesThatExceedCapacity() throws Exception {
+    List<BatchWriteRequest> requests = stubSuccessfulBatchWrites();
+
+    bulkWriter =
+        firestoreMock.bulkWriter(
+            BulkWriterOptions.builder()
+                .setAdaptiveThrottlingEnabled(true)
+                .setInitialOpsPerSecond(10)
+                .setExecutor(timeoutExecutor)
+                .build());
+
+    // The first batch was created before the limits were applied and holds 20 writes.
+    List<ApiFuture<WriteResult>> results = new ArrayList<>();
+    for (int i = 0; i < 20; ++i) {
+      results.add(
+          bulkWriter.set(
+              firestoreMock.document("coll/doc" + i), LocalFirestoreHelper.SINGLE_FIELD_MAP));
+    }
+    bulkWriter.close();
+
+    for (ApiFuture<WriteResult> result : results) {
+      assertEquals(Timestamp.ofTimeSecondsAndNanos(1, 0), result.get().getUpdateTime());
+    }
+    List<Integer> batchSizes = new ArrayList<>();
+    for (BatchWriteRequest request : requests) {
+      batchSizes.add(request.getWritesCount());
+    }
+    assertEquals(Arrays.asList(10, 10), batchSizes);
+  }
+
+  @Test
+  public void keyRangeSchedulingBatchesWritesByKeyRange() throws Exception {
+    List<BatchWriteRequest> requests = stubSuccessfulBatchWrites();
+
+    bulkWriter =
+        firestoreMock.bulkWriter(
+            BulkWriterOptions.builder()
+                .setKeyRangeSchedulingEnabled(true)
+                .setExecutor(timeoutExecutor)
+                .build());
+    KeyRangeScheduler scheduler = bulkWriter.getKeyRangeScheduler();
+
+    int numOps = 100;
+    List<ApiFuture<WriteResult>> results = new ArrayList<>();
+    for (int i = 0; i < numOps; ++i) {
+      results.add(
+          bulkWriter.set(
+              firestoreMock.document(String.format("coll/doc%03d", i)),
+              LocalFirestoreHelper.SINGLE_FIELD_MAP));
+    }
+    bulkWriter.close();
+
+    for (ApiFuture<WriteResult> result : results) {
+      assertEquals(Timestamp.ofTimeSecondsAndNanos(1, 0), result.get().getUpdateTime());
+    }
+
+    // Every request only contains writes to a single key range.
+    int writeCount = 0;
+    for (BatchWriteRequest request : requests) {
+      int keyRange = -1;
+      for (Write write : request.getWritesList()) {
+        DocumentReference doc =
+            new DocumentReference(firestoreMock, ResourcePath.create(write.getUpdate().getName()));
+        if (keyRange == -1) {
+          keyRange = scheduler.getKeyRange(doc);
+        }
+        assertEquals(keyRange, scheduler.getKeyRange(doc));
+      }
+      writeCount += request.getWritesCount();
+    }
+    assertEquals(numOps, writeCount);
+    assertTrue(requests.size() >= KeyRangeScheduler.DEFAULT_KEY_RANGE_COUNT);
+  }
+
+  /** Stubs BatchWrite to succeed for all writes and returns the list of received requests. */
+  private List<BatchWriteRequest> stubSuccessfulBatchWrites() {
+    List<BatchWriteRequest> requests = new CopyOnWriteArrayList<>();
+    doAnswer(
+            invocation -> {
+              BatchWriteRequest request = invocation.getArgument(0);
+              requests.add(request);
+              BatchWriteResponse.Builder response = BatchWriteResponse.newBuilder();
+              for (int i = 0; i < request.getWritesCount(); ++i) {
+                response.addWriteResultsBuilder().getUpdateTimeBuilder().setSeconds(1);
+                response.addStatusBuilder();
+              }
+              return ApiFutures.immediateFuture(response.build());
+            })
+        .when(firestoreMock)
+        .sendRequest(
+            batchWriteCapture.capture(), ArgumentMatchers.<UnaryCallable<Message, Message>>any());
+    return requests;
+  }
+
   @Test
   public void optionsInitialAndMaxRatesAreProperlySet() throws Exception {
     BulkWriter bulkWriter =
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static com.google.cloud.firestore.LocalFirestoreHelper.SINGLE_FIELD_PROTO;
+import static com.google.cloud.firestore.LocalFirestoreHelper.UPDATED_SINGLE_FIELD_PROTO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.spi.v1.FirestoreRpc;
+import com.google.common.collect.ImmutableList;
+import com.google.firestore.bundle.BundleMetadata;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.Value;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BundleReaderTest {
+  private static final Timestamp READ_TIME = Timestamp.ofTimeSecondsAndNanos(10, 0);
+
+  @Spy
+  private final FirestoreImpl firestoreMock =
+      new FirestoreImpl(
+          FirestoreOptions.newBuilder()
+              .setProjectId("test-project")
+              .setDocumentCacheOptions(DocumentCacheOptions.newBuilder().build())
+              .build(),
+          Mockito.mock(FirestoreRpc.class));
+
+  private Query query;
+  private QueryDocumentSnapshot docA;
+  private QueryDocumentSnapshot docB;
+  private DocumentSnapshot missingDoc;
+  private ByteBuffer bundle;
+
+  @Before
+  public void before() {
+    query = firestoreMock.collection("coll").orderBy("foo").limitToLast(2);
+    docA =
+        QueryDocumentSnapshot.fromDocument(
+            firestoreMock, READ_TIME, document("coll/a", SINGLE_FIELD_PROTO));
+    docB =
+        QueryDocumentSnapshot.fromDocument(
+            firestoreMock, READ_TIME, document("coll/b", UPDATED_SINGLE_FIELD_PROTO));
+    missingDoc =
+        DocumentSnapshot.fromMissing(firestoreMock, firestoreMock.document("coll/c"), READ_TIME);
+
+    bundle =
+        firestoreMock
+            .bundleBuilder("test-bundle")
+            .add(
+                "test-query",
+                QuerySnapshot.withDocuments(query, READ_TIME, ImmutableList.of(docA, docB)))
+            .add(missingDoc)
+            .build()
+            .toByteBuffer();
+  }
+
+  private Document document(String path, Map<String, Value> fields) {
+    return Document.newBuilder()
+        .setName(firestoreMock.document(path).getName())
+        .putAllFields(fields)
+        .setCreateTime(READ_TIME.toProto())
+        .setUpdateTime(READ_TIME.toProto())
+        .build();
+  }
+
+  private void verifyDocuments(List<DocumentSnapshot> documents) {
+    assertEquals(3, documents.size());
+    for (DocumentSnapshot document : documents) {
+      assertEquals(READ_TIME, document.getReadTime());
+      switch (document.getId()) {
+        case "a":
+          assertEquals(docA, document);
+          assertEquals(READ_TIME, document.getUpdateTime());
+          break;
+        case "b":
+          assertEquals(docB, document);
+          break;
+        case "c":
+          assertFalse(document.exists());
+          assertEquals(missingDoc.getReference(), document.getReference());
+          break;
+        default:
+          throw new AssertionError("Unexpected document " + document.getId());
+      }
+    }
+  }
+
+  @Test
+  public void readsBundleFromBuffer() throws Exception {
+    BundleReader reader = BundleReader.create(firestoreMock, bundle);
+
+    BundleMetadata metadata = reader.getMetadata();
+    assertEquals("test-bundle", metadata.getId());
+    assertEquals(3, metadata.getTotalDocuments());
+
+    verifyDocuments(reader.readAllDocuments());
+    assertNull(reader.readDocument());
+
+    Map<String, Query> namedQueries = reader.getNamedQueries();
+    assertEquals(1, namedQueries.size());
+    assertEquals(query, namedQueries.get("test-query"));
+  }
+
+  @Test
+  public void readsBundleFromChannelInSmallChunks() throws Exception {
+    BundleReader reader = BundleReader.create(firestoreMock, new ChunkedChannel(bundle, 7));
+    verifyDocuments(reader.readAllDocuments());
+    assertEquals(query, reader.getNamedQueries().get("test-query"));
+  }
+
+  @Test
+  public void loadsDocumentsIntoCache() throws Exception {
+    BundleReader reader = BundleReader.create(firestoreMock, bundle);
+    assertEquals(3, reader.loadIntoCache());
+
+    DocumentCache cache = firestoreMock.getDocumentCache();
+    assertEquals(docA, cache.get(docA.getReference().getResourcePath()));
+    assertTrue(cache.get(docB.getReference().getResourcePath()).exists());
+    assertFalse(cache.get(missingDoc.getReference().getResourcePath()).exists());
+
+    // Reads are now served without a request.
+    assertSame(
+        cache.get(docA.getReference().getResourcePath()),
+        firestoreMock.document("coll/a").get().get());
+  }
+
+  @Test
+  public void loadIntoCacheKeepsNewerDocuments() throws Exception {
+    DocumentCache cache = firestoreMock.getDocumentCache();
+    DocumentSnapshot newerA =
+        QueryDocumentSnapshot.fromDocument(
+            firestoreMock,
+            Timestamp.ofTimeSecondsAndNanos(20, 0),
+            document("coll/a", UPDATED_SINGLE_FIELD_PROTO));
+    DocumentSnapshot olderB =
+        QueryDocumentSnapshot.fromDocument(
+            firestoreMock,
+            Timestamp.ofTimeSecondsAndNanos(5, 0),
+            document("coll/b", SINGLE_FIELD_PROTO));
+    cache.put(newerA, cache.getGeneration());
+    cache.put(olderB, cache.getGeneration());
+
+    BundleReader reader = BundleReader.create(firestoreMock, bundle);
+    assertEquals(3, reader.loadIntoCache());
+
+    assertSame(newerA, cache.get(docA.getReference().getResourcePath()));
+    assertEquals(docB, cache.get(docB.getReference().getResourcePath()));
+  }
+
+  @Test
+  public void rejectsTruncatedBundle() {
+    ByteBuffer truncated = bundle.duplicate();
+    truncated.limit(truncated.limit() - 10);
+    BundleReader reader = BundleReader.create(firestoreMock, truncated);
+    IOException e = assertThrows(IOException.class, reader::readAllDocuments);
+    assertEquals("Invalid bundle: Unexpected end of input.", e.getMessage());
+  }
+
+  @Test
+  public void rejectsBundleWithoutMetadata() {
+    ByteBuffer invalid = ByteBuffer.wrap("2{}".getBytes(StandardCharsets.UTF_8));
+    BundleReader reader = BundleReader.create(firestoreMock, invalid);
+    assertThrows(IOException.class, reader::getMetadata);
+  }
+
+  @Test
+  public void readsBundleInProtobufFormat() throws Exception {
+    ByteBuffer protobufBundle =
+        firestoreMock
+            .bundleBuilder("test-bundle")
+            .setFormat(FirestoreBundle.Format.PROTOBUF)
+            .add(
+                "test-query",
+                QuerySnapshot.withDocuments(query, READ_TIME, ImmutableList.of(docA, docB)))
+            .add(missingDoc)
+            .build()
+            .toByteBuffer();
+
+    BundleReader reader =
+        BundleReader.create(firestoreMock, protobufBundle, FirestoreBundle.Format.PROTOBUF);
+    assertEquals("test-bundle", reader.getMetadata().getId());
+    verifyDocuments(reader.readAllDocuments());
+    assertEquals(query, reader.getNamedQueries().get("test-query"));
+
+    reader =
+        BundleReader.create(
+            firestoreMock, new ChunkedChannel(protobufBundle, 7), FirestoreBundle.Format.PROTOBUF);
+    verifyDocuments(reader.readAllDocuments());
+    assertEquals(query, reader.getNamedQueries().get("test-query"));
+
+    ByteBuffer truncated = protobufBundle.duplicate();
+    truncated.limit(truncated.limit() - 10);
+    IOException e =
+        assertThrows(
+            IOException.class,
+            BundleReader.create(firestoreMock, truncated, FirestoreBundle.Format.PROTOBUF)
+                ::readAllDocuments);
+    assertEquals("Invalid bundle: Unexpected end of input.", e.getMessage());
+  }
+
+  /** A channel that returns at most {@code chunkSize} bytes per read. */
+  private static class ChunkedChannel implements ReadableByteChannel {
+    private final ByteBuffer data;
+    private final int chunkSize;
+
+    ChunkedChannel(ByteBuffer data, int chunkSize) {
+      this.data = data.duplicate();
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+      if (!data.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(Math.min(chunkSize, data.remaining()), dst.remaining());
+      ByteBuffer chunk = data.slice();
+      chunk.limit(count);
+      dst.put(chunk);
+      data.position(data.position() + count);
+      return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+}
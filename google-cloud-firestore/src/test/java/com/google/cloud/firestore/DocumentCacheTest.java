@@ -0,0 +1,408 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static com.google.cloud.firestore.LocalFirestoreHelper.SINGLE_FIELD_PROTO;
+import static com.google.cloud.firestore.LocalFirestoreHelper.SINGLE_WRITE_COMMIT_RESPONSE;
+import static com.google.cloud.firestore.LocalFirestoreHelper.getAllResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.ServerStreamingCallable;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentChange.Type;
+import com.google.cloud.firestore.spi.v1.FirestoreRpc;
+import com.google.common.base.Ticker;
+import com.google.firestore.v1.BatchGetDocumentsRequest;
+import com.google.firestore.v1.CommitRequest;
+import com.google.firestore.v1.CommitResponse;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.Value;
+import com.google.protobuf.Message;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DocumentCacheTest {
+
+  @Spy
+  private final FirestoreImpl firestoreMock =
+      new FirestoreImpl(
+          FirestoreOptions.newBuilder()
+              .setProjectId("test-project")
+              .setDocumentCacheOptions(
+                  DocumentCacheOptions.newBuilder()
+                      .setTimeToLive("uncached", Duration.ZERO)
+                      .build())
+              .build(),
+          Mockito.mock(FirestoreRpc.class));
+
+  @Captor private ArgumentCaptor<BatchGetDocumentsRequest> getAllCapture;
+
+  @Captor private ArgumentCaptor<ResponseObserver<Message>> streamObserverCapture;
+
+  private FakeTicker ticker;
+
+  @Before
+  public void before() {
+    ticker = new FakeTicker();
+  }
+
+  @Test
+  public void documentReferenceGetIsServedFromCache() throws Exception {
+    doAnswer(getAllResponse(SINGLE_FIELD_PROTO))
+        .when(firestoreMock)
+        .streamRequest(
+            getAllCapture.capture(),
+            streamObserverCapture.capture(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+
+    DocumentReference documentReference = firestoreMock.document("coll/doc");
+    DocumentSnapshot first = documentReference.get().get();
+    DocumentSnapshot second = documentReference.get().get();
+
+    assertSame(first, second);
+    verify(firestoreMock, times(1))
+        .streamRequest(
+            ArgumentMatchers.<BatchGetDocumentsRequest>any(),
+            ArgumentMatchers.<ResponseObserver<Message>>any(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+  }
+
+  @Test
+  public void getAllOnlyFetchesMissingDocuments() throws Exception {
+    doAnswer(getAllResponse(SINGLE_FIELD_PROTO))
+        .when(firestoreMock)
+        .streamRequest(
+            getAllCapture.capture(),
+            streamObserverCapture.capture(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+
+    DocumentCache cache = firestoreMock.getDocumentCache();
+    DocumentSnapshot cached = snapshot("coll/other");
+    cache.put(cached, cache.getGeneration());
+
+    List<DocumentSnapshot> snapshots =
+        firestoreMock
+            .getAll(firestoreMock.document("coll/doc"), firestoreMock.document("coll/other"))
+            .get();
+
+    assertEquals(1, getAllCapture.getValue().getDocumentsCount());
+    assertEquals(
+        firestoreMock.document("coll/doc").getName(), getAllCapture.getValue().getDocuments(0));
+    assertEquals(2, snapshots.size());
+    assertEquals("coll/doc", snapshots.get(0).getReference().getPath());
+    assertSame(cached, snapshots.get(1));
+  }
+
+  @Test
+  public void fieldMaskBypassesCache() throws Exception {
+    doAnswer(getAllResponse(SINGLE_FIELD_PROTO))
+        .when(firestoreMock)
+        .streamRequest(
+            getAllCapture.capture(),
+            streamObserverCapture.capture(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+
+    DocumentReference documentReference = firestoreMock.document("coll/doc");
+    documentReference.get().get();
+    documentReference.get(FieldMask.of("foo")).get();
+
+    verify(firestoreMock, times(2))
+        .streamRequest(
+            ArgumentMatchers.<BatchGetDocumentsRequest>any(),
+            ArgumentMatchers.<ResponseObserver<Message>>any(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+  }
+
+  @Test
+  public void commitInvalidatesWrittenDocuments() throws Exception {
+    doAnswer(getAllResponse(SINGLE_FIELD_PROTO))
+        .when(firestoreMock)
+        .streamRequest(
+            getAllCapture.capture(),
+            streamObserverCapture.capture(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+    doReturn(SINGLE_WRITE_COMMIT_RESPONSE)
+        .when(firestoreMock)
+        .sendRequest(
+            ArgumentMatchers.<CommitRequest>any(),
+            ArgumentMatchers.<UnaryCallable<CommitRequest, CommitResponse>>any());
+
+    DocumentReference documentReference = firestoreMock.document("coll/doc");
+    documentReference.get().get();
+    documentReference.set(Collections.singletonMap("foo", "baz")).get();
+    documentReference.get().get();
+
+    verify(firestoreMock, times(2))
+        .streamRequest(
+            ArgumentMatchers.<BatchGetDocumentsRequest>any(),
+            ArgumentMatchers.<ResponseObserver<Message>>any(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+  }
+
+  @Test
+  public void entriesExpireAfterTimeToLive() {
+    DocumentCache cache =
+        new DocumentCache(
+            DocumentCacheOptions.newBuilder()
+                .setTimeToLive(Duration.ofSeconds(10))
+                .setTimeToLive("short", Duration.ofSeconds(1))
+                .build(),
+            ticker);
+
+    DocumentSnapshot longLived = snapshot("long/doc");
+    DocumentSnapshot shortLived = snapshot("short/doc");
+    cache.put(longLived, cache.getGeneration());
+    cache.put(shortLived, cache.getGeneration());
+
+    ticker.advance(Duration.ofMillis(999));
+    assertSame(longLived, cache.get(longLived.getReference().getResourcePath()));
+    assertSame(shortLived, cache.get(shortLived.getReference().getResourcePath()));
+
+    ticker.advance(Duration.ofMillis(1));
+    assertSame(longLived, cache.get(longLived.getReference().getResourcePath()));
+    assertNull(cache.get(shortLived.getReference().getResourcePath()));
+
+    ticker.advance(Duration.ofSeconds(9));
+    assertNull(cache.get(longLived.getReference().getResourcePath()));
+  }
+
+  @Test
+  public void zeroTimeToLiveDisablesCaching() {
+    DocumentCache cache =
+        new DocumentCache(
+            DocumentCacheOptions.newBuilder().setTimeToLive("uncached", Duration.ZERO).build(),
+            ticker);
+
+    DocumentSnapshot snapshot = snapshot("uncached/doc");
+    cache.put(snapshot, cache.getGeneration());
+
+    assertNull(cache.get(snapshot.getReference().getResourcePath()));
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedDocumentsWhenFull() {
+    DocumentCache cache =
+        new DocumentCache(DocumentCacheOptions.newBuilder().setMaxSizeBytes(1000).build(), ticker);
+
+    for (int i = 0; i < 100; ++i) {
+      cache.put(snapshot("coll/doc" + i), cache.getGeneration());
+    }
+
+    assertEquals(true, cache.size() < 100);
+    assertNull(cache.get(snapshot("coll/doc0").getReference().getResourcePath()));
+  }
+
+  @Test
+  public void dropsReadsThatOverlapWithInvalidation() {
+    DocumentCache cache = new DocumentCache(DocumentCacheOptions.newBuilder().build(), ticker);
+    DocumentSnapshot snapshot = snapshot("coll/doc");
+
+    long generation = cache.getGeneration();
+    cache.invalidate(snapshot.getReference().getResourcePath());
+    cache.put(snapshot, generation);
+    assertNull(cache.get(snapshot.getReference().getResourcePath()));
+
+    cache.put(snapshot, cache.getGeneration());
+    assertSame(snapshot, cache.get(snapshot.getReference().getResourcePath()));
+
+    // Reads that overlap with invalidateAll() are dropped as well.
+    generation = cache.getGeneration();
+    cache.invalidateAll();
+    cache.put(snapshot, generation);
+    assertNull(cache.get(snapshot.getReference().getResourcePath()));
+  }
+
+  @Test
+  public void keepsReadsThatOverlapWithChangesToOtherDocuments() {
+    DocumentCache cache = new DocumentCache(DocumentCacheOptions.newBuilder().build(), ticker);
+    DocumentCache.Subscription subscription = cache.new Subscription();
+    DocumentSnapshot snapshot = snapshot("coll/doc");
+
+    long generation = cache.getGeneration();
+    cache.invalidate(firestoreMock.document("coll/other").getResourcePath());
+    subscription.onEvent(
+        querySnapshot(
+            new DocumentChange(queryDocumentSnapshot("coll/subscribed"), Type.ADDED, -1, 0)),
+        null);
+    cache.put(snapshot, generation);
+    assertSame(snapshot, cache.get(snapshot.getReference().getResourcePath()));
+  }
+
+  @Test
+  public void subscribedDocumentsDoNotExpireWhileInSync() {
+    DocumentCache cache =
+        new DocumentCache(
+            DocumentCacheOptions.newBuilder().setTimeToLive(Duration.ofSeconds(1)).build(), ticker);
+    DocumentCache.Subscription subscription = cache.new Subscription();
+    QueryDocumentSnapshot snapshot = queryDocumentSnapshot("coll/doc");
+    ResourcePath path = snapshot.getReference().getResourcePath();
+
+    subscription.onEvent(querySnapshot(new DocumentChange(snapshot, Type.ADDED, -1, 0)), null);
+    ticker.advance(Duration.ofMinutes(10));
+    assertSame(snapshot, cache.get(path));
+
+    subscription.onStreamReset();
+    ticker.advance(Duration.ofMillis(999));
+    assertSame(snapshot, cache.get(path));
+    ticker.advance(Duration.ofMillis(1));
+    assertNull(cache.get(path));
+  }
+
+  @Test
+  public void subscribedDocumentsExpireAfterSubscriptionIsRemoved() {
+    DocumentCache cache =
+        new DocumentCache(
+            DocumentCacheOptions.newBuilder().setTimeToLive(Duration.ofSeconds(1)).build(), ticker);
+    DocumentCache.Subscription subscription = cache.new Subscription();
+    QueryDocumentSnapshot snapshot = queryDocumentSnapshot("coll/doc");
+    ResourcePath path = snapshot.getReference().getResourcePath();
+
+    subscription.onEvent(querySnapshot(new DocumentChange(snapshot, Type.ADDED, -1, 0)), null);
+    subscription.remove();
+    ticker.advance(Duration.ofSeconds(1));
+    assertNull(cache.get(path));
+
+    // Events that are delivered after the subscription was removed are ignored.
+    subscription.onEvent(querySnapshot(new DocumentChange(snapshot, Type.ADDED, -1, 0)), null);
+    ticker.advance(Duration.ofSeconds(1));
+    assertNull(cache.get(path));
+  }
+
+  @Test
+  public void putIfNewerKeepsSubscribedDocuments() {
+    DocumentCache cache = new DocumentCache(DocumentCacheOptions.newBuilder().build(), ticker);
+    DocumentCache.Subscription subscription = cache.new Subscription();
+    QueryDocumentSnapshot subscribed = queryDocumentSnapshot("coll/doc");
+    ResourcePath path = subscribed.getReference().getResourcePath();
+    subscription.onEvent(querySnapshot(new DocumentChange(subscribed, Type.ADDED, -1, 0)), null);
+
+    DocumentSnapshot loaded =
+        new DocumentSnapshot(
+            firestoreMock,
+            firestoreMock.document("coll/doc"),
+            subscribed.getProtoFields(),
+            Timestamp.ofTimeSecondsAndNanos(2, 0),
+            Timestamp.ofTimeSecondsAndNanos(1, 0),
+            Timestamp.ofTimeSecondsAndNanos(1, 0));
+    cache.putIfNewer(loaded, cache.getGeneration());
+    assertSame(subscribed, cache.get(path));
+
+    // Once the subscription is removed, newer snapshots replace the entry.
+    subscription.remove();
+    cache.putIfNewer(loaded, cache.getGeneration());
+    assertSame(loaded, cache.get(path));
+  }
+
+  @Test
+  public void subscriptionAppliesChanges() {
+    DocumentCache cache = new DocumentCache(DocumentCacheOptions.newBuilder().build(), ticker);
+    DocumentCache.Subscription subscription = cache.new Subscription();
+    QueryDocumentSnapshot snapshot = queryDocumentSnapshot("coll/doc");
+    ResourcePath path = snapshot.getReference().getResourcePath();
+
+    long readGeneration = cache.getGeneration();
+    subscription.onEvent(querySnapshot(new DocumentChange(snapshot, Type.ADDED, -1, 0)), null);
+    assertSame(snapshot, cache.get(path));
+
+    // A read that started before the listener delivered the document must not overwrite it.
+    cache.put(snapshot("coll/doc"), readGeneration);
+    assertSame(snapshot, cache.get(path));
+
+    QueryDocumentSnapshot modified = queryDocumentSnapshot("coll/doc");
+    subscription.onEvent(querySnapshot(new DocumentChange(modified, Type.MODIFIED, 0, 0)), null);
+    assertSame(modified, cache.get(path));
+
+    subscription.onEvent(querySnapshot(new DocumentChange(modified, Type.REMOVED, 0, -1)), null);
+    assertNull(cache.get(path));
+  }
+
+  @Test
+  public void keepCachedRequiresDocumentCache() {
+    FirestoreImpl firestore =
+        new FirestoreImpl(
+            FirestoreOptions.newBuilder().setProjectId("test-project").build(),
+            Mockito.mock(FirestoreRpc.class));
+    assertThrows(IllegalStateException.class, () -> firestore.collection("coll").keepCached());
+  }
+
+  private QuerySnapshot querySnapshot(DocumentChange change) {
+    Query query = firestoreMock.collection("coll");
+    return QuerySnapshot.withChanges(
+        query,
+        Timestamp.ofTimeSecondsAndNanos(1, 0),
+        DocumentSet.emptySet(query.comparator()),
+        Collections.singletonList(change));
+  }
+
+  private QueryDocumentSnapshot queryDocumentSnapshot(String path) {
+    return QueryDocumentSnapshot.fromDocument(
+        firestoreMock,
+        Timestamp.ofTimeSecondsAndNanos(1, 0),
+        Document.newBuilder()
+            .setName(firestoreMock.document(path).getName())
+            .putAllFields(SINGLE_FIELD_PROTO)
+            .setCreateTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(1))
+            .setUpdateTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(1))
+            .build());
+  }
+
+  private DocumentSnapshot snapshot(String path) {
+    Map<String, Value> fields =
+        Collections.singletonMap("foo", Value.newBuilder().setStringValue("bar").build());
+    return new DocumentSnapshot(
+        firestoreMock,
+        firestoreMock.document(path),
+        fields,
+        Timestamp.ofTimeSecondsAndNanos(1, 0),
+        Timestamp.ofTimeSecondsAndNanos(1, 0),
+        Timestamp.ofTimeSecondsAndNanos(1, 0));
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+  }
+}
@@ -61,6 +61,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doAnswer;
@@ -140,6 +141,25 @@ public class DocumentReferenceTest {
     assertEquals(DOCUMENT_PATH, documentReference.getPath());
   }
 
+  @Test
+  public void getNameIsCached() {
+    assertEquals(DOCUMENT_NAME, documentReference.getName());
+    assertSame(documentReference.getName(), documentReference.getName());
+    assertEquals(
+        "projects/test-project/databases/(default)/documents",
+        ResourcePath.create(documentReference.getResourcePath().getDatabaseName()).getName());
+  }
+
+  @Test
+  public void parsedNamesShareCollectionIds() {
+    ResourcePath first = ResourcePath.create(DOCUMENT_NAME + "/subcoll/a");
+    ResourcePath second = ResourcePath.create(DOCUMENT_NAME + "/subcoll/b");
+    assertSame(first.getDatabaseName(), second.getDatabaseName());
+    assertSame(first.getSegments().get(0), second.getSegments().get(0));
+    assertSame(first.getSegments().get(2), second.getSegments().get(2));
+    assertEquals(DOCUMENT_NAME + "/subcoll/a", first.getName());
+  }
+
   @Test
   public void getParent() {
     CollectionReference collectionReference = documentReference.getParent();
@@ -269,6 +289,40 @@ public class DocumentReferenceTest {
     assertEquals("bar", ((Map<String, Object>) snapshot.get("model")).get("foo"));
   }
 
+  @Test
+  public void deserializeLazyData() throws Exception {
+    doAnswer(getAllResponse(ALL_SUPPORTED_TYPES_PROTO))
+        .when(firestoreMock)
+        .streamRequest(
+            getAllCapture.capture(),
+            streamObserverCapture.capture(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+
+    DocumentSnapshot snapshot = documentReference.get().get();
+    Map<String, Object> data = snapshot.getLazyData();
+
+    assertSame(data, snapshot.getLazyData());
+    assertEquals("bar", ((Map<String, Object>) data.get("objectValue")).get("foo"));
+    assertSame(data.get("objectValue"), data.get("objectValue"));
+    assertNull(data.get("nullValue"));
+    assertTrue(data.containsKey("nullValue"));
+    assertNull(data.get("missingValue"));
+    assertEquals(ALL_SUPPORTED_TYPES_MAP, data);
+    assertEquals(data, snapshot.getData());
+    assertEquals(snapshot.getData().hashCode(), data.hashCode());
+
+    try {
+      data.put("foo", "bar");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      ((List<Object>) data.get("arrayValue")).add("foo");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
   @Test
   public void deserializeDocumentReference() throws Exception {
     doAnswer(
@@ -672,6 +726,21 @@ public class DocumentReferenceTest {
     }
   }
 
+  @Test
+  public void deleteInArrayReportsEscapedFieldPath() {
+    Map<String, Object> data = new HashMap<>();
+    data.put("a", map("b.c", ImmutableList.of("x", map("d", FieldValue.delete()))));
+
+    try {
+      documentReference.create(data);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertTrue(
+          e.getMessage()
+              .endsWith("FieldValue.delete() is not supported at field 'a.`b.c`.`1`.d'."));
+    }
+  }
+
   @Test
   public void arrayUnionInArray() {
     Map<String, Object> list = new HashMap<>();
@@ -1222,4 +1291,50 @@ public class DocumentReferenceTest {
     assertEquals(FOO_MAP, customMap.fooMap);
     assertEquals(SINGLE_FIELD_OBJECT, customMap.fooMap.get("customMap"));
   }
+
+  @Test
+  public void deserializeFieldToCustomClass() throws Exception {
+    doAnswer(getAllResponse(ALL_SUPPORTED_TYPES_PROTO))
+        .when(firestoreMock)
+        .streamRequest(
+            getAllCapture.capture(),
+            streamObserverCapture.capture(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+
+    DocumentSnapshot snapshot = documentReference.get().get();
+
+    assertEquals(
+        SINGLE_FIELD_OBJECT, snapshot.get("objectValue", LocalFirestoreHelper.SingleField.class));
+    assertEquals("bar", snapshot.get(FieldPath.of("objectValue", "foo"), String.class));
+    assertNull(snapshot.get("nullValue", LocalFirestoreHelper.SingleField.class));
+    assertNull(snapshot.get("missingValue", LocalFirestoreHelper.SingleField.class));
+    assertEquals(ALL_SUPPORTED_TYPES_MAP, snapshot.toObject(Object.class));
+  }
+
+  @Test
+  public void deserializeMismatchedNestedMap() throws Exception {
+    doAnswer(
+            getAllResponse(
+                map(
+                    "foo",
+                    Value.newBuilder()
+                        .setMapValue(MapValue.newBuilder().putAllFields(SINGLE_FIELD_PROTO))
+                        .build())))
+        .when(firestoreMock)
+        .streamRequest(
+            getAllCapture.capture(),
+            streamObserverCapture.capture(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+
+    DocumentSnapshot snapshot = documentReference.get().get();
+    try {
+      snapshot.toObject(LocalFirestoreHelper.SingleField.class);
+      fail();
+    } catch (RuntimeException e) {
+      assertEquals(
+          "Could not deserialize object. Failed to convert value of type java.util.HashMap to"
+              + " String (found in field 'foo')",
+          e.getMessage());
+    }
+  }
 }
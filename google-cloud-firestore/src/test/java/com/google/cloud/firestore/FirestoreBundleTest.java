@@ -37,7 +37,10 @@ import com.google.firestore.v1.Document;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Timestamp;
 import com.google.protobuf.util.JsonFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -321,4 +324,74 @@ public class FirestoreBundleTest {
         /*totalDocuments*/ 0,
         /*expectEmptyContent*/ true);
   }
+
+  @Test
+  public void bundleWrittenToStream() throws Exception {
+    FirestoreBundle.Builder bundleBuilder = new FirestoreBundle.Builder(TEST_BUNDLE_ID);
+    QuerySnapshot snapshot =
+        QuerySnapshot.withDocuments(
+            query,
+            SINGLE_FIELD_SNAPSHOT.getReadTime(),
+            Lists.newArrayList(
+                QueryDocumentSnapshot.fromDocument(
+                    null,
+                    SINGLE_FIELD_SNAPSHOT.getReadTime(),
+                    SINGLE_FIELD_SNAPSHOT.toDocumentPb().build())));
+    bundleBuilder.add("test-query", snapshot);
+    bundleBuilder.add(UPDATED_SINGLE_FIELD_SNAPSHOT);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    bundleBuilder.writeTo(out);
+    ByteBuffer bundleBuffer = ByteBuffer.wrap(out.toByteArray());
+    assertEquals(bundleBuilder.build().toByteBuffer(), bundleBuffer);
+
+    // The total size covers all elements after the bundle metadata.
+    List<String> elements = bundleToElementList(bundleBuffer.duplicate());
+    String metadataElement = elements.get(0);
+    long metadataSize =
+        Integer.toString(metadataElement.getBytes(StandardCharsets.UTF_8).length).length()
+            + metadataElement.getBytes(StandardCharsets.UTF_8).length;
+    BundleMetadata metadata = toBundleElements(bundleBuffer.duplicate()).get(0).getMetadata();
+    assertEquals(out.size() - metadataSize, metadata.getTotalBytes());
+  }
+
+  @Test
+  public void bundleWrittenToChannel() throws Exception {
+    FirestoreBundle.Builder bundleBuilder = new FirestoreBundle.Builder(TEST_BUNDLE_ID);
+    bundleBuilder.add(SINGLE_FIELD_SNAPSHOT);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    bundleBuilder.writeTo(Channels.newChannel(out));
+    assertEquals(bundleBuilder.build().toByteBuffer(), ByteBuffer.wrap(out.toByteArray()));
+  }
+
+  @Test
+  public void bundleWrittenInProtobufFormat() throws Exception {
+    FirestoreBundle.Builder bundleBuilder = new FirestoreBundle.Builder(TEST_BUNDLE_ID);
+    bundleBuilder.add(
+        "test-query",
+        QuerySnapshot.withDocuments(
+            query, SINGLE_FIELD_SNAPSHOT.getReadTime(), Lists.newArrayList()));
+    bundleBuilder.add(SINGLE_FIELD_SNAPSHOT);
+    ByteBuffer jsonBundle = bundleBuilder.build().toByteBuffer();
+
+    ByteBuffer bundleBuffer =
+        bundleBuilder.setFormat(FirestoreBundle.Format.PROTOBUF).build().toByteBuffer();
+    assertTrue(bundleBuffer.remaining() < jsonBundle.remaining());
+
+    byte[] bundleBytes = new byte[bundleBuffer.remaining()];
+    bundleBuffer.get(bundleBytes);
+    ByteArrayInputStream in = new ByteArrayInputStream(bundleBytes);
+    BundleMetadata metadata = BundleElement.parseDelimitedFrom(in).getMetadata();
+    assertEquals(TEST_BUNDLE_ID, metadata.getId());
+    assertEquals(1, metadata.getTotalDocuments());
+    assertEquals(in.available(), metadata.getTotalBytes());
+
+    List<BundleElement> elements = new ArrayList<>();
+    BundleElement element;
+    while ((element = BundleElement.parseDelimitedFrom(in)) != null) {
+      elements.add(element);
+    }
+    assertEquals(toBundleElements(jsonBundle).subList(1, 4), elements);
+  }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class KeyRangeSchedulerTest {
+  private static final RateLimiter UNLIMITED =
+      new RateLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+  private static KeyRangeScheduler scheduler(int opsPerSecond) {
+    return new KeyRangeScheduler(
+        /* keyRangeCount= */ 4,
+        /* initialOpsPerSecond= */ opsPerSecond,
+        /* multiplier= */ 1.5,
+        /* multiplierMillis= */ 5 * 60 * 1000,
+        /* maxOpsPerSecond= */ opsPerSecond,
+        /* minOpsPerSecond= */ 1);
+  }
+
+  private static BulkCommitBatch batch(int size) {
+    BulkCommitBatch batch = mock(BulkCommitBatch.class);
+    doReturn(size).when(batch).getMutationsSize();
+    return batch;
+  }
+
+  @Test
+  public void assignsDocumentsToStableKeyRanges() {
+    FirestoreImpl firestore =
+        new FirestoreImpl(
+            FirestoreOptions.newBuilder().setProjectId("test-project").build(),
+            mock(com.google.cloud.firestore.spi.v1.FirestoreRpc.class));
+    KeyRangeScheduler scheduler = scheduler(1000);
+
+    Set<Integer> keyRanges = new HashSet<>();
+    for (int i = 0; i < 100; ++i) {
+      DocumentReference doc = firestore.document(String.format("coll/doc%03d", i));
+      int keyRange = scheduler.getKeyRange(doc);
+      assertTrue(keyRange >= 0 && keyRange < scheduler.getKeyRangeCount());
+      assertEquals(keyRange, scheduler.getKeyRange(firestore.document(doc.getPath())));
+      keyRanges.add(keyRange);
+    }
+
+    // Sequential document IDs are spread across all ranges.
+    assertEquals(scheduler.getKeyRangeCount(), keyRanges.size());
+  }
+
+  @Test
+  public void alternatesBetweenKeyRanges() {
+    KeyRangeScheduler scheduler = scheduler(Integer.MAX_VALUE);
+    BulkCommitBatch a1 = batch(1);
+    BulkCommitBatch a2 = batch(1);
+    BulkCommitBatch a3 = batch(1);
+    BulkCommitBatch b1 = batch(1);
+    BulkCommitBatch c1 = batch(1);
+    scheduler.addReadyBatch(0, a1);
+    scheduler.addReadyBatch(0, a2);
+    scheduler.addReadyBatch(0, a3);
+    scheduler.addReadyBatch(1, b1);
+    scheduler.addReadyBatch(3, c1);
+
+    List<BulkCommitBatch> sent = new ArrayList<>();
+    assertEquals(0, scheduler.dispatch(UNLIMITED, Integer.MAX_VALUE, sent::add));
+    assertEquals(Arrays.asList(a1, b1, c1, a2, a3), sent);
+  }
+
+  @Test
+  public void skipsKeyRangesThatExceedTheirRateLimit() {
+    // Each range may send 2 * 8 / 4 = 4 operations per second.
+    KeyRangeScheduler scheduler = scheduler(8);
+    BulkCommitBatch a1 = batch(4);
+    BulkCommitBatch a2 = batch(4);
+    BulkCommitBatch b1 = batch(4);
+    scheduler.addReadyBatch(0, a1);
+    scheduler.addReadyBatch(0, a2);
+    scheduler.addReadyBatch(1, b1);
+
+    List<BulkCommitBatch> sent = new ArrayList<>();
+    long delayMs = scheduler.dispatch(UNLIMITED, Integer.MAX_VALUE, sent::add);
+    assertEquals(Arrays.asList(a1, b1), sent);
+    assertTrue(delayMs > 0 && delayMs <= 1000);
+  }
+
+  @Test
+  public void stopsWhenTheOverallRateIsExceeded() {
+    KeyRangeScheduler scheduler = scheduler(Integer.MAX_VALUE);
+    RateLimiter globalLimiter = new RateLimiter(5, 1.5, 5 * 60 * 1000, 5);
+    BulkCommitBatch a1 = batch(4);
+    BulkCommitBatch b1 = batch(4);
+    scheduler.addReadyBatch(0, a1);
+    scheduler.addReadyBatch(1, b1);
+
+    List<BulkCommitBatch> sent = new ArrayList<>();
+    long delayMs = scheduler.dispatch(globalLimiter, Integer.MAX_VALUE, sent::add);
+    assertEquals(Arrays.asList(a1), sent);
+    assertTrue(delayMs > 0 && delayMs <= 1000);
+  }
+
+  @Test
+  public void keepsRangeTokensWhenTheOverallRateIsExceeded() {
+    // Each range may send 2 * 8 / 4 = 4 operations per second.
+    KeyRangeScheduler scheduler = scheduler(8);
+    RateLimiter globalLimiter = new RateLimiter(4, 1.5, 5 * 60 * 1000, 4);
+    BulkCommitBatch a1 = batch(4);
+    BulkCommitBatch b1 = batch(4);
+    scheduler.addReadyBatch(0, a1);
+    scheduler.addReadyBatch(1, b1);
+
+    List<BulkCommitBatch> sent = new ArrayList<>();
+    assertTrue(scheduler.dispatch(globalLimiter, Integer.MAX_VALUE, sent::add) > 0);
+    assertEquals(Arrays.asList(a1), sent);
+
+    // The range of the batch that the overall rate limiter rejected can still send it.
+    assertEquals(0, scheduler.dispatch(UNLIMITED, Integer.MAX_VALUE, sent::add));
+    assertEquals(Arrays.asList(a1, b1), sent);
+  }
+
+  @Test
+  public void splitsBatchesThatExceedTheCapacity() {
+    KeyRangeScheduler scheduler = scheduler(Integer.MAX_VALUE);
+    BulkCommitBatch a1 = batch(4);
+    BulkCommitBatch a1First = batch(2);
+    BulkCommitBatch a1Second = batch(2);
+    BulkCommitBatch a2 = batch(2);
+    doReturn(Arrays.asList(a1First, a1Second)).when(a1).split(2);
+    scheduler.addReadyBatch(0, a1);
+    scheduler.addReadyBatch(0, a2);
+
+    List<BulkCommitBatch> sent = new ArrayList<>();
+    assertEquals(0, scheduler.dispatch(UNLIMITED, /* maxRequestOps= */ 2, sent::add));
+    assertEquals(Arrays.asList(a1First, a1Second, a2), sent);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static com.google.cloud.firestore.LocalFirestoreHelper.DOCUMENT_NAME;
+import static com.google.cloud.firestore.LocalFirestoreHelper.queryResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.doAnswer;
+
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.ServerStreamingCallable;
+import com.google.cloud.firestore.spi.v1.FirestoreRpc;
+import com.google.firestore.v1.RunQueryRequest;
+import com.google.firestore.v1.RunQueryResponse;
+import io.grpc.Status;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ParallelScanTest {
+  @Spy
+  private final FirestoreImpl firestoreMock =
+      new FirestoreImpl(
+          FirestoreOptions.newBuilder().setProjectId("test-project").build(),
+          Mockito.mock(FirestoreRpc.class));
+
+  @Captor private ArgumentCaptor<RunQueryRequest> runQuery;
+
+  @Test
+  public void parallelScanReturnsDocumentsOfAllPartitions() {
+    respondPerPartition(
+        queryResponse(DOCUMENT_NAME + "1", DOCUMENT_NAME + "2"),
+        queryResponse(DOCUMENT_NAME + "3", DOCUMENT_NAME + "4", DOCUMENT_NAME + "5"));
+
+    CollectionGroup collectionGroup = firestoreMock.collectionGroup("collectionId");
+    List<String> ids;
+    try (Stream<QueryDocumentSnapshot> documents =
+        collectionGroup.parallelScan(
+            partitions(collectionGroup),
+            ParallelScanOptions.builder().setMaxConcurrency(2).setPrefetch(1).build())) {
+      ids = documents.map(DocumentSnapshot::getId).sorted().collect(Collectors.toList());
+    }
+    assertEquals(Arrays.asList("doc1", "doc2", "doc3", "doc4", "doc5"), ids);
+    assertEquals(2, runQuery.getAllValues().size());
+  }
+
+  @Test
+  public void orderedParallelScanReturnsPartitionsInOrder() {
+    respondPerPartition(
+        queryResponse(DOCUMENT_NAME + "1", DOCUMENT_NAME + "2"),
+        queryResponse(DOCUMENT_NAME + "3", DOCUMENT_NAME + "4", DOCUMENT_NAME + "5"));
+
+    CollectionGroup collectionGroup = firestoreMock.collectionGroup("collectionId");
+    List<String> ids;
+    try (Stream<QueryDocumentSnapshot> documents =
+        collectionGroup.parallelScan(
+            partitions(collectionGroup),
+            ParallelScanOptions.builder().setOrdered(true).setPrefetch(2).build())) {
+      ids = documents.map(DocumentSnapshot::getId).collect(Collectors.toList());
+    }
+    assertEquals(Arrays.asList("doc1", "doc2", "doc3", "doc4", "doc5"), ids);
+    assertEquals(2, runQuery.getAllValues().size());
+  }
+
+  @Test
+  public void orderedParallelScanReadsAheadUpToMaxConcurrency() {
+    respondPerPartition(
+        queryResponse(DOCUMENT_NAME + "1", DOCUMENT_NAME + "2"),
+        queryResponse(DOCUMENT_NAME + "3"));
+
+    CollectionGroup collectionGroup = firestoreMock.collectionGroup("collectionId");
+    try (Stream<QueryDocumentSnapshot> documents =
+        collectionGroup.parallelScan(
+            partitions(collectionGroup),
+            ParallelScanOptions.builder().setOrdered(true).setMaxConcurrency(1).build())) {
+      Iterator<QueryDocumentSnapshot> iterator = documents.iterator();
+      assertEquals("doc1", iterator.next().getId());
+      assertEquals("doc2", iterator.next().getId());
+      // The second partition is only read once the first one is complete.
+      assertEquals(1, runQuery.getAllValues().size());
+      assertEquals("doc3", iterator.next().getId());
+      assertEquals(2, runQuery.getAllValues().size());
+      assertFalse(iterator.hasNext());
+    }
+  }
+
+  @Test
+  public void parallelScanFailsWhenAPartitionFails() {
+    respondPerPartition(
+        queryResponse(DOCUMENT_NAME + "1"),
+        queryResponse(
+            FirestoreException.forServerRejection(
+                Status.PERMISSION_DENIED, "Simulated test failure")));
+
+    CollectionGroup collectionGroup = firestoreMock.collectionGroup("collectionId");
+    try (Stream<QueryDocumentSnapshot> documents =
+        collectionGroup.parallelScan(partitions(collectionGroup))) {
+      FirestoreException e =
+          assertThrows(FirestoreException.class, () -> documents.collect(Collectors.toList()));
+      assertEquals("Simulated test failure", e.getMessage());
+    }
+  }
+
+  @Test
+  public void parallelScanRejectsPartitionsOfOtherCollectionGroups() {
+    CollectionGroup collectionGroup = firestoreMock.collectionGroup("collectionId");
+    CollectionGroup otherCollectionGroup = firestoreMock.collectionGroup("otherCollectionId");
+
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> collectionGroup.parallelScan(partitions(otherCollectionGroup)));
+    assertEquals(
+        "Partitions must be created by getPartitions() of this collection group.", e.getMessage());
+    assertEquals(0, runQuery.getAllValues().size());
+  }
+
+  @Test
+  public void validatesParallelScanOptions() {
+    FirestoreException e =
+        assertThrows(
+            FirestoreException.class, () -> ParallelScanOptions.builder().setPrefetch(0).build());
+    assertEquals(
+        "Value for argument 'prefetch' must be greater than 0, but was: 0", e.getMessage());
+    assertThrows(
+        FirestoreException.class, () -> ParallelScanOptions.builder().setMaxConcurrency(0).build());
+  }
+
+  /** Splits the collection group into two partitions at document "doc3". */
+  private List<QueryPartition> partitions(CollectionGroup collectionGroup) {
+    Object[] splitPoint = new Object[] {firestoreMock.document("coll/doc3")};
+    return Arrays.asList(
+        new QueryPartition(collectionGroup.partitionQuery, null, splitPoint),
+        new QueryPartition(collectionGroup.partitionQuery, splitPoint, null));
+  }
+
+  /** Answers queries for the first and the second partition with the given responses. */
+  private void respondPerPartition(
+      Answer<RunQueryResponse> firstPartition, Answer<RunQueryResponse> secondPartition) {
+    doAnswer(
+            invocation -> {
+              RunQueryRequest request = invocation.getArgument(0);
+              return request.getStructuredQuery().hasStartAt()
+                  ? secondPartition.answer(invocation)
+                  : firstPartition.answer(invocation);
+            })
+        .when(firestoreMock)
+        .streamRequest(
+            runQuery.capture(),
+            ArgumentMatchers.<ResponseObserver<RunQueryResponse>>any(),
+            ArgumentMatchers.<ServerStreamingCallable>any());
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static com.google.cloud.firestore.LocalFirestoreHelper.map;
+import static com.google.cloud.firestore.pipeline.expressions.AggregateFunction.average;
+import static com.google.cloud.firestore.pipeline.expressions.AggregateFunction.countAll;
+import static com.google.cloud.firestore.pipeline.expressions.AggregateFunction.sum;
+import static com.google.cloud.firestore.pipeline.expressions.Expression.field;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.cloud.firestore.pipeline.stages.Aggregate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PipelineEvaluatorTest {
+
+  private final FirestoreImpl firestore =
+      (FirestoreImpl)
+          FirestoreOptions.newBuilder().setProjectId("test-project").build().getService();
+
+  private final List<DocumentSnapshot> documents =
+      Arrays.asList(
+          document("books/a", map("title", "Dune", "genre", "scifi", "rating", 4.8, "pages", 412)),
+          document(
+              "books/b", map("title", "Emma", "genre", "classic", "rating", 4.1, "pages", 474)),
+          document(
+              "books/c",
+              map(
+                  "title",
+                  "Neuromancer",
+                  "genre",
+                  "scifi",
+                  "rating",
+                  4.5,
+                  "tags",
+                  Arrays.asList("cyber", "ai"))),
+          document("authors/d", map("title", "Not a book", "rating", 5.0)));
+
+  private DocumentSnapshot document(String path, Map<String, Object> data) {
+    return DocumentSnapshot.fromObject(
+        firestore, firestore.document(path), data, UserDataConverter.NO_DELETES);
+  }
+
+  private static List<Map<String, Object>> data(Pipeline.Snapshot snapshot) {
+    List<Map<String, Object>> result = new ArrayList<>();
+    for (PipelineResult pipelineResult : snapshot.getResults()) {
+      result.add(pipelineResult.getData());
+    }
+    return result;
+  }
+
+  @Test
+  public void filtersSortsAndProjectsCollection() {
+    Pipeline.Snapshot snapshot =
+        firestore
+            .pipeline()
+            .collection("books")
+            .where(field("rating").greaterThan(4.2))
+            .sort(field("rating").descending())
+            .select(field("title"), field("pages").add(1).as("nextPage"))
+            .evaluate(documents);
+
+    assertThat(data(snapshot))
+        .containsExactly(map("title", "Dune", "nextPage", 413L), map("title", "Neuromancer"))
+        .inOrder();
+    assertThat(snapshot.getResults().get(0).getReference())
+        .isEqualTo(firestore.document("books/a"));
+  }
+
+  @Test
+  public void aggregatesGroups() {
+    Pipeline.Snapshot snapshot =
+        firestore
+            .pipeline()
+            .collection("books")
+            .aggregate(
+                Aggregate.withAccumulators(
+                        countAll().as("count"),
+                        sum("pages").as("pages"),
+                        average("rating").as("avg"))
+                    .withGroups("genre"))
+            .evaluate(documents);
+
+    assertThat(data(snapshot))
+        .containsExactly(
+            map("genre", "classic", "count", 1L, "pages", 474L, "avg", 4.1),
+            map("genre", "scifi", "count", 2L, "pages", 412L, "avg", (4.8 + 4.5) / 2));
+  }
+
+  @Test
+  public void aggregatesEmptyInput() {
+    Pipeline.Snapshot snapshot =
+        firestore
+            .pipeline()
+            .collection("movies")
+            .aggregate(countAll().as("count"))
+            .evaluate(documents);
+
+    assertThat(data(snapshot)).containsExactly(map("count", 0L));
+  }
+
+  @Test
+  public void unnestsAndDistinctsLiterals() {
+    Pipeline.Snapshot snapshot =
+        firestore
+            .pipeline()
+            .literals(
+                map("tags", Arrays.asList("a", "b")),
+                map("tags", Arrays.asList("b", "c")),
+                map("tags", "not an array"))
+            .unnest("tags", "tag")
+            .distinct("tag")
+            .evaluate(new ArrayList<>());
+
+    assertThat(data(snapshot))
+        .containsExactly(map("tag", "a"), map("tag", "b"), map("tag", "c"))
+        .inOrder();
+  }
+
+  @Test
+  public void evaluatesFunctions() {
+    Pipeline.Snapshot snapshot =
+        firestore
+            .pipeline()
+            .collection("books")
+            .where(field("genre").equal("scifi"))
+            .sort(field("title").ascending())
+            .select(
+                field("title").toUpper().as("upper"),
+                field("title").charLength().as("length"),
+                field("title").stringConcat("!").as("exclaimed"),
+                field("tags").arrayLength().as("tagCount"))
+            .evaluate(documents);
+
+    assertThat(data(snapshot))
+        .containsExactly(
+            map("upper", "DUNE", "length", 4L, "exclaimed", "Dune!"),
+            map("upper", "NEUROMANCER", "length", 11L, "exclaimed", "Neuromancer!", "tagCount", 2L))
+        .inOrder();
+  }
+
+  @Test
+  public void postProcessesResults() {
+    Pipeline.Snapshot results = firestore.pipeline().database().evaluate(documents);
+
+    Pipeline.Snapshot snapshot =
+        firestore
+            .pipeline()
+            .database()
+            .sort(field("rating").ascending())
+            .limit(2)
+            .select("title")
+            .evaluate(results);
+
+    assertThat(data(snapshot))
+        .containsExactly(map("title", "Emma"), map("title", "Neuromancer"))
+        .inOrder();
+    assertThat(snapshot.getExecutionTime()).isEqualTo(results.getExecutionTime());
+  }
+
+  @Test
+  public void rejectsUnsupportedStages() {
+    Pipeline pipeline = firestore.pipeline().collection("books").sample(1);
+
+    assertThrows(UnsupportedOperationException.class, () -> pipeline.evaluate(documents));
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static com.google.cloud.firestore.LocalFirestoreHelper.DOCUMENT_NAME;
+import static com.google.cloud.firestore.LocalFirestoreHelper.SINGLE_FIELD_PROTO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.StreamController;
+import com.google.cloud.firestore.spi.v1.FirestoreRpc;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.ExecutePipelineRequest;
+import com.google.firestore.v1.ExecutePipelineResponse;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PipelineTest {
+
+  @Spy
+  private final FirestoreImpl firestoreMock =
+      new FirestoreImpl(
+          FirestoreOptions.newBuilder().setProjectId("test-project").build(),
+          Mockito.mock(FirestoreRpc.class));
+
+  @Captor private ArgumentCaptor<ExecutePipelineRequest> executePipeline;
+
+  @Captor private ArgumentCaptor<ResponseObserver<ExecutePipelineResponse>> streamObserverCapture;
+
+  private Pipeline pipeline;
+
+  private RecordingStreamController grpcController;
+
+  @Before
+  public void before() {
+    doNothing()
+        .when(firestoreMock)
+        .streamRequest(executePipeline.capture(), streamObserverCapture.capture(), any());
+
+    pipeline = firestoreMock.pipeline().collection("coll");
+    grpcController = new RecordingStreamController();
+  }
+
+  private static ExecutePipelineResponse response(int... ids) {
+    ExecutePipelineResponse.Builder response = ExecutePipelineResponse.newBuilder();
+    response.getExecutionTimeBuilder().setSeconds(1);
+    for (int id : ids) {
+      response.addResults(
+          Document.newBuilder().setName(DOCUMENT_NAME + id).putAllFields(SINGLE_FIELD_PROTO));
+    }
+    return response.build();
+  }
+
+  private static String id(PipelineResult result) {
+    return result.getReference().getId();
+  }
+
+  @Test
+  public void streamAsIterableReturnsAllResults() {
+    Iterator<PipelineResult> iterator = pipeline.streamAsIterable(/* prefetch= */ 2).iterator();
+    ResponseObserver<ExecutePipelineResponse> grpcObserver = streamObserverCapture.getValue();
+    grpcObserver.onStart(grpcController);
+    grpcObserver.onResponse(response(1, 2));
+    grpcObserver.onResponse(response(3));
+    grpcObserver.onComplete();
+
+    List<String> ids = new ArrayList<>();
+    iterator.forEachRemaining(result -> ids.add(id(result)));
+    assertEquals(Arrays.asList("doc1", "doc2", "doc3"), ids);
+    assertEquals(
+        pipeline.toProto(), executePipeline.getValue().getStructuredPipeline().getPipeline());
+  }
+
+  @Test
+  public void streamAsIterableRequestsResponsesWhileBelowPrefetch() {
+    Iterator<PipelineResult> iterator = pipeline.streamAsIterable(/* prefetch= */ 3).iterator();
+    ResponseObserver<ExecutePipelineResponse> grpcObserver = streamObserverCapture.getValue();
+    grpcObserver.onStart(grpcController);
+    assertFalse(grpcController.autoFlowControl);
+    assertEquals(1, grpcController.requested);
+
+    // Responses without results are replaced.
+    grpcObserver.onResponse(response());
+    assertEquals(2, grpcController.requested);
+
+    // Responses that fill the buffer are not.
+    grpcObserver.onResponse(response(1, 2));
+    assertEquals(3, grpcController.requested);
+    grpcObserver.onResponse(response(3, 4));
+    assertEquals(3, grpcController.requested);
+
+    assertEquals("doc1", id(iterator.next()));
+    assertEquals(3, grpcController.requested);
+    assertEquals("doc2", id(iterator.next()));
+    assertEquals(4, grpcController.requested);
+
+    // Only one response is outstanding at a time.
+    assertEquals("doc3", id(iterator.next()));
+    assertEquals(4, grpcController.requested);
+  }
+
+  @Test
+  public void streamAsIterableThrowsPipelineErrors() {
+    Iterator<PipelineResult> iterator = pipeline.streamAsIterable(/* prefetch= */ 2).iterator();
+    ResponseObserver<ExecutePipelineResponse> grpcObserver = streamObserverCapture.getValue();
+    grpcObserver.onStart(grpcController);
+    grpcObserver.onResponse(response(1));
+    grpcObserver.onError(
+        FirestoreException.forServerRejection(Status.PERMISSION_DENIED, "Simulated test failure"));
+
+    assertEquals("doc1", id(iterator.next()));
+    FirestoreException e = assertThrows(FirestoreException.class, iterator::hasNext);
+    assertEquals("Simulated test failure", e.getMessage());
+  }
+
+  @Test
+  public void closingStreamAsStreamCancelsPipeline() {
+    try (Stream<PipelineResult> results = pipeline.streamAsStream(/* prefetch= */ 10)) {
+      ResponseObserver<ExecutePipelineResponse> grpcObserver = streamObserverCapture.getValue();
+      grpcObserver.onStart(grpcController);
+      grpcObserver.onResponse(response(1, 2));
+      assertEquals("doc1", id(results.findFirst().get()));
+      assertFalse(grpcController.cancelled);
+    }
+    assertTrue(grpcController.cancelled);
+  }
+
+  @Test
+  public void streamAsIterableRejectsInvalidPrefetch() {
+    assertThrows(IllegalArgumentException.class, () -> pipeline.streamAsIterable(0));
+  }
+
+  private static class RecordingStreamController implements StreamController {
+    boolean autoFlowControl = true;
+    int requested;
+    boolean cancelled;
+
+    @Override
+    public void disableAutoInboundFlowControl() {
+      autoFlowControl = false;
+    }
+
+    @Override
+    public void request(int count) {
+      requested += count;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+}
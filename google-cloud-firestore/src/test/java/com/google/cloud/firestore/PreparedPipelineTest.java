@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static com.google.cloud.firestore.LocalFirestoreHelper.map;
+import static com.google.cloud.firestore.pipeline.expressions.Expression.constant;
+import static com.google.cloud.firestore.pipeline.expressions.Expression.field;
+import static com.google.cloud.firestore.pipeline.expressions.Expression.variable;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PreparedPipelineTest {
+
+  private final Firestore firestore =
+      FirestoreOptions.newBuilder().setProjectId("test-project").build().getService();
+
+  @Test
+  public void bindsParameters() {
+    PreparedPipeline prepared =
+        firestore
+            .pipeline()
+            .collection("books")
+            .where(field("rating").greaterThan(variable("minRating")))
+            .select(field("title"), field("tags").arrayContains(variable("tag")).as("tagged"))
+            .limit(10)
+            .prepare();
+
+    assertThat(prepared.getParameterNames()).containsExactly("minRating", "tag").inOrder();
+
+    com.google.firestore.v1.Pipeline expected =
+        firestore
+            .pipeline()
+            .collection("books")
+            .where(field("rating").greaterThan(constant(4.5)))
+            .select(field("title"), field("tags").arrayContains(constant("scifi")).as("tagged"))
+            .limit(10)
+            .toProto();
+    com.google.firestore.v1.Pipeline bound =
+        prepared.toProto(map("minRating", 4.5, "tag", "scifi"));
+
+    assertThat(bound).isEqualTo(expected);
+    // Stages without parameters are shared with the cached proto.
+    com.google.firestore.v1.Pipeline cached = prepared.getPipeline().toProto();
+    assertThat(bound.getStages(0)).isEqualTo(cached.getStages(0));
+    assertSame(prepared.toProto(map("minRating", 1, "tag", 2)).getStages(3), bound.getStages(3));
+  }
+
+  @Test
+  public void reusesProtoWithoutParameters() {
+    PreparedPipeline prepared = firestore.pipeline().collection("books").limit(1).prepare();
+
+    assertThat(prepared.getParameterNames()).isEmpty();
+    assertSame(prepared.toProto(Collections.emptyMap()), prepared.toProto(Collections.emptyMap()));
+  }
+
+  @Test
+  public void definedVariablesAreNotParameters() {
+    PreparedPipeline prepared =
+        firestore
+            .pipeline()
+            .collection("books")
+            .define(field("price").multiply(variable("discount")).as("discounted"))
+            .where(variable("discounted").lessThan(100))
+            .prepare();
+
+    assertThat(prepared.getParameterNames()).containsExactly("discount");
+  }
+
+  @Test
+  public void rejectsMissingAndUnknownParameters() {
+    PreparedPipeline prepared =
+        firestore
+            .pipeline()
+            .collection("books")
+            .where(field("rating").greaterThan(variable("minRating")))
+            .prepare();
+
+    assertThrows(IllegalArgumentException.class, () -> prepared.toProto(Collections.emptyMap()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> prepared.toProto(map("minRating", 1, "maxRating", 2)));
+  }
+}
@@ -20,6 +20,7 @@ import static com.google.cloud.firestore.Filter.*;
 import static com.google.cloud.firestore.LocalFirestoreHelper.COLLECTION_ID;
 import static com.google.cloud.firestore.LocalFirestoreHelper.DOCUMENT_NAME;
 import static com.google.cloud.firestore.LocalFirestoreHelper.DOCUMENT_PATH;
+import static com.google.cloud.firestore.LocalFirestoreHelper.SINGLE_FIELD_PROTO;
 import static com.google.cloud.firestore.LocalFirestoreHelper.SINGLE_FIELD_SNAPSHOT;
 import static com.google.cloud.firestore.LocalFirestoreHelper.andFilters;
 import static com.google.cloud.firestore.LocalFirestoreHelper.endAt;
@@ -39,16 +40,19 @@ import static com.google.cloud.firestore.LocalFirestoreHelper.string;
 import static com.google.cloud.firestore.LocalFirestoreHelper.unaryFilter;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 
 import com.google.api.core.ApiClock;
 import com.google.api.gax.rpc.ApiStreamObserver;
 import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.StreamController;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.Query.ComparisonFilterInternal;
 import com.google.cloud.firestore.Query.FieldOrder;
@@ -56,6 +60,7 @@ import com.google.cloud.firestore.Query.FilterInternal;
 import com.google.cloud.firestore.spi.v1.FirestoreRpc;
 import com.google.common.io.BaseEncoding;
 import com.google.firestore.v1.ArrayValue;
+import com.google.firestore.v1.Document;
 import com.google.firestore.v1.RunQueryRequest;
 import com.google.firestore.v1.RunQueryResponse;
 import com.google.firestore.v1.StructuredQuery;
@@ -71,10 +76,13 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -1100,6 +1108,286 @@ public class QueryTest {
         requests.get(1).getStructuredQuery().getStartAt().getValues(0).getReferenceValue());
   }
 
+  @Test
+  public void streamWithManualFlowControl() {
+    doNothing()
+        .when(firestoreMock)
+        .streamRequest(runQuery.capture(), streamObserverCapture.capture(), any());
+
+    FlowControlledObserver observer = new FlowControlledObserver(/* initialRequest= */ 2);
+    query.streamWithFlowControl(observer);
+
+    ResponseObserver<RunQueryResponse> grpcObserver = streamObserverCapture.getValue();
+    RecordingStreamController grpcController = new RecordingStreamController();
+    grpcObserver.onStart(grpcController);
+    assertFalse(grpcController.autoFlowControl);
+    assertEquals(2, grpcController.requested);
+
+    // A response without a document does not satisfy any demand.
+    grpcObserver.onResponse(queryProgress());
+    assertEquals(3, grpcController.requested);
+
+    grpcObserver.onResponse(queryDocument(1));
+    grpcObserver.onResponse(queryDocument(2));
+    assertEquals(Arrays.asList("doc1", "doc2"), observer.documentIds);
+    assertEquals(3, grpcController.requested);
+
+    observer.controller.request(1);
+    assertEquals(4, grpcController.requested);
+
+    grpcObserver.onResponse(queryDocument(3).toBuilder().setDone(true).build());
+    assertEquals(Arrays.asList("doc1", "doc2", "doc3"), observer.documentIds);
+    assertTrue(observer.completed);
+  }
+
+  @Test
+  public void streamWithManualFlowControlRequestsRemainingDemandOnRetry() {
+    doNothing()
+        .when(firestoreMock)
+        .streamRequest(runQuery.capture(), streamObserverCapture.capture(), any());
+
+    FlowControlledObserver observer = new FlowControlledObserver(/* initialRequest= */ 3);
+    query.streamWithFlowControl(observer);
+
+    ResponseObserver<RunQueryResponse> grpcObserver = streamObserverCapture.getValue();
+    grpcObserver.onStart(new RecordingStreamController());
+    grpcObserver.onResponse(queryDocument(1));
+    grpcObserver.onError(
+        FirestoreException.forServerRejection(Status.DEADLINE_EXCEEDED, "Simulated test failure"));
+
+    assertEquals(2, streamObserverCapture.getAllValues().size());
+    RecordingStreamController retryController = new RecordingStreamController();
+    streamObserverCapture.getValue().onStart(retryController);
+    assertFalse(retryController.autoFlowControl);
+    assertEquals(2, retryController.requested);
+    assertEquals(Collections.singletonList("doc1"), observer.documentIds);
+  }
+
+  @Test
+  public void streamWithManualFlowControlCanBeCancelled() {
+    doNothing()
+        .when(firestoreMock)
+        .streamRequest(runQuery.capture(), streamObserverCapture.capture(), any());
+
+    FlowControlledObserver observer = new FlowControlledObserver(/* initialRequest= */ 1);
+    query.streamWithFlowControl(observer);
+
+    RecordingStreamController grpcController = new RecordingStreamController();
+    streamObserverCapture.getValue().onStart(grpcController);
+    observer.controller.cancel();
+    assertTrue(grpcController.cancelled);
+  }
+
+  @Test
+  public void streamWithAutomaticFlowControl() throws Exception {
+    doAnswer(queryResponse(DOCUMENT_NAME + "1", DOCUMENT_NAME + "2"))
+        .when(firestoreMock)
+        .streamRequest(runQuery.capture(), streamObserverCapture.capture(), any());
+
+    FlowControlledObserver observer = new FlowControlledObserver(/* initialRequest= */ 0);
+    query.streamWithFlowControl(observer);
+
+    assertEquals(Arrays.asList("doc1", "doc2"), observer.documentIds);
+    assertTrue(observer.completed);
+  }
+
+  @Test
+  public void streamAsIterableReturnsAllDocuments() {
+    doAnswer(queryResponse(DOCUMENT_NAME + "1", DOCUMENT_NAME + "2", DOCUMENT_NAME + "3"))
+        .when(firestoreMock)
+        .streamRequest(runQuery.capture(), streamObserverCapture.capture(), any());
+
+    Iterable<QueryDocumentSnapshot> documents = query.streamAsIterable(/* prefetch= */ 2);
+    List<String> ids = new ArrayList<>();
+    for (QueryDocumentSnapshot document : documents) {
+      ids.add(document.getId());
+    }
+    assertEquals(Arrays.asList("doc1", "doc2", "doc3"), ids);
+
+    // Every iteration executes the query.
+    assertTrue(documents.iterator().hasNext());
+    assertEquals(2, runQuery.getAllValues().size());
+  }
+
+  @Test
+  public void streamAsIterableBoundsPrefetchedDocuments() {
+    doNothing()
+        .when(firestoreMock)
+        .streamRequest(runQuery.capture(), streamObserverCapture.capture(), any());
+
+    Iterator<QueryDocumentSnapshot> iterator = query.streamAsIterable(/* prefetch= */ 4).iterator();
+    ResponseObserver<RunQueryResponse> grpcObserver = streamObserverCapture.getValue();
+    RecordingStreamController grpcController = new RecordingStreamController();
+    grpcObserver.onStart(grpcController);
+    assertEquals(4, grpcController.requested);
+
+    for (int i = 1; i <= 4; ++i) {
+      grpcObserver.onResponse(queryDocument(i));
+    }
+    assertEquals("doc1", iterator.next().getId());
+    assertEquals(4, grpcController.requested);
+
+    // More documents are requested once half of the prefetched documents were consumed.
+    assertEquals("doc2", iterator.next().getId());
+    assertEquals(6, grpcController.requested);
+
+    grpcObserver.onResponse(queryDocument(5).toBuilder().setDone(true).build());
+    List<String> ids = new ArrayList<>();
+    iterator.forEachRemaining(document -> ids.add(document.getId()));
+    assertEquals(Arrays.asList("doc3", "doc4", "doc5"), ids);
+  }
+
+  @Test
+  public void streamAsIterableThrowsQueryErrors() {
+    doAnswer(
+            queryResponse(
+                FirestoreException.forServerRejection(
+                    Status.PERMISSION_DENIED, "Simulated test failure"),
+                DOCUMENT_NAME + "1"))
+        .when(firestoreMock)
+        .streamRequest(runQuery.capture(), streamObserverCapture.capture(), any());
+
+    Iterator<QueryDocumentSnapshot> iterator = query.streamAsIterable(/* prefetch= */ 2).iterator();
+    assertEquals("doc1", iterator.next().getId());
+    FirestoreException e = assertThrows(FirestoreException.class, iterator::hasNext);
+    assertEquals("Simulated test failure", e.getMessage());
+  }
+
+  @Test
+  public void closingStreamAsStreamCancelsQuery() {
+    doNothing()
+        .when(firestoreMock)
+        .streamRequest(runQuery.capture(), streamObserverCapture.capture(), any());
+
+    RecordingStreamController grpcController = new RecordingStreamController();
+    try (Stream<QueryDocumentSnapshot> documents = query.streamAsStream(/* prefetch= */ 10)) {
+      ResponseObserver<RunQueryResponse> grpcObserver = streamObserverCapture.getValue();
+      grpcObserver.onStart(grpcController);
+      grpcObserver.onResponse(queryDocument(1));
+      grpcObserver.onResponse(queryDocument(2));
+      assertEquals("doc1", documents.findFirst().get().getId());
+      assertFalse(grpcController.cancelled);
+    }
+    assertTrue(grpcController.cancelled);
+  }
+
+  @Test
+  public void streamAsIterableRejectsInvalidPrefetch() {
+    assertThrows(IllegalArgumentException.class, () -> query.streamAsIterable(0));
+  }
+
+  @Test
+  public void comparatorUsesCachedSortValues() {
+    Comparator<QueryDocumentSnapshot> comparator =
+        query.orderBy("a").orderBy("b", Query.Direction.DESCENDING).comparator();
+    QueryDocumentSnapshot x = orderedDocument("x", 1, 2L);
+    QueryDocumentSnapshot y = orderedDocument("y", 1, 3L);
+    QueryDocumentSnapshot z = orderedDocument("z", 0, null);
+    QueryDocumentSnapshot w = orderedDocument("w", 1, 3L);
+
+    List<QueryDocumentSnapshot> documents = new ArrayList<>(Arrays.asList(x, y, z, w));
+    documents.sort(comparator);
+    // Ties are broken by document ID, using the direction of the last ordering.
+    assertEquals(Arrays.asList(z, y, w, x), documents);
+
+    Query.SortKeyComparator sortKeyComparator = (Query.SortKeyComparator) comparator;
+    assertSame(x.getSortValues(sortKeyComparator), x.getSortValues(sortKeyComparator));
+    // A missing field is ordered as null.
+    assertEquals(
+        Value.ValueTypeCase.NULL_VALUE, z.getSortValues(sortKeyComparator)[1].getValueTypeCase());
+
+    // Sort values are extracted again for a comparator of a different query.
+    documents.sort(query.orderBy("a", Query.Direction.DESCENDING).comparator());
+    assertEquals(Arrays.asList(y, x, w, z), documents);
+  }
+
+  private QueryDocumentSnapshot orderedDocument(String id, long a, @Nullable Long b) {
+    Document.Builder document =
+        Document.newBuilder()
+            .setName(firestoreMock.collection(COLLECTION_ID).document(id).getName())
+            .putFields("a", Value.newBuilder().setIntegerValue(a).build())
+            .setCreateTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(1))
+            .setUpdateTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(1));
+    if (b != null) {
+      document.putFields("b", Value.newBuilder().setIntegerValue(b).build());
+    }
+    return QueryDocumentSnapshot.fromDocument(
+        firestoreMock, Timestamp.ofTimeSecondsAndNanos(1, 0), document.build());
+  }
+
+  private static RunQueryResponse queryProgress() {
+    return RunQueryResponse.newBuilder()
+        .setReadTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(1).setNanos(2))
+        .build();
+  }
+
+  private static RunQueryResponse queryDocument(int index) {
+    return queryProgress().toBuilder()
+        .setDocument(
+            Document.newBuilder().setName(DOCUMENT_NAME + index).putAllFields(SINGLE_FIELD_PROTO))
+        .build();
+  }
+
+  /**
+   * Collects streamed documents. Disables automatic flow control and requests the given number of
+   * documents on start if the number is positive.
+   */
+  private static class FlowControlledObserver implements ResponseObserver<DocumentSnapshot> {
+    private final int initialRequest;
+    final List<String> documentIds = new ArrayList<>();
+    StreamController controller;
+    boolean completed;
+
+    FlowControlledObserver(int initialRequest) {
+      this.initialRequest = initialRequest;
+    }
+
+    @Override
+    public void onStart(StreamController controller) {
+      this.controller = controller;
+      if (initialRequest > 0) {
+        controller.disableAutoInboundFlowControl();
+        controller.request(initialRequest);
+      }
+    }
+
+    @Override
+    public void onResponse(DocumentSnapshot documentSnapshot) {
+      documentIds.add(documentSnapshot.getId());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      fail();
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+  private static class RecordingStreamController implements StreamController {
+    boolean autoFlowControl = true;
+    int requested;
+    boolean cancelled;
+
+    @Override
+    public void disableAutoInboundFlowControl() {
+      autoFlowControl = false;
+    }
+
+    @Override
+    public void request(int count) {
+      requested += count;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+
   @Test
   public void doesNotRetryAfterNonRetryableError() throws Exception {
     doAnswer(
@@ -1348,6 +1636,90 @@ public class QueryTest {
     assertEquals(deserializedQuery, query);
   }
 
+  @Test
+  public void cachesSerializedQuery() {
+    query = query.whereEqualTo("a", 1).orderBy("b");
+    assertSame(query.toStructuredQuery(), query.toStructuredQuery());
+    assertEquals(query.toProto(), query.toProto());
+  }
+
+  @Test
+  public void templateBindsFilterAndCursorValues() {
+    QueryTemplate template =
+        query
+            .whereEqualTo("a", "x")
+            .where(or(greaterThan("b", 1), inArray("c", Arrays.asList(1, 2))))
+            .whereEqualTo("d", null)
+            .orderBy("e")
+            .startAfter("s")
+            .endAt("t")
+            .toTemplate();
+
+    assertEquals(
+        Arrays.asList(FieldPath.of("a"), FieldPath.of("b"), FieldPath.of("c")),
+        template.getFilterFields());
+
+    Query bound =
+        template.bind(
+            Arrays.asList("y", 2, Arrays.asList(3, 4)), Collections.singletonList("u"), null);
+    Query expected =
+        query
+            .whereEqualTo("a", "y")
+            .where(or(greaterThan("b", 2), inArray("c", Arrays.asList(3, 4))))
+            .whereEqualTo("d", null)
+            .orderBy("e")
+            .startAfter("u")
+            .endAt("t");
+
+    assertEquals(expected.toProto(), bound.toProto());
+  }
+
+  @Test
+  public void templateBindsLimitToLastQueries() {
+    QueryTemplate template =
+        query.whereEqualTo("a", "x").orderBy("b").startAt(1).limitToLast(10).toTemplate();
+
+    Query bound = template.bind(Collections.singletonList("y"), Collections.singletonList(2), null);
+
+    assertEquals(
+        query.whereEqualTo("a", "y").orderBy("b").startAt(2).limitToLast(10).toProto(),
+        bound.toProto());
+  }
+
+  @Test
+  public void templateRejectsInvalidValues() {
+    QueryTemplate template =
+        query.whereEqualTo("a", "x").whereIn("b", Arrays.asList(1)).toTemplate();
+
+    assertThrows(
+        IllegalArgumentException.class, () -> template.bind(Collections.singletonList("y")));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> template.bind(Arrays.asList("y", Arrays.asList(1), "z")));
+    assertThrows(
+        IllegalArgumentException.class, () -> template.bind(Arrays.asList(null, Arrays.asList(1))));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            template.bind(
+                Arrays.asList("y", Arrays.asList(1)), Collections.singletonList("c"), null));
+  }
+
+  @Test
+  public void templateRejectsTooManyCursorValues() {
+    QueryTemplate template =
+        query.whereGreaterThan("a", 1).orderBy("a").startAt(5).endAt(10).toTemplate();
+
+    IllegalStateException e =
+        assertThrows(
+            IllegalStateException.class,
+            () -> template.bind(Collections.singletonList(2), Arrays.asList(5, "doc"), null));
+    assertTrue(e.getMessage().startsWith("Too many cursor values specified."));
+    assertThrows(
+        IllegalStateException.class,
+        () -> template.bind(Collections.singletonList(2), null, Arrays.asList(10, "doc")));
+  }
+
   @Test
   public void serializationVerifiesDatabaseName() {
     RunQueryRequest runQueryRequest = query.toProto();
@@ -102,6 +102,31 @@ public class RateLimiterTest {
     assertEquals(-1, limiter.getNextRequestDelayMs(751, timestamp));
   }
 
+  @Test
+  public void fixedCapacityReplacesRampUp() {
+    limiter.setCapacity(200);
+    assertEquals(200, limiter.calculateCapacity(new Date(0).getTime()));
+    assertEquals(200, limiter.calculateCapacity(new Date(15 * 60 * 1000).getTime()));
+
+    // Available tokens are capped at the new capacity.
+    assertFalse(limiter.tryMakeRequest(201, new Date(0).getTime()));
+    assertTrue(limiter.tryMakeRequest(200, new Date(0).getTime()));
+
+    // The maximum rate limit is still enforced.
+    limiter.setCapacity(2000000);
+    assertEquals(1000000, limiter.calculateCapacity(new Date(0).getTime()));
+  }
+
+  @Test
+  public void refillDoesNotOverflowWithUnlimitedCapacity() {
+    RateLimiter unlimited =
+        new RateLimiter(
+            Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 0);
+    assertTrue(unlimited.tryMakeRequest(500, new Date(0).getTime()));
+    assertTrue(unlimited.tryMakeRequest(500, new Date(500).getTime()));
+    assertTrue(unlimited.tryMakeRequest(500, new Date(5 * 1000).getTime()));
+  }
+
   @Test
   public void calculatesMaxOperations() {
     assertEquals(500, limiter.calculateCapacity(new Date(0).getTime()));
@@ -17,6 +17,7 @@
 package com.google.cloud.firestore;
 
 import static com.google.api.core.ApiFutures.immediateFailedFuture;
+import static com.google.cloud.firestore.LocalFirestoreHelper.DOCUMENT_NAME;
 import static com.google.cloud.firestore.LocalFirestoreHelper.IMMEDIATE_RETRY_SETTINGS;
 import static com.google.cloud.firestore.LocalFirestoreHelper.SINGLE_FIELD_PROTO;
 import static com.google.cloud.firestore.LocalFirestoreHelper.TRANSACTION_ID;
@@ -36,6 +37,7 @@ import static com.google.cloud.firestore.LocalFirestoreHelper.queryResponse;
 import static com.google.cloud.firestore.LocalFirestoreHelper.rollback;
 import static com.google.cloud.firestore.LocalFirestoreHelper.rollbackResponse;
 import static com.google.cloud.firestore.LocalFirestoreHelper.set;
+import static com.google.cloud.firestore.LocalFirestoreHelper.streamingResponse;
 import static com.google.cloud.firestore.LocalFirestoreHelper.update;
 import static com.google.cloud.firestore.it.ITQueryTest.map;
 import static com.google.common.truth.Truth.assertThat;
@@ -62,8 +64,15 @@ import com.google.cloud.firestore.TransactionOptions.ReadWriteOptionsBuilder;
 import com.google.cloud.firestore.TransactionOptions.TransactionOptionsType;
 import com.google.cloud.firestore.spi.v1.FirestoreRpc;
 import com.google.firestore.v1.BatchGetDocumentsRequest;
+import com.google.firestore.v1.BatchGetDocumentsResponse;
 import com.google.firestore.v1.DocumentMask;
+import com.google.firestore.v1.RunAggregationQueryRequest;
+import com.google.firestore.v1.RunAggregationQueryResponse;
+import com.google.firestore.v1.RunQueryRequest;
+import com.google.firestore.v1.RunQueryResponse;
+import com.google.firestore.v1.Value;
 import com.google.firestore.v1.Write;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Message;
 import io.grpc.Status;
 import java.util.ArrayList;
@@ -569,6 +578,145 @@ public class TransactionTest {
     assertEquals(commit(TRANSACTION_ID), requests.get(2));
   }
 
+  @Test
+  public void inlineBeginReadsInNewTransaction() throws Exception {
+    doReturn(commitResponse(0, 0))
+        .when(firestoreMock)
+        .sendRequest(
+            requestCapture.capture(), ArgumentMatchers.<UnaryCallable<Message, Message>>any());
+
+    BatchGetDocumentsResponse.Builder response = BatchGetDocumentsResponse.newBuilder();
+    response.setTransaction(ByteString.copyFromUtf8(TRANSACTION_ID));
+    response.getFoundBuilder().setName(DOCUMENT_NAME).putAllFields(SINGLE_FIELD_PROTO);
+    response.setReadTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(5));
+    doAnswer(streamingResponse(new BatchGetDocumentsResponse[] {response.build()}, null))
+        .when(firestoreMock)
+        .streamRequest(
+            requestCapture.capture(), streamObserverCapture.capture(), ArgumentMatchers.any());
+
+    ApiFuture<DocumentSnapshot> transaction =
+        firestoreMock.runTransaction(
+            t -> t.get(documentReference).get(),
+            TransactionOptions.createReadWriteOptionsBuilder()
+                .setExecutor(options.getExecutor())
+                .setInlineBeginEnabled(true)
+                .build());
+
+    assertEquals("doc", transaction.get().getId());
+
+    List<Message> requests = requestCapture.getAllValues();
+    assertEquals(2, requests.size());
+
+    BatchGetDocumentsRequest.Builder expectedGet = get().toBuilder();
+    expectedGet.getNewTransactionBuilder().getReadWriteBuilder();
+    assertEquals(expectedGet.build(), requests.get(0));
+    assertEquals(commit(TRANSACTION_ID), requests.get(1));
+  }
+
+  @Test
+  public void inlineBeginCommitsWritesWithoutTransaction() throws Exception {
+    doReturn(commitResponse(1, 0))
+        .when(firestoreMock)
+        .sendRequest(
+            requestCapture.capture(), ArgumentMatchers.<UnaryCallable<Message, Message>>any());
+
+    ApiFuture<String> transaction =
+        firestoreMock.runTransaction(
+            t -> {
+              t.update(documentReference, "foo", "bar");
+              return "foo";
+            },
+            TransactionOptions.createReadWriteOptionsBuilder()
+                .setExecutor(options.getExecutor())
+                .setInlineBeginEnabled(true)
+                .build());
+
+    assertEquals("foo", transaction.get());
+
+    List<Message> requests = requestCapture.getAllValues();
+    assertEquals(1, requests.size());
+    assertEquals(
+        commit(update(SINGLE_FIELD_PROTO, Collections.singletonList("foo"))), requests.get(0));
+  }
+
+  @Test
+  public void inlineBeginRunsQueryInNewTransaction() throws Exception {
+    doReturn(commitResponse(0, 0))
+        .when(firestoreMock)
+        .sendRequest(
+            requestCapture.capture(), ArgumentMatchers.<UnaryCallable<Message, Message>>any());
+
+    RunQueryResponse.Builder response = RunQueryResponse.newBuilder();
+    response.setTransaction(ByteString.copyFromUtf8(TRANSACTION_ID));
+    response.getDocumentBuilder().setName(DOCUMENT_NAME).putAllFields(SINGLE_FIELD_PROTO);
+    response.setReadTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(1));
+    doAnswer(streamingResponse(new RunQueryResponse[] {response.build()}, null))
+        .doAnswer(getAllResponse(SINGLE_FIELD_PROTO))
+        .when(firestoreMock)
+        .streamRequest(
+            requestCapture.capture(), streamObserverCapture.capture(), ArgumentMatchers.any());
+
+    ApiFuture<DocumentSnapshot> transaction =
+        firestoreMock.runTransaction(
+            t -> {
+              assertEquals(1, t.get(queryReference).get().size());
+              return t.get(documentReference).get();
+            },
+            TransactionOptions.createReadWriteOptionsBuilder()
+                .setExecutor(options.getExecutor())
+                .setInlineBeginEnabled(true)
+                .build());
+
+    assertEquals("doc", transaction.get().getId());
+
+    List<Message> requests = requestCapture.getAllValues();
+    assertEquals(3, requests.size());
+
+    RunQueryRequest.Builder expectedQuery = query(null, /* allDescendants= */ false).toBuilder();
+    expectedQuery.getNewTransactionBuilder().getReadWriteBuilder();
+    assertEquals(expectedQuery.build(), requests.get(0));
+    // Later reads use the transaction that the query has begun.
+    assertEquals(get(TRANSACTION_ID), requests.get(1));
+    assertEquals(commit(TRANSACTION_ID), requests.get(2));
+  }
+
+  @Test
+  public void inlineBeginRunsAggregateQueryInNewTransaction() throws Exception {
+    doReturn(commitResponse(0, 0))
+        .when(firestoreMock)
+        .sendRequest(
+            requestCapture.capture(), ArgumentMatchers.<UnaryCallable<Message, Message>>any());
+
+    RunAggregationQueryResponse.Builder response = RunAggregationQueryResponse.newBuilder();
+    response.setTransaction(ByteString.copyFromUtf8(TRANSACTION_ID));
+    response
+        .getResultBuilder()
+        .putAggregateFields("aggregate_0", Value.newBuilder().setIntegerValue(42).build());
+    response.setReadTime(com.google.protobuf.Timestamp.newBuilder().setSeconds(1));
+    doAnswer(streamingResponse(new RunAggregationQueryResponse[] {response.build()}, null))
+        .when(firestoreMock)
+        .streamRequest(
+            requestCapture.capture(), streamObserverCapture.capture(), ArgumentMatchers.any());
+
+    ApiFuture<AggregateQuerySnapshot> transaction =
+        firestoreMock.runTransaction(
+            t -> t.get(aggregateQueryReference).get(),
+            TransactionOptions.createReadWriteOptionsBuilder()
+                .setExecutor(options.getExecutor())
+                .setInlineBeginEnabled(true)
+                .build());
+
+    assertEquals(42, transaction.get().getCount());
+
+    List<Message> requests = requestCapture.getAllValues();
+    assertEquals(2, requests.size());
+
+    RunAggregationQueryRequest.Builder expectedQuery = countQuery().toBuilder();
+    expectedQuery.getNewTransactionBuilder().getReadWriteBuilder();
+    assertEquals(expectedQuery.build(), requests.get(0));
+    assertEquals(commit(TRANSACTION_ID), requests.get(1));
+  }
+
   @Test
   public void getDocumentAsync() throws Exception {
     doReturn(beginResponse())
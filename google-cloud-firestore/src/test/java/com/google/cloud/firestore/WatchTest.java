@@ -29,6 +29,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 import com.google.api.gax.grpc.GrpcStatusCode;
@@ -684,11 +685,13 @@ public class WatchTest {
     awaitQuerySnapshot(new SnapshotDocument(ChangeType.ADDED, "coll/doc1", SINGLE_FIELD_MAP));
 
     send(filter(2));
-    awaitClose();
 
-    awaitAddTarget();
-    send(doc("coll/doc2", SINGLE_FIELD_PROTO));
-    send(current());
+    // The target is re-issued under a new ID on the same stream.
+    awaitRemoveTarget(TARGET_ID);
+    awaitAddTarget(TARGET_ID + 1);
+    send(doc("coll/doc1", UPDATED_FIELD_PROTO));
+    send(doc("coll/doc2", SINGLE_FIELD_PROTO, TARGET_ID + 1));
+    send(current(TARGET_ID + 1));
     send(snapshot());
 
     awaitQuerySnapshot(
@@ -696,6 +699,84 @@ public class WatchTest {
         new SnapshotDocument(ChangeType.ADDED, "coll/doc2", SINGLE_FIELD_MAP));
   }
 
+  @Test
+  public void watchMultiplexesTargetsOnOneStream() throws InterruptedException {
+    addQueryListener();
+    awaitAddTarget();
+
+    BlockingQueue<DocumentSnapshot> otherSnapshots = new LinkedBlockingDeque<>();
+    ListenerRegistration otherRegistration =
+        firestoreMock
+            .document("other/doc")
+            .addSnapshotListener((value, error) -> otherSnapshots.add(value));
+    awaitAddTarget(TARGET_ID + 1);
+
+    send(addTarget());
+    send(current());
+    send(doc("coll/doc", SINGLE_FIELD_PROTO));
+    send(doc("other/doc", UPDATED_FIELD_PROTO, TARGET_ID + 1));
+    send(snapshot());
+
+    // The second target is not current yet.
+    awaitQuerySnapshot(new SnapshotDocument(ChangeType.ADDED, "coll/doc", SINGLE_FIELD_MAP));
+    assertTrue(otherSnapshots.isEmpty());
+
+    send(current(TARGET_ID + 1));
+    send(snapshot());
+
+    DocumentSnapshot otherSnapshot = otherSnapshots.take();
+    assertEquals("other/doc", otherSnapshot.getReference().getPath());
+    assertEquals(UPDATED_FIELD_MAP, otherSnapshot.getData());
+
+    otherRegistration.remove();
+    awaitRemoveTarget(TARGET_ID + 1);
+
+    verify(firestoreMock, times(1))
+        .streamRequest(
+            ArgumentMatchers.<BidiStreamObserver<ListenRequest, ListenResponse>>any(),
+            ArgumentMatchers.<BidiStreamingCallable>any());
+  }
+
+  @Test
+  public void watchReaddsAllTargetsWhenStreamIsReopened() throws InterruptedException {
+    addQueryListener();
+    awaitAddTarget();
+
+    ListenerRegistration otherRegistration =
+        firestoreMock.document("other/doc").addSnapshotListener((value, error) -> {});
+    awaitAddTarget(TARGET_ID + 1);
+
+    close();
+    awaitClose();
+    awaitAddTarget(TARGET_ID);
+    awaitAddTarget(TARGET_ID + 1);
+
+    otherRegistration.remove();
+    awaitRemoveTarget(TARGET_ID + 1);
+  }
+
+  @Test
+  public void watchRemovesSingleTargetOnServerRejection() throws InterruptedException {
+    addQueryListener();
+    awaitAddTarget();
+
+    BlockingQueue<FirestoreException> otherExceptions = new LinkedBlockingDeque<>();
+    firestoreMock
+        .document("other/doc")
+        .addSnapshotListener((value, error) -> otherExceptions.add(error));
+    awaitAddTarget(TARGET_ID + 1);
+
+    send(removeTarget(Code.PERMISSION_DENIED, TARGET_ID + 1));
+    assertEquals(Code.PERMISSION_DENIED.value(), otherExceptions.take().getCode());
+
+    // The remaining target continues to receive updates.
+    send(addTarget());
+    send(current());
+    send(doc("coll/doc", SINGLE_FIELD_PROTO));
+    send(snapshot());
+    awaitQuerySnapshot(new SnapshotDocument(ChangeType.ADDED, "coll/doc", SINGLE_FIELD_MAP));
+  }
+
   @Test
   public void queryWatchHandlesTargetRemoval() throws InterruptedException {
     addQueryListener();
@@ -824,6 +905,59 @@ public class WatchTest {
     assertEquals(currentSnapshot, thirdSnapshot);
   }
 
+  @Test
+  public void queryWatchComputesIndexesForLargeChangeSets() throws InterruptedException {
+    addQueryListener();
+    awaitAddTarget();
+    send(addTarget());
+    send(current());
+
+    List<QueryDocumentSnapshot> documents = new ArrayList<>();
+
+    // The initial snapshot and the large bursts are applied by rebuilding the document tree, while
+    // the small burst is applied one change at a time.
+    for (int i = 0; i < 200; i += 2) {
+      send(doc(String.format("coll/doc%03d", i), SINGLE_FIELD_PROTO));
+    }
+    send(snapshot());
+    documents = applyChanges(documents, querySnapshots.take());
+
+    for (int i = 0; i < 200; i += 6) {
+      send(docDelete(String.format("coll/doc%03d", i)));
+      send(doc(String.format("coll/doc%03d", i + 1), SINGLE_FIELD_PROTO));
+      send(doc(String.format("coll/doc%03d", i + 2), UPDATED_FIELD_PROTO));
+    }
+    send(snapshot());
+    documents = applyChanges(documents, querySnapshots.take());
+
+    send(docDelete("coll/doc004"));
+    send(doc("coll/doc005", SINGLE_FIELD_PROTO));
+    send(doc("coll/doc010", UPDATED_FIELD_PROTO));
+    send(snapshot());
+    applyChanges(documents, querySnapshots.take());
+  }
+
+  /**
+   * Replays the changes of the snapshot in their order, verifies that the result matches the
+   * documents in the snapshot and returns the result.
+   */
+  private List<QueryDocumentSnapshot> applyChanges(
+      List<QueryDocumentSnapshot> documents, QuerySnapshot querySnapshot) {
+    List<QueryDocumentSnapshot> updatedDocuments = new ArrayList<>(documents);
+    for (com.google.cloud.firestore.DocumentChange change : querySnapshot.getDocumentChanges()) {
+      if (change.getOldIndex() != -1) {
+        assertEquals(
+            change.getDocument().getReference(),
+            updatedDocuments.remove(change.getOldIndex()).getReference());
+      }
+      if (change.getNewIndex() != -1) {
+        updatedDocuments.add(change.getNewIndex(), change.getDocument());
+      }
+    }
+    assertEquals(querySnapshot.getDocuments(), updatedDocuments);
+    return updatedDocuments;
+  }
+
   private void restartWatch() {
     after();
     before();
@@ -920,9 +1054,19 @@ public class WatchTest {
   }
 
   private void awaitAddTarget() throws InterruptedException {
+    awaitAddTarget(TARGET_ID);
+  }
+
+  private void awaitAddTarget(int targetId) throws InterruptedException {
     ListenRequest listenRequest = requests.take();
     assertEquals(DATABASE_NAME, listenRequest.getDatabase());
-    assertEquals(TARGET_ID, listenRequest.getAddTarget().getTargetId());
+    assertEquals(targetId, listenRequest.getAddTarget().getTargetId());
+  }
+
+  private void awaitRemoveTarget(int targetId) throws InterruptedException {
+    ListenRequest listenRequest = requests.take();
+    assertEquals(DATABASE_NAME, listenRequest.getDatabase());
+    assertEquals(targetId, listenRequest.getRemoveTarget());
   }
 
   private void awaitResumeToken() throws InterruptedException {
@@ -933,10 +1077,14 @@ public class WatchTest {
   }
 
   private ListenResponse removeTarget(@Nullable Code code) {
+    return removeTarget(code, TARGET_ID);
+  }
+
+  private ListenResponse removeTarget(@Nullable Code code, int targetId) {
     TargetChange.Builder targetChange =
         TargetChange.newBuilder()
             .setTargetChangeType(TargetChangeType.REMOVE)
-            .addTargetIds(TARGET_ID);
+            .addTargetIds(targetId);
 
     if (code != null) {
       targetChange.setCause(Status.newBuilder().setCode(code.value()));
@@ -957,11 +1105,15 @@ public class WatchTest {
   }
 
   private ListenResponse current() {
+    return current(TARGET_ID);
+  }
+
+  private ListenResponse current(int targetId) {
     ListenResponse.Builder response = ListenResponse.newBuilder();
     response.setTargetChange(
         TargetChange.newBuilder()
             .setTargetChangeType(TargetChangeType.CURRENT)
-            .addTargetIds(TARGET_ID));
+            .addTargetIds(targetId));
     return response.build();
   }
 
@@ -991,8 +1143,12 @@ public class WatchTest {
   }
 
   private ListenResponse doc(String docPath, Map<String, Value> singleFieldProto) {
+    return doc(docPath, singleFieldProto, TARGET_ID);
+  }
+
+  private ListenResponse doc(String docPath, Map<String, Value> singleFieldProto, int targetId) {
     DocumentChange.Builder documentChange = DocumentChange.newBuilder();
-    documentChange.addTargetIds(TARGET_ID);
+    documentChange.addTargetIds(targetId);
     documentChange.setDocument(
         Document.newBuilder()
             .setName(String.format("%s/documents/%s", DATABASE_NAME, docPath))
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.firestore;
+
+import static com.google.cloud.firestore.LocalFirestoreHelper.UPDATE_PRECONDITION;
+import static com.google.cloud.firestore.LocalFirestoreHelper.create;
+import static com.google.cloud.firestore.LocalFirestoreHelper.delete;
+import static com.google.cloud.firestore.LocalFirestoreHelper.increment;
+import static com.google.cloud.firestore.LocalFirestoreHelper.map;
+import static com.google.cloud.firestore.LocalFirestoreHelper.serverTimestamp;
+import static com.google.cloud.firestore.LocalFirestoreHelper.set;
+import static com.google.cloud.firestore.LocalFirestoreHelper.string;
+import static com.google.cloud.firestore.LocalFirestoreHelper.transform;
+import static com.google.cloud.firestore.LocalFirestoreHelper.update;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.firestore.v1.MapValue;
+import com.google.firestore.v1.Value;
+import com.google.firestore.v1.Write;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class WriteCoalescerTest {
+
+  private static Value integer(long value) {
+    return Value.newBuilder().setIntegerValue(value).build();
+  }
+
+  private static Value object(String key, Value value) {
+    return Value.newBuilder().setMapValue(MapValue.newBuilder().putFields(key, value)).build();
+  }
+
+  @Test
+  public void mergesFieldsIntoSet() {
+    Write pending = set(map("a", object("b", string("1")), "c", string("2")));
+    Write next = update(map("a", object("d", string("3"))), Arrays.asList("a.d", "c"));
+
+    assertEquals(
+        set(
+            map(
+                "a",
+                Value.newBuilder()
+                    .setMapValue(
+                        MapValue.newBuilder()
+                            .putFields("b", string("1"))
+                            .putFields("d", string("3")))
+                    .build())),
+        WriteCoalescer.merge(pending, next));
+  }
+
+  @Test
+  public void mergesMasksOfUpdates() {
+    Write pending = update(map("a", string("1")), Collections.singletonList("a"));
+    Write next = update(map("b", string("2")), Arrays.asList("a", "b"));
+
+    assertEquals(
+        update(map("b", string("2")), Arrays.asList("a", "b")),
+        WriteCoalescer.merge(pending, next));
+  }
+
+  @Test
+  public void sumsIncrements() {
+    Write pending =
+        update(map("a", string("1")), Collections.singletonList("a")).toBuilder()
+            .addAllUpdateTransforms(transform("count", increment(integer(1))))
+            .build();
+    Write next =
+        update(Collections.emptyMap(), Collections.emptyList()).toBuilder()
+            .addAllUpdateTransforms(
+                transform("count", increment(integer(2)), "time", serverTimestamp()))
+            .build();
+
+    assertEquals(
+        update(map("a", string("1")), Collections.singletonList("a")).toBuilder()
+            .addAllUpdateTransforms(
+                transform("count", increment(integer(3)), "time", serverTimestamp()))
+            .build(),
+        WriteCoalescer.merge(pending, next));
+  }
+
+  @Test
+  public void mergesWritesThatRequireExistence() {
+    Write pending =
+        update(map("a", string("1")), Collections.singletonList("a"), UPDATE_PRECONDITION);
+    Write next = update(map("b", string("2")), Collections.singletonList("b"), UPDATE_PRECONDITION);
+
+    assertEquals(
+        update(
+            map("a", string("1"), "b", string("2")), Arrays.asList("a", "b"), UPDATE_PRECONDITION),
+        WriteCoalescer.merge(pending, next));
+  }
+
+  @Test
+  public void doesNotMergeWritesAfterPrecondition() {
+    Write update = update(map("b", string("2")), Collections.singletonList("b"));
+
+    // A failed precondition of the first write must not fail the second write.
+    assertNull(WriteCoalescer.merge(create(map("a", string("1"))), update));
+    assertNull(
+        WriteCoalescer.merge(
+            update(map("a", string("1")), Collections.singletonList("a"), UPDATE_PRECONDITION),
+            set(map("b", string("2")))));
+  }
+
+  @Test
+  public void doesNotMergeConflictingWrites() {
+    Write update = update(map("a", string("1")), Collections.singletonList("a"));
+    Write transform =
+        update(Collections.emptyMap(), Collections.emptyList()).toBuilder()
+            .addAllUpdateTransforms(transform("a", serverTimestamp()))
+            .build();
+
+    // Deletes and creates cannot be merged.
+    assertNull(WriteCoalescer.merge(update, delete()));
+    assertNull(WriteCoalescer.merge(delete(), update));
+    assertNull(WriteCoalescer.merge(update, create(map("a", string("1")))));
+    // A transformed field cannot be overwritten or transformed again.
+    assertNull(WriteCoalescer.merge(transform, update));
+    assertNull(WriteCoalescer.merge(transform, transform));
+    // Masks cannot contain a field and its parent.
+    assertNull(
+        WriteCoalescer.merge(
+            update, update(map("a", object("b", string("1"))), Collections.singletonList("a.b"))));
+    // Update time preconditions can only be checked against the original document.
+    assertNull(
+        WriteCoalescer.merge(
+            update,
+            update(
+                map("b", string("1")),
+                Collections.singletonList("b"),
+                Precondition.updatedAt(com.google.cloud.Timestamp.ofTimeSecondsAndNanos(1, 0))
+                    .toPb())));
+    assertEquals(
+        update(map("a", string("1"), "b", string("2")), Arrays.asList("a", "b")),
+        WriteCoalescer.merge(
+            update,
+            update(map("b", string("2")), Collections.singletonList("b"), UPDATE_PRECONDITION)));
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.firestore.encoding;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Parameterized.class)
+public class BeanAccessorsTest {
+
+  @Parameterized.Parameter public boolean useMethodHandles;
+
+  @Parameterized.Parameters(name = "useMethodHandles={0}")
+  public static Collection<Object[]> data() {
+    return Arrays.asList(new Object[][] {{true}, {false}});
+  }
+
+  private static class Bean {
+    private String value;
+    private long primitive;
+    private final String finalValue = "final";
+
+    private Bean() {}
+
+    private String getValue() {
+      return value;
+    }
+
+    private void setValue(String value) {
+      this.value = value;
+    }
+
+    private String getThrowing() {
+      throw new IllegalStateException("getter failed");
+    }
+  }
+
+  public static class PublicBean {
+    private String value;
+    private int number;
+
+    public String getValue() {
+      return value;
+    }
+
+    public void setValue(String value) {
+      this.value = value;
+    }
+
+    public int getNumber() {
+      return number;
+    }
+
+    public void setNumber(int number) {
+      this.number = number;
+    }
+  }
+
+  private static Method method(String name, Class<?>... parameterTypes) throws Exception {
+    Method method = Bean.class.getDeclaredMethod(name, parameterTypes);
+    method.setAccessible(true);
+    return method;
+  }
+
+  private static Field field(String name) throws Exception {
+    Field field = Bean.class.getDeclaredField(name);
+    field.setAccessible(true);
+    return field;
+  }
+
+  @Test
+  public void methodAccessors() throws Exception {
+    Bean bean = new Bean();
+    BeanAccessors.setter(method("setValue", String.class), useMethodHandles).set(bean, "foo");
+    assertThat(bean.value).isEqualTo("foo");
+    assertThat(BeanAccessors.getter(method("getValue"), useMethodHandles).get(bean))
+        .isEqualTo("foo");
+  }
+
+  @Test
+  public void fieldAccessors() throws Exception {
+    Bean bean = new Bean();
+    BeanAccessors.setter(field("primitive"), useMethodHandles).set(bean, 42L);
+    assertThat(bean.primitive).isEqualTo(42L);
+    assertThat(BeanAccessors.getter(field("primitive"), useMethodHandles).get(bean)).isEqualTo(42L);
+  }
+
+  @Test
+  public void finalFieldCanBeRead() throws Exception {
+    assertThat(BeanAccessors.getter(field("finalValue"), useMethodHandles).get(new Bean()))
+        .isEqualTo("final");
+  }
+
+  @Test
+  public void nullCannotBeAssignedToPrimitive() throws Exception {
+    BeanAccessors.Setter setter = BeanAccessors.setter(field("primitive"), useMethodHandles);
+    assertThrows(IllegalArgumentException.class, () -> setter.set(new Bean(), null));
+  }
+
+  @Test
+  public void exceptionsAreWrapped() throws Exception {
+    BeanAccessors.Getter getter = BeanAccessors.getter(method("getThrowing"), useMethodHandles);
+    InvocationTargetException e =
+        assertThrows(InvocationTargetException.class, () -> getter.get(new Bean()));
+    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    assertThat(e.getCause()).hasMessageThat().isEqualTo("getter failed");
+  }
+
+  @Test
+  public void instantiator() throws Exception {
+    Constructor<Bean> constructor = Bean.class.getDeclaredConstructor();
+    constructor.setAccessible(true);
+    assertThat(BeanAccessors.instantiator(constructor, useMethodHandles).newInstance())
+        .isInstanceOf(Bean.class);
+  }
+
+  @Test
+  public void pojoBeanMapperRoundTrip() {
+    PojoBeanMapper<PublicBean> mapper = new PojoBeanMapper<>(PublicBean.class, useMethodHandles);
+    PublicBean bean = new PublicBean();
+    bean.setValue("foo");
+    bean.setNumber(7);
+
+    Map<String, Object> serialized = mapper.serialize(bean, DeserializeContext.ErrorPath.EMPTY);
+    Map<String, Object> expected = new HashMap<>();
+    expected.put("value", "foo");
+    expected.put("number", 7);
+    assertThat(serialized).isEqualTo(expected);
+
+    PublicBean deserialized =
+        mapper.deserialize(
+            serialized, new DeserializeContext(DeserializeContext.ErrorPath.EMPTY, null));
+    assertThat(deserialized.getValue()).isEqualTo("foo");
+    assertThat(deserialized.getNumber()).isEqualTo(7);
+  }
+}